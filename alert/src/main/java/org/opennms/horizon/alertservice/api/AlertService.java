@@ -32,6 +32,11 @@ import org.opennms.horizon.inventory.dto.NodeOperationProto;
 public interface AlertService {
     List<Alert> reduceEvent(Event e);
 
+    /**
+     * Reduces the events in order, as a single transaction.
+     */
+    List<Alert> reduceEvents(List<Event> events);
+
     boolean deleteByIdAndTenantId(long id, String tenantId);
 
     void deleteByTenantId(Alert alert, String tenantId);
@@ -45,6 +45,8 @@ public interface AlertDefinitionRepository extends JpaRepository<AlertDefinition
 
     @Query("SELECT d " + "FROM AlertDefinition d "
             + " JOIN FETCH d.alertCondition  AS ad "
+            + "LEFT JOIN FETCH ad.rule AS r "
+            + "LEFT JOIN FETCH r.policy "
             + "WHERE d.tenantId = :tenantId "
             + "AND ad.id = :id ")
     List<AlertDefinition> findByTenantIdAndAlertConditionId(@Param("tenantId") String tenantId, @Param("id") Long id);
@@ -21,6 +21,7 @@
  */
 package org.opennms.horizon.alertservice.db.repository;
 
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import java.util.Optional;
@@ -44,6 +45,13 @@ public interface AlertRepository extends JpaRepository<Alert, Long> {
     Optional<Alert> findByReductionKeyAndTenantId(
             @Param("reductionKey") String reductionKey, @Param("tenantId") String tenantId);
 
+    @Query("SELECT a " + "FROM Alert a "
+            + "LEFT JOIN FETCH a.alertCondition "
+            + "WHERE a.tenantId = :tenantId "
+            + "AND a.reductionKey IN :reductionKeys ")
+    List<Alert> findByTenantIdAndReductionKeyIn(
+            @Param("tenantId") String tenantId, @Param("reductionKeys") Collection<String> reductionKeys);
+
     List<Alert> findByReductionKeyStartingWithAndTenantId(String reductionKey, String tenantId);
 
     @Query(
@@ -21,6 +21,7 @@
  */
 package org.opennms.horizon.alertservice.db.repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import org.opennms.horizon.alertservice.db.entity.Node;
@@ -31,5 +32,7 @@ import org.springframework.stereotype.Repository;
 public interface NodeRepository extends JpaRepository<Node, Long> {
     Optional<Node> findByIdAndTenantId(long id, String tenantId);
 
+    List<Node> findByTenantIdAndIdIn(String tenantId, Collection<Long> ids);
+
     List<Node> findAllByNodeLabelContainingIgnoreCaseAndTenantId(String nodeLabel, String tenantId);
 }
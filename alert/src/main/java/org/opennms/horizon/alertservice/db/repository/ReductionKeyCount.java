@@ -19,8 +19,11 @@
  * language governing permissions and limitations under the
  * License.
  */
-package org.opennms.horizon.minion.icmp;
+package org.opennms.horizon.alertservice.db.repository;
 
-import java.net.InetAddress;
+public interface ReductionKeyCount {
 
-public record PingResult(InetAddress address, double rtt) {}
+    String getReductionKey();
+
+    Long getCount();
+}
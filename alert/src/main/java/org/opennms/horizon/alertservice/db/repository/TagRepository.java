@@ -36,6 +36,9 @@ public interface TagRepository extends JpaRepository<Tag, Long> {
 
     List<Tag> findByTenantId(String tenantId);
 
+    @Query("select distinct tag from Tag tag left join fetch tag.policies where tag.tenantId = :tenantId")
+    List<Tag> findWithPoliciesByTenantId(@Param("tenantId") String tenantId);
+
     Optional<Tag> findByTenantIdAndName(String tenantId, String name);
 
     @Query(value = "SELECT * FROM tag WHERE tenant_id = :tenantId AND node_ids @> ARRAY[:nodeId]", nativeQuery = true)
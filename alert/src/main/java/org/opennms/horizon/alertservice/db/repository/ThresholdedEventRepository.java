@@ -21,10 +21,13 @@
  */
 package org.opennms.horizon.alertservice.db.repository;
 
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import org.opennms.horizon.alertservice.db.entity.ThresholdedEvent;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 @Repository
@@ -33,6 +36,14 @@ public interface ThresholdedEventRepository extends JpaRepository<ThresholdedEve
     int countByReductionKeyAndTenantIdAndExpiryTimeGreaterThanEqual(
             String reductionKey, String tenantId, Date expiryTime);
 
+    @Query("SELECT t.reductionKey AS reductionKey, count(t) AS count FROM ThresholdedEvent t "
+            + "WHERE t.tenantId = :tenantId AND t.reductionKey IN :reductionKeys AND t.expiryTime >= :expiryTime "
+            + "GROUP BY t.reductionKey")
+    List<ReductionKeyCount> countByTenantIdAndReductionKeyInAndExpiryTimeGreaterThanEqual(
+            @Param("tenantId") String tenantId,
+            @Param("reductionKeys") Collection<String> reductionKeys,
+            @Param("expiryTime") Date expiryTime);
+
     List<ThresholdedEvent> findAllByReductionKeyAndTenantIdAndExpiryTimeLessThan(
             String reductionKey, String tenantId, Date expiryTime);
 
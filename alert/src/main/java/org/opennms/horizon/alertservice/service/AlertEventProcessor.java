@@ -21,16 +21,24 @@
  */
 package org.opennms.horizon.alertservice.service;
 
-import io.grpc.Context;
 import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import javax.annotation.PostConstruct;
@@ -42,18 +50,13 @@ import org.opennms.horizon.alerts.proto.Severity;
 import org.opennms.horizon.alertservice.db.entity.AlertCondition;
 import org.opennms.horizon.alertservice.db.entity.AlertDefinition;
 import org.opennms.horizon.alertservice.db.entity.Location;
-import org.opennms.horizon.alertservice.db.entity.MonitorPolicy;
 import org.opennms.horizon.alertservice.db.entity.ThresholdedEvent;
-import org.opennms.horizon.alertservice.db.repository.AlertDefinitionRepository;
 import org.opennms.horizon.alertservice.db.repository.AlertRepository;
 import org.opennms.horizon.alertservice.db.repository.LocationRepository;
 import org.opennms.horizon.alertservice.db.repository.NodeRepository;
-import org.opennms.horizon.alertservice.db.repository.TagRepository;
 import org.opennms.horizon.alertservice.db.repository.ThresholdedEventRepository;
-import org.opennms.horizon.alertservice.db.tenant.TenantLookup;
 import org.opennms.horizon.alertservice.mapper.AlertMapper;
 import org.opennms.horizon.events.proto.Event;
-import org.opennms.horizon.shared.utils.SystemInfoUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
@@ -61,6 +64,11 @@ import org.springframework.transaction.annotation.Transactional;
 
 /**
  * Used to process/reduce events to alerts.
+ * <p>
+ * Events are reduced in batches: definitions and policies come from the {@link AlertReductionCache}, the existing
+ * alerts and threshold counts of all events of a batch are looked up with one query per tenant and changed alerts are
+ * written back together at the end of the batch. Events of a batch are reduced in order, so a later event reduces
+ * onto the alert created or updated by an earlier one.
  */
 @Service
 @RequiredArgsConstructor
@@ -71,108 +79,165 @@ public class AlertEventProcessor {
 
     private final AlertMapper alertMapper;
 
-    private final AlertDefinitionRepository alertDefinitionRepository;
+    private final AlertReductionCache reductionCache;
 
     private final ThresholdedEventRepository thresholdedEventRepository;
 
     private final ReductionKeyService reductionKeyService;
 
-    private final TagRepository tagRepository;
-
     private final MeterRegistry registry;
 
-    private final TenantLookup tenantLookup;
-
     private final NodeRepository nodeRepository;
 
     private final LocationRepository locationRepository;
 
     private Counter eventsWithoutAlertDataCounter;
 
+    private Timer batchTimer;
+
     @PostConstruct
     public void init() {
         eventsWithoutAlertDataCounter = registry.counter("events_without_alert_data_counter");
+        batchTimer = registry.timer("alert_reduction_batch");
     }
 
     @Transactional
     public List<Alert> process(Event e) {
-        LOG.trace("Processing event with UEI: {} for tenant id: {}", e.getUei(), e.getTenantId());
-        List<org.opennms.horizon.alertservice.db.entity.Alert> dbAlerts = addOrReduceEventAsAlert(e);
-        if (dbAlerts.isEmpty()) {
-            LOG.debug(
-                    "No alert returned from processing event with UEI: {} for tenant id: {}",
-                    e.getUei(),
-                    e.getTenantId());
-            return Collections.emptyList();
+        return process(List.of(e));
+    }
+
+    /**
+     * Reduces the events in order within a single transaction.
+     *
+     * @return the new or updated alerts, each once with its state after the whole batch, in the order of the last event
+     * that changed them
+     */
+    @Transactional
+    public List<Alert> process(List<Event> events) {
+        long start = System.nanoTime();
+        var batch = new Batch();
+        List<List<AlertData>> alertDataByEvent = new ArrayList<>(events.size());
+        for (Event event : events) {
+            LOG.trace("Processing event with UEI: {} for tenant id: {}", event.getUei(), event.getTenantId());
+            List<AlertData> alertData = getAlertData(event);
+            alertDataByEvent.add(alertData);
+            alertData.forEach(data -> batch.addKeys(event.getTenantId(), data));
         }
-        return dbAlerts.stream()
-                .map(dbAlert -> {
-                    var alert = Alert.newBuilder(alertMapper.toProto(dbAlert));
-
-                    saveLocation(e);
-                    alert.setLocation(e.getLocationName());
-                    nodeRepository
-                            .findByIdAndTenantId(e.getNodeId(), e.getTenantId())
-                            .ifPresent(node -> alert.setNodeName(node.getNodeLabel()));
-                    alert.addRuleName(dbAlert.getAlertCondition().getRule().getName());
-                    alert.addPolicyName(
-                            dbAlert.getAlertCondition().getRule().getPolicy().getName());
-                    return alert.build();
-                })
-                .toList();
+        batch.loadExistingAlerts();
+        batch.loadThresholdCounts();
+
+        List<org.opennms.horizon.alertservice.db.entity.Alert> dbAlerts = new ArrayList<>();
+        List<Event> dbAlertEvents = new ArrayList<>();
+        for (int i = 0; i < events.size(); i++) {
+            Event event = events.get(i);
+            for (AlertData alertData : alertDataByEvent.get(i)) {
+                createOrUpdateAlert(event, alertData, batch).ifPresent(alert -> {
+                    batch.changed(alert);
+                    dbAlerts.add(alert);
+                    dbAlertEvents.add(event);
+                });
+            }
+            if (alertDataByEvent.get(i).isEmpty()) {
+                LOG.debug(
+                        "No alert returned from processing event with UEI: {} for tenant id: {}",
+                        event.getUei(),
+                        event.getTenantId());
+            }
+        }
+
+        // FIXME: If the alert is going to be delete immediately, should we even bother creating it?
+        if (!batch.thresholdedEvents.isEmpty()) {
+            thresholdedEventRepository.saveAll(batch.thresholdedEvents);
+        }
+        alertRepository.saveAll(batch.changedAlerts);
+        saveLocations(dbAlertEvents);
+        Map<NodeKey, String> nodeLabels = getNodeLabels(dbAlertEvents);
+
+        // An alert changed by several events is returned once, with its final state and the last event changing it
+        Set<org.opennms.horizon.alertservice.db.entity.Alert> returned =
+                Collections.newSetFromMap(new IdentityHashMap<>());
+        List<Alert> alerts = new ArrayList<>(dbAlerts.size());
+        for (int i = dbAlerts.size() - 1; i >= 0; i--) {
+            var dbAlert = dbAlerts.get(i);
+            if (!returned.add(dbAlert)) {
+                continue;
+            }
+            var event = dbAlertEvents.get(i);
+            var alert = Alert.newBuilder(alertMapper.toProto(dbAlert));
+            alert.setLocation(event.getLocationName());
+            String nodeLabel = nodeLabels.get(new NodeKey(event.getTenantId(), event.getNodeId()));
+            if (nodeLabel != null) {
+                alert.setNodeName(nodeLabel);
+            }
+            alert.addRuleName(dbAlert.getAlertCondition().getRule().getName());
+            alert.addPolicyName(dbAlert.getAlertCondition().getRule().getPolicy().getName());
+            alerts.add(alert.build());
+        }
+        Collections.reverse(alerts);
+        batchTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return alerts;
+    }
+
+    /**
+     * Events sharing a partition key may reduce onto the same alert and have to be processed in order, events without
+     * a common key can be processed concurrently. An event matching several alert definitions has the keys of all of
+     * them, and a clearing event also has the key of the alert it clears.
+     *
+     * @return the tenant with the reduction key and clear key of every alert definition matching the event, or the
+     * tenant and the node if no definition matches
+     */
+    public Set<String> getPartitionKeys(Event event) {
+        List<AlertDefinition> alertDefinitions = getAlertDefinitions(event);
+        if (alertDefinitions.isEmpty()) {
+            return Set.of(event.getTenantId() + ":" + event.getNodeId());
+        }
+        Set<String> keys = new LinkedHashSet<>();
+        for (AlertDefinition alertDefinition : alertDefinitions) {
+            keys.add(event.getTenantId() + ":" + reductionKeyService.renderReductionKey(event, alertDefinition));
+            String clearKey = reductionKeyService.renderClearKey(event, alertDefinition);
+            if (clearKey != null) {
+                keys.add(event.getTenantId() + ":" + clearKey);
+            }
+        }
+        return keys;
     }
 
-    protected List<org.opennms.horizon.alertservice.db.entity.Alert> addOrReduceEventAsAlert(Event event) {
-        List<AlertDefinition> alertDefinitions;
+    private List<AlertDefinition> getAlertDefinitions(Event event) {
         if (event.hasThresholdInfo()) {
-            alertDefinitions = alertDefinitionRepository.findByTenantIdAndAlertConditionId(
+            return reductionCache.getDefinitionsByAlertConditionId(
                     event.getTenantId(),
                     getAlerConditionIdFromAlertName(event.getThresholdInfo().getAlertName()));
-        } else {
-            alertDefinitions = alertDefinitionRepository.findByTenantIdAndUei(event.getTenantId(), event.getUei());
-            if (alertDefinitions.isEmpty()) {
-                alertDefinitions =
-                        alertDefinitionRepository.findByTenantIdAndUei(SystemInfoUtils.SYSTEM_TENANT, event.getUei());
-            }
         }
+        return reductionCache.getDefinitionsByUei(event.getTenantId(), event.getUei());
+    }
 
+    private List<AlertData> getAlertData(Event event) {
+        List<AlertDefinition> alertDefinitions = getAlertDefinitions(event);
         if (alertDefinitions.isEmpty()) {
             // No alert definition matching, no alert to create
             eventsWithoutAlertDataCounter.increment();
             return Collections.emptyList();
         }
-
-        List<org.opennms.horizon.alertservice.db.entity.Alert> alerts = alertDefinitions.stream()
-                .map(alertDefinition -> getAlertData(event, alertDefinition))
-                .map(alertData -> createOrUpdateAlert(event, alertData))
-                .filter(Optional::isPresent)
-                .map(Optional::get)
+        var policies = reductionCache.getPolicyIds(event.getTenantId(), event.getNodeId());
+        return alertDefinitions.stream()
+                .map(alertDefinition -> getAlertData(event, alertDefinition, policies))
                 .toList();
-
-        // FIXME: If the alert is going to be delete immediately, should we even bother creating it?
-        alertRepository.saveAll(alerts);
-        return alerts;
     }
 
-    private AlertData getAlertData(Event event, AlertDefinition alertDefinition) {
+    private AlertData getAlertData(Event event, AlertDefinition alertDefinition, List<Long> policies) {
         String reductionKey = reductionKeyService.renderReductionKey(event, alertDefinition);
         String clearKey = reductionKeyService.renderClearKey(event, alertDefinition);
         AlertCondition alertCondition = alertDefinition.getAlertCondition();
-        var tags = tagRepository.findByTenantIdAndNodeId(event.getTenantId(), event.getNodeId());
-        List<MonitorPolicy> matchingPolicies = new ArrayList<>();
-        tags.forEach(tag -> matchingPolicies.addAll(tag.getPolicies().stream().toList()));
-        var policies = matchingPolicies.stream().map(MonitorPolicy::getId).toList();
         return new AlertData(reductionKey, clearKey, alertDefinition.getType(), policies, alertCondition);
     }
 
     private Optional<org.opennms.horizon.alertservice.db.entity.Alert> createOrUpdateAlert(
-            Event event, AlertData alertData) {
+            Event event, AlertData alertData, Batch batch) {
+        String tenantId = event.getTenantId();
         Optional<org.opennms.horizon.alertservice.db.entity.Alert> queryResult = Optional.empty();
         if (alertData.clearKey() != null) {
             // If a clearKey is set, determine if there is an existing alert, and reduce onto that one
-            queryResult = tenantLookup
-                    .lookupTenantId(Context.current())
-                    .flatMap(tenantId -> alertRepository.findByReductionKeyAndTenantId(alertData.clearKey(), tenantId));
+            queryResult = batch.getAlert(tenantId, alertData.clearKey());
             if (queryResult.isEmpty()) {
                 LOG.debug(
                         "No existing alert found with clear key: {}. This is possibly an out-of-order event: {}",
@@ -182,16 +247,14 @@ public class AlertEventProcessor {
         }
         if (queryResult.isEmpty()) {
             // If we didn't find an existing alert to reduce to with the clearKey, the lookup by reductionKey
-            queryResult = tenantLookup
-                    .lookupTenantId(Context.current())
-                    .flatMap(tenantId ->
-                            alertRepository.findByReductionKeyAndTenantId(alertData.reductionKey(), tenantId));
+            queryResult = batch.getAlert(tenantId, alertData.reductionKey());
         }
 
         // a cleared alert will reset threshold limit
         if (queryResult.isPresent()
                 && queryResult.get().getSeverity() == Severity.CLEARED
                 && queryResult.get().getEventUei().equals(event.getUei())) {
+            batch.archived(queryResult.get());
             archiveClearedAlert(queryResult.get(), event);
             queryResult = Optional.empty();
         }
@@ -203,8 +266,8 @@ public class AlertEventProcessor {
             // If we don't wish to use SQL, this can be done by passing the ThresholdedEvent to the AlertEngine,
             // using the tick() method to check for expiredEvents.
             // In AlertEngine, need id, tenant, expiryDate. Save in a TreeMap sorted by expiryDate.
-            saveThresholdEvent(event.getUei(), alertData, event);
-            thresholdMet = isThresholdMet(alertData, event.getTenantId());
+            batch.addThresholdedEvent(createThresholdEvent(event.getUei(), alertData, event));
+            thresholdMet = isThresholdMet(alertData, tenantId, batch);
         } else {
             thresholdMet = true;
         }
@@ -212,6 +275,7 @@ public class AlertEventProcessor {
         if (queryResult.isEmpty() && thresholdMet) {
             var newAlert = createNewAlert(event, alertData);
             newAlert.setMonitoringPolicyId(alertData.monitoringPolicyId());
+            batch.putAlert(newAlert);
             return Optional.of(newAlert);
         }
 
@@ -263,15 +327,11 @@ public class AlertEventProcessor {
         alertRepository.saveAndFlush(clearedAlert);
     }
 
-    private boolean isThresholdMet(AlertData alertData, String tenantId) {
-        Date current = new Date();
-
-        int currentCount = thresholdedEventRepository.countByReductionKeyAndTenantIdAndExpiryTimeGreaterThanEqual(
-                alertData.reductionKey(), tenantId, current);
-        return alertData.alertCondition().getCount() <= currentCount;
+    private boolean isThresholdMet(AlertData alertData, String tenantId, Batch batch) {
+        return alertData.alertCondition().getCount() <= batch.getThresholdCount(tenantId, alertData.reductionKey());
     }
 
-    private void saveThresholdEvent(String uei, AlertData alertData, Event event) {
+    private ThresholdedEvent createThresholdEvent(String uei, AlertData alertData, Event event) {
         Date current = new Date(event.getProducedTimeMs());
         Date expired = calculateExpiry(current, alertData, true);
 
@@ -281,8 +341,7 @@ public class AlertEventProcessor {
         thresholdedEvent.setTenantId(event.getTenantId());
         thresholdedEvent.setCreateTime(current);
         thresholdedEvent.setExpiryTime(expired);
-
-        thresholdedEventRepository.save(thresholdedEvent);
+        return thresholdedEvent;
     }
 
     private Date calculateExpiry(Date current, AlertData alertData, boolean future) {
@@ -351,33 +410,52 @@ public class AlertEventProcessor {
         return alert;
     }
 
-    private record AlertData(
-            String reductionKey,
-            String clearKey,
-            AlertType type,
-            List<Long> monitoringPolicyId,
-            AlertCondition alertCondition) {}
-
     /**
-     * Save for location id > name looking during query
+     * Save for location id > name looking during query, once per location of the batch
      */
-    private void saveLocation(final Event e) {
-        if (!e.hasField(Event.getDescriptor().findFieldByNumber(Event.LOCATION_ID_FIELD_NUMBER))) {
-            return;
-        }
-        try {
-            Location location = new Location();
-            location.setId(Long.parseLong(e.getLocationId()));
-            location.setLocationName(e.getLocationName());
-            location.setTenantId(e.getTenantId());
-            locationRepository.save(location);
-        } catch (Exception ex) {
-            LOG.warn(
-                    "Fail to store location cache: {}, tenantId: {} error: {}",
-                    e.getLocationId(),
-                    e.getTenantId(),
-                    ex.getMessage());
+    private void saveLocations(List<Event> events) {
+        Map<NodeKey, Location> locations = new LinkedHashMap<>();
+        for (Event e : events) {
+            if (!e.hasField(Event.getDescriptor().findFieldByNumber(Event.LOCATION_ID_FIELD_NUMBER))) {
+                continue;
+            }
+            try {
+                Location location = new Location();
+                location.setId(Long.parseLong(e.getLocationId()));
+                location.setLocationName(e.getLocationName());
+                location.setTenantId(e.getTenantId());
+                locations.put(new NodeKey(e.getTenantId(), location.getId()), location);
+            } catch (NumberFormatException ex) {
+                LOG.warn(
+                        "Fail to store location cache: {}, tenantId: {} error: {}",
+                        e.getLocationId(),
+                        e.getTenantId(),
+                        ex.getMessage());
+            }
         }
+        locations.values().forEach(location -> {
+            try {
+                locationRepository.save(location);
+            } catch (Exception ex) {
+                LOG.warn(
+                        "Fail to store location cache: {}, tenantId: {} error: {}",
+                        location.getId(),
+                        location.getTenantId(),
+                        ex.getMessage());
+            }
+        });
+    }
+
+    private Map<NodeKey, String> getNodeLabels(List<Event> events) {
+        Map<String, Set<Long>> nodeIdsByTenant = new HashMap<>();
+        events.forEach(e -> nodeIdsByTenant
+                .computeIfAbsent(e.getTenantId(), t -> new HashSet<>())
+                .add(e.getNodeId()));
+        Map<NodeKey, String> nodeLabels = new HashMap<>();
+        nodeIdsByTenant.forEach((tenantId, nodeIds) -> nodeRepository
+                .findByTenantIdAndIdIn(tenantId, nodeIds)
+                .forEach(node -> nodeLabels.put(new NodeKey(tenantId, node.getId()), node.getNodeLabel())));
+        return nodeLabels;
     }
 
     public Long getAlerConditionIdFromAlertName(String alertName) {
@@ -395,4 +473,92 @@ public class AlertEventProcessor {
         }
         return false; // If event does not have threshold info, consider it not resolved
     }
+
+    private record AlertData(
+            String reductionKey,
+            String clearKey,
+            AlertType type,
+            List<Long> monitoringPolicyId,
+            AlertCondition alertCondition) {}
+
+    /**
+     * Identifies a node or location of a tenant.
+     */
+    private record NodeKey(String tenantId, long id) {}
+
+    private record AlertKey(String tenantId, String reductionKey) {}
+
+    /**
+     * State of the alerts and thresholds touched by a batch of events.
+     */
+    private final class Batch {
+        private final Map<String, Set<String>> reductionKeysByTenant = new HashMap<>();
+        private final Map<String, Set<String>> thresholdKeysByTenant = new HashMap<>();
+        private final Map<AlertKey, org.opennms.horizon.alertservice.db.entity.Alert> alerts = new HashMap<>();
+        private final Map<AlertKey, Integer> thresholdCounts = new HashMap<>();
+        private final Date thresholdTime = new Date();
+        private final List<ThresholdedEvent> thresholdedEvents = new ArrayList<>();
+        private final Set<org.opennms.horizon.alertservice.db.entity.Alert> changedAlerts =
+                Collections.newSetFromMap(new IdentityHashMap<>());
+
+        void addKeys(String tenantId, AlertData alertData) {
+            Set<String> keys = reductionKeysByTenant.computeIfAbsent(tenantId, t -> new HashSet<>());
+            keys.add(alertData.reductionKey());
+            if (alertData.clearKey() != null) {
+                keys.add(alertData.clearKey());
+            }
+            if (isThresholding(alertData)) {
+                thresholdKeysByTenant
+                        .computeIfAbsent(tenantId, t -> new HashSet<>())
+                        .add(alertData.reductionKey());
+            }
+        }
+
+        void loadExistingAlerts() {
+            reductionKeysByTenant.forEach((tenantId, keys) -> alertRepository
+                    .findByTenantIdAndReductionKeyIn(tenantId, keys)
+                    .forEach(this::putAlert));
+        }
+
+        void loadThresholdCounts() {
+            thresholdKeysByTenant.forEach((tenantId, keys) -> thresholdedEventRepository
+                    .countByTenantIdAndReductionKeyInAndExpiryTimeGreaterThanEqual(tenantId, keys, thresholdTime)
+                    .forEach(count -> thresholdCounts.put(
+                            new AlertKey(tenantId, count.getReductionKey()),
+                            count.getCount().intValue())));
+        }
+
+        Optional<org.opennms.horizon.alertservice.db.entity.Alert> getAlert(String tenantId, String reductionKey) {
+            return Optional.ofNullable(alerts.get(new AlertKey(tenantId, reductionKey)));
+        }
+
+        void putAlert(org.opennms.horizon.alertservice.db.entity.Alert alert) {
+            alerts.put(new AlertKey(alert.getTenantId(), alert.getReductionKey()), alert);
+        }
+
+        /**
+         * Forgets an alert before its reduction key is changed by archiving it.
+         */
+        void archived(org.opennms.horizon.alertservice.db.entity.Alert alert) {
+            alerts.remove(new AlertKey(alert.getTenantId(), alert.getReductionKey()));
+        }
+
+        void changed(org.opennms.horizon.alertservice.db.entity.Alert alert) {
+            changedAlerts.add(alert);
+        }
+
+        void addThresholdedEvent(ThresholdedEvent thresholdedEvent) {
+            thresholdedEvents.add(thresholdedEvent);
+            if (!thresholdedEvent.getExpiryTime().before(thresholdTime)) {
+                thresholdCounts.merge(
+                        new AlertKey(thresholdedEvent.getTenantId(), thresholdedEvent.getReductionKey()),
+                        1,
+                        Integer::sum);
+            }
+        }
+
+        int getThresholdCount(String tenantId, String reductionKey) {
+            return thresholdCounts.getOrDefault(new AlertKey(tenantId, reductionKey), 0);
+        }
+    }
 }
@@ -0,0 +1,169 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.horizon.alertservice.service;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.opennms.horizon.alertservice.db.entity.AlertDefinition;
+import org.opennms.horizon.alertservice.db.entity.MonitorPolicy;
+import org.opennms.horizon.alertservice.db.entity.Tag;
+import org.opennms.horizon.alertservice.db.repository.AlertDefinitionRepository;
+import org.opennms.horizon.alertservice.db.repository.TagRepository;
+import org.opennms.horizon.shared.utils.SystemInfoUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Caches the alert definitions and the monitoring policies of nodes used to reduce events to alerts.
+ * <p>
+ * Everything cached for a tenant is dropped by {@link #invalidate(String)} whenever its policies or tags change. The
+ * entries also expire after {@code alert.reduction-cache.expire-ms}, so changes made by other instances of the
+ * service are picked up eventually. Cached entities are detached, their associations used for reduction are fetched
+ * eagerly.
+ */
+@Component
+public class AlertReductionCache {
+    public static final long DEFAULT_EXPIRE_MS = 60_000;
+    private static final long MAXIMUM_SIZE = 100_000;
+
+    private final AlertDefinitionRepository alertDefinitionRepository;
+    private final TagRepository tagRepository;
+
+    private final Cache<DefinitionKey, List<AlertDefinition>> definitions;
+    private final Cache<String, Map<Long, List<Long>>> policyIdsByNodeId;
+
+    public AlertReductionCache(
+            AlertDefinitionRepository alertDefinitionRepository,
+            TagRepository tagRepository,
+            @Value("${alert.reduction-cache.expire-ms:" + DEFAULT_EXPIRE_MS + "}") long expireMs) {
+        this.alertDefinitionRepository = alertDefinitionRepository;
+        this.tagRepository = tagRepository;
+        definitions = CacheBuilder.newBuilder()
+                .maximumSize(MAXIMUM_SIZE)
+                .expireAfterWrite(expireMs, TimeUnit.MILLISECONDS)
+                .build();
+        policyIdsByNodeId = CacheBuilder.newBuilder()
+                .maximumSize(MAXIMUM_SIZE)
+                .expireAfterWrite(expireMs, TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    /**
+     * @return the definitions of the tenant for the UEI, or those of the system tenant if the tenant has none
+     */
+    public List<AlertDefinition> getDefinitionsByUei(String tenantId, String uei) {
+        return get(definitions, new DefinitionKey(tenantId, uei, null), () -> {
+            List<AlertDefinition> result = alertDefinitionRepository.findByTenantIdAndUei(tenantId, uei);
+            if (result.isEmpty()) {
+                result = alertDefinitionRepository.findByTenantIdAndUei(SystemInfoUtils.SYSTEM_TENANT, uei);
+            }
+            return List.copyOf(result);
+        });
+    }
+
+    public List<AlertDefinition> getDefinitionsByAlertConditionId(String tenantId, Long alertConditionId) {
+        return get(
+                definitions,
+                new DefinitionKey(tenantId, null, alertConditionId),
+                () -> List.copyOf(
+                        alertDefinitionRepository.findByTenantIdAndAlertConditionId(tenantId, alertConditionId)));
+    }
+
+    /**
+     * @return the ids of the monitoring policies of all tags of the node
+     */
+    public List<Long> getPolicyIds(String tenantId, long nodeId) {
+        return get(policyIdsByNodeId, tenantId, () -> loadPolicyIdsByNodeId(tenantId))
+                .getOrDefault(nodeId, Collections.emptyList());
+    }
+
+    /**
+     * Drops everything cached for the tenant, or for all tenants if the system tenant changed. Within a
+     * transaction the tenant is dropped again after the commit, so no entries loaded before the commit survive.
+     */
+    public void invalidate(String tenantId) {
+        doInvalidate(tenantId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    doInvalidate(tenantId);
+                }
+            });
+        }
+    }
+
+    private void doInvalidate(String tenantId) {
+        if (SystemInfoUtils.SYSTEM_TENANT.equals(tenantId)) {
+            definitions.invalidateAll();
+            policyIdsByNodeId.invalidateAll();
+        } else {
+            definitions.asMap().keySet().removeIf(key -> key.tenantId().equals(tenantId));
+            policyIdsByNodeId.invalidate(tenantId);
+        }
+    }
+
+    private Map<Long, List<Long>> loadPolicyIdsByNodeId(String tenantId) {
+        Map<Long, Set<Long>> policyIds = new HashMap<>();
+        for (Tag tag : tagRepository.findWithPoliciesByTenantId(tenantId)) {
+            if (tag.getPolicies().isEmpty()) {
+                continue;
+            }
+            for (Long nodeId : tag.getNodeIds()) {
+                Set<Long> nodePolicyIds = policyIds.computeIfAbsent(nodeId, id -> new LinkedHashSet<>());
+                tag.getPolicies().stream().map(MonitorPolicy::getId).forEach(nodePolicyIds::add);
+            }
+        }
+        Map<Long, List<Long>> result = new HashMap<>(policyIds.size());
+        policyIds.forEach((nodeId, ids) -> result.put(nodeId, List.copyOf(ids)));
+        return result;
+    }
+
+    private static <K, V> V get(Cache<K, V> cache, K key, Callable<V> loader) {
+        try {
+            return cache.get(key, loader);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Failed to load " + key, e.getCause());
+        } catch (UncheckedExecutionException e) {
+            throw (RuntimeException) e.getCause();
+        }
+    }
+
+    private record DefinitionKey(String tenantId, String uei, Long alertConditionId) {
+        private DefinitionKey {
+            Objects.requireNonNull(tenantId);
+        }
+    }
+}
@@ -63,6 +63,13 @@ public class AlertServiceImpl implements AlertService {
         return alerts;
     }
 
+    @Override
+    public List<Alert> reduceEvents(List<Event> events) {
+        List<Alert> alerts = alertEventProcessor.process(events);
+        alerts.forEach(value -> alertListenerRegistry.forEachListener((l) -> l.handleNewOrUpdatedAlert(value)));
+        return alerts;
+    }
+
     @Override
     @Transactional
     public boolean deleteByIdAndTenantId(long id, String tenantId) {
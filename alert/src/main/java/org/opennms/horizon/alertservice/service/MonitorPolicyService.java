@@ -90,6 +90,7 @@ public class MonitorPolicyService {
     private final MonitoringPolicyProducer monitoringPolicyProducer;
     private final EventDefinitionRepository eventDefinitionRepository;
     private final ThresholdRuleProducer thresholdRuleProducer;
+    private final AlertReductionCache reductionCache;
 
     private void validatePolicyName(MonitorPolicyProto request, String tenantId) {
         if (StringUtils.isBlank(request.getName())) {
@@ -123,6 +124,7 @@ public class MonitorPolicyService {
             throw new IllegalArgumentException("Missing tenantId");
         }
         validateRuleName(request);
+        reductionCache.invalidate(tenantId);
         if (request.hasField(
                 MonitorPolicyProto.getDescriptor().findFieldByNumber(MonitorPolicyProto.ID_FIELD_NUMBER))) {
             Optional<MonitorPolicy> policy;
@@ -372,6 +374,7 @@ public class MonitorPolicyService {
             throw new IllegalArgumentException(
                     String.format("Policy with tenantId %s is not allowed to delete.", SYSTEM_TENANT));
         }
+        reductionCache.invalidate(tenantId);
         var alerts = alertRepository.findByPolicyIdAndTenantId(id, tenantId);
         if (alerts != null && !alerts.isEmpty()) {
             alertRepository.deleteAll(alerts);
@@ -392,6 +395,7 @@ public class MonitorPolicyService {
             throw new IllegalArgumentException(
                     String.format("Rule with tenantId %s is not allowed to delete.", SYSTEM_TENANT));
         }
+        reductionCache.invalidate(tenantId);
         var alerts = alertRepository.findByRuleIdAndTenantId(id, tenantId);
         if (alerts != null && !alerts.isEmpty()) {
             alertRepository.deleteAll(alerts);
@@ -44,6 +44,7 @@ public class TagService {
     private final TagRepository tagRepository;
     private final TagMapper tagMapper;
     private final TagOperationProducer tagOperationProducer;
+    private final AlertReductionCache reductionCache;
 
     /**
      * This publishes existing tags on monitoring policies to Kafka
@@ -68,6 +69,7 @@ public class TagService {
     @Transactional
     public void insertOrUpdateTags(TagOperationList list) {
         list.getTagsList().forEach(tagOp -> {
+            reductionCache.invalidate(tagOp.getTenantId());
             switch (tagOp.getOperation()) {
                 case ASSIGN_TAG -> {
                     if (tagOp.getNodeIdList().isEmpty()) {
@@ -24,22 +24,58 @@ package org.opennms.horizon.alertservice.service.routing;
 import com.google.common.base.Strings;
 import com.google.protobuf.InvalidProtocolBufferException;
 import io.grpc.Context;
+import java.util.ArrayList;
 import java.util.Arrays;
-import lombok.RequiredArgsConstructor;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.annotation.PreDestroy;
 import org.opennms.horizon.alertservice.api.AlertService;
+import org.opennms.horizon.alertservice.service.AlertEventProcessor;
+import org.opennms.horizon.events.proto.Event;
 import org.opennms.horizon.events.proto.EventLog;
 import org.opennms.horizon.shared.constants.GrpcConstants;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.stereotype.Component;
 
-@RequiredArgsConstructor
+/**
+ * Reduces the events of each received event log to alerts.
+ * <p>
+ * The events are partitioned into {@code alert.event-processing.threads} lanes, the lanes are reduced concurrently
+ * while the events of a lane are reduced in order, as one batch per tenant. Events sharing any of their partition keys
+ * (see {@link AlertEventProcessor#getPartitionKeys(Event)}), directly or through other events of the log, may reduce
+ * onto the same alert and always end up in the same lane, so they are never reordered. Lanes only need to be consistent
+ * within a log, as the next log is not reduced before all lanes of the previous one are done.
+ */
 @Component
 public class EventConsumer {
     private static final Logger LOG = LoggerFactory.getLogger(EventConsumer.class);
     private final AlertService alertService;
+    private final AlertEventProcessor alertEventProcessor;
+    private final ExecutorService[] lanes;
+
+    public EventConsumer(
+            AlertService alertService,
+            AlertEventProcessor alertEventProcessor,
+            @Value("${alert.event-processing.threads:4}") int threads) {
+        this.alertService = alertService;
+        this.alertEventProcessor = alertEventProcessor;
+        lanes = new ExecutorService[Math.max(1, threads)];
+        for (int i = 0; i < lanes.length; i++) {
+            String name = "alert-event-lane-" + i;
+            lanes[i] = Executors.newSingleThreadExecutor(r -> new Thread(r, name));
+        }
+    }
 
     @KafkaListener(
             topics = {"${kafka.topics.trap-event}", "${kafka.topics.internal-event}", "${kafka.topics.threshold-events}"
@@ -48,6 +84,7 @@ public class EventConsumer {
     public void receiveMessage(@Payload byte[] data) {
         try {
             EventLog eventLog = EventLog.parseFrom(data);
+            List<Event> events = new ArrayList<>(eventLog.getEventsCount());
             eventLog.getEventsList().forEach(e -> {
                 if (Strings.isNullOrEmpty(e.getTenantId())) {
                     LOG.warn("TenantId is empty, dropping event: {}", e);
@@ -59,13 +96,102 @@ public class EventConsumer {
                     return;
                 }
 
-                // As this isn't a grpc call, there isn't a grpc context. Create one, and place the tenantId in it.
-                Context.current()
-                        .withValue(GrpcConstants.TENANT_ID_CONTEXT_KEY, e.getTenantId())
-                        .run(() -> alertService.reduceEvent(e));
+                events.add(e);
             });
+            reduceLanes(assignLanes(events));
         } catch (InvalidProtocolBufferException e) {
             LOG.error("Error while parsing EventLog. Payload: {}", Arrays.toString(data), e);
         }
     }
+
+    @PreDestroy
+    public void destroy() {
+        for (ExecutorService lane : lanes) {
+            lane.shutdownNow();
+        }
+    }
+
+    /**
+     * Groups the events sharing a partition key, transitively, and assigns each group to a lane. The events of a lane
+     * keep the order of the log.
+     */
+    private List<List<Event>> assignLanes(List<Event> events) {
+        List<List<Event>> eventsByLane = new ArrayList<>(lanes.length);
+        for (int i = 0; i < lanes.length; i++) {
+            eventsByLane.add(new ArrayList<>());
+        }
+        if (lanes.length == 1) {
+            eventsByLane.get(0).addAll(events);
+            return eventsByLane;
+        }
+
+        // Union-find over the events, linking each event to the first event that had one of its keys
+        int[] groups = new int[events.size()];
+        List<String> firstKeys = new ArrayList<>(events.size());
+        Map<String, Integer> eventByKey = new HashMap<>();
+        for (int i = 0; i < events.size(); i++) {
+            groups[i] = i;
+            Set<String> keys = alertEventProcessor.getPartitionKeys(events.get(i));
+            firstKeys.add(keys.iterator().next());
+            for (String key : keys) {
+                Integer other = eventByKey.putIfAbsent(key, i);
+                if (other != null) {
+                    groups[findGroup(groups, i)] = findGroup(groups, other);
+                }
+            }
+        }
+        for (int i = 0; i < events.size(); i++) {
+            String groupKey = firstKeys.get(findGroup(groups, i));
+            eventsByLane.get(Math.floorMod(groupKey.hashCode(), lanes.length)).add(events.get(i));
+        }
+        return eventsByLane;
+    }
+
+    private static int findGroup(int[] groups, int i) {
+        while (groups[i] != i) {
+            groups[i] = groups[groups[i]];
+            i = groups[i];
+        }
+        return i;
+    }
+
+    private void reduceLanes(List<List<Event>> eventsByLane) {
+        List<Future<?>> futures = new ArrayList<>(lanes.length);
+        for (int i = 0; i < lanes.length; i++) {
+            List<Event> events = eventsByLane.get(i);
+            if (!events.isEmpty()) {
+                futures.add(lanes[i].submit(() -> reduceLane(events)));
+            }
+        }
+        // Wait for all lanes, so the offset is only committed once every event of the log was reduced
+        RuntimeException failure = null;
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while reducing events", e);
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause() instanceof RuntimeException runtimeException
+                            ? runtimeException
+                            : new IllegalStateException(e.getCause());
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void reduceLane(List<Event> events) {
+        Map<String, List<Event>> eventsByTenant = new LinkedHashMap<>();
+        events.forEach(e -> eventsByTenant
+                .computeIfAbsent(e.getTenantId(), t -> new ArrayList<>())
+                .add(e));
+        // As this isn't a grpc call, there isn't a grpc context. Create one, and place the tenantId in it.
+        eventsByTenant.forEach((tenantId, tenantEvents) -> Context.current()
+                .withValue(GrpcConstants.TENANT_ID_CONTEXT_KEY, tenantId)
+                .run(() -> alertService.reduceEvents(tenantEvents)));
+    }
 }
@@ -82,6 +82,7 @@ import org.opennms.horizon.alertservice.db.tenant.GrpcTenantLookupImpl;
 import org.opennms.horizon.alertservice.db.tenant.TenantLookup;
 import org.opennms.horizon.alertservice.mapper.MonitorPolicyMapper;
 import org.opennms.horizon.alertservice.mapper.MonitorPolicyMapperImpl;
+import org.opennms.horizon.alertservice.service.AlertReductionCache;
 import org.opennms.horizon.alertservice.service.MonitorPolicyService;
 import org.opennms.horizon.alertservice.service.routing.MonitoringPolicyProducer;
 import org.opennms.horizon.alertservice.service.routing.TagOperationProducer;
@@ -105,6 +106,7 @@ class MonitoringPolicyGrpcTest extends AbstractGrpcUnitTest {
     private EventDefinitionRepository mockEventDefinitionRepository;
     private TagOperationProducer mockTagOperationProducer;
     private ThresholdRuleProducer mockThresholdRuleProducer;
+    private AlertReductionCache mockReductionCache;
     private Alert alert1, alert2;
     private ManagedChannel channel;
     protected TenantLookup tenantLookup = new GrpcTenantLookupImpl();
@@ -135,6 +137,7 @@ class MonitoringPolicyGrpcTest extends AbstractGrpcUnitTest {
         mockThresholdMetricRepository = mock(ThresholdMetricRepository.class);
         mockEventDefinitionRepository = mock(EventDefinitionRepository.class);
         mockThresholdRuleProducer = mock(ThresholdRuleProducer.class);
+        mockReductionCache = mock(AlertReductionCache.class);
 
         spyMonitorPolicyService = spy(new MonitorPolicyService(
                 policyMapper,
@@ -148,7 +151,8 @@ class MonitoringPolicyGrpcTest extends AbstractGrpcUnitTest {
                 mockTagOperationProducer,
                 monitoringPolicyProducer,
                 mockEventDefinitionRepository,
-                mockThresholdRuleProducer));
+                mockThresholdRuleProducer,
+                mockReductionCache));
         MonitorPolicyGrpc grpcService = new MonitorPolicyGrpc(spyMonitorPolicyService, tenantLookup);
         startServer(grpcService);
         channel = InProcessChannelBuilder.forName(serverName).directExecutor().build();
@@ -23,21 +23,22 @@ package org.opennms.horizon.alertservice.service;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.ArgumentMatchers.anyLong;
-import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import java.util.List;
-import java.util.Optional;
+import java.util.Set;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Spy;
@@ -56,7 +57,6 @@ import org.opennms.horizon.alertservice.db.repository.AlertRepository;
 import org.opennms.horizon.alertservice.db.repository.LocationRepository;
 import org.opennms.horizon.alertservice.db.repository.NodeRepository;
 import org.opennms.horizon.alertservice.db.repository.TagRepository;
-import org.opennms.horizon.alertservice.db.tenant.TenantLookup;
 import org.opennms.horizon.alertservice.mapper.AlertMapper;
 import org.opennms.horizon.alertservice.mapper.AlertMapperImpl;
 import org.opennms.horizon.events.proto.Event;
@@ -90,8 +90,6 @@ class AlertEventProcessorTest {
     @Mock // for InjectMocks
     ReductionKeyService reductionKeyService;
 
-    ;
-
     @Mock
     MeterRegistry registry;
 
@@ -99,32 +97,33 @@ class AlertEventProcessorTest {
     TagRepository tagRepository;
 
     @Mock
-    TenantLookup tenantLookup;
+    Timer timer;
 
     @Mock
     Counter counter;
 
+    @Captor
+    ArgumentCaptor<Iterable<org.opennms.horizon.alertservice.db.entity.Alert>> savedAlerts;
+
     @Spy // for InjectMocks
     AlertMapper alertMapper = new AlertMapperImpl();
 
     @BeforeEach
     void setUp() {
         when(registry.counter(any())).thenReturn(counter);
-        when(tenantLookup.lookupTenantId(any())).thenReturn(Optional.of(TEST_TENANT_ID));
-        processor.init();
+        when(registry.timer(any())).thenReturn(timer);
         alertReductionKeyExpander = new AlertReductionKeyExpander(alertUtilService);
         reductionKeyService = new ReductionKeyService(alertReductionKeyExpander);
         processor = new AlertEventProcessor(
                 alertRepository,
                 alertMapper,
-                alertDefinitionRepository,
+                new AlertReductionCache(alertDefinitionRepository, tagRepository, 60_000),
                 null,
                 reductionKeyService,
-                tagRepository,
                 registry,
-                tenantLookup,
                 nodeRepository,
                 locationRepository);
+        processor.init();
     }
 
     @Test
@@ -154,17 +153,18 @@ class AlertEventProcessorTest {
 
         var tag = new Tag();
         tag.getPolicies().add(monitorPolicy);
+        tag.getNodeIds().add(event.getNodeId());
 
         when(alertDefinitionRepository.findByTenantIdAndUei(event.getTenantId(), event.getUei()))
                 .thenReturn(List.of(alertDefinition));
 
-        when(tagRepository.findByTenantIdAndNodeId(anyString(), anyLong())).thenReturn(List.of(tag));
+        when(tagRepository.findWithPoliciesByTenantId(TEST_TENANT_ID)).thenReturn(List.of(tag));
 
         var node = new Node();
         node.setId(event.getNodeId());
         node.setNodeLabel("nodeLabel");
-        when(nodeRepository.findByIdAndTenantId(event.getNodeId(), event.getTenantId()))
-                .thenReturn(Optional.of(node));
+        when(nodeRepository.findByTenantIdAndIdIn(event.getTenantId(), Set.of(event.getNodeId())))
+                .thenReturn(List.of(node));
 
         List<Alert> alerts = processor.process(event);
 
@@ -216,17 +216,18 @@ class AlertEventProcessorTest {
 
         var tag = new Tag();
         tag.getPolicies().add(monitorPolicy);
+        tag.getNodeIds().add(event.getNodeId());
 
         when(alertDefinitionRepository.findByTenantIdAndUei(event.getTenantId(), event.getUei()))
                 .thenReturn(List.of(alertDefinition));
 
-        when(tagRepository.findByTenantIdAndNodeId(anyString(), anyLong())).thenReturn(List.of(tag));
+        when(tagRepository.findWithPoliciesByTenantId(TEST_TENANT_ID)).thenReturn(List.of(tag));
 
         var node = new Node();
         node.setId(event.getNodeId());
         node.setNodeLabel("nodeLabel");
-        when(nodeRepository.findByIdAndTenantId(event.getNodeId(), event.getTenantId()))
-                .thenReturn(Optional.of(node));
+        when(nodeRepository.findByTenantIdAndIdIn(event.getTenantId(), Set.of(event.getNodeId())))
+                .thenReturn(List.of(node));
 
         List<Alert> alerts = processor.process(event);
 
@@ -287,26 +288,29 @@ class AlertEventProcessorTest {
         monitorPolicy.setTenantId(TEST_TENANT_ID);
 
         var existingAlert = new org.opennms.horizon.alertservice.db.entity.Alert();
+        existingAlert.setTenantId(TEST_TENANT_ID);
+        existingAlert.setReductionKey(cleanKey);
         existingAlert.setClearKey(cleanKey);
         existingAlert.setEventUei(uei);
         existingAlert.setSeverity(Severity.CLEARED);
 
         var tag = new Tag();
         tag.getPolicies().add(monitorPolicy);
+        tag.getNodeIds().add(event.getNodeId());
 
         when(alertDefinitionRepository.findByTenantIdAndUei(event.getTenantId(), event.getUei()))
                 .thenReturn(List.of(alertDefinition));
 
-        when(tagRepository.findByTenantIdAndNodeId(anyString(), anyLong())).thenReturn(List.of(tag));
+        when(tagRepository.findWithPoliciesByTenantId(TEST_TENANT_ID)).thenReturn(List.of(tag));
 
-        when(alertRepository.findByReductionKeyAndTenantId(cleanKey, TEST_TENANT_ID))
-                .thenReturn(Optional.of(existingAlert));
+        when(alertRepository.findByTenantIdAndReductionKeyIn(TEST_TENANT_ID, Set.of(reductionKey, cleanKey)))
+                .thenReturn(List.of(existingAlert));
 
         var node = new Node();
         node.setId(event.getNodeId());
         node.setNodeLabel("nodeLabel");
-        when(nodeRepository.findByIdAndTenantId(event.getNodeId(), event.getTenantId()))
-                .thenReturn(Optional.of(node));
+        when(nodeRepository.findByTenantIdAndIdIn(event.getTenantId(), Set.of(event.getNodeId())))
+                .thenReturn(List.of(node));
 
         List<Alert> alerts = processor.process(event);
 
@@ -329,6 +333,64 @@ class AlertEventProcessorTest {
         Assertions.assertEquals(saveLocationArg.getValue().getTenantId(), event.getTenantId());
     }
 
+    @Test
+    void reduceBatchOntoSameAlert() {
+        Event first = generateEventBuilder("uei").setLocationName("locationName").build();
+        Event second = generateEventBuilder("uei")
+                .setLocationName("locationName")
+                .setDescription("desc2")
+                .build();
+
+        AlertCondition alertCondition = getAlertCondicion();
+        AlertDefinition alertDefinition = getAlertDefinition(alertCondition);
+        MonitorPolicy policy = new MonitorPolicy();
+        policy.setName("policyName");
+        PolicyRule rule = new PolicyRule();
+        rule.setName("ruleName");
+        rule.setPolicy(policy);
+        alertCondition.setRule(rule);
+
+        when(alertDefinitionRepository.findByTenantIdAndUei(TEST_TENANT_ID, "uei"))
+                .thenReturn(List.of(alertDefinition));
+        when(tagRepository.findWithPoliciesByTenantId(TEST_TENANT_ID)).thenReturn(List.of());
+
+        List<Alert> alerts = processor.process(List.of(first, second));
+
+        // Notified once, with the state after the whole batch
+        assertThat(alerts).hasSize(1);
+        assertThat(alerts.get(0))
+                .returns("reduction", Alert::getReductionKey)
+                .returns(2L, Alert::getCounter)
+                .returns("desc2", Alert::getDescription);
+
+        // Definitions and existing alerts are looked up once for the whole batch
+        verify(alertDefinitionRepository, times(1)).findByTenantIdAndUei(TEST_TENANT_ID, "uei");
+        verify(alertRepository, times(1)).findByTenantIdAndReductionKeyIn(eq(TEST_TENANT_ID), any());
+        verify(alertRepository, times(1)).saveAll(savedAlerts.capture());
+        assertThat(savedAlerts.getValue()).hasSize(1);
+        verify(locationRepository, times(1)).save(any(Location.class));
+    }
+
+    @Test
+    void partitionKeysCoverAllMatchingDefinitions() {
+        Event event = generateEventBuilder("uei").build();
+        AlertDefinition raising = getAlertDefinition(getAlertCondicion());
+        AlertDefinition clearing = getAlertDefinition(getAlertCondicion());
+        clearing.setReductionKey("cleared");
+        clearing.setClearKey("reduction");
+        when(alertDefinitionRepository.findByTenantIdAndUei(TEST_TENANT_ID, "uei"))
+                .thenReturn(List.of(raising, clearing));
+
+        assertThat(processor.getPartitionKeys(event))
+                .containsExactly(TEST_TENANT_ID + ":reduction", TEST_TENANT_ID + ":cleared");
+    }
+
+    @Test
+    void partitionKeyFallsBackToNodeWithoutDefinition() {
+        assertThat(processor.getPartitionKeys(generateEventBuilder("uei").build()))
+                .containsExactly(TEST_TENANT_ID + ":10");
+    }
+
     public Event.Builder generateEventBuilder(String uei) {
         return Event.newBuilder()
                 .setTenantId(TEST_TENANT_ID)
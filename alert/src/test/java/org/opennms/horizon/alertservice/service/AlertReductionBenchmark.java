@@ -0,0 +1,214 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.horizon.alertservice.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+import org.opennms.horizon.alerts.proto.AlertType;
+import org.opennms.horizon.alerts.proto.ManagedObjectType;
+import org.opennms.horizon.alerts.proto.Severity;
+import org.opennms.horizon.alertservice.db.entity.AlertCondition;
+import org.opennms.horizon.alertservice.db.entity.AlertDefinition;
+import org.opennms.horizon.alertservice.db.entity.MonitorPolicy;
+import org.opennms.horizon.alertservice.db.entity.PolicyRule;
+import org.opennms.horizon.alertservice.db.repository.AlertRepository;
+import org.opennms.horizon.alertservice.db.repository.MonitorPolicyRepository;
+import org.opennms.horizon.alertservice.mapper.AlertMapperImpl;
+import org.opennms.horizon.events.proto.Event;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+/**
+ * Compares reducing events one at a time with reducing them in batches, against a real database.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({
+    AlertEventProcessor.class,
+    AlertReductionCache.class,
+    AlertMapperImpl.class,
+    AlertReductionBenchmark.BenchmarkConfig.class
+})
+@Disabled // For developer test only,
+// comment out  @PostUpdate @PostPersist on MonitorPolicyProducer
+class AlertReductionBenchmark {
+    private static final Logger LOG = LoggerFactory.getLogger(AlertReductionBenchmark.class);
+    private static final String TENANT_ID = "benchmark-tenant";
+    private static final String UEI = "uei.opennms.org/benchmark/nodeDown";
+    private static final int NODES = 500;
+    private static final int EVENTS = 20_000;
+    private static final int BATCH_SIZE = 100;
+
+    private static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:14.5-alpine")
+            .withDatabaseName("alerts")
+            .withUsername("alerts")
+            .withPassword("password")
+            .withExposedPorts(5432);
+
+    static {
+        postgres.start();
+    }
+
+    @DynamicPropertySource
+    static void registerDatasourceProperties(DynamicPropertyRegistry registry) {
+        registry.add(
+                "spring.datasource.url",
+                () -> String.format(
+                        "jdbc:postgresql://localhost:%d/%s",
+                        postgres.getFirstMappedPort(), postgres.getDatabaseName()));
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+    }
+
+    @TestConfiguration
+    static class BenchmarkConfig {
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+
+        @Bean
+        ReductionKeyService reductionKeyService() {
+            // One alert per node
+            ReductionKeyService reductionKeyService = mock(ReductionKeyService.class);
+            when(reductionKeyService.renderReductionKey(any(), any()))
+                    .thenAnswer(invocation -> UEI + ":" + invocation.<Event>getArgument(0).getNodeId());
+            return reductionKeyService;
+        }
+    }
+
+    @Autowired
+    private AlertEventProcessor processor;
+
+    @Autowired
+    private AlertRepository alertRepository;
+
+    @Autowired
+    private MonitorPolicyRepository policyRepository;
+
+    private List<Event> events;
+
+    @BeforeEach
+    void setup() {
+        assertTrue(postgres.isCreated());
+        assertTrue(postgres.isRunning());
+        policyRepository.save(createPolicy());
+
+        events = new ArrayList<>(EVENTS);
+        for (int i = 0; i < EVENTS; i++) {
+            events.add(Event.newBuilder()
+                    .setTenantId(TENANT_ID)
+                    .setUei(UEI)
+                    .setDescription("Node down")
+                    .setNodeId(1 + i % NODES)
+                    .setLocationId("1")
+                    .setLocationName("Default")
+                    .setProducedTimeMs(System.currentTimeMillis())
+                    .build());
+        }
+    }
+
+    @AfterEach
+    void cleanup() {
+        alertRepository.deleteAll();
+        policyRepository.deleteAll();
+    }
+
+    @Test
+    void reduceOneByOne() {
+        long start = System.nanoTime();
+        events.forEach(processor::process);
+        report("one by one", start);
+    }
+
+    @Test
+    void reduceInBatches() {
+        long start = System.nanoTime();
+        for (int i = 0; i < events.size(); i += BATCH_SIZE) {
+            processor.process(events.subList(i, Math.min(i + BATCH_SIZE, events.size())));
+        }
+        report("batches of " + BATCH_SIZE, start);
+    }
+
+    private void report(String mode, long start) {
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        LOG.info("Reduced {} events {} in {} ms: {} events/s", EVENTS, mode, elapsedMs, EVENTS * 1000L / elapsedMs);
+        assertThat(alertRepository.count()).isEqualTo(NODES);
+    }
+
+    private MonitorPolicy createPolicy() {
+        MonitorPolicy policy = new MonitorPolicy();
+        policy.setTenantId(TENANT_ID);
+        policy.setName("benchmark");
+        policy.setEnabled(true);
+
+        PolicyRule rule = new PolicyRule();
+        rule.setTenantId(TENANT_ID);
+        rule.setName("benchmark");
+        rule.setComponentType(ManagedObjectType.NODE);
+        rule.setPolicy(policy);
+        policy.getRules().add(rule);
+
+        AlertCondition condition = new AlertCondition();
+        condition.setTenantId(TENANT_ID);
+        condition.setCount(1);
+        condition.setOvertime(0);
+        condition.setSeverity(Severity.MAJOR);
+        condition.setRule(rule);
+        rule.getAlertConditions().add(condition);
+
+        AlertDefinition definition = new AlertDefinition();
+        definition.setTenantId(TENANT_ID);
+        definition.setUei(UEI);
+        definition.setReductionKey(UEI + ":%nodeid%");
+        definition.setType(AlertType.PROBLEM_WITHOUT_CLEAR);
+        definition.setManagedObjectType(ManagedObjectType.NODE);
+        definition.setAlertCondition(condition);
+        condition.setAlertDefinition(definition);
+        return policy;
+    }
+}
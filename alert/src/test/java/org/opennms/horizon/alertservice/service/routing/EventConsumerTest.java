@@ -0,0 +1,174 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.horizon.alertservice.service.routing;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.opennms.horizon.alertservice.api.AlertService;
+import org.opennms.horizon.alertservice.service.AlertEventProcessor;
+import org.opennms.horizon.events.proto.Event;
+import org.opennms.horizon.events.proto.EventLog;
+import org.opennms.horizon.shared.constants.GrpcConstants;
+
+@ExtendWith(MockitoExtension.class)
+class EventConsumerTest {
+    private static final String TENANT_A = "tenantA";
+    private static final String TENANT_B = "tenantB";
+
+    @Mock
+    AlertService alertService;
+
+    @Mock
+    AlertEventProcessor alertEventProcessor;
+
+    EventConsumer consumer;
+
+    final List<Reduction> reductions = Collections.synchronizedList(new ArrayList<>());
+
+    record Reduction(String tenantId, String lane, List<Event> events) {}
+
+    @BeforeEach
+    void setUp() {
+        consumer = new EventConsumer(alertService, alertEventProcessor, 4);
+        lenient().when(alertService.reduceEvents(any())).thenAnswer(invocation -> {
+            reductions.add(new Reduction(
+                    GrpcConstants.TENANT_ID_CONTEXT_KEY.get(),
+                    Thread.currentThread().getName(),
+                    List.<Event>copyOf(invocation.getArgument(0))));
+            return List.of();
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        consumer.destroy();
+    }
+
+    @Test
+    void reducesEventsSharingAKeyInOrder() {
+        Event first = event(TENANT_A, "first", "a");
+        Event other = event(TENANT_A, "other", "b");
+        Event second = event(TENANT_A, "second", "a");
+
+        consumer.receiveMessage(log(first, other, second));
+
+        assertThat(reductionOf(first).events()).containsSubsequence(first, second);
+        assertThat(reductions.stream().flatMap(r -> r.events().stream()))
+                .containsExactlyInAnyOrder(first, other, second);
+    }
+
+    @Test
+    void reducesEventsLinkedThroughAnotherEventInOrder() {
+        Event first = event(TENANT_A, "first", "a");
+        Event second = event(TENANT_A, "second", "b");
+        // e.g. an event matching two alert definitions, or clearing the alert of the first event
+        Event bridge = event(TENANT_A, "bridge", "b", "a");
+
+        consumer.receiveMessage(log(first, second, bridge));
+
+        assertThat(reductionOf(first).events()).containsSubsequence(first, second, bridge);
+    }
+
+    @Test
+    void reducesTenantsSeparately() {
+        Event eventOfA = event(TENANT_A, "eventOfA", "same");
+        Event eventOfB = event(TENANT_B, "eventOfB", "same");
+
+        consumer.receiveMessage(log(eventOfA, eventOfB));
+
+        assertThat(reductions).hasSize(2);
+        assertThat(reductionOf(eventOfA))
+                .returns(TENANT_A, Reduction::tenantId)
+                .returns(List.of(eventOfA), Reduction::events);
+        assertThat(reductionOf(eventOfB))
+                .returns(TENANT_B, Reduction::tenantId)
+                .returns(List.of(eventOfB), Reduction::events);
+        assertThat(reductionOf(eventOfA).lane()).isEqualTo(reductionOf(eventOfB).lane());
+    }
+
+    @Test
+    void dropsEventsWithoutTenantOrNode() {
+        Event withoutTenant = Event.newBuilder().setUei("withoutTenant").setNodeId(1L).build();
+        Event withoutNode = Event.newBuilder().setTenantId(TENANT_A).setUei("withoutNode").build();
+
+        consumer.receiveMessage(log(withoutTenant, withoutNode));
+
+        verify(alertEventProcessor, never()).getPartitionKeys(any());
+        verify(alertService, never()).reduceEvents(any());
+    }
+
+    @Test
+    void failsIfALaneFails() {
+        Event failing = event(TENANT_A, "failing", "a");
+        Event other = event(TENANT_A, "other", "b");
+        doThrow(new IllegalStateException("Database unavailable"))
+                .when(alertService)
+                .reduceEvents(argThat(events -> events.contains(failing)));
+
+        byte[] data = log(failing, other);
+        assertThrows(IllegalStateException.class, () -> consumer.receiveMessage(data));
+    }
+
+    private Reduction reductionOf(Event event) {
+        return reductions.stream()
+                .filter(r -> r.events().contains(event))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    private Event event(String tenantId, String uei, String... keys) {
+        Event event = Event.newBuilder()
+                .setTenantId(tenantId)
+                .setUei(uei)
+                .setNodeId(10L)
+                .build();
+        Set<String> partitionKeys = new LinkedHashSet<>();
+        for (String key : keys) {
+            partitionKeys.add(key);
+        }
+        when(alertEventProcessor.getPartitionKeys(event)).thenReturn(partitionKeys);
+        return event;
+    }
+
+    private static byte[] log(Event... events) {
+        return EventLog.newBuilder().addAllEvents(List.of(events)).build().toByteArray();
+    }
+}
@@ -54,6 +54,8 @@ import org.opennms.horizon.inventory.dto.ActiveDiscoveryDTO;
 import org.opennms.horizon.inventory.dto.ActiveDiscoveryList;
 import org.opennms.horizon.inventory.dto.IpInterfaceDTO;
 import org.opennms.horizon.inventory.dto.IpInterfaceList;
+import org.opennms.horizon.inventory.dto.IpInterfacesByAddress;
+import org.opennms.horizon.inventory.dto.IpInterfacesQuery;
 import org.opennms.horizon.inventory.dto.MonitoredStateQuery;
 import org.opennms.horizon.inventory.dto.MonitoringPolicies;
 import org.opennms.horizon.inventory.dto.NodeCreateDTO;
@@ -425,6 +427,40 @@ public class NodeGrpcService extends NodeServiceGrpc.NodeServiceImplBase {
                                 StatusProto.toStatusRuntimeException(createTenantIdMissingStatus())));
     }
 
+    /**
+     * Bulk variant of {@link #getIpInterfaceFromQuery(NodeIdQuery, StreamObserver)}, addresses without an
+     * IpInterface are left out of the response instead of failing the call.
+     * @param request
+     * @param responseObserver
+     */
+    @Override
+    public void getIpInterfacesFromQuery(
+            IpInterfacesQuery request, StreamObserver<IpInterfacesByAddress> responseObserver) {
+        tenantLookup
+                .lookupTenantId(Context.current())
+                .ifPresentOrElse(
+                        tenantId -> {
+                            var location = monitoringLocationService.findByLocationIdAndTenantId(
+                                    Long.parseLong(request.getLocationId()), tenantId);
+                            if (location.isEmpty()) {
+                                Status status = Status.newBuilder()
+                                        .setCode(Code.NOT_FOUND_VALUE)
+                                        .setMessage(INVALID_REQUEST_LOCATION_AND_IP_NOT_EMPTY_MSG)
+                                        .build();
+                                responseObserver.onError(StatusProto.toStatusRuntimeException(status));
+                                return;
+                            }
+                            var ipInterfaces = ipInterfaceService.findByIpAddressesAndLocationIdAndTenantId(
+                                    request.getIpAddressesList(), request.getLocationId(), tenantId);
+                            responseObserver.onNext(IpInterfacesByAddress.newBuilder()
+                                    .putAllIpInterfaces(ipInterfaces)
+                                    .build());
+                            responseObserver.onCompleted();
+                        },
+                        () -> responseObserver.onError(
+                                StatusProto.toStatusRuntimeException(createTenantIdMissingStatus())));
+    }
+
     @Override
     public void getIpInterfaceById(Int64Value request, StreamObserver<IpInterfaceDTO> responseObserver) {
         var ipInterface = tenantLookup
@@ -644,7 +680,18 @@ public class NodeGrpcService extends NodeServiceGrpc.NodeServiceImplBase {
                         request.getSortAscending() ? Sort.Direction.ASC : Sort.Direction.DESC,
                         !request.getSortBy().isEmpty() ? request.getSortBy() : SORT_BY_DEFAULT));
 
-        responseStreamObserver.onNext(nodeService.searchNodes(tenantId, request, pageRequest));
+        NodeSearchResponseDTO response;
+        try {
+            response = nodeService.searchNodes(tenantId, request, pageRequest);
+        } catch (IllegalArgumentException e) {
+            Status status = Status.newBuilder()
+                    .setCode(Code.INVALID_ARGUMENT_VALUE)
+                    .setMessage(e.getMessage())
+                    .build();
+            responseStreamObserver.onError(StatusProto.toStatusRuntimeException(status));
+            return;
+        }
+        responseStreamObserver.onNext(response);
         responseStreamObserver.onCompleted();
     }
 }
@@ -22,6 +22,7 @@
 package org.opennms.horizon.inventory.repository;
 
 import java.net.InetAddress;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import org.opennms.horizon.inventory.model.IpInterface;
@@ -45,6 +46,26 @@ public interface IpInterfaceRepository extends JpaRepository<IpInterface, Long>
             @Param("locationId") Long locationId,
             @Param("tenantId") String tenantId);
 
+    @Query("SELECT ip " + "FROM IpInterface ip "
+            + "WHERE ip.ipAddress IN :ipAddresses "
+            + "AND ip.node.monitoringLocationId = :locationId "
+            + "AND ip.tenantId = :tenantId "
+            + "ORDER BY ip.id")
+    List<IpInterface> findByIpAddressInAndLocationIdAndTenantId(
+            @Param("ipAddresses") Collection<InetAddress> ipAddresses,
+            @Param("locationId") Long locationId,
+            @Param("tenantId") String tenantId);
+
+    @Query("SELECT ip " + "FROM IpInterface ip "
+            + "JOIN FETCH ip.node "
+            + "WHERE ip.ipAddress IN :ipAddresses "
+            + "AND ip.location.id = :locationId "
+            + "AND ip.tenantId = :tenantId")
+    List<IpInterface> findWithNodeByIpAddressInAndLocationIdAndTenantId(
+            @Param("ipAddresses") Collection<InetAddress> ipAddresses,
+            @Param("locationId") Long locationId,
+            @Param("tenantId") String tenantId);
+
     @Query("SELECT ip " + "FROM IpInterface ip "
             + "WHERE ip.ipAddress = :ipAddress "
             + "AND ip.node.monitoringLocationId = :locationId "
@@ -64,10 +85,11 @@ public interface IpInterfaceRepository extends JpaRepository<IpInterface, Long>
 
     Optional<IpInterface> findByNodeIdAndSnmpPrimary(long nodeId, boolean snmpPrimary);
 
+    // Served by the index on the node id; the pattern only filters the interfaces of one node, no trigram index needed
     @Query("SELECT ip FROM IpInterface ip " + "WHERE ip.tenantId = :tenantId "
             + "AND ip.node.id = :nodeId "
-            + "AND (LOWER(ip.hostname) LIKE LOWER(CONCAT('%', :searchTerm, '%')) "
-            + "OR CAST( ip.ipAddress as string ) LIKE CONCAT('%', :searchTerm, '%'))")
+            + "AND (LOWER(ip.hostname) LIKE :pattern "
+            + "OR CAST(FUNCTION('host', ip.ipAddress) AS String) LIKE :pattern)")
     List<IpInterface> findAllByTenantIdAndNodeIdAndSearchTerm(
-            @Param("tenantId") String tenantId, @Param("nodeId") long nodeId, @Param("searchTerm") String searchTerm);
+            @Param("tenantId") String tenantId, @Param("nodeId") long nodeId, @Param("pattern") String pattern);
 }
@@ -34,6 +34,8 @@ public interface MonitoredEntityStateRepository extends JpaRepository<MonitoredE
 
     Optional<MonitoredEntityState> findByTenantIdAndMonitoredEntityId(String tenantId, String monitoredEntityId);
 
+    List<MonitoredEntityState> findByTenantId(String tenantId);
+
     @Query("SELECT m FROM MonitoredEntityState m "
             + " WHERE m.tenantId = :tenantId "
             + " AND LOWER(m.monitoredEntityId) LIKE LOWER(CONCAT('%', :searchTerm, '%'))")
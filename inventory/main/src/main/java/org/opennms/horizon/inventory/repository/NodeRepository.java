@@ -21,13 +21,18 @@
  */
 package org.opennms.horizon.inventory.repository;
 
+import java.net.InetAddress;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
 import org.opennms.horizon.inventory.dto.MonitoredState;
 import org.opennms.horizon.inventory.model.Node;
 import org.opennms.horizon.inventory.model.TenantCount;
-import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -52,12 +57,15 @@ public interface NodeRepository extends JpaRepository<Node, Long> {
             @Param("location_id") Long location,
             @Param("nodeLabel") String nodeLabel);
 
+    /**
+     * @param pattern lower-cased LIKE pattern, see {@link #containsPattern(String)}
+     */
     @Query("SELECT n " + "FROM Node n "
             + "WHERE n.tenantId = :tenantId "
-            + "AND (LOWER(n.nodeLabel) LIKE LOWER(CONCAT('%', :nodeLabelSearchTerm, '%'))"
-            + "OR LOWER(n.nodeAlias) LIKE LOWER(CONCAT('%', :nodeLabelSearchTerm, '%')))")
+            + "AND (LOWER(n.nodeLabel) LIKE :pattern "
+            + "OR LOWER(n.nodeAlias) LIKE :pattern)")
     List<Node> findByTenantIdAndNodeLabelOrAliasLike(
-            @Param("tenantId") String tenantId, @Param("nodeLabelSearchTerm") String nodeLabelSearchTerm);
+            @Param("tenantId") String tenantId, @Param("pattern") String pattern);
 
     List<Node> findByIdInAndTenantId(List<Long> ids, String tenantId);
 
@@ -90,24 +98,110 @@ public interface NodeRepository extends JpaRepository<Node, Long> {
     @Query("SELECT COUNT(n.id) FROM Node n WHERE n.tenantId = :tenantId ")
     long countDistinctNodes(@Param("tenantId") String tenantId);
 
+    /**
+     * Native SQL, ids of the nodes of the tenant with a label, alias, interface host name or interface address matching
+     * the pattern. Each branch of the UNION is served by the trigram index on exactly its expression; an OR of the
+     * columns and an EXISTS on the interfaces instead leaves the planner with a scan of all nodes of the tenant.
+     */
+    String SEARCH_TERM_NODE_IDS = "SELECT id FROM node WHERE tenant_id = :tenantId AND lower(node_label) LIKE :pattern "
+            + "UNION SELECT id FROM node WHERE tenant_id = :tenantId AND lower(node_alias) LIKE :pattern "
+            + "UNION SELECT node_id FROM ip_interface WHERE tenant_id = :tenantId AND lower(ip_hostname) LIKE :pattern "
+            + "UNION SELECT node_id FROM ip_interface WHERE tenant_id = :tenantId "
+            + "AND CAST(host(ip_address) AS varchar) LIKE :pattern";
+
+    String NETWORK_CONDITION = "EXISTS (SELECT 1 FROM IpInterface ip WHERE ip.node = n AND ip.tenantId = :tenantId "
+            + "AND ip.ipAddress BETWEEN :networkStart AND :networkEnd)";
+
+    String TAG_CONDITION = "EXISTS (SELECT 1 FROM Tag t JOIN t.nodes tn WHERE tn = n AND t.id IN :idList)";
+
+    // Node properties the search results can be sorted by, and their columns for native queries
+    Map<String, String> SORT_COLUMNS = Map.of("id", "id", "nodeLabel", "node_label", "nodeAlias", "node_alias");
+
+    // Keyset bounds, (0, Long.MAX_VALUE) when paging by offset; valid in JPQL and SQL alike
+    String ID_RANGE_CONDITION = "n.id > :minId AND n.id < :maxId";
+
+    /**
+     * Matches the label, alias, interface host names and interface addresses against a search term. The location,
+     * interfaces and tags of the returned nodes are loaded lazily in batches.
+     *
+     * @param pattern lower-cased LIKE pattern, see {@link #containsPattern(String)}
+     * @param pageable sorted by columns, as a native query orders by the sort properties verbatim; see
+     *     {@link #nativeSort(Pageable)}
+     */
     @Query(
-            value =
-                    "SELECT n FROM Node n LEFT JOIN FETCH n.monitoringLocation  LEFT JOIN FETCH n.ipInterfaces LEFT JOIN FETCH n.tags AS t   "
-                            + "WHERE n.tenantId = :tenantId "
-                            + "AND (LOWER(n.nodeLabel) LIKE LOWER(CONCAT('%', :nodeLabelSearchTerm, '%'))"
-                            + "OR LOWER(n.nodeAlias) LIKE LOWER(CONCAT('%', :nodeLabelSearchTerm, '%')))",
-            countQuery = "SELECT count(n) FROM Node n LEFT JOIN n.tags AS t WHERE n.tenantId = :tenantId")
-    Page<Node> findByTenantIdAndNodeLabelOrAliasLike(
+            value = "SELECT n.* FROM node n WHERE n.tenant_id = :tenantId AND " + ID_RANGE_CONDITION
+                    + " AND n.id IN (" + SEARCH_TERM_NODE_IDS + ")",
+            nativeQuery = true)
+    List<Node> searchByTenantIdAndSearchTerm(
             @Param("tenantId") String tenantId,
-            @Param("nodeLabelSearchTerm") String nodeLabelSearchTerm,
+            @Param("pattern") String pattern,
+            @Param("minId") long minId,
+            @Param("maxId") long maxId,
             Pageable pageable);
 
-    @Query(
-            value =
-                    "SELECT n FROM Node n LEFT JOIN FETCH n.monitoringLocation  LEFT JOIN FETCH n.ipInterfaces LEFT JOIN FETCH n.tags AS t   "
-                            + " WHERE n.tenantId = :tenantId AND "
-                            + " t.id IN :idList",
-            countQuery = "SELECT count(n) FROM Node n LEFT JOIN n.tags AS t WHERE n.tenantId = :tenantId")
-    Page<Node> findByTenantIdAndTagIds(
-            @Param("tenantId") String tenantId, @Param("idList") List<Long> idList, Pageable pageable);
+    @Query(value = "SELECT count(*) FROM (" + SEARCH_TERM_NODE_IDS + ") AS matches", nativeQuery = true)
+    long countByTenantIdAndSearchTerm(@Param("tenantId") String tenantId, @Param("pattern") String pattern);
+
+    /**
+     * Matches nodes with an interface address within {@code [networkStart, networkEnd]}.
+     */
+    @Query("SELECT n FROM Node n LEFT JOIN FETCH n.monitoringLocation "
+            + "WHERE n.tenantId = :tenantId AND " + ID_RANGE_CONDITION + " AND " + NETWORK_CONDITION)
+    List<Node> searchByTenantIdAndNetwork(
+            @Param("tenantId") String tenantId,
+            @Param("networkStart") InetAddress networkStart,
+            @Param("networkEnd") InetAddress networkEnd,
+            @Param("minId") long minId,
+            @Param("maxId") long maxId,
+            Pageable pageable);
+
+    @Query("SELECT count(n) FROM Node n WHERE n.tenantId = :tenantId AND " + NETWORK_CONDITION)
+    long countByTenantIdAndNetwork(
+            @Param("tenantId") String tenantId,
+            @Param("networkStart") InetAddress networkStart,
+            @Param("networkEnd") InetAddress networkEnd);
+
+    @Query("SELECT n FROM Node n LEFT JOIN FETCH n.monitoringLocation "
+            + "WHERE n.tenantId = :tenantId AND " + ID_RANGE_CONDITION + " AND " + TAG_CONDITION)
+    List<Node> searchByTenantIdAndTagIds(
+            @Param("tenantId") String tenantId,
+            @Param("idList") List<Long> idList,
+            @Param("minId") long minId,
+            @Param("maxId") long maxId,
+            Pageable pageable);
+
+    @Query("SELECT count(n) FROM Node n WHERE n.tenantId = :tenantId AND " + TAG_CONDITION)
+    long countByTenantIdAndTagIds(@Param("tenantId") String tenantId, @Param("idList") List<Long> idList);
+
+    /**
+     * Maps the sort of {@code pageable} from node properties to the columns of the node table.
+     *
+     * @throws IllegalArgumentException if a property is not one of {@link #SORT_COLUMNS}
+     */
+    static Pageable nativeSort(Pageable pageable) {
+        List<Sort.Order> orders = new ArrayList<>();
+        for (Sort.Order order : pageable.getSort()) {
+            String column = SORT_COLUMNS.get(order.getProperty());
+            if (column == null) {
+                throw new IllegalArgumentException("Nodes cannot be sorted by " + order.getProperty());
+            }
+            orders.add(order.withProperty(column));
+        }
+        return PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), Sort.by(orders));
+    }
+
+    /**
+     * Builds a lower-cased LIKE pattern matching values that contain {@code term}. Wildcards in the term are escaped
+     * with a backslash, the default LIKE escape character of Postgres.
+     */
+    static String containsPattern(String term) {
+        StringBuilder pattern = new StringBuilder(term.length() + 2).append('%');
+        for (char c : term.toLowerCase(Locale.ROOT).toCharArray()) {
+            if (c == '%' || c == '_' || c == '\\') {
+                pattern.append('\\');
+            }
+            pattern.append(c);
+        }
+        return pattern.append('%').toString();
+    }
 }
@@ -22,6 +22,11 @@
 package org.opennms.horizon.inventory.service;
 
 import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -92,6 +97,54 @@ public class IpInterfaceService {
             InetAddress ipAddress, long locationId, String tenantId) {
         List<IpInterface> ipInterfaces =
                 modelRepo.findByIpAddressAndLocationIdAndTenantId(ipAddress, locationId, tenantId);
+        return selectPrimary(ipInterfaces);
+    }
+
+    /**
+     * Bulk variant of {@link #findByIpAddressAndLocationIdAndTenantId(String, String, String)} resolving all given
+     * addresses with a single query.
+     * @param ipAddresses
+     * @param location
+     * @param tenantId
+     * @return the IpInterface of each address keyed by the address as given, unknown and invalid addresses are omitted
+     */
+    public Map<String, IpInterfaceDTO> findByIpAddressesAndLocationIdAndTenantId(
+            Collection<String> ipAddresses, String location, String tenantId) {
+        // Several notations of the same address may have been asked for
+        Map<InetAddress, List<String>> requested = new HashMap<>();
+        for (String ipAddress : ipAddresses) {
+            InetAddress inetAddress;
+            try {
+                inetAddress = InetAddressUtils.getInetAddress(ipAddress);
+            } catch (IllegalArgumentException e) {
+                // Don't let a single malformed address fail the lookup of the others
+                LOG.warn("Skipping invalid address {} in lookup for tenant {}", ipAddress, tenantId);
+                continue;
+            }
+            requested.computeIfAbsent(inetAddress, k -> new ArrayList<>()).add(ipAddress);
+        }
+        if (requested.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        Map<InetAddress, List<IpInterface>> found = modelRepo
+                .findByIpAddressInAndLocationIdAndTenantId(requested.keySet(), Long.valueOf(location), tenantId)
+                .stream()
+                .collect(Collectors.groupingBy(IpInterface::getIpAddress, LinkedHashMap::new, Collectors.toList()));
+
+        Map<String, IpInterfaceDTO> result = new HashMap<>();
+        for (var entry : found.entrySet()) {
+            var dto = selectPrimary(entry.getValue()).map(mapper::modelToDTO);
+            if (dto.isPresent()) {
+                for (String ipAddress : requested.getOrDefault(entry.getKey(), Collections.emptyList())) {
+                    result.put(ipAddress, dto.get());
+                }
+            }
+        }
+        return result;
+    }
+
+    private static Optional<IpInterface> selectPrimary(List<IpInterface> ipInterfaces) {
         if (ipInterfaces.isEmpty()) {
             return Optional.empty();
         } else if (ipInterfaces.size() == 1) {
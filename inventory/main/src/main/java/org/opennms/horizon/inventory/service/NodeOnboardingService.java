@@ -0,0 +1,394 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.horizon.inventory.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.persistence.EntityManager;
+import java.net.InetAddress;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import lombok.extern.slf4j.Slf4j;
+import org.opennms.horizon.inventory.component.NodeKafkaProducer;
+import org.opennms.horizon.inventory.component.TagPublisher;
+import org.opennms.horizon.inventory.discovery.IcmpActiveDiscoveryDTO;
+import org.opennms.horizon.inventory.dto.MonitoredState;
+import org.opennms.horizon.inventory.dto.NodeDTO;
+import org.opennms.horizon.inventory.dto.NodeOperation;
+import org.opennms.horizon.inventory.dto.NodeOperationProto;
+import org.opennms.horizon.inventory.dto.TagCreateDTO;
+import org.opennms.horizon.inventory.mapper.NodeMapper;
+import org.opennms.horizon.inventory.model.IpInterface;
+import org.opennms.horizon.inventory.model.Tag;
+import org.opennms.horizon.inventory.repository.IpInterfaceRepository;
+import org.opennms.horizon.inventory.repository.NodeRepository;
+import org.opennms.horizon.inventory.repository.TagRepository;
+import org.opennms.horizon.inventory.service.taskset.ScannerTaskSetService;
+import org.opennms.horizon.shared.common.tag.proto.Operation;
+import org.opennms.horizon.shared.common.tag.proto.TagOperationProto;
+import org.opennms.horizon.shared.utils.InetAddressUtils;
+import org.opennms.horizon.snmp.api.SnmpConfiguration;
+import org.opennms.taskset.contract.ScanType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Onboards the devices that answered an ICMP discovery in bulk.
+ * <p>
+ * Addresses are processed in chunks of {@link #CHUNK_SIZE}, each in a single transaction: the nodes that already
+ * exist are resolved with one query, new nodes and their primary interfaces are created with batch inserts, and the
+ * discovery tags are assigned to all nodes of the chunk at once. The node scans of the nodes of a chunk are
+ * published as one task set update for the location, which keeps each update well below the record size limit of
+ * Kafka even for large subnets.
+ */
+@Slf4j
+@Service
+public class NodeOnboardingService {
+    static final int CHUNK_SIZE = 1_000;
+    private static final String DEFAULT_TAG = "default";
+
+    static final String INSERT_NODES_SQL = "INSERT INTO node (tenant_id, node_label, scan_type, monitored_state,"
+            + " create_time, monitoring_location_id, active_discovery_ids)"
+            + " SELECT ?, label, ?, ?, ?, ?, ?::jsonb FROM unnest(?::text[]) AS t(label)"
+            + " RETURNING id, node_label";
+    // Addresses added concurrently, e.g. by an overlapping discovery, are skipped rather than failing the chunk
+    static final String INSERT_IP_INTERFACES_SQL = "INSERT INTO ip_interface"
+            + " (tenant_id, node_id, ip_address, snmp_primary, location_id, if_index)"
+            + " SELECT ?, node_id, address::inet, true, ?, 0 FROM unnest(?::bigint[], ?::text[]) AS t(node_id, address)"
+            + " ON CONFLICT (ip_address, location_id) DO NOTHING"
+            + " RETURNING node_id";
+    static final String DELETE_NODES_SQL = "DELETE FROM node WHERE tenant_id = ? AND id = ANY(?)";
+    static final String INSERT_NODE_TAG_SQL = "INSERT INTO node_tag (tag_id, node_id) SELECT ?, ?"
+            + " WHERE NOT EXISTS (SELECT 1 FROM node_tag WHERE tag_id = ? AND node_id = ?)";
+    static final String ADD_DISCOVERY_ID_SQL = "UPDATE node"
+            + " SET active_discovery_ids = COALESCE(active_discovery_ids, '[]'::jsonb) || jsonb_build_array(?)"
+            + " WHERE tenant_id = ? AND id = ANY(?)"
+            + " AND NOT COALESCE(active_discovery_ids, '[]'::jsonb) @> jsonb_build_array(?)";
+    static final String SET_MONITORED_SQL = "UPDATE node SET monitored_state = ?"
+            + " WHERE tenant_id = ? AND id = ANY(?) AND monitored_state IS DISTINCT FROM ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final EntityManager entityManager;
+    private final NodeRepository nodeRepository;
+    private final IpInterfaceRepository ipInterfaceRepository;
+    private final TagRepository tagRepository;
+    private final NodeMapper nodeMapper;
+    private final NodeKafkaProducer nodeKafkaProducer;
+    private final TagPublisher tagPublisher;
+    private final ScannerTaskSetService scannerTaskSetService;
+
+    private final Counter createdCounter;
+    private final Counter existingCounter;
+    private final Counter skippedCounter;
+    private final Timer chunkTimer;
+
+    public NodeOnboardingService(
+            JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager,
+            EntityManager entityManager,
+            NodeRepository nodeRepository,
+            IpInterfaceRepository ipInterfaceRepository,
+            TagRepository tagRepository,
+            NodeMapper nodeMapper,
+            NodeKafkaProducer nodeKafkaProducer,
+            TagPublisher tagPublisher,
+            ScannerTaskSetService scannerTaskSetService,
+            MeterRegistry meterRegistry) {
+        this.jdbcTemplate = Objects.requireNonNull(jdbcTemplate);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.entityManager = Objects.requireNonNull(entityManager);
+        this.nodeRepository = Objects.requireNonNull(nodeRepository);
+        this.ipInterfaceRepository = Objects.requireNonNull(ipInterfaceRepository);
+        this.tagRepository = Objects.requireNonNull(tagRepository);
+        this.nodeMapper = Objects.requireNonNull(nodeMapper);
+        this.nodeKafkaProducer = Objects.requireNonNull(nodeKafkaProducer);
+        this.tagPublisher = Objects.requireNonNull(tagPublisher);
+        this.scannerTaskSetService = Objects.requireNonNull(scannerTaskSetService);
+
+        createdCounter = meterRegistry.counter("discovery.onboarding.nodes", "result", "created");
+        existingCounter = meterRegistry.counter("discovery.onboarding.nodes", "result", "existing");
+        skippedCounter = meterRegistry.counter("discovery.onboarding.nodes", "result", "skipped");
+        chunkTimer = meterRegistry.timer("discovery.onboarding.chunk");
+    }
+
+    /**
+     * Create a node for every address that has none yet, add the discovery and its tags to the nodes of the others,
+     * and schedule a node scan for all of them.
+     *
+     * @return the number of nodes onboarded
+     */
+    public int onboardDiscoveredNodes(
+            String tenantId,
+            long locationId,
+            IcmpActiveDiscoveryDTO discovery,
+            List<TagCreateDTO> tags,
+            List<String> ipAddresses) {
+        // Node labels are the addresses as reported, keyed by the parsed address to drop duplicates
+        Map<InetAddress, String> addresses = new LinkedHashMap<>();
+        for (String ipAddress : ipAddresses) {
+            try {
+                addresses.putIfAbsent(InetAddressUtils.getInetAddress(ipAddress), ipAddress);
+            } catch (IllegalArgumentException e) {
+                log.warn("Skipping invalid address {} discovered by {}", ipAddress, discovery.getId());
+                skippedCounter.increment();
+            }
+        }
+        if (addresses.isEmpty()) {
+            return 0;
+        }
+
+        List<Tag> tagEntities = transactionTemplate.execute(status -> resolveTags(tenantId, tags));
+        boolean monitored = tagEntities.stream()
+                .anyMatch(tag -> !tag.getMonitorPolicyIds().isEmpty() || DEFAULT_TAG.equals(tag.getName()));
+
+        List<SnmpConfiguration> snmpConfigurations = ScannerTaskSetService.snmpConfigurations(discovery);
+        int onboarded = 0;
+        List<Map.Entry<InetAddress, String>> entries = new ArrayList<>(addresses.entrySet());
+        for (int from = 0; from < entries.size(); from += CHUNK_SIZE) {
+            var chunk = entries.subList(from, Math.min(from + CHUNK_SIZE, entries.size()));
+            List<NodeDTO> nodes = List.of();
+            try {
+                nodes = chunkTimer.recordCallable(
+                        () -> onboardChunk(tenantId, locationId, discovery.getId(), tagEntities, monitored, chunk));
+            } catch (Exception e) {
+                log.error(
+                        "Failed to onboard {} discovered nodes for tenantId={}; locationId={}",
+                        chunk.size(),
+                        tenantId,
+                        locationId,
+                        e);
+                skippedCounter.increment(chunk.size());
+            }
+            if (!nodes.isEmpty()) {
+                scannerTaskSetService.sendNodeScannerTask(nodes, locationId, tenantId, snmpConfigurations);
+                onboarded += nodes.size();
+            }
+            log.info(
+                    "Onboarded {}/{} discovered addresses for tenantId={}; locationId={}",
+                    Math.min(from + CHUNK_SIZE, entries.size()),
+                    entries.size(),
+                    tenantId,
+                    locationId);
+        }
+        return onboarded;
+    }
+
+    private List<NodeDTO> onboardChunk(
+            String tenantId,
+            long locationId,
+            long discoveryId,
+            List<Tag> tags,
+            boolean monitored,
+            List<Map.Entry<InetAddress, String>> chunk) {
+        List<NodeDTO> nodes = transactionTemplate.execute(status -> {
+            Map<InetAddress, String> newAddresses = new LinkedHashMap<>();
+            chunk.forEach(entry -> newAddresses.put(entry.getKey(), entry.getValue()));
+
+            // A node is listed once even if several of its addresses were discovered
+            Set<Long> existingNodeIds = new LinkedHashSet<>();
+            for (IpInterface ipInterface : ipInterfaceRepository.findWithNodeByIpAddressInAndLocationIdAndTenantId(
+                    newAddresses.keySet(), locationId, tenantId)) {
+                newAddresses.remove(ipInterface.getIpAddress());
+                if (ipInterface.getNode().getScanType() == ScanType.DISCOVERY_SCAN) {
+                    existingNodeIds.add(ipInterface.getNodeId());
+                } else {
+                    log.warn(
+                            "IP address {} already belongs to device {}",
+                            InetAddressUtils.toIpAddrString(ipInterface.getIpAddress()),
+                            ipInterface.getNode().getNodeLabel());
+                    skippedCounter.increment();
+                }
+            }
+
+            List<Long> nodeIds = new ArrayList<>(chunk.size());
+            nodeIds.addAll(createNodes(tenantId, locationId, discoveryId, monitored, newAddresses));
+            if (!existingNodeIds.isEmpty()) {
+                updateExistingNodes(tenantId, discoveryId, monitored, existingNodeIds);
+                nodeIds.addAll(existingNodeIds);
+            }
+            if (nodeIds.isEmpty()) {
+                return List.<NodeDTO>of();
+            }
+            assignTags(tags, nodeIds);
+
+            createdCounter.increment(nodeIds.size() - existingNodeIds.size());
+            existingCounter.increment(existingNodeIds.size());
+
+            // The nodes loaded with their interfaces above do not reflect the updates made through JDBC
+            entityManager.clear();
+            return nodeRepository.findByIdInAndTenantId(nodeIds, tenantId).stream()
+                    .map(nodeMapper::modelToDTO)
+                    .toList();
+        });
+
+        // Batch inserts bypass the entity listener, publish the nodes as it would have
+        nodes.forEach(node -> nodeKafkaProducer.nodeOperationInKafka(NodeOperationProto.newBuilder()
+                .setOperation(NodeOperation.UPDATE_NODE)
+                .setNodeDto(node)
+                .build()));
+        if (!nodes.isEmpty()) {
+            List<Long> nodeIds = nodes.stream().map(NodeDTO::getId).toList();
+            tagPublisher.publishTagUpdate(tags.stream()
+                    .map(tag -> TagOperationProto.newBuilder()
+                            .setOperation(Operation.ASSIGN_TAG)
+                            .setTagName(tag.getName())
+                            .setTenantId(tenantId)
+                            .addAllNodeId(nodeIds)
+                            .build())
+                    .toList());
+        }
+        return nodes;
+    }
+
+    private List<Tag> resolveTags(String tenantId, List<TagCreateDTO> tags) {
+        List<Tag> result = new ArrayList<>(tags.size());
+        for (TagCreateDTO tagCreateDTO : tags) {
+            result.add(tagRepository
+                    .findByTenantIdAndName(tenantId, tagCreateDTO.getName())
+                    .orElseGet(() -> {
+                        Tag tag = new Tag();
+                        tag.setTenantId(tenantId);
+                        tag.setName(tagCreateDTO.getName());
+                        return tagRepository.save(tag);
+                    }));
+        }
+        return result;
+    }
+
+    private List<Long> createNodes(
+            String tenantId,
+            long locationId,
+            long discoveryId,
+            boolean monitored,
+            Map<InetAddress, String> addresses) {
+        if (addresses.isEmpty()) {
+            return List.of();
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        MonitoredState monitoredState = monitored ? MonitoredState.MONITORED : MonitoredState.DETECTED;
+        String[] labels = addresses.values().toArray(String[]::new);
+        List<Map.Entry<String, Long>> created = jdbcTemplate.query(
+                connection -> {
+                    PreparedStatement statement = connection.prepareStatement(INSERT_NODES_SQL);
+                    statement.setString(1, tenantId);
+                    statement.setString(2, ScanType.DISCOVERY_SCAN.name());
+                    statement.setString(3, monitoredState.name());
+                    statement.setTimestamp(4, now);
+                    statement.setLong(5, locationId);
+                    statement.setString(6, "[" + discoveryId + "]");
+                    statement.setArray(7, connection.createArrayOf("text", labels));
+                    return statement;
+                },
+                (rs, rowNum) -> Map.entry(rs.getString(2), rs.getLong(1)));
+
+        Map<String, Long> nodeIdsByLabel = new HashMap<>();
+        created.forEach(entry -> nodeIdsByLabel.put(entry.getKey(), entry.getValue()));
+        Long[] nodeIds = new Long[addresses.size()];
+        String[] ipAddresses = new String[addresses.size()];
+        int i = 0;
+        for (Map.Entry<InetAddress, String> entry : addresses.entrySet()) {
+            nodeIds[i] = nodeIdsByLabel.get(entry.getValue());
+            ipAddresses[i] = InetAddressUtils.toIpAddrString(entry.getKey());
+            i++;
+        }
+        List<Long> withInterface = jdbcTemplate.query(
+                connection -> {
+                    PreparedStatement statement = connection.prepareStatement(INSERT_IP_INTERFACES_SQL);
+                    statement.setString(1, tenantId);
+                    statement.setLong(2, locationId);
+                    statement.setArray(3, connection.createArrayOf("bigint", nodeIds));
+                    statement.setArray(4, connection.createArrayOf("text", ipAddresses));
+                    return statement;
+                },
+                (rs, rowNum) -> rs.getLong(1));
+
+        // Drop the nodes whose address was taken in the meantime, they would have no interface
+        Set<Long> orphans = new LinkedHashSet<>(nodeIdsByLabel.values());
+        withInterface.forEach(orphans::remove);
+        if (!orphans.isEmpty()) {
+            log.warn("{} discovered addresses were added concurrently, skipping them", orphans.size());
+            jdbcTemplate.update(connection -> {
+                PreparedStatement statement = connection.prepareStatement(DELETE_NODES_SQL);
+                statement.setString(1, tenantId);
+                statement.setArray(2, bigintArray(connection, orphans));
+                return statement;
+            });
+            skippedCounter.increment(orphans.size());
+        }
+        return withInterface;
+    }
+
+    private void updateExistingNodes(String tenantId, long discoveryId, boolean monitored, Collection<Long> nodeIds) {
+        jdbcTemplate.update(connection -> {
+            PreparedStatement statement = connection.prepareStatement(ADD_DISCOVERY_ID_SQL);
+            statement.setLong(1, discoveryId);
+            statement.setString(2, tenantId);
+            statement.setArray(3, bigintArray(connection, nodeIds));
+            statement.setLong(4, discoveryId);
+            return statement;
+        });
+        if (monitored) {
+            jdbcTemplate.update(connection -> {
+                PreparedStatement statement = connection.prepareStatement(SET_MONITORED_SQL);
+                statement.setString(1, MonitoredState.MONITORED.name());
+                statement.setString(2, tenantId);
+                statement.setArray(3, bigintArray(connection, nodeIds));
+                statement.setString(4, MonitoredState.MONITORED.name());
+                return statement;
+            });
+        }
+    }
+
+    private void assignTags(List<Tag> tags, List<Long> nodeIds) {
+        if (tags.isEmpty() || nodeIds.isEmpty()) {
+            return;
+        }
+        List<Object[]> nodeTags = new ArrayList<>(tags.size() * nodeIds.size());
+        for (Tag tag : tags) {
+            for (Long nodeId : nodeIds) {
+                nodeTags.add(new Object[] {tag.getId(), nodeId, tag.getId(), nodeId});
+            }
+        }
+        jdbcTemplate.batchUpdate(INSERT_NODE_TAG_SQL, nodeTags);
+    }
+
+    private static Array bigintArray(Connection connection, Collection<Long> ids) throws SQLException {
+        return connection.createArrayOf("bigint", ids.toArray());
+    }
+}
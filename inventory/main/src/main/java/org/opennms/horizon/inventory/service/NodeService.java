@@ -41,6 +41,7 @@ import java.util.stream.Collectors;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.net.util.SubnetUtils;
 import org.apache.logging.log4j.util.Strings;
 import org.opennms.horizon.azure.api.AzureScanItem;
 import org.opennms.horizon.inventory.component.NodeKafkaProducer;
@@ -86,7 +87,6 @@ import org.opennms.horizon.inventory.service.taskset.publisher.TaskSetPublisher;
 import org.opennms.horizon.shared.common.tag.proto.Operation;
 import org.opennms.horizon.shared.common.tag.proto.TagOperationProto;
 import org.opennms.horizon.shared.utils.InetAddressUtils;
-import org.opennms.horizon.snmp.api.SnmpConfiguration;
 import org.opennms.node.scan.contract.NodeInfoResult;
 import org.opennms.taskset.contract.ScanType;
 import org.opennms.taskset.contract.TaskDefinition;
@@ -95,7 +95,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -445,19 +448,9 @@ public class NodeService {
     }
 
     private void sendTaskSetsToMinion(NodeDTO nodeDTO, Long locationId, IcmpActiveDiscoveryDTO icmpDiscoveryDTO) {
-
-        List<SnmpConfiguration> snmpConfigs = new ArrayList<>();
         try {
-            var snmpConf = icmpDiscoveryDTO.getSnmpConfig();
-            snmpConf.getReadCommunityList().forEach(readCommunity -> {
-                var builder = SnmpConfiguration.newBuilder().setReadCommunity(readCommunity);
-                snmpConfigs.add(builder.build());
-            });
-            snmpConf.getPortsList().forEach(port -> {
-                var builder = SnmpConfiguration.newBuilder().setPort(port);
-                snmpConfigs.add(builder.build());
-            });
-            scannerTaskSetService.sendNodeScannerTask(nodeDTO, locationId, snmpConfigs);
+            scannerTaskSetService.sendNodeScannerTask(
+                    nodeDTO, locationId, ScannerTaskSetService.snmpConfigurations(icmpDiscoveryDTO));
         } catch (Exception e) {
             log.error("Error while sending nodescan task for node with label {}", nodeDTO.getNodeLabel(), e);
         }
@@ -465,7 +458,9 @@ public class NodeService {
 
     @Transactional(readOnly = true)
     public List<NodeDTO> listNodesByNodeLabelSearch(String tenantId, String nodeLabelSearchTerm) {
-        return nodeRepository.findByTenantIdAndNodeLabelOrAliasLike(tenantId, nodeLabelSearchTerm).stream()
+        return nodeRepository
+                .findByTenantIdAndNodeLabelOrAliasLike(tenantId, NodeRepository.containsPattern(nodeLabelSearchTerm))
+                .stream()
                 .map(mapper::modelToDTO)
                 .toList();
     }
@@ -481,7 +476,8 @@ public class NodeService {
             String tenantId, Long nodeId, String searchIpInterfaceTerm) {
 
         return ipInterfaceRepository
-                .findAllByTenantIdAndNodeIdAndSearchTerm(tenantId, nodeId, searchIpInterfaceTerm)
+                .findAllByTenantIdAndNodeIdAndSearchTerm(
+                        tenantId, nodeId, NodeRepository.containsPattern(searchIpInterfaceTerm))
                 .stream()
                 .map(ipInterfaceMapper::modelToDTO)
                 .collect(Collectors.toList());
@@ -514,25 +510,76 @@ public class NodeService {
         }
     }
 
+    /**
+     * Searches nodes by tag ids or by a search term. A search term in CIDR notation matches the nodes with an
+     * interface in that network, any other term is matched against labels, aliases, interface host names and
+     * interface addresses. With {@link NodesSearchBy#getAfterId()} set, the nodes following that id are returned in
+     * id order instead of the requested page.
+     *
+     * @throws IllegalArgumentException if the page is not sorted by one of {@link NodeRepository#SORT_COLUMNS}, or
+     *     for an invalid tag id
+     */
+    @Transactional(readOnly = true)
     public NodeSearchResponseDTO searchNodes(String tenantId, NodesSearchBy request, Pageable pageRequest) {
-        Page<Node> nodesPage;
+        long minId = 0;
+        long maxId = Long.MAX_VALUE;
+        if (request.getAfterId() > 0) {
+            if (request.getSortAscending()) {
+                minId = request.getAfterId();
+            } else {
+                maxId = request.getAfterId();
+            }
+            pageRequest = PageRequest.of(
+                    0,
+                    pageRequest.getPageSize(),
+                    Sort.by(request.getSortAscending() ? Sort.Direction.ASC : Sort.Direction.DESC, "id"));
+        }
+        // Rejects unknown sort properties for every kind of search
+        Pageable nativePageRequest = NodeRepository.nativeSort(pageRequest);
+
+        List<Node> nodes;
+        long total;
+        Optional<SubnetUtils.SubnetInfo> network = parseNetwork(request.getSearchValue());
         if (request.getSearchType().equalsIgnoreCase(TAG)) {
             List<Long> tagIds = Arrays.stream(request.getSearchValue().split(","))
                     .map(Long::valueOf)
                     .toList();
-            nodesPage = nodeRepository.findByTenantIdAndTagIds(tenantId, tagIds, pageRequest);
+            nodes = nodeRepository.searchByTenantIdAndTagIds(tenantId, tagIds, minId, maxId, pageRequest);
+            total = nodeRepository.countByTenantIdAndTagIds(tenantId, tagIds);
+        } else if (network.isPresent()) {
+            InetAddress start = InetAddressUtils.addr(network.get().getLowAddress());
+            InetAddress end = InetAddressUtils.addr(network.get().getHighAddress());
+            nodes = nodeRepository.searchByTenantIdAndNetwork(tenantId, start, end, minId, maxId, pageRequest);
+            total = nodeRepository.countByTenantIdAndNetwork(tenantId, start, end);
         } else {
-            nodesPage = nodeRepository.findByTenantIdAndNodeLabelOrAliasLike(
-                    tenantId, request.getSearchValue(), pageRequest);
+            String pattern = NodeRepository.containsPattern(request.getSearchValue());
+            nodes = nodeRepository.searchByTenantIdAndSearchTerm(tenantId, pattern, minId, maxId, nativePageRequest);
+            total = nodeRepository.countByTenantIdAndSearchTerm(tenantId, pattern);
         }
 
+        Page<Node> nodesPage = new PageImpl<>(nodes, pageRequest, total);
         return NodeSearchResponseDTO.newBuilder()
                 .addAllNodes(
                         nodesPage.map(mapper::modelToDTOWithoutSnmpAndAzure).toList())
                 .setLastPage(Math.max(0, nodesPage.getTotalPages() - 1))
                 .setTotalNodes(nodesPage.getTotalElements())
                 .setNextPage(nodesPage.hasNext() ? nodesPage.nextPageable().getPageNumber() : 0)
+                .setLastId(nodes.isEmpty() ? 0 : nodes.get(nodes.size() - 1).getId())
                 .setTenantId(tenantId)
                 .build();
     }
+
+    private static Optional<SubnetUtils.SubnetInfo> parseNetwork(String searchValue) {
+        if (!searchValue.contains("/")) {
+            return Optional.empty();
+        }
+        try {
+            var utils = new SubnetUtils(searchValue.trim());
+            utils.setInclusiveHostCount(true);
+            return Optional.of(utils.getInfo());
+        } catch (IllegalArgumentException e) {
+            // Not a network, search it as text
+            return Optional.empty();
+        }
+    }
 }
@@ -39,6 +39,7 @@ import java.util.concurrent.ThreadFactory;
 import lombok.RequiredArgsConstructor;
 import org.apache.commons.net.util.SubnetUtils;
 import org.opennms.azure.contract.AzureScanRequest;
+import org.opennms.horizon.inventory.discovery.IcmpActiveDiscoveryDTO;
 import org.opennms.horizon.inventory.dto.IpInterfaceDTO;
 import org.opennms.horizon.inventory.dto.NodeDTO;
 import org.opennms.horizon.inventory.mapper.NodeMapper;
@@ -90,6 +91,32 @@ public class ScannerTaskSetService {
         sendNodeScannerTask(nodeDTO, locationId, snmpConfigs);
     }
 
+    /**
+     * Publish the node scans of all nodes as a single task set update.
+     */
+    public void sendNodeScannerTask(
+            List<NodeDTO> nodes, Long locationId, String tenantId, List<SnmpConfiguration> snmpConfigs) {
+        List<TaskDefinition> tasks = nodes.stream()
+                .map(node -> createNodeScanTask(node, locationId, new ArrayList<>(snmpConfigs)))
+                .flatMap(Optional::stream)
+                .toList();
+        if (!tasks.isEmpty()) {
+            taskSetPublisher.publishNewTasks(tenantId, locationId, tasks);
+        }
+    }
+
+    public static List<SnmpConfiguration> snmpConfigurations(IcmpActiveDiscoveryDTO icmpDiscoveryDTO) {
+        List<SnmpConfiguration> snmpConfigs = new ArrayList<>();
+        var snmpConf = icmpDiscoveryDTO.getSnmpConfig();
+        for (String readCommunity : snmpConf.getReadCommunityList()) {
+            snmpConfigs.add(SnmpConfiguration.newBuilder().setReadCommunity(readCommunity).build());
+        }
+        for (Integer port : snmpConf.getPortsList()) {
+            snmpConfigs.add(SnmpConfiguration.newBuilder().setPort(port).build());
+        }
+        return snmpConfigs;
+    }
+
     public void sendNodeScannerTask(NodeDTO node, Long locationId, List<SnmpConfiguration> snmpConfigs) {
         var taskDef = createNodeScanTask(node, locationId, snmpConfigs);
         taskDef.ifPresent(taskDefinition ->
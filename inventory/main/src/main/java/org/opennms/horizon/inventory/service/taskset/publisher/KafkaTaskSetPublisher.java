@@ -21,9 +21,19 @@
  */
 package org.opennms.horizon.inventory.service.taskset.publisher;
 
+import com.google.protobuf.CodedOutputStream;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.function.Consumer;
-import lombok.RequiredArgsConstructor;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.opennms.taskset.contract.TaskDefinition;
 import org.opennms.taskset.service.contract.AddSingleTaskOp;
@@ -36,7 +46,17 @@ import org.springframework.context.annotation.PropertySource;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Component;
 
-@RequiredArgsConstructor
+/**
+ * Publishes task updates to the task set service.
+ * <p>
+ * Updates for a tenant and location are collected for {@code inventory.task-set.publish-window-ms} after the first
+ * one and then sent as a single {@link UpdateTasksRequest}. Within a window only the last operation for a task is
+ * kept, so a task that is added and removed again is only removed.
+ * <p>
+ * A window is split into several requests of at most {@code inventory.task-set.max-ops-per-request} operations and
+ * {@link #MAX_REQUEST_BYTES} bytes, so large windows stay below the Kafka record size limit and a failed send only
+ * loses the operations of that one record.
+ */
 @Component
 @Slf4j
 @PropertySource("classpath:application.yml")
@@ -44,19 +64,57 @@ import org.springframework.stereotype.Component;
 public class KafkaTaskSetPublisher implements TaskSetPublisher {
 
     private static final String DEFAULT_TASK_SET_PUBLISH_TOPIC = "task-set-publisher";
+    public static final long DEFAULT_PUBLISH_WINDOW_MS = 200;
+    public static final int DEFAULT_MAX_OPS_PER_REQUEST = 1000;
+    // Well below the default Kafka max.request.size of 1 MiB
+    static final int MAX_REQUEST_BYTES = 512 * 1024;
+
     private final KafkaTemplate<String, byte[]> kafkaTemplate;
+    private final String kafkaTopic;
+    private final long publishWindowMs;
+    private final int maxOpsPerRequest;
+
+    private final Map<LocationKey, PendingUpdate> pending = new ConcurrentHashMap<>();
+    private final AtomicInteger pendingOps = new AtomicInteger();
+    private final ScheduledExecutorService flushExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "task-set-publish");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Counter collapsedOps;
+    private final Timer flushLatency;
 
-    @Value("${kafka.topics.task-set-publisher:" + DEFAULT_TASK_SET_PUBLISH_TOPIC + "}")
-    private String kafkaTopic;
+    public KafkaTaskSetPublisher(
+            KafkaTemplate<String, byte[]> kafkaTemplate,
+            MeterRegistry meterRegistry,
+            @Value("${kafka.topics.task-set-publisher:" + DEFAULT_TASK_SET_PUBLISH_TOPIC + "}") String kafkaTopic,
+            @Value("${inventory.task-set.publish-window-ms:" + DEFAULT_PUBLISH_WINDOW_MS + "}")
+                    long publishWindowMs,
+            @Value("${inventory.task-set.max-ops-per-request:" + DEFAULT_MAX_OPS_PER_REQUEST + "}")
+                    int maxOpsPerRequest) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.kafkaTopic = kafkaTopic;
+        this.publishWindowMs = publishWindowMs;
+        this.maxOpsPerRequest = Math.max(1, maxOpsPerRequest);
+
+        meterRegistry.gauge("task-set.publish.pending", pendingOps);
+        collapsedOps = meterRegistry.counter("task-set.publish.collapsed");
+        // Time from the first update of a window until it is sent
+        flushLatency = meterRegistry.timer("task-set.publish.flush.latency");
+    }
 
     @Override
     public void publishNewTasks(String tenantId, Long locationId, List<TaskDefinition> taskList) {
         log.info("Publishing task updates for tenantId={}; locationId={}; taskDef={}", tenantId, locationId, taskList);
-        publishTaskSetUpdate(
-                (updateBuilder) ->
-                        taskList.forEach((taskDefinition) -> addAdditionOpToTaskUpdate(updateBuilder, taskDefinition)),
+        enqueue(
                 tenantId,
-                locationId);
+                locationId,
+                taskList.stream()
+                        .map(taskDefinition -> UpdateSingleTaskOp.newBuilder()
+                                .setAddTask(AddSingleTaskOp.newBuilder().setTaskDefinition(taskDefinition))
+                                .build())
+                        .toList());
     }
 
     @Override
@@ -66,40 +124,114 @@ public class KafkaTaskSetPublisher implements TaskSetPublisher {
                 tenantId,
                 locationId,
                 taskIdList);
-        publishTaskSetUpdate(
-                (updateBuilder) -> taskIdList.forEach((taskId) -> addRemovalOpToUpdate(updateBuilder, taskId)),
+        enqueue(
                 tenantId,
-                locationId);
+                locationId,
+                taskIdList.stream()
+                        .map(taskId -> UpdateSingleTaskOp.newBuilder()
+                                .setRemoveTask(RemoveSingleTaskOp.newBuilder().setTaskId(taskId))
+                                .build())
+                        .toList());
     }
 
-    private void addAdditionOpToTaskUpdate(UpdateTasksRequest.Builder updateBuilder, TaskDefinition task) {
-        AddSingleTaskOp addOp =
-                AddSingleTaskOp.newBuilder().setTaskDefinition(task).build();
+    private void enqueue(String tenantId, Long locationId, List<UpdateSingleTaskOp> ops) {
+        if (ops.isEmpty()) {
+            return;
+        }
+        LocationKey key = new LocationKey(tenantId, locationId);
+        if (publishWindowMs <= 0 || flushExecutor.isShutdown()) {
+            PendingUpdate update = new PendingUpdate();
+            ops.forEach(update::put);
+            send(key, update);
+            return;
+        }
+        pending.compute(key, (k, update) -> {
+            if (update == null) {
+                update = new PendingUpdate();
+                flushExecutor.schedule(() -> flush(k), publishWindowMs, TimeUnit.MILLISECONDS);
+            }
+            for (UpdateSingleTaskOp op : ops) {
+                if (update.put(op)) {
+                    pendingOps.incrementAndGet();
+                } else {
+                    collapsedOps.increment();
+                }
+            }
+            return update;
+        });
+    }
+
+    private void flush(LocationKey key) {
+        PendingUpdate update = pending.remove(key);
+        if (update != null) {
+            pendingOps.addAndGet(-update.ops.size());
+            send(key, update);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        flushExecutor.shutdownNow();
+        flushPending();
+    }
 
-        UpdateSingleTaskOp updateOp =
-                UpdateSingleTaskOp.newBuilder().setAddTask(addOp).build();
+    void flushPending() {
+        pending.keySet().forEach(this::flush);
+    }
 
-        updateBuilder.addUpdate(updateOp);
+    private void send(LocationKey key, PendingUpdate update) {
+        UpdateTasksRequest.Builder request = newRequest(key);
+        int requestBytes = request.build().getSerializedSize();
+        for (UpdateSingleTaskOp op : update.ops.values()) {
+            int opBytes = CodedOutputStream.computeMessageSize(UpdateTasksRequest.UPDATE_FIELD_NUMBER, op);
+            if (request.getUpdateCount() > 0
+                    && (request.getUpdateCount() >= maxOpsPerRequest || requestBytes + opBytes > MAX_REQUEST_BYTES)) {
+                send(key, request.build());
+                request = newRequest(key);
+                requestBytes = request.build().getSerializedSize();
+            }
+            request.addUpdate(op);
+            requestBytes += opBytes;
+        }
+        send(key, request.build());
+        flushLatency.record(System.nanoTime() - update.createdAt, TimeUnit.NANOSECONDS);
     }
 
-    private void addRemovalOpToUpdate(UpdateTasksRequest.Builder updateBuilder, String taskId) {
-        RemoveSingleTaskOp removeOp =
-                RemoveSingleTaskOp.newBuilder().setTaskId(taskId).build();
+    private void send(LocationKey key, UpdateTasksRequest request) {
+        try {
+            kafkaTemplate.send(kafkaTopic, key.tenantId() + ":" + key.locationId(), request.toByteArray());
+        } catch (RuntimeException e) {
+            log.error(
+                    "Failed to publish {} task updates for tenantId={}; locationId={}",
+                    request.getUpdateCount(),
+                    key.tenantId(),
+                    key.locationId(),
+                    e);
+        }
+    }
 
-        UpdateSingleTaskOp updateOp =
-                UpdateSingleTaskOp.newBuilder().setRemoveTask(removeOp).build();
+    private static UpdateTasksRequest.Builder newRequest(LocationKey key) {
+        return UpdateTasksRequest.newBuilder()
+                .setTenantId(key.tenantId())
+                .setLocationId(String.valueOf(key.locationId()));
+    }
 
-        updateBuilder.addUpdate(updateOp);
+    private static String taskId(UpdateSingleTaskOp op) {
+        return op.hasAddTask() ? op.getAddTask().getTaskDefinition().getId() : op.getRemoveTask().getTaskId();
     }
 
-    private void publishTaskSetUpdate(
-            Consumer<UpdateTasksRequest.Builder> populateUpdateRequestOp, String tenantId, Long locationId) {
-        UpdateTasksRequest.Builder request =
-                UpdateTasksRequest.newBuilder().setTenantId(tenantId).setLocationId(String.valueOf(locationId));
+    private record LocationKey(String tenantId, Long locationId) {}
 
-        populateUpdateRequestOp.accept(request);
+    private static final class PendingUpdate {
+        private final long createdAt = System.nanoTime();
+        // Last operation per task id, in order of the first operation on the task
+        private final Map<String, UpdateSingleTaskOp> ops = new LinkedHashMap<>();
 
-        kafkaTemplate.send(
-                kafkaTopic, tenantId + ":" + locationId, request.build().toByteArray());
+        /**
+         * @return false if the operation replaced an earlier one for the same task
+         */
+        boolean put(UpdateSingleTaskOp op) {
+            return ops.put(taskId(op), op) == null;
+        }
     }
 }
@@ -21,17 +21,13 @@
  */
 package org.opennms.horizon.inventory.service.taskset.response;
 
-import java.time.LocalDateTime;
-import java.util.Objects;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.opennms.horizon.events.proto.Event;
 import org.opennms.horizon.events.proto.EventLog;
 import org.opennms.horizon.events.proto.EventParameter;
 import org.opennms.horizon.inventory.component.InternalEventProducer;
-import org.opennms.horizon.inventory.model.MonitoredEntityState;
 import org.opennms.horizon.inventory.monitoring.MonitoredEntityService;
-import org.opennms.horizon.inventory.repository.MonitoredEntityStateRepository;
 import org.opennms.horizon.inventory.repository.MonitoredServiceRepository;
 import org.opennms.horizon.inventory.repository.MonitoringLocationRepository;
 import org.opennms.horizon.shared.events.EventConstants;
@@ -43,7 +39,7 @@ import org.springframework.stereotype.Component;
 @RequiredArgsConstructor
 public class MonitorResponseService {
 
-    private final MonitoredEntityStateRepository monitoredEntityStateRepository;
+    private final MonitoredEntityStateTracker monitoredEntityStateTracker;
 
     private final MonitoredServiceRepository monitoredServiceRepository;
 
@@ -59,31 +55,27 @@ public class MonitorResponseService {
             return;
         }
 
-        final var monitoredEntity = monitoredEntityService.findServiceById(
-                tenantId, Long.parseLong(locationId), monitorResponse.getMonitoredEntityId());
-        if (monitoredEntity.isEmpty()) {
-            // Did not find the monitored entity for this response
-            return;
-        }
+        String monitoredEntityId = monitorResponse.getMonitoredEntityId();
+        boolean statusFromMonitor = "Up".equalsIgnoreCase(monitorResponse.getStatus());
+        Boolean knownState;
+        do {
+            knownState = monitoredEntityStateTracker.getState(tenantId, monitoredEntityId);
+            if (knownState != null && knownState == statusFromMonitor) {
+                // Nothing changed, which is the common case
+                return;
+            }
+            if (monitoredEntityService
+                    .findServiceById(tenantId, Long.parseLong(locationId), monitoredEntityId)
+                    .isEmpty()) {
+                // Did not find the monitored entity for this response
+                return;
+            }
+        } while (!monitoredEntityStateTracker.compareAndSet(
+                tenantId, monitoredEntityId, knownState, statusFromMonitor));
 
-        var optionalServiceState = monitoredEntityStateRepository.findByTenantIdAndMonitoredEntityId(
-                tenantId, monitorResponse.getMonitoredEntityId());
-        var previousState = Boolean.TRUE;
-        Boolean statusFromMonitor = "Up".equalsIgnoreCase(monitorResponse.getStatus()) ? Boolean.TRUE : Boolean.FALSE;
-        if (optionalServiceState.isPresent()) {
-            previousState = optionalServiceState.get().getServiceState();
-            var monitorServiceState = optionalServiceState.get();
-            monitorServiceState.setServiceState(statusFromMonitor);
-            monitoredEntityStateRepository.save(monitorServiceState);
-        } else {
-            MonitoredEntityState monitoredEntityState = new MonitoredEntityState();
-            monitoredEntityState.setTenantId(tenantId);
-            monitoredEntityState.setMonitoredEntityId(monitorResponse.getMonitoredEntityId());
-            monitoredEntityState.setServiceState(statusFromMonitor);
-            monitoredEntityState.setFirstObservationTime(LocalDateTime.now());
-            monitoredEntityStateRepository.save(monitoredEntityState);
-        }
-        if (!Objects.equals(statusFromMonitor, previousState)) {
+        // Entities are considered up until the first response tells otherwise
+        boolean previousState = knownState == null || knownState;
+        if (statusFromMonitor != previousState) {
             // State changed, send event
             triggerEvent(tenantId, locationId, monitorResponse, statusFromMonitor);
         }
@@ -0,0 +1,230 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.horizon.inventory.service.taskset.response;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import lombok.extern.slf4j.Slf4j;
+import org.opennms.horizon.inventory.model.MonitoredEntityState;
+import org.opennms.horizon.inventory.repository.MonitoredEntityStateRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps the last known Up/Down state of every monitored entity in memory, so monitor responses that do not change the
+ * state never touch the database.
+ * <p>
+ * The states of a tenant are loaded on its first monitor response. Changed states are written behind: they are
+ * queued per entity, so only the latest state of an entity is written, and upserted in batches every
+ * {@code inventory.monitor-state.flush-interval-ms}, or as soon as {@code inventory.monitor-state.flush-batch-size}
+ * states are pending.
+ */
+@Slf4j
+@Component
+public class MonitoredEntityStateTracker {
+
+    static final String UPSERT_SQL = "INSERT INTO monitored_entity_state"
+            + " (tenant_id, monitored_entity_id, service_state, first_observation_time) VALUES (?, ?, ?, ?)"
+            + " ON CONFLICT (tenant_id, monitored_entity_id) DO UPDATE SET service_state = EXCLUDED.service_state";
+
+    private final MonitoredEntityStateRepository monitoredEntityStateRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final long flushIntervalMs;
+    private final int flushBatchSize;
+
+    // Tenant id -> monitored entity id -> state, each tenant is its own shard
+    private final Map<String, Map<String, Boolean>> states = new ConcurrentHashMap<>();
+    private final Map<StateKey, PendingState> pending = new ConcurrentHashMap<>();
+    private final AtomicBoolean flushing = new AtomicBoolean();
+    private final ScheduledExecutorService flushExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "monitored-state-flush");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Counter upTransitions;
+    private final Counter downTransitions;
+    private final Counter flushFailures;
+    private final Timer flushTimer;
+    private final Timer flushLag;
+
+    public MonitoredEntityStateTracker(
+            MonitoredEntityStateRepository monitoredEntityStateRepository,
+            JdbcTemplate jdbcTemplate,
+            MeterRegistry meterRegistry,
+            @Value("${inventory.monitor-state.flush-interval-ms:1000}") long flushIntervalMs,
+            @Value("${inventory.monitor-state.flush-batch-size:500}") int flushBatchSize) {
+        this.monitoredEntityStateRepository = monitoredEntityStateRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.flushIntervalMs = flushIntervalMs;
+        this.flushBatchSize = flushBatchSize;
+
+        upTransitions = meterRegistry.counter("monitor.state.transitions", "state", "up");
+        downTransitions = meterRegistry.counter("monitor.state.transitions", "state", "down");
+        flushFailures = meterRegistry.counter("monitor.state.flush.failed");
+        flushTimer = meterRegistry.timer("monitor.state.flush");
+        // Time from the state change until it is written to the database
+        flushLag = meterRegistry.timer("monitor.state.flush.lag");
+        meterRegistry.gaugeMapSize("monitor.state.pending", List.of(), pending);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        flushExecutor.scheduleWithFixedDelay(this::flush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @EventListener(ContextClosedEvent.class)
+    public void stop() {
+        flushExecutor.shutdown();
+        try {
+            if (!flushExecutor.awaitTermination(flushIntervalMs, TimeUnit.MILLISECONDS)) {
+                log.warn("Timed out waiting for the monitored state flush to finish");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    /**
+     * @return the last known state of the monitored entity, or null if it was never seen
+     */
+    public Boolean getState(String tenantId, String monitoredEntityId) {
+        return getTenantStates(tenantId).get(monitoredEntityId);
+    }
+
+    /**
+     * Atomically move the monitored entity from the expected state (null if it was never seen) to the new one, and
+     * queue the new state for writing.
+     *
+     * @return false if the state of the entity changed concurrently
+     */
+    public boolean compareAndSet(String tenantId, String monitoredEntityId, Boolean expected, boolean state) {
+        Map<String, Boolean> tenantStates = getTenantStates(tenantId);
+        boolean updated = expected == null
+                ? tenantStates.putIfAbsent(monitoredEntityId, state) == null
+                : tenantStates.replace(monitoredEntityId, expected, state);
+        if (!updated) {
+            return false;
+        }
+        if (expected != null && expected != state) {
+            (state ? upTransitions : downTransitions).increment();
+        }
+        pending.put(new StateKey(tenantId, monitoredEntityId), new PendingState(state, System.nanoTime()));
+        if (pending.size() >= flushBatchSize && !flushing.get() && !flushExecutor.isShutdown()) {
+            flushExecutor.execute(this::flush);
+        }
+        return true;
+    }
+
+    private Map<String, Boolean> getTenantStates(String tenantId) {
+        Map<String, Boolean> tenantStates = states.get(tenantId);
+        if (tenantStates == null) {
+            // Load outside of the map, so other tenants are not blocked on the query
+            Map<String, Boolean> loaded = new ConcurrentHashMap<>();
+            for (MonitoredEntityState state : monitoredEntityStateRepository.findByTenantId(tenantId)) {
+                if (state.getMonitoredEntityId() != null && state.getServiceState() != null) {
+                    loaded.put(state.getMonitoredEntityId(), state.getServiceState());
+                }
+            }
+            log.debug("Loaded {} monitored entity states of tenant {}", loaded.size(), tenantId);
+            tenantStates = states.putIfAbsent(tenantId, loaded);
+            if (tenantStates == null) {
+                tenantStates = loaded;
+            }
+        }
+        return tenantStates;
+    }
+
+    void flush() {
+        if (!flushing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            while (!pending.isEmpty()) {
+                List<Map.Entry<StateKey, PendingState>> batch = takeBatch();
+                if (batch.isEmpty() || !write(batch)) {
+                    return;
+                }
+            }
+        } finally {
+            flushing.set(false);
+        }
+    }
+
+    private List<Map.Entry<StateKey, PendingState>> takeBatch() {
+        List<Map.Entry<StateKey, PendingState>> batch = new ArrayList<>(flushBatchSize);
+        Iterator<Map.Entry<StateKey, PendingState>> iterator = pending.entrySet().iterator();
+        while (iterator.hasNext() && batch.size() < flushBatchSize) {
+            Map.Entry<StateKey, PendingState> entry = iterator.next();
+            // A newer state queued meanwhile stays pending for the next batch
+            if (pending.remove(entry.getKey(), entry.getValue())) {
+                batch.add(Map.entry(entry.getKey(), entry.getValue()));
+            }
+        }
+        return batch;
+    }
+
+    private boolean write(List<Map.Entry<StateKey, PendingState>> batch) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> args = new ArrayList<>(batch.size());
+        for (Map.Entry<StateKey, PendingState> entry : batch) {
+            args.add(new Object[] {
+                entry.getKey().tenantId(), entry.getKey().monitoredEntityId(), entry.getValue().state(), now
+            });
+        }
+        long start = System.nanoTime();
+        try {
+            jdbcTemplate.batchUpdate(UPSERT_SQL, args);
+        } catch (RuntimeException e) {
+            log.error("Failed to write {} monitored entity states, retrying on next flush", batch.size(), e);
+            flushFailures.increment();
+            // Requeue unless a newer state is already pending
+            batch.forEach(entry -> pending.putIfAbsent(entry.getKey(), entry.getValue()));
+            return false;
+        }
+        long end = System.nanoTime();
+        flushTimer.record(end - start, TimeUnit.NANOSECONDS);
+        batch.forEach(entry -> flushLag.record(end - entry.getValue().changedAt(), TimeUnit.NANOSECONDS));
+        return true;
+    }
+
+    private record StateKey(String tenantId, String monitoredEntityId) {}
+
+    private record PendingState(boolean state, long changedAt) {}
+}
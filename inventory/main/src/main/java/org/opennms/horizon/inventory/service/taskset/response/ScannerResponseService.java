@@ -24,7 +24,6 @@ package org.opennms.horizon.inventory.service.taskset.response;
 import com.google.protobuf.Any;
 import com.google.protobuf.InvalidProtocolBufferException;
 import java.net.InetAddress;
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -36,9 +35,7 @@ import org.opennms.horizon.azure.api.AzureScanNetworkInterfaceItem;
 import org.opennms.horizon.azure.api.AzureScanResponse;
 import org.opennms.horizon.inventory.dto.ListTagsByEntityIdParamsDTO;
 import org.opennms.horizon.inventory.dto.NodeCreateDTO;
-import org.opennms.horizon.inventory.dto.NodeDTO;
 import org.opennms.horizon.inventory.dto.TagCreateDTO;
-import org.opennms.horizon.inventory.dto.TagCreateListDTO;
 import org.opennms.horizon.inventory.dto.TagEntityIdDTO;
 import org.opennms.horizon.inventory.exception.EntityExistException;
 import org.opennms.horizon.inventory.exception.LocationNotFoundException;
@@ -54,6 +51,7 @@ import org.opennms.horizon.inventory.repository.discovery.active.AzureActiveDisc
 import org.opennms.horizon.inventory.service.AzureInterfaceService;
 import org.opennms.horizon.inventory.service.IpInterfaceService;
 import org.opennms.horizon.inventory.service.MonitoredServiceService;
+import org.opennms.horizon.inventory.service.NodeOnboardingService;
 import org.opennms.horizon.inventory.service.NodeService;
 import org.opennms.horizon.inventory.service.SnmpConfigService;
 import org.opennms.horizon.inventory.service.SnmpInterfaceService;
@@ -89,6 +87,7 @@ public class ScannerResponseService {
     private final IpInterfaceRepository ipInterfaceRepository;
     private final MonitoredServiceService monitoredServiceService;
     private final MonitoredEntityService monitoredEntityService;
+    private final NodeOnboardingService nodeOnboardingService;
 
     public void accept(String tenantId, Long locationId, ScannerResponse response)
             throws InvalidProtocolBufferException {
@@ -128,61 +127,28 @@ public class ScannerResponseService {
 
     public void processDiscoveryScanResponse(
             String tenantId, Long locationId, DiscoveryScanResult discoveryScanResult) {
-        for (PingResponse pingResponse : discoveryScanResult.getPingResponseList()) {
-            var discoveryOptional =
-                    icmpActiveDiscoveryService.getDiscoveryById(discoveryScanResult.getActiveDiscoveryId(), tenantId);
-            if (discoveryOptional.isPresent()) {
-                var icmpDiscovery = discoveryOptional.get();
-                NodeCreateDTO createDTO = NodeCreateDTO.newBuilder()
-                        .setLocationId(String.valueOf(locationId))
-                        .setManagementIp(pingResponse.getIpAddress())
-                        .setLabel(pingResponse.getIpAddress())
-                        .addAllTags(getTagCreateDTO(icmpDiscovery.getId(), tenantId))
-                        .addDiscoveryIds(icmpDiscovery.getId())
-                        .build();
-                try {
-                    var optionalNode = nodeService.getNode(pingResponse.getIpAddress(), locationId, tenantId);
-                    if (optionalNode.isPresent()) {
-                        var nodeDTO = optionalNode.get();
-                        tagService.addTags(
-                                tenantId,
-                                TagCreateListDTO.newBuilder()
-                                        .addEntityIds(
-                                                TagEntityIdDTO.newBuilder().setNodeId(nodeDTO.getId()))
-                                        .addAllTags(createDTO.getTagsList())
-                                        .build());
-
-                        updateNodeWithDiscoveryIds(nodeDTO, icmpDiscovery.getId());
-                        nodeService.updateNodeMonitoredState(nodeDTO.getId(), nodeDTO.getTenantId());
-                        nodeService.sendNewNodeTaskSetAsync(nodeDTO, locationId, icmpDiscovery);
-                    } else {
-                        var node = nodeService.createNode(createDTO, ScanType.DISCOVERY_SCAN, tenantId);
-                        nodeService.updateNodeMonitoredState(node.getId(), node.getTenantId());
-                        nodeService.sendNewNodeTaskSetAsync(node, locationId, icmpDiscovery);
-                    }
-                } catch (Exception e) {
-                    log.error(
-                            "Exception while adding new device for tenantId={}; locationId={} with IP {}",
-                            tenantId,
-                            locationId,
-                            pingResponse.getIpAddress(),
-                            e);
-                }
-            }
+        var discoveryOptional =
+                icmpActiveDiscoveryService.getDiscoveryById(discoveryScanResult.getActiveDiscoveryId(), tenantId);
+        if (discoveryOptional.isEmpty()) {
+            log.warn("No ICMP Active Discovery found for id: {}", discoveryScanResult.getActiveDiscoveryId());
+            return;
         }
+        var icmpDiscovery = discoveryOptional.get();
+        List<String> ipAddresses = discoveryScanResult.getPingResponseList().stream()
+                .map(PingResponse::getIpAddress)
+                .toList();
+        int onboarded = nodeOnboardingService.onboardDiscoveredNodes(
+                tenantId, locationId, icmpDiscovery, getTagCreateDTO(icmpDiscovery.getId(), tenantId), ipAddresses);
+        log.info(
+                "Onboarded {} of {} discovered devices for tenantId={}; locationId={}",
+                onboarded,
+                ipAddresses.size(),
+                tenantId,
+                locationId);
 
         // this.monitoredEntityService.publishTaskSet(tenantId, locationId);
     }
 
-    private void updateNodeWithDiscoveryIds(NodeDTO nodeDTO, Long discoveryId) {
-        List<Long> discoveryIdsList = new ArrayList<>(nodeDTO.getDiscoveryIdsList());
-
-        if (!discoveryIdsList.contains(discoveryId)) {
-            discoveryIdsList.add(discoveryId);
-            nodeService.updateNodeDiscoveryIds(nodeDTO.getId(), nodeDTO.getTenantId(), discoveryIdsList);
-        }
-    }
-
     private void processAzureScanResponse(String tenantId, Long locationId, AzureScanResponse azureResponse) {
         for (AzureScanItem azureScanItem : azureResponse.getResultsList()) {
 
@@ -25,6 +25,8 @@ import static org.awaitility.Awaitility.await;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import com.google.protobuf.InvalidProtocolBufferException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.concurrent.TimeUnit;
@@ -46,6 +48,7 @@ import org.opennms.horizon.inventory.repository.MonitoredEntityStateRepository;
 import org.opennms.horizon.inventory.repository.MonitoredServiceRepository;
 import org.opennms.horizon.inventory.repository.MonitoringLocationRepository;
 import org.opennms.horizon.inventory.service.taskset.response.MonitorResponseService;
+import org.opennms.horizon.inventory.service.taskset.response.MonitoredEntityStateTracker;
 import org.opennms.horizon.inventory.service.taskset.response.ScannerResponseService;
 import org.opennms.horizon.shared.events.EventConstants;
 import org.opennms.taskset.contract.CollectorResponse;
@@ -53,6 +56,7 @@ import org.opennms.taskset.contract.MonitorResponse;
 import org.opennms.taskset.contract.ScannerResponse;
 import org.opennms.taskset.contract.TaskResult;
 import org.opennms.taskset.contract.TenantLocationSpecificTaskSetResults;
+import org.springframework.jdbc.core.JdbcTemplate;
 
 public class TaskSetResultsConsumerTest {
 
@@ -86,8 +90,15 @@ public class TaskSetResultsConsumerTest {
         mockMonitoringLocationRepository = Mockito.mock(MonitoringLocationRepository.class);
         mockEventProducer = Mockito.mock(InternalEventProducer.class);
 
-        monitorResponseService = Mockito.spy(new MonitorResponseService(
+        var monitoredEntityStateTracker = new MonitoredEntityStateTracker(
                 mockMonitoredEntityStateRepository,
+                Mockito.mock(JdbcTemplate.class),
+                new SimpleMeterRegistry(),
+                1000,
+                500);
+
+        monitorResponseService = Mockito.spy(new MonitorResponseService(
+                monitoredEntityStateTracker,
                 mockMonitoredServiceRepository,
                 mockMonitoringLocationRepository,
                 mockMonitoredEntityService,
@@ -235,8 +246,11 @@ public class TaskSetResultsConsumerTest {
 
         Mockito.when(mockMonitoredServiceRepository.findByIdAndTenantId(1, tenantId))
                 .thenReturn(Optional.of(new MonitoredService()));
-        Mockito.when(mockMonitoredEntityStateRepository.findByTenantIdAndMonitoredEntityId(tenantId, "test:1"))
-                .thenReturn(Optional.of(new MonitoredEntityState()));
+        var monitoredEntityState = new MonitoredEntityState();
+        monitoredEntityState.setTenantId(tenantId);
+        monitoredEntityState.setMonitoredEntityId("test:1");
+        Mockito.when(mockMonitoredEntityStateRepository.findByTenantId(tenantId))
+                .thenReturn(List.of(monitoredEntityState));
 
         var monitorResponse1 = MonitorResponse.newBuilder()
                 .setMonitorType("ICMP")
@@ -47,6 +47,8 @@ import org.mockito.ArgumentMatcher;
 import org.mockito.InOrder;
 import org.mockito.Mockito;
 import org.opennms.horizon.inventory.dto.IpInterfaceDTO;
+import org.opennms.horizon.inventory.dto.IpInterfacesByAddress;
+import org.opennms.horizon.inventory.dto.IpInterfacesQuery;
 import org.opennms.horizon.inventory.dto.MonitoredState;
 import org.opennms.horizon.inventory.dto.MonitoredStateQuery;
 import org.opennms.horizon.inventory.dto.MonitoringLocationDTO;
@@ -854,6 +856,65 @@ class NodeGrpcServiceTest {
         Mockito.verify(mockIpInterfaceDTOStreamObserver).onError(Mockito.argThat(matcher));
     }
 
+    @Test
+    void testGetIpInterfacesFromQuery() {
+        //
+        // Setup test data and interactions
+        //
+        IpInterfacesQuery request = IpInterfacesQuery.newBuilder()
+                .setLocationId(String.valueOf(TEST_LOCATION_ID))
+                .addIpAddresses("192.168.0.1")
+                .addIpAddresses("192.168.0.2")
+                .build();
+        IpInterfaceDTO ipInterfaceDTO = IpInterfaceDTO.newBuilder()
+                .setHostname("x-hostname-x")
+                .setIpAddress("192.168.0.1")
+                .setNodeId(363636L)
+                .build();
+        StreamObserver<IpInterfacesByAddress> mockStreamObserver = Mockito.mock(StreamObserver.class);
+        Mockito.when(mockIpInterfaceService.findByIpAddressesAndLocationIdAndTenantId(
+                        request.getIpAddressesList(), request.getLocationId(), TEST_TENANT_ID))
+                .thenReturn(Map.of("192.168.0.1", ipInterfaceDTO));
+
+        //
+        // Execute
+        //
+        target.getIpInterfacesFromQuery(request, mockStreamObserver);
+
+        //
+        // Validate
+        //
+        Mockito.verify(mockStreamObserver)
+                .onNext(IpInterfacesByAddress.newBuilder()
+                        .putIpInterfaces("192.168.0.1", ipInterfaceDTO)
+                        .build());
+        Mockito.verify(mockStreamObserver).onCompleted();
+    }
+
+    @Test
+    void testGetIpInterfacesFromQueryLocationNotFound() {
+        //
+        // Setup test data and interactions
+        //
+        IpInterfacesQuery request = IpInterfacesQuery.newBuilder()
+                .setLocationId("9999")
+                .addIpAddresses("192.168.0.1")
+                .build();
+        StreamObserver<IpInterfacesByAddress> mockStreamObserver = Mockito.mock(StreamObserver.class);
+
+        //
+        // Execute
+        //
+        target.getIpInterfacesFromQuery(request, mockStreamObserver);
+
+        //
+        // Validate
+        //
+        StatusRuntimeExceptionMatcher matcher = new StatusRuntimeExceptionMatcher(
+                this::statusExceptionMatchesNotFound, NodeGrpcService.INVALID_REQUEST_LOCATION_AND_IP_NOT_EMPTY_MSG);
+        Mockito.verify(mockStreamObserver).onError(Mockito.argThat(matcher));
+    }
+
     @Test
     void testGetIpInterfaceFromMissingTenant() {
         //
@@ -21,11 +21,13 @@
  */
 package org.opennms.horizon.inventory.repository;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Disabled;
@@ -39,6 +41,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.test.context.DynamicPropertyRegistry;
 import org.springframework.test.context.DynamicPropertySource;
 import org.testcontainers.containers.PostgreSQLContainer;
@@ -97,6 +101,24 @@ public class NodeRepositoryTest {
         Assertions.assertFalse(result.isEmpty());
     }
 
+    @Test
+    public void testSearchByTenantIdAndSearchTermSortedByNodeLabel() {
+        for (String label : List.of("node-b", "node-c", "node-a", "other")) {
+            Node node = new Node();
+            node.setTenantId("sorted-tenant");
+            node.setNodeLabel(label);
+            nodeRepository.save(node);
+        }
+
+        var result = nodeRepository.searchByTenantIdAndSearchTerm(
+                "sorted-tenant",
+                NodeRepository.containsPattern("node-"),
+                0,
+                Long.MAX_VALUE,
+                NodeRepository.nativeSort(PageRequest.of(0, 2, Sort.by(Sort.Direction.DESC, "nodeLabel"))));
+        assertEquals(List.of("node-c", "node-b"), result.stream().map(Node::getNodeLabel).toList());
+    }
+
     @Test
     public void testAddNewRecordWithSameLocationAndIpAddressThrowException() {
 
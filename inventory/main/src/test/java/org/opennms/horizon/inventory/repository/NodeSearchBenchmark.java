@@ -0,0 +1,181 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.horizon.inventory.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.net.InetAddress;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+import javax.sql.DataSource;
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.opennms.horizon.inventory.model.MonitoringLocation;
+import org.opennms.horizon.inventory.model.Node;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+/**
+ * Measures the latency of the node searches for inventories of 10k, 100k and 1M nodes with one interface each.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(NodeSearchBenchmark.Config.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Disabled
+// For developer test only
+public class NodeSearchBenchmark {
+    private static final String TENANT_ID = "opennms-prime";
+    private static final int RUNS = 20;
+    private static final PageRequest FIRST_PAGE = PageRequest.of(0, 10, Sort.by("id"));
+    private static final PageRequest FIRST_PAGE_BY_LABEL = PageRequest.of(0, 10, Sort.by("nodeLabel"));
+
+    private static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:14.5-alpine")
+            .withDatabaseName("inventory")
+            .withUsername("inventory")
+            .withPassword("password")
+            .withExposedPorts(5432);
+
+    static {
+        postgres.start();
+    }
+
+    @TestConfiguration
+    static class Config {
+        @Bean
+        JdbcTemplate jdbcTemplate(DataSource dataSource) {
+            return new JdbcTemplate(dataSource);
+        }
+    }
+
+    @Autowired
+    private NodeRepository nodeRepository;
+
+    @Autowired
+    private MonitoringLocationRepository monitoringLocationRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @DynamicPropertySource
+    static void registerDatasourceProperties(DynamicPropertyRegistry registry) {
+        registry.add(
+                "spring.datasource.url",
+                () -> String.format(
+                        "jdbc:postgresql://localhost:%d/%s",
+                        postgres.getFirstMappedPort(), postgres.getDatabaseName()));
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {10_000, 100_000, 1_000_000})
+    void testSearchLatency(int nodes) throws Exception {
+        populate(nodes);
+
+        // Matches node-4242, node-14242, ... in the label and host-4242, ... in the host name
+        String pattern = NodeRepository.containsPattern("4242");
+        long matches = nodeRepository.countByTenantIdAndSearchTerm(TENANT_ID, pattern);
+        measure(nodes, "label/host name count", () -> nodeRepository.countByTenantIdAndSearchTerm(TENANT_ID, pattern));
+        measure(nodes, "label/host name page", () -> nodeRepository.searchByTenantIdAndSearchTerm(
+                TENANT_ID, pattern, 0, Long.MAX_VALUE, FIRST_PAGE));
+        // Sorted like the node list of the UI
+        measure(nodes, "label/host name page by label", () -> nodeRepository.searchByTenantIdAndSearchTerm(
+                TENANT_ID, pattern, 0, Long.MAX_VALUE, NodeRepository.nativeSort(FIRST_PAGE_BY_LABEL)));
+
+        String ipPattern = NodeRepository.containsPattern("10.0.1.");
+        measure(nodes, "address prefix page", () -> nodeRepository.searchByTenantIdAndSearchTerm(
+                TENANT_ID, ipPattern, 0, Long.MAX_VALUE, FIRST_PAGE));
+
+        InetAddress start = InetAddress.getByName("10.0.2.0");
+        InetAddress end = InetAddress.getByName("10.0.2.255");
+        assertEquals(256, nodeRepository.countByTenantIdAndNetwork(TENANT_ID, start, end));
+        measure(nodes, "network page", () -> nodeRepository.searchByTenantIdAndNetwork(
+                TENANT_ID, start, end, 0, Long.MAX_VALUE, FIRST_PAGE));
+
+        // Deep page by offset compared to the same page by keyset
+        String all = NodeRepository.containsPattern("node-");
+        int offsetPage = nodes / 10 / 2;
+        List<Node> page = nodeRepository.searchByTenantIdAndSearchTerm(
+                TENANT_ID, all, 0, Long.MAX_VALUE, PageRequest.of(offsetPage - 1, 10, Sort.by("id")));
+        long afterId = page.get(page.size() - 1).getId();
+        measure(nodes, "offset page " + offsetPage, () -> nodeRepository.searchByTenantIdAndSearchTerm(
+                TENANT_ID, all, 0, Long.MAX_VALUE, PageRequest.of(offsetPage, 10, Sort.by("id"))));
+        measure(nodes, "keyset page " + offsetPage, () -> nodeRepository.searchByTenantIdAndSearchTerm(
+                TENANT_ID, all, afterId, Long.MAX_VALUE, FIRST_PAGE));
+
+        System.out.printf("%d nodes: %d matches for '4242'%n", nodes, matches);
+    }
+
+    private void populate(int nodes) {
+        jdbcTemplate.execute("TRUNCATE node, ip_interface, monitoring_location CASCADE");
+
+        MonitoringLocation location = new MonitoringLocation();
+        location.setTenantId(TENANT_ID);
+        location.setLocation("benchmark");
+        location = monitoringLocationRepository.save(location);
+
+        jdbcTemplate.update(
+                "INSERT INTO node (tenant_id, node_label, node_alias, create_time, monitoring_location_id)"
+                        + " SELECT ?, 'node-' || i || '.example.com', CASE WHEN i % 10 = 0 THEN 'alias-' || i END,"
+                        + " now(), ? FROM generate_series(1, ?) AS i",
+                TENANT_ID,
+                location.getId(),
+                nodes);
+        jdbcTemplate.update(
+                "INSERT INTO ip_interface (tenant_id, node_id, ip_address, ip_hostname, snmp_primary, location_id)"
+                        + " SELECT tenant_id, id, '10.0.0.0'::inet + (row_number() OVER (ORDER BY id) - 1),"
+                        + " 'host-' || substring(node_label from 6), true, ? FROM node",
+                location.getId());
+        jdbcTemplate.execute("ANALYZE node");
+        jdbcTemplate.execute("ANALYZE ip_interface");
+    }
+
+    private static void measure(int nodes, String search, Supplier<?> query) {
+        // Warm up caches and plans
+        query.get();
+        long[] latencies = new long[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            query.get();
+            latencies[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(latencies);
+        System.out.printf(
+                "%d nodes, %s: median %.2f ms, max %.2f ms%n",
+                nodes, search, latencies[RUNS / 2] / 1e6, latencies[RUNS - 1] / 1e6);
+    }
+}
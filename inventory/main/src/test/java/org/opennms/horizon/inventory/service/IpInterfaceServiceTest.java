@@ -118,6 +118,35 @@ public class IpInterfaceServiceTest {
         assertSame(testIpInterfaceDTO, result.get());
     }
 
+    @Test
+    void testFindByIpAddressesAndLocationIdAndTenantId() {
+        //
+        // Setup Test Data and Interactions
+        //
+        var primaryIpInterface = new IpInterface();
+        primaryIpInterface.setIpAddress(new IPAddress("10.0.0.1").toInetAddress());
+        primaryIpInterface.setSnmpPrimary(true);
+        var secondaryIpInterface = new IpInterface();
+        secondaryIpInterface.setIpAddress(new IPAddress("10.0.0.1").toInetAddress());
+        var primaryIpInterfaceDTO = IpInterfaceDTO.newBuilder().setId(1717).build();
+
+        Mockito.when(mockIpInterfaceRepository.findByIpAddressInAndLocationIdAndTenantId(
+                        Mockito.anyCollection(), Mockito.eq(TEST_LOCATION_ID), Mockito.eq(TEST_TENANT_ID)))
+                .thenReturn(List.of(secondaryIpInterface, primaryIpInterface));
+        Mockito.when(mockIpInterfaceMapper.modelToDTO(primaryIpInterface)).thenReturn(primaryIpInterfaceDTO);
+
+        //
+        // Execute
+        //
+        var result = target.findByIpAddressesAndLocationIdAndTenantId(
+                List.of("10.0.0.1", "10.0.0.2", "[::1"), TEST_LOCATION_ID_TEXT, TEST_TENANT_ID);
+
+        //
+        // Verify the Results
+        //
+        assertEquals(Map.of("10.0.0.1", primaryIpInterfaceDTO), result);
+    }
+
     @Test
     void testCreateFromAzureScanResult() {
         //
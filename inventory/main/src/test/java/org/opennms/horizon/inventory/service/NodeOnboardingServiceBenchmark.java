@@ -0,0 +1,171 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.horizon.inventory.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import javax.sql.DataSource;
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+import org.opennms.horizon.inventory.component.NodeKafkaProducer;
+import org.opennms.horizon.inventory.component.TagPublisher;
+import org.opennms.horizon.inventory.discovery.IcmpActiveDiscoveryDTO;
+import org.opennms.horizon.inventory.dto.NodeDTO;
+import org.opennms.horizon.inventory.dto.TagCreateDTO;
+import org.opennms.horizon.inventory.mapper.NodeMapper;
+import org.opennms.horizon.inventory.model.MonitoringLocation;
+import org.opennms.horizon.inventory.model.Node;
+import org.opennms.horizon.inventory.repository.MonitoringLocationRepository;
+import org.opennms.horizon.inventory.repository.NodeRepository;
+import org.opennms.horizon.inventory.service.taskset.ScannerTaskSetService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+/**
+ * Onboards the result of a /16 ping sweep, once into an empty inventory and once again with all nodes existing.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({NodeOnboardingService.class, NodeOnboardingServiceBenchmark.Config.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Disabled
+// For developer test only
+public class NodeOnboardingServiceBenchmark {
+    private static final String TENANT_ID = "opennms-prime";
+    private static final int ADDRESSES = 65_536;
+
+    private static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:14.5-alpine")
+            .withDatabaseName("inventory")
+            .withUsername("inventory")
+            .withPassword("password")
+            .withExposedPorts(5432);
+
+    static {
+        postgres.start();
+    }
+
+    @TestConfiguration
+    static class Config {
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+
+        @Bean
+        JdbcTemplate jdbcTemplate(DataSource dataSource) {
+            return new JdbcTemplate(dataSource);
+        }
+    }
+
+    @Autowired
+    private NodeOnboardingService nodeOnboardingService;
+
+    @Autowired
+    private MonitoringLocationRepository monitoringLocationRepository;
+
+    @Autowired
+    private NodeRepository nodeRepository;
+
+    @MockBean
+    private NodeMapper nodeMapper;
+
+    @MockBean
+    private NodeKafkaProducer nodeKafkaProducer;
+
+    @MockBean
+    private TagPublisher tagPublisher;
+
+    @MockBean
+    private ScannerTaskSetService scannerTaskSetService;
+
+    @DynamicPropertySource
+    static void registerDatasourceProperties(DynamicPropertyRegistry registry) {
+        registry.add(
+                "spring.datasource.url",
+                () -> String.format(
+                        "jdbc:postgresql://localhost:%d/%s",
+                        postgres.getFirstMappedPort(), postgres.getDatabaseName()));
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+    }
+
+    @Test
+    void testOnboardSlash16() {
+        when(nodeMapper.modelToDTO(any(Node.class))).thenAnswer(invocation -> NodeDTO.newBuilder()
+                .setId(invocation.getArgument(0, Node.class).getId())
+                .build());
+
+        MonitoringLocation location = new MonitoringLocation();
+        location.setTenantId(TENANT_ID);
+        location.setLocation("benchmark");
+        location = monitoringLocationRepository.save(location);
+
+        List<String> addresses = new ArrayList<>(ADDRESSES);
+        for (int i = 0; i < ADDRESSES; i++) {
+            addresses.add("10.42." + (i >> 8) + "." + (i & 0xFF));
+        }
+        var discovery = IcmpActiveDiscoveryDTO.newBuilder().setId(1).build();
+        var tags = List.of(TagCreateDTO.newBuilder().setName("default").build());
+
+        long start = System.nanoTime();
+        int created = nodeOnboardingService.onboardDiscoveredNodes(
+                TENANT_ID, location.getId(), discovery, tags, addresses);
+        long creating = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        int existing = nodeOnboardingService.onboardDiscoveredNodes(
+                TENANT_ID, location.getId(), discovery, tags, addresses);
+        long updating = System.nanoTime() - start;
+
+        System.out.printf(
+                "Created %d nodes in %d ms, updated %d existing nodes in %d ms%n",
+                created, creating / 1_000_000, existing, updating / 1_000_000);
+
+        assertEquals(ADDRESSES, created);
+        assertEquals(ADDRESSES, existing);
+        assertEquals(ADDRESSES, nodeRepository.findByTenantId(TENANT_ID).size());
+        // One task set update per onboarding
+        verify(scannerTaskSetService, times(2)).sendNodeScannerTask(anyList(), anyLong(), eq(TENANT_ID), anyList());
+    }
+}
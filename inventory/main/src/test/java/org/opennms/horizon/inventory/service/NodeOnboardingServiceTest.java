@@ -0,0 +1,335 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.horizon.inventory.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import javax.sql.DataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.opennms.horizon.inventory.component.NodeKafkaProducer;
+import org.opennms.horizon.inventory.component.TagPublisher;
+import org.opennms.horizon.inventory.discovery.IcmpActiveDiscoveryDTO;
+import org.opennms.horizon.inventory.dto.MonitoredState;
+import org.opennms.horizon.inventory.dto.NodeDTO;
+import org.opennms.horizon.inventory.dto.TagCreateDTO;
+import org.opennms.horizon.inventory.mapper.NodeMapper;
+import org.opennms.horizon.inventory.model.IpInterface;
+import org.opennms.horizon.inventory.model.MonitoringLocation;
+import org.opennms.horizon.inventory.model.Node;
+import org.opennms.horizon.inventory.repository.IpInterfaceRepository;
+import org.opennms.horizon.inventory.repository.MonitoringLocationRepository;
+import org.opennms.horizon.inventory.repository.NodeRepository;
+import org.opennms.horizon.inventory.service.taskset.ScannerTaskSetService;
+import org.opennms.horizon.shared.utils.InetAddressUtils;
+import org.opennms.taskset.contract.ScanType;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+/**
+ * Onboards discovered addresses into a real database, as the service relies on batch SQL the entities do not see.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({NodeOnboardingService.class, NodeOnboardingServiceTest.Config.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Testcontainers(disabledWithoutDocker = true)
+class NodeOnboardingServiceTest {
+    private static final String TENANT_ID = "opennms-prime";
+
+    @Container
+    private static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:14.5-alpine")
+            .withDatabaseName("inventory")
+            .withUsername("inventory")
+            .withPassword("password");
+
+    @TestConfiguration
+    static class Config {
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+
+        @Bean
+        JdbcTemplate jdbcTemplate(DataSource dataSource) {
+            return new JdbcTemplate(dataSource);
+        }
+    }
+
+    @Autowired
+    private NodeOnboardingService nodeOnboardingService;
+
+    @Autowired
+    private MonitoringLocationRepository monitoringLocationRepository;
+
+    @Autowired
+    private NodeRepository nodeRepository;
+
+    @Autowired
+    private IpInterfaceRepository ipInterfaceRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @MockBean
+    private NodeMapper nodeMapper;
+
+    @MockBean
+    private NodeKafkaProducer nodeKafkaProducer;
+
+    @MockBean
+    private TagPublisher tagPublisher;
+
+    @MockBean
+    private ScannerTaskSetService scannerTaskSetService;
+
+    private MonitoringLocation location;
+
+    // Nodes handed to the mapper, as published after onboarding
+    private final List<Node> mappedNodes = new ArrayList<>();
+
+    // Counts of the meters before the test, they are shared by all tests of the class
+    private double createdBefore;
+    private double existingBefore;
+    private double skippedBefore;
+
+    @DynamicPropertySource
+    static void registerDatasourceProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+    }
+
+    @BeforeEach
+    void setUp() {
+        when(nodeMapper.modelToDTO(any(Node.class))).thenAnswer(invocation -> {
+            Node node = invocation.getArgument(0, Node.class);
+            mappedNodes.add(node);
+            return NodeDTO.newBuilder().setId(node.getId()).build();
+        });
+
+        location = new MonitoringLocation();
+        location.setTenantId(TENANT_ID);
+        location.setLocation("onboarding");
+        location = monitoringLocationRepository.save(location);
+
+        createdBefore = count("created");
+        existingBefore = count("existing");
+        skippedBefore = count("skipped");
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM node_tag");
+        jdbcTemplate.update("DELETE FROM ip_interface");
+        jdbcTemplate.update("DELETE FROM node");
+        jdbcTemplate.update("DELETE FROM tag");
+        jdbcTemplate.update("DELETE FROM monitoring_location");
+    }
+
+    @Test
+    void testCreatesNodes() {
+        int onboarded = onboard(1, List.of("10.0.0.1", "10.0.0.2", "10.0.0.1"), "default");
+
+        assertEquals(2, onboarded);
+        List<Node> nodes = nodeRepository.findByTenantId(TENANT_ID);
+        assertEquals(
+                Set.of("10.0.0.1", "10.0.0.2"),
+                nodes.stream().map(Node::getNodeLabel).collect(Collectors.toSet()));
+        for (Node node : nodes) {
+            assertEquals(ScanType.DISCOVERY_SCAN, node.getScanType());
+            assertEquals(MonitoredState.MONITORED, node.getMonitoredState());
+            assertEquals(List.of(1L), node.getDiscoveryIds());
+            assertEquals(location.getId(), node.getMonitoringLocationId());
+        }
+        assertEquals(
+                2,
+                jdbcTemplate.queryForObject(
+                        "SELECT count(*) FROM ip_interface WHERE tenant_id = ? AND snmp_primary",
+                        Integer.class,
+                        TENANT_ID));
+        assertCounted(2, 0, 0);
+        verify(scannerTaskSetService)
+                .sendNodeScannerTask(argThat(list -> list.size() == 2), eq(location.getId()), eq(TENANT_ID), anyList());
+    }
+
+    @Test
+    void testUpdatesExistingDiscoveredNode() {
+        onboard(1, List.of("10.0.0.1"), "discovered");
+        Node node = nodeRepository.findByTenantId(TENANT_ID).get(0);
+        assertEquals(MonitoredState.DETECTED, node.getMonitoredState());
+        // A second address of the same node, discovered along with the first one
+        addInterface(node, "10.0.0.2", false);
+        mappedNodes.clear();
+
+        int onboarded = onboard(2, List.of("10.0.0.1", "10.0.0.2"), "default");
+
+        assertEquals(1, onboarded);
+        assertCounted(1, 1, 0);
+        assertEquals(1, nodeRepository.findByTenantId(TENANT_ID).size());
+        Node updated = nodeRepository.findById(node.getId()).orElseThrow();
+        assertEquals(List.of(1L, 2L), updated.getDiscoveryIds());
+        assertEquals(MonitoredState.MONITORED, updated.getMonitoredState());
+        // The published node reflects the updates
+        assertEquals(1, mappedNodes.size());
+        assertEquals(List.of(1L, 2L), mappedNodes.get(0).getDiscoveryIds());
+        assertEquals(MonitoredState.MONITORED, mappedNodes.get(0).getMonitoredState());
+    }
+
+    @Test
+    void testSkipsAddressOfOtherDevice() {
+        Node device = new Node();
+        device.setTenantId(TENANT_ID);
+        device.setNodeLabel("device");
+        device.setScanType(ScanType.NODE_SCAN);
+        device.setCreateTime(LocalDateTime.now());
+        device.setMonitoringLocation(location);
+        device = nodeRepository.save(device);
+        addInterface(device, "10.0.0.1", true);
+
+        int onboarded = onboard(1, List.of("10.0.0.1"), "default");
+
+        assertEquals(0, onboarded);
+        assertCounted(0, 0, 1);
+        assertEquals(1, nodeRepository.findByTenantId(TENANT_ID).size());
+        assertEquals(List.of(), nodeRepository.findById(device.getId()).orElseThrow().getDiscoveryIds());
+    }
+
+    @Test
+    void testSkipsAddressAddedConcurrently() {
+        // Invisible to the lookup of the tenant's interfaces, like one added after it, but still taking the address
+        Node device = new Node();
+        device.setTenantId("other-tenant");
+        device.setNodeLabel("device");
+        device.setScanType(ScanType.NODE_SCAN);
+        device.setCreateTime(LocalDateTime.now());
+        device.setMonitoringLocation(location);
+        device = nodeRepository.save(device);
+        jdbcTemplate.update(
+                "INSERT INTO ip_interface (tenant_id, node_id, ip_address, snmp_primary, location_id)"
+                        + " VALUES ('other-tenant', ?, '10.0.0.1'::inet, true, ?)",
+                device.getId(),
+                location.getId());
+
+        int onboarded = onboard(1, List.of("10.0.0.1", "10.0.0.2"), "default");
+
+        // Only the conflicting address is lost, not the whole chunk
+        assertEquals(1, onboarded);
+        assertCounted(1, 0, 1);
+        List<Node> nodes = nodeRepository.findByTenantId(TENANT_ID);
+        assertEquals(List.of("10.0.0.2"), nodes.stream().map(Node::getNodeLabel).toList());
+    }
+
+    @Test
+    void testAssignsTagsOnce() {
+        onboard(1, List.of("10.0.0.1"), "default", "discovered");
+        onboard(2, List.of("10.0.0.1"), "default", "discovered");
+
+        long nodeId = nodeRepository.findByTenantId(TENANT_ID).get(0).getId();
+        assertEquals(
+                2,
+                jdbcTemplate.queryForObject("SELECT count(*) FROM node_tag WHERE node_id = ?", Integer.class, nodeId));
+        assertEquals(
+                2,
+                jdbcTemplate.queryForObject("SELECT count(*) FROM tag WHERE tenant_id = ?", Integer.class, TENANT_ID));
+        assertCounted(1, 1, 0);
+    }
+
+    @Test
+    void testPublishesNodeScansPerChunk() {
+        List<String> addresses = new ArrayList<>();
+        for (int i = 0; i <= NodeOnboardingService.CHUNK_SIZE; i++) {
+            addresses.add("10.0." + (i / 256) + "." + (i % 256));
+        }
+
+        int onboarded = onboard(1, addresses, "default");
+
+        assertEquals(NodeOnboardingService.CHUNK_SIZE + 1, onboarded);
+        verify(scannerTaskSetService)
+                .sendNodeScannerTask(
+                        argThat(list -> list.size() == NodeOnboardingService.CHUNK_SIZE),
+                        eq(location.getId()),
+                        eq(TENANT_ID),
+                        anyList());
+        verify(scannerTaskSetService)
+                .sendNodeScannerTask(argThat(list -> list.size() == 1), eq(location.getId()), eq(TENANT_ID), anyList());
+    }
+
+    private int onboard(long discoveryId, List<String> addresses, String... tagNames) {
+        var discovery = IcmpActiveDiscoveryDTO.newBuilder().setId(discoveryId).build();
+        var tags = Arrays.stream(tagNames)
+                .map(name -> TagCreateDTO.newBuilder().setName(name).build())
+                .toList();
+        return nodeOnboardingService.onboardDiscoveredNodes(TENANT_ID, location.getId(), discovery, tags, addresses);
+    }
+
+    private void addInterface(Node node, String address, boolean snmpPrimary) {
+        IpInterface ipInterface = new IpInterface();
+        ipInterface.setNode(node);
+        ipInterface.setTenantId(TENANT_ID);
+        ipInterface.setIpAddress(InetAddressUtils.getInetAddress(address));
+        ipInterface.setSnmpPrimary(snmpPrimary);
+        ipInterface.setLocation(location);
+        ipInterfaceRepository.save(ipInterface);
+    }
+
+    private double count(String result) {
+        return meterRegistry.counter("discovery.onboarding.nodes", "result", result).count();
+    }
+
+    private void assertCounted(int created, int existing, int skipped) {
+        assertEquals(created, count("created") - createdBefore, 0);
+        assertEquals(existing, count("existing") - existingBefore, 0);
+        assertEquals(skipped, count("skipped") - skippedBefore, 0);
+    }
+}
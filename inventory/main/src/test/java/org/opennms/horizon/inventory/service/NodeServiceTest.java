@@ -27,6 +27,7 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.mockito.AdditionalAnswers.returnsFirstArg;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.doAnswer;
@@ -62,6 +63,7 @@ import org.opennms.horizon.inventory.dto.MonitoredState;
 import org.opennms.horizon.inventory.dto.NodeCreateDTO;
 import org.opennms.horizon.inventory.dto.NodeDTO;
 import org.opennms.horizon.inventory.dto.NodeUpdateDTO;
+import org.opennms.horizon.inventory.dto.NodesSearchBy;
 import org.opennms.horizon.inventory.dto.TagCreateDTO;
 import org.opennms.horizon.inventory.exception.EntityExistException;
 import org.opennms.horizon.inventory.exception.InventoryRuntimeException;
@@ -84,6 +86,8 @@ import org.opennms.horizon.inventory.service.taskset.ScannerTaskSetService;
 import org.opennms.horizon.inventory.service.taskset.publisher.TaskSetPublisher;
 import org.opennms.node.scan.contract.NodeInfoResult;
 import org.opennms.taskset.contract.ScanType;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 
 public class NodeServiceTest {
 
@@ -706,4 +710,69 @@ public class NodeServiceTest {
         verify(mockNodeRepository, times(0)).findByNodeAliasAndTenantId(any(), any());
         assertEquals(testNode.getId(), updatedNodeId);
     }
+
+    @Test
+    void testSearchNodesBySearchTerm() {
+        var node = new Node();
+        node.setTenantId(TENANT_ID);
+        node.setId(7);
+        node.setNodeLabel("node_1");
+        var pageRequest = PageRequest.of(1, 10, Sort.by("nodeLabel"));
+        // Native query, sorted by the column
+        when(mockNodeRepository.searchByTenantIdAndSearchTerm(
+                        TENANT_ID, "%node\\_1%", 0, Long.MAX_VALUE, PageRequest.of(1, 10, Sort.by("node_label"))))
+                .thenReturn(List.of(node));
+        when(mockNodeRepository.countByTenantIdAndSearchTerm(TENANT_ID, "%node\\_1%"))
+                .thenReturn(11L);
+
+        var response = nodeService.searchNodes(
+                TENANT_ID,
+                NodesSearchBy.newBuilder().setSearchValue("Node_1").build(),
+                pageRequest);
+
+        assertEquals(1, response.getNodesCount());
+        assertEquals(11, response.getTotalNodes());
+        assertEquals(1, response.getLastPage());
+        assertEquals(0, response.getNextPage());
+        assertEquals(7, response.getLastId());
+    }
+
+    @Test
+    void testSearchNodesRejectsUnknownSortProperty() {
+        var request = NodesSearchBy.newBuilder().setSearchValue("node").build();
+        var pageRequest = PageRequest.of(0, 10, Sort.by("node_label; DROP TABLE node"));
+
+        assertThatThrownBy(() -> nodeService.searchNodes(TENANT_ID, request, pageRequest))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("cannot be sorted by");
+        verify(mockNodeRepository, times(0)).searchByTenantIdAndSearchTerm(any(), any(), anyLong(), anyLong(), any());
+    }
+
+    @Test
+    void testSearchNodesByNetworkAfterId() throws Exception {
+        var node = new Node();
+        node.setTenantId(TENANT_ID);
+        node.setId(101);
+        var start = InetAddress.getByName("10.0.1.0");
+        var end = InetAddress.getByName("10.0.1.255");
+        when(mockNodeRepository.searchByTenantIdAndNetwork(
+                        TENANT_ID, start, end, 100, Long.MAX_VALUE, PageRequest.of(0, 5, Sort.by("id"))))
+                .thenReturn(List.of(node));
+        when(mockNodeRepository.countByTenantIdAndNetwork(TENANT_ID, start, end))
+                .thenReturn(6L);
+
+        var response = nodeService.searchNodes(
+                TENANT_ID,
+                NodesSearchBy.newBuilder()
+                        .setSearchValue("10.0.1.0/24")
+                        .setSortAscending(true)
+                        .setAfterId(100)
+                        .build(),
+                PageRequest.of(3, 5, Sort.by("nodeLabel")));
+
+        assertEquals(1, response.getNodesCount());
+        assertEquals(6, response.getTotalNodes());
+        assertEquals(101, response.getLastId());
+        verify(mockNodeRepository, times(0)).searchByTenantIdAndSearchTerm(any(), any(), anyLong(), anyLong(), any());
+    }
 }
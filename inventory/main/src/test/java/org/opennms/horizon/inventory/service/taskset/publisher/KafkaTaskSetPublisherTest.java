@@ -0,0 +1,176 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.horizon.inventory.service.taskset.publisher;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.opennms.taskset.contract.TaskDefinition;
+import org.opennms.taskset.service.contract.UpdateSingleTaskOp;
+import org.opennms.taskset.service.contract.UpdateTasksRequest;
+import org.springframework.kafka.KafkaException;
+import org.springframework.kafka.core.KafkaTemplate;
+
+public class KafkaTaskSetPublisherTest {
+    private static final String TOPIC = "task-set-publisher";
+    private static final String TENANT_ID = "x-tenant-id-x";
+    private static final int MAX_OPS = KafkaTaskSetPublisher.DEFAULT_MAX_OPS_PER_REQUEST;
+
+    @SuppressWarnings("unchecked")
+    private final KafkaTemplate<String, byte[]> kafkaTemplate = mock(KafkaTemplate.class);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void testCoalescesUpdatesOfLocation() throws InvalidProtocolBufferException {
+        // Only flushed explicitly
+        var publisher = new KafkaTaskSetPublisher(kafkaTemplate, meterRegistry, TOPIC, 60_000, MAX_OPS);
+
+        publisher.publishNewTasks(TENANT_ID, 1L, List.of(task("task-1"), task("task-2")));
+        publisher.publishNewTasks(TENANT_ID, 1L, List.of(task("task-3")));
+        publisher.publishTaskDeletion(TENANT_ID, 1L, List.of("task-2"));
+        publisher.publishTaskDeletion(TENANT_ID, 2L, List.of("task-4"));
+        verify(kafkaTemplate, never()).send(anyString(), anyString(), any());
+        assertEquals(4.0, meterRegistry.get("task-set.publish.pending").gauge().value());
+
+        publisher.flushPending();
+
+        UpdateTasksRequest location1 = captureRequest(TENANT_ID + ":1");
+        assertEquals("1", location1.getLocationId());
+        assertEquals(3, location1.getUpdateCount());
+        assertEquals("task-1", location1.getUpdate(0).getAddTask().getTaskDefinition().getId());
+        // Added and removed within the window, only the removal is left
+        assertEquals(UpdateSingleTaskOp.OpCase.REMOVE_TASK, location1.getUpdate(1).getOpCase());
+        assertEquals("task-2", location1.getUpdate(1).getRemoveTask().getTaskId());
+        assertEquals("task-3", location1.getUpdate(2).getAddTask().getTaskDefinition().getId());
+
+        UpdateTasksRequest location2 = captureRequest(TENANT_ID + ":2");
+        assertEquals(1, location2.getUpdateCount());
+
+        assertEquals(0.0, meterRegistry.get("task-set.publish.pending").gauge().value());
+        assertEquals(1.0, meterRegistry.get("task-set.publish.collapsed").counter().count());
+        assertEquals(2, meterRegistry.get("task-set.publish.flush.latency").timer().count());
+    }
+
+    @Test
+    void testFlushesAfterWindow() {
+        var publisher = new KafkaTaskSetPublisher(kafkaTemplate, meterRegistry, TOPIC, 100, MAX_OPS);
+
+        publisher.publishNewTasks(TENANT_ID, 1L, List.of(task("task-1")));
+        publisher.publishNewTasks(TENANT_ID, 1L, List.of(task("task-2")));
+
+        verify(kafkaTemplate, timeout(3000).times(1))
+                .send(eq(TOPIC), eq(TENANT_ID + ":1"), any(byte[].class));
+    }
+
+    @Test
+    void testSendsImmediatelyWithoutWindow() {
+        var publisher = new KafkaTaskSetPublisher(kafkaTemplate, meterRegistry, TOPIC, 0, MAX_OPS);
+
+        publisher.publishNewTasks(TENANT_ID, 1L, List.of(task("task-1")));
+        publisher.publishTaskDeletion(TENANT_ID, 1L, List.of("task-1"));
+
+        verify(kafkaTemplate, times(2)).send(eq(TOPIC), eq(TENANT_ID + ":1"), any(byte[].class));
+    }
+
+    @Test
+    void testSplitsWindowAtMaxOps() throws InvalidProtocolBufferException {
+        var publisher = new KafkaTaskSetPublisher(kafkaTemplate, meterRegistry, TOPIC, 60_000, 2);
+
+        publisher.publishNewTasks(
+                TENANT_ID, 1L, List.of(task("task-1"), task("task-2"), task("task-3"), task("task-4")));
+        publisher.publishTaskDeletion(TENANT_ID, 1L, List.of("task-5"));
+        publisher.flushPending();
+
+        List<UpdateTasksRequest> requests = captureRequests(TENANT_ID + ":1", 3);
+        assertEquals(List.of(2, 2, 1), requests.stream().map(UpdateTasksRequest::getUpdateCount).toList());
+        // Operations keep their order across the requests
+        assertEquals("task-1", requests.get(0).getUpdate(0).getAddTask().getTaskDefinition().getId());
+        assertEquals("task-4", requests.get(1).getUpdate(1).getAddTask().getTaskDefinition().getId());
+        assertEquals("task-5", requests.get(2).getUpdate(0).getRemoveTask().getTaskId());
+        requests.forEach(request -> assertEquals("1", request.getLocationId()));
+        assertEquals(1, meterRegistry.get("task-set.publish.flush.latency").timer().count());
+    }
+
+    @Test
+    void testSplitsWindowAtMaxBytes() throws InvalidProtocolBufferException {
+        var publisher = new KafkaTaskSetPublisher(kafkaTemplate, meterRegistry, TOPIC, 60_000, MAX_OPS);
+        String padding = "x".repeat(KafkaTaskSetPublisher.MAX_REQUEST_BYTES / 3);
+
+        publisher.publishNewTasks(
+                TENANT_ID, 1L, List.of(task("task-1" + padding), task("task-2" + padding), task("task-3" + padding)));
+        publisher.flushPending();
+
+        List<UpdateTasksRequest> requests = captureRequests(TENANT_ID + ":1", 2);
+        assertEquals(List.of(2, 1), requests.stream().map(UpdateTasksRequest::getUpdateCount).toList());
+        requests.forEach(request ->
+                assertTrue(request.getSerializedSize() <= KafkaTaskSetPublisher.MAX_REQUEST_BYTES));
+    }
+
+    @Test
+    void testSendsRemainingRequestsAfterFailedSend() {
+        var publisher = new KafkaTaskSetPublisher(kafkaTemplate, meterRegistry, TOPIC, 60_000, 1);
+        when(kafkaTemplate.send(anyString(), anyString(), any(byte[].class)))
+                .thenThrow(new KafkaException("failed"))
+                .thenReturn(null);
+
+        publisher.publishNewTasks(TENANT_ID, 1L, List.of(task("task-1"), task("task-2")));
+        publisher.flushPending();
+
+        verify(kafkaTemplate, times(2)).send(eq(TOPIC), eq(TENANT_ID + ":1"), any(byte[].class));
+    }
+
+    private List<UpdateTasksRequest> captureRequests(String key, int count) throws InvalidProtocolBufferException {
+        ArgumentCaptor<byte[]> captor = ArgumentCaptor.forClass(byte[].class);
+        verify(kafkaTemplate, times(count)).send(eq(TOPIC), eq(key), captor.capture());
+        List<UpdateTasksRequest> requests = new ArrayList<>();
+        for (byte[] value : captor.getAllValues()) {
+            requests.add(UpdateTasksRequest.parseFrom(value));
+        }
+        return requests;
+    }
+
+    private UpdateTasksRequest captureRequest(String key) throws InvalidProtocolBufferException {
+        ArgumentCaptor<byte[]> captor = ArgumentCaptor.forClass(byte[].class);
+        verify(kafkaTemplate).send(eq(TOPIC), eq(key), captor.capture());
+        return UpdateTasksRequest.parseFrom(captor.getValue());
+    }
+
+    private static TaskDefinition task(String id) {
+        return TaskDefinition.newBuilder().setId(id).build();
+    }
+}
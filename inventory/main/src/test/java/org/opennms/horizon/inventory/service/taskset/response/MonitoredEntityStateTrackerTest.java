@@ -0,0 +1,112 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.horizon.inventory.service.taskset.response;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.opennms.horizon.inventory.model.MonitoredEntityState;
+import org.opennms.horizon.inventory.repository.MonitoredEntityStateRepository;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+public class MonitoredEntityStateTrackerTest {
+    private static final String TENANT_ID = "x-tenant-id-x";
+
+    private final MonitoredEntityStateRepository monitoredEntityStateRepository =
+            mock(MonitoredEntityStateRepository.class);
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final MonitoredEntityStateTracker tracker =
+            new MonitoredEntityStateTracker(monitoredEntityStateRepository, jdbcTemplate, meterRegistry, 1000, 500);
+
+    @Test
+    void testLoadsTenantStatesOnce() {
+        var state = new MonitoredEntityState();
+        state.setTenantId(TENANT_ID);
+        state.setMonitoredEntityId("test:1");
+        state.setServiceState(false);
+        when(monitoredEntityStateRepository.findByTenantId(TENANT_ID)).thenReturn(List.of(state));
+
+        assertEquals(Boolean.FALSE, tracker.getState(TENANT_ID, "test:1"));
+        assertNull(tracker.getState(TENANT_ID, "test:2"));
+
+        verify(monitoredEntityStateRepository, times(1)).findByTenantId(TENANT_ID);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testWritesLatestStateOnce() {
+        assertTrue(tracker.compareAndSet(TENANT_ID, "test:1", null, true));
+        assertTrue(tracker.compareAndSet(TENANT_ID, "test:1", true, false));
+        assertTrue(tracker.compareAndSet(TENANT_ID, "test:2", null, true));
+        // Stale expectation, the state changed meanwhile
+        assertFalse(tracker.compareAndSet(TENANT_ID, "test:1", true, false));
+        verifyNoInteractions(jdbcTemplate);
+
+        tracker.flush();
+
+        ArgumentCaptor<List<Object[]>> args = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(eq(MonitoredEntityStateTracker.UPSERT_SQL), args.capture());
+        assertEquals(2, args.getValue().size());
+        for (Object[] row : args.getValue()) {
+            assertEquals(TENANT_ID, row[0]);
+            assertEquals("test:1".equals(row[1]) ? Boolean.FALSE : Boolean.TRUE, row[2]);
+        }
+        assertEquals(1.0, meterRegistry.get("monitor.state.transitions").tag("state", "down").counter().count());
+        assertEquals(0.0, meterRegistry.get("monitor.state.transitions").tag("state", "up").counter().count());
+        assertEquals(2, meterRegistry.get("monitor.state.flush.lag").timer().count());
+
+        // Nothing left to write
+        tracker.flush();
+        verify(jdbcTemplate, times(1)).batchUpdate(eq(MonitoredEntityStateTracker.UPSERT_SQL), anyList());
+    }
+
+    @Test
+    void testRetriesFailedFlush() {
+        when(jdbcTemplate.batchUpdate(eq(MonitoredEntityStateTracker.UPSERT_SQL), anyList()))
+                .thenThrow(new QueryTimeoutException("timeout"))
+                .thenReturn(new int[] {1});
+
+        tracker.compareAndSet(TENANT_ID, "test:1", null, false);
+        tracker.flush();
+        assertEquals(1.0, meterRegistry.get("monitor.state.flush.failed").counter().count());
+        assertEquals(1.0, meterRegistry.get("monitor.state.pending").gauge().value());
+
+        tracker.flush();
+        verify(jdbcTemplate, times(2)).batchUpdate(eq(MonitoredEntityStateTracker.UPSERT_SQL), anyList());
+        assertEquals(0.0, meterRegistry.get("monitor.state.pending").gauge().value());
+    }
+}
@@ -27,17 +27,20 @@ import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 import com.google.common.base.Objects;
 import com.google.protobuf.Any;
 import com.google.protobuf.InvalidProtocolBufferException;
+import java.util.List;
 import java.util.Optional;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentMatcher;
 import org.opennms.horizon.azure.api.AzureScanItem;
 import org.opennms.horizon.azure.api.AzureScanNetworkInterfaceItem;
 import org.opennms.horizon.azure.api.AzureScanResponse;
+import org.opennms.horizon.inventory.discovery.IcmpActiveDiscoveryDTO;
 import org.opennms.horizon.inventory.dto.NodeCreateDTO;
 import org.opennms.horizon.inventory.exception.EntityExistException;
 import org.opennms.horizon.inventory.exception.LocationNotFoundException;
@@ -51,12 +54,15 @@ import org.opennms.horizon.inventory.repository.discovery.active.AzureActiveDisc
 import org.opennms.horizon.inventory.service.AzureInterfaceService;
 import org.opennms.horizon.inventory.service.IpInterfaceService;
 import org.opennms.horizon.inventory.service.MonitoredServiceService;
+import org.opennms.horizon.inventory.service.NodeOnboardingService;
 import org.opennms.horizon.inventory.service.NodeService;
 import org.opennms.horizon.inventory.service.SnmpConfigService;
 import org.opennms.horizon.inventory.service.SnmpInterfaceService;
 import org.opennms.horizon.inventory.service.TagService;
 import org.opennms.horizon.inventory.service.discovery.active.IcmpActiveDiscoveryService;
 import org.opennms.horizon.inventory.service.taskset.TaskSetHandler;
+import org.opennms.taskset.contract.DiscoveryScanResult;
+import org.opennms.taskset.contract.PingResponse;
 import org.opennms.taskset.contract.ScanType;
 import org.opennms.taskset.contract.ScannerResponse;
 import org.springframework.dao.DataIntegrityViolationException;
@@ -76,6 +82,7 @@ public class ScannerResponseServiceTest {
     private final IpInterfaceRepository ipInterfaceRepository = mock(IpInterfaceRepository.class);
     private final MonitoredServiceService monitoredServiceService = mock(MonitoredServiceService.class);
     private final MonitoredEntityService monitoredEntityService = mock(MonitoredEntityService.class);
+    private final NodeOnboardingService nodeOnboardingService = mock(NodeOnboardingService.class);
     private ScannerResponseService scannerResponseService = new ScannerResponseService(
             azureActiveDiscoveryRepository,
             nodeRepository,
@@ -89,7 +96,8 @@ public class ScannerResponseServiceTest {
             icmpActiveDiscoveryService,
             ipInterfaceRepository,
             monitoredServiceService,
-            monitoredEntityService);
+            monitoredEntityService,
+            nodeOnboardingService);
 
     public static final long nodeId = 1L;
     public static final String nodeLabel = "nodeLabel";
@@ -99,6 +107,36 @@ public class ScannerResponseServiceTest {
 
     public static final String TENANT_ID = "tenantId";
 
+    @Test
+    void testDiscoveryResponse() throws InvalidProtocolBufferException {
+        var discovery = IcmpActiveDiscoveryDTO.newBuilder().setId(discoveryId).build();
+        when(icmpActiveDiscoveryService.getDiscoveryById(discoveryId, TENANT_ID))
+                .thenReturn(Optional.of(discovery));
+        var discoveryScanResult = DiscoveryScanResult.newBuilder()
+                .setActiveDiscoveryId(discoveryId)
+                .addPingResponse(PingResponse.newBuilder().setIpAddress("192.168.1.1"))
+                .addPingResponse(PingResponse.newBuilder().setIpAddress("192.168.1.2"))
+                .build();
+
+        scannerResponseService.accept(
+                TENANT_ID,
+                locationId,
+                ScannerResponse.newBuilder()
+                        .setResult(Any.pack(discoveryScanResult))
+                        .build());
+
+        // All responses are onboarded at once, the discovery is looked up once
+        verify(nodeOnboardingService, times(1))
+                .onboardDiscoveredNodes(
+                        eq(TENANT_ID),
+                        eq(locationId),
+                        eq(discovery),
+                        eq(List.of()),
+                        eq(List.of("192.168.1.1", "192.168.1.2")));
+        verify(icmpActiveDiscoveryService, times(1)).getDiscoveryById(discoveryId, TENANT_ID);
+        verifyNoInteractions(nodeService);
+    }
+
     @Test
     void testAzureResponse()
             throws InvalidProtocolBufferException, EntityExistException, LocationNotFoundException,
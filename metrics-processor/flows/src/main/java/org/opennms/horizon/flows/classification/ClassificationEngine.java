@@ -31,6 +31,13 @@ public interface ClassificationEngine {
 
     String classify(ClassificationRequest classificationRequest);
 
+    /**
+     * Classifies a request without allocating, if supported by the implementation.
+     */
+    default String classify(PrimitiveClassificationRequest classificationRequest) {
+        return classify(classificationRequest.toClassificationRequest());
+    }
+
     List<Rule> getInvalidRules();
 
     void reload() throws InterruptedException;
@@ -0,0 +1,395 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.horizon.flows.classification;
+
+import org.opennms.horizon.flows.classification.persistence.api.Protocols;
+
+/**
+ * A mutable classification request that holds its values as primitives.
+ * <p>
+ * Instances are meant to be reused for many classifications (e.g. one instance per thread) so that classifying a flow
+ * with {@link ClassificationEngine#classify(PrimitiveClassificationRequest)} does not allocate. Instances are not
+ * thread-safe.
+ */
+public final class PrimitiveClassificationRequest {
+
+    // protocols known by Protocols; unknown protocols are treated as absent, as in ClassificationRequest
+    private static final boolean[] KNOWN_PROTOCOLS = new boolean[256];
+
+    static {
+        for (int i = 0; i < KNOWN_PROTOCOLS.length; i++) {
+            KNOWN_PROTOCOLS[i] = Protocols.getProtocol(i) != null;
+        }
+    }
+
+    /**
+     * An IPv4 or IPv6 address. IPv4 addresses are kept in the lower 32 bits of {@link #low}.
+     */
+    public static final class Address {
+        private boolean present;
+        private boolean v6;
+        private long high;
+        private long low;
+
+        // scratch space for parsing IPv6 groups
+        private final int[] groups = new int[8];
+
+        public boolean isPresent() {
+            return present;
+        }
+
+        public boolean isV6() {
+            return v6;
+        }
+
+        public long getHigh() {
+            return high;
+        }
+
+        public long getLow() {
+            return low;
+        }
+
+        public void clear() {
+            present = false;
+        }
+
+        public void set(IpAddr addr) {
+            if (addr == null) {
+                present = false;
+            } else if (addr instanceof IpAddr.Ip4Addr ip4Addr) {
+                setV4(ip4Addr.getValue());
+            } else {
+                var ip6Addr = (IpAddr.Ip6Addr) addr;
+                setV6(ip6Addr.getHigh(), ip6Addr.getLow());
+            }
+        }
+
+        /**
+         * Parses an address literal. Literals in their usual notation are parsed without allocations, anything else
+         * is handed to {@link IpAddr#of(String)}.
+         */
+        public void set(String address) {
+            if (address == null) {
+                present = false;
+            } else if (!parseIp4(address) && !parseIp6(address)) {
+                set(IpAddr.of(address));
+            }
+        }
+
+        public IpAddr toIpAddr() {
+            if (!present) {
+                return null;
+            }
+            return v6 ? new IpAddr.Ip6Addr(high, low) : new IpAddr.Ip4Addr((int) low);
+        }
+
+        private void setV4(int value) {
+            present = true;
+            v6 = false;
+            high = 0;
+            low = value & 0xFFFFFFFFL;
+        }
+
+        private void setV6(long high, long low) {
+            present = true;
+            v6 = true;
+            this.high = high;
+            this.low = low;
+        }
+
+        // accepts exactly four decimal octets without leading zeros
+        private boolean parseIp4(String s) {
+            int len = s.length();
+            if (len < 7 || len > 15) {
+                return false;
+            }
+            int value = 0;
+            int octets = 0;
+            int i = 0;
+            while (true) {
+                int start = i;
+                int octet = 0;
+                while (i < len && i - start < 3) {
+                    char c = s.charAt(i);
+                    if (c < '0' || c > '9') {
+                        break;
+                    }
+                    octet = octet * 10 + (c - '0');
+                    i++;
+                }
+                int digits = i - start;
+                if (digits == 0 || octet > 255 || (digits > 1 && s.charAt(start) == '0')) {
+                    return false;
+                }
+                value = (value << 8) | octet;
+                octets++;
+                if (i == len) {
+                    break;
+                }
+                if (octets == 4 || s.charAt(i) != '.') {
+                    return false;
+                }
+                i++;
+            }
+            if (octets != 4) {
+                return false;
+            }
+            setV4(value);
+            return true;
+        }
+
+        // accepts hexadecimal groups with at most one "::", but no embedded IPv4 addresses or scope ids
+        private boolean parseIp6(String s) {
+            int len = s.length();
+            if (len < 2 || len > 39) {
+                return false;
+            }
+            int count = 0;
+            int gap = -1;
+            int i = 0;
+            if (s.charAt(0) == ':') {
+                if (s.charAt(1) != ':') {
+                    return false;
+                }
+                gap = 0;
+                i = 2;
+            }
+            while (i < len) {
+                int start = i;
+                int group = 0;
+                while (i < len) {
+                    int digit = hexDigit(s.charAt(i));
+                    if (digit < 0) {
+                        break;
+                    }
+                    if (i - start == 4) {
+                        return false;
+                    }
+                    group = (group << 4) | digit;
+                    i++;
+                }
+                if (i == start || count == 8) {
+                    return false;
+                }
+                groups[count++] = group;
+                if (i == len) {
+                    break;
+                }
+                if (s.charAt(i) != ':' || ++i == len) {
+                    return false;
+                }
+                if (s.charAt(i) == ':') {
+                    if (gap >= 0) {
+                        return false;
+                    }
+                    gap = count;
+                    i++;
+                }
+            }
+            if (gap < 0 ? count != 8 : count > 7) {
+                return false;
+            }
+
+            long high = 0;
+            long low = 0;
+            int zeros = 8 - count;
+            for (int k = 0; k < 8; k++) {
+                long group;
+                if (gap < 0 || k < gap) {
+                    group = groups[k];
+                } else if (k < gap + zeros) {
+                    group = 0;
+                } else {
+                    group = groups[k - zeros];
+                }
+                if (k < 4) {
+                    high = (high << 16) | group;
+                } else {
+                    low = (low << 16) | group;
+                }
+            }
+            if (high == 0 && (low >>> 32) == 0xFFFFL) {
+                // IPv4-mapped addresses are treated as IPv4 addresses, like InetAddress does
+                setV4((int) low);
+            } else {
+                setV6(high, low);
+            }
+            return true;
+        }
+
+        private static int hexDigit(char c) {
+            if (c >= '0' && c <= '9') {
+                return c - '0';
+            } else if (c >= 'a' && c <= 'f') {
+                return c - 'a' + 10;
+            } else if (c >= 'A' && c <= 'F') {
+                return c - 'A' + 10;
+            }
+            return -1;
+        }
+    }
+
+    private boolean hasProtocol;
+    private int protocol;
+    private boolean hasSrcPort;
+    private int srcPort;
+    private boolean hasDstPort;
+    private int dstPort;
+    private final Address srcAddress = new Address();
+    private final Address dstAddress = new Address();
+    private String exporterAddress;
+
+    // scratch space used while classifying
+    private int[] leaves = new int[8];
+    private int[] cursors = new int[8];
+
+    /**
+     * Clears all values.
+     */
+    public PrimitiveClassificationRequest reset() {
+        hasProtocol = false;
+        hasSrcPort = false;
+        hasDstPort = false;
+        srcAddress.clear();
+        dstAddress.clear();
+        exporterAddress = null;
+        return this;
+    }
+
+    public static PrimitiveClassificationRequest of(ClassificationRequest request) {
+        var result = new PrimitiveClassificationRequest();
+        if (request.getProtocol() != null) {
+            result.setProtocol(request.getProtocol().getDecimal());
+        }
+        if (request.getSrcPort() != null) {
+            result.setSrcPort(request.getSrcPort());
+        }
+        if (request.getDstPort() != null) {
+            result.setDstPort(request.getDstPort());
+        }
+        result.srcAddress.set(request.getSrcAddress());
+        result.dstAddress.set(request.getDstAddress());
+        result.setExporterAddress(request.getExporterAddress());
+        return result;
+    }
+
+    public ClassificationRequest toClassificationRequest() {
+        var request = new ClassificationRequest();
+        if (hasProtocol) {
+            request.setProtocol(Protocols.getProtocol(protocol));
+        }
+        if (hasSrcPort) {
+            request.setSrcPort(srcPort);
+        }
+        if (hasDstPort) {
+            request.setDstPort(dstPort);
+        }
+        request.setSrcAddress(srcAddress.toIpAddr());
+        request.setDstAddress(dstAddress.toIpAddr());
+        request.setExporterAddress(exporterAddress);
+        return request;
+    }
+
+    /**
+     * Sets the protocol by its decimal; protocols that are unknown to {@link Protocols} are ignored.
+     */
+    public void setProtocol(int decimal) {
+        hasProtocol = decimal >= 0 && decimal < KNOWN_PROTOCOLS.length && KNOWN_PROTOCOLS[decimal];
+        protocol = decimal;
+    }
+
+    public boolean hasProtocol() {
+        return hasProtocol;
+    }
+
+    public int getProtocol() {
+        return protocol;
+    }
+
+    public void setSrcPort(int port) {
+        hasSrcPort = true;
+        srcPort = port;
+    }
+
+    public boolean hasSrcPort() {
+        return hasSrcPort;
+    }
+
+    public int getSrcPort() {
+        return srcPort;
+    }
+
+    public void setDstPort(int port) {
+        hasDstPort = true;
+        dstPort = port;
+    }
+
+    public boolean hasDstPort() {
+        return hasDstPort;
+    }
+
+    public int getDstPort() {
+        return dstPort;
+    }
+
+    public Address getSrcAddress() {
+        return srcAddress;
+    }
+
+    public Address getDstAddress() {
+        return dstAddress;
+    }
+
+    public String getExporterAddress() {
+        return exporterAddress;
+    }
+
+    public void setExporterAddress(String exporterAddress) {
+        this.exporterAddress = exporterAddress;
+    }
+
+    /**
+     * Same as {@link ClassificationRequest#isClassifiable()}.
+     */
+    public boolean isClassifiable() {
+        return hasSrcPort && hasDstPort && hasProtocol;
+    }
+
+    /**
+     * @return scratch space of at least the given size for collecting leaves of a decision tree
+     */
+    public int[] leaves(int size) {
+        if (leaves.length < size) {
+            leaves = new int[Math.max(size, leaves.length * 2)];
+            cursors = new int[leaves.length];
+        }
+        return leaves;
+    }
+
+    /**
+     * @return scratch space of the same size as the last one returned by {@link #leaves(int)}
+     */
+    public int[] cursors() {
+        return cursors;
+    }
+}
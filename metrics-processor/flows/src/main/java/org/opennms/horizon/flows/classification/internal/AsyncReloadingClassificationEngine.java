@@ -22,6 +22,7 @@
 package org.opennms.horizon.flows.classification.internal;
 
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
@@ -29,6 +30,7 @@ import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import org.opennms.horizon.flows.classification.ClassificationEngine;
 import org.opennms.horizon.flows.classification.ClassificationRequest;
+import org.opennms.horizon.flows.classification.PrimitiveClassificationRequest;
 import org.opennms.horizon.flows.classification.persistence.api.Rule;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -38,19 +40,17 @@ import org.slf4j.LoggerFactory;
  * <p>
  * Reloads are triggered oftentimes while editing classification rules. In addition, reloads may take a couple of seconds
  * depending on the enabled rules. In order to keep the front-end responsive, reloads are done asynchronously.
- * Usages of the classification engine are blocked until ongoing reloads did finish. If a reload fails then
- * future usages of this classification engine also fail until a following reload succeeds.
+ * Usages of the classification engine are blocked until the very first reload did finish. Later reloads build the new
+ * decision tree in the background while usages keep classifying with the previous one; the delegate is expected to
+ * switch between both atomically (as {@link DefaultClassificationEngine} does). If a reload fails then future usages
+ * of this classification engine fail until a following reload succeeds.
+ * <p>
+ * Usages never take a lock, only reloads are synchronized with each other.
  */
 public class AsyncReloadingClassificationEngine implements ClassificationEngine {
 
     private static final Logger LOG = LoggerFactory.getLogger(AsyncReloadingClassificationEngine.class);
 
-    private enum State {
-        READY,
-        RELOADING,
-        FAILED
-    }
-
     private final ClassificationEngine delegate;
 
     // uses at most one additional thread; if the thread is not used for 60 seconds then it is terminated
@@ -63,8 +63,13 @@ public class AsyncReloadingClassificationEngine implements ClassificationEngine
             new LinkedBlockingQueue<>(), // multiple reloads may have been enqueued and cancelled
             runnable -> new Thread(runnable, "AsyncReloadingClassificationEngine"));
 
-    private State state = State.READY;
-    private Throwable reloadException;
+    // released as soon as a reload finished for the first time, successfully or not
+    private final CountDownLatch firstReload = new CountDownLatch(1);
+
+    // the failure of the last finished reload, null if it succeeded
+    private volatile Throwable reloadException;
+
+    // guarded by this
     private Future<?> reloadFuture;
 
     public AsyncReloadingClassificationEngine(ClassificationEngine delegate) {
@@ -74,83 +79,71 @@ public class AsyncReloadingClassificationEngine implements ClassificationEngine
         reload();
     }
 
-    private void setState(State newState) {
-        state = newState;
-        notifyAll();
-    }
-
-    private void waitUntilReadyOrFailed() {
-        while (true) {
-            switch (state) {
-                case READY:
-                    return;
-                case FAILED:
-                    throw new RuntimeException(
-                            "classification engine can not be used because last reload failed", reloadException);
-            }
+    private void waitUntilLoaded() {
+        if (firstReload.getCount() != 0) {
             try {
-                wait();
+                firstReload.await();
             } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
                 throw new RuntimeException(e);
             }
         }
+        var exception = reloadException;
+        if (exception != null) {
+            throw new RuntimeException("classification engine can not be used because last reload failed", exception);
+        }
     }
 
     private void doReload() {
-        // this method must not modify the state because it not synchronized
+        // reloads are executed one after the other, so the last one submitted is also the last one to finish
         try {
             LOG.debug("reload classification engine");
             delegate.reload();
             LOG.debug("classification engine reloaded");
-            onReloadSucceeded();
+            onReloadFinished(null);
         } catch (InterruptedException e) {
             LOG.debug("reload was interrupted");
-            // another reload is submitted or already under way that changes the state on its completion
+            // another reload is submitted or already under way that finishes instead
         } catch (Throwable e) {
             LOG.error("reload of classification engine failed", e);
-            onReloadFailed(e);
+            onReloadFinished(e);
         }
     }
 
-    private synchronized void onReloadSucceeded() {
-        setState(State.READY);
+    private void onReloadFinished(Throwable e) {
+        reloadException = e;
+        firstReload.countDown();
     }
 
-    private synchronized void onReloadFailed(Throwable e) {
-        reloadException = e;
-        setState(State.FAILED);
+    @Override
+    public String classify(ClassificationRequest classificationRequest) {
+        waitUntilLoaded();
+        return delegate.classify(classificationRequest);
     }
 
     @Override
-    public synchronized String classify(ClassificationRequest classificationRequest) {
-        waitUntilReadyOrFailed();
+    public String classify(PrimitiveClassificationRequest classificationRequest) {
+        waitUntilLoaded();
         return delegate.classify(classificationRequest);
     }
 
     @Override
-    public synchronized List<Rule> getInvalidRules() {
-        waitUntilReadyOrFailed();
+    public List<Rule> getInvalidRules() {
+        waitUntilLoaded();
         return delegate.getInvalidRules();
     }
 
     @Override
     public synchronized void reload() {
-        switch (state) {
-            case READY:
-            case FAILED:
-                try {
-                    reloadFuture = executorService.submit(this::doReload);
-                    setState(State.RELOADING);
-                } catch (Throwable t) {
-                    LOG.error("could not submit reload task", t);
-                    this.reloadException = t;
-                    setState(State.FAILED);
-                }
-                break;
-            case RELOADING:
-                reloadFuture.cancel(true);
-                reloadFuture = executorService.submit(this::doReload);
-                break;
+        if (reloadFuture != null) {
+            // interrupts a reload under way, does nothing if it already finished
+            reloadFuture.cancel(true);
+        }
+        try {
+            reloadFuture = executorService.submit(this::doReload);
+        } catch (Throwable t) {
+            LOG.error("could not submit reload task", t);
+            onReloadFinished(t);
         }
     }
 
@@ -31,6 +31,8 @@ import org.opennms.horizon.flows.classification.ClassificationEngine;
 import org.opennms.horizon.flows.classification.ClassificationRequest;
 import org.opennms.horizon.flows.classification.ClassificationRuleProvider;
 import org.opennms.horizon.flows.classification.FilterService;
+import org.opennms.horizon.flows.classification.PrimitiveClassificationRequest;
+import org.opennms.horizon.flows.classification.internal.decision.CompiledTree;
 import org.opennms.horizon.flows.classification.internal.decision.PreprocessedRule;
 import org.opennms.horizon.flows.classification.internal.decision.Tree;
 import org.opennms.horizon.flows.classification.persistence.api.Rule;
@@ -48,8 +50,8 @@ public class DefaultClassificationEngine implements ClassificationEngine {
 
     private static Logger LOG = LoggerFactory.getLogger(DefaultClassificationEngine.class);
 
-    private final AtomicReference<TreeAndInvalidRules> treeAndInvalidRules =
-            new AtomicReference<>(new TreeAndInvalidRules(Tree.EMPTY, Collections.emptyList()));
+    private final AtomicReference<TreeAndInvalidRules> treeAndInvalidRules = new AtomicReference<>(
+            new TreeAndInvalidRules(Tree.EMPTY, CompiledTree.of(Tree.EMPTY), Collections.emptyList()));
 
     private final ClassificationRuleProvider ruleProvider;
     private final FilterService filterService;
@@ -91,6 +93,7 @@ public class DefaultClassificationEngine implements ClassificationEngine {
         });
 
         var tree = Tree.of(preprocessedRules, filterService);
+        var compiledTree = CompiledTree.of(tree);
 
         var elapsed = System.currentTimeMillis() - start;
         if (LOG.isInfoEnabled()) {
@@ -128,7 +131,7 @@ public class DefaultClassificationEngine implements ClassificationEngine {
             LOG.info(sb.toString());
         }
 
-        treeAndInvalidRules.set(new TreeAndInvalidRules(tree, invalid));
+        treeAndInvalidRules.set(new TreeAndInvalidRules(tree, compiledTree, invalid));
 
         fireClassificationReloadedListeners(Collections.unmodifiableList(rules));
     }
@@ -154,12 +157,19 @@ public class DefaultClassificationEngine implements ClassificationEngine {
         return treeAndInvalidRules.get().tree.classify(classificationRequest);
     }
 
+    @Override
+    public String classify(PrimitiveClassificationRequest classificationRequest) {
+        return treeAndInvalidRules.get().compiledTree.classify(classificationRequest);
+    }
+
     private static class TreeAndInvalidRules {
         private final Tree tree;
+        private final CompiledTree compiledTree;
         private final List<Rule> invalidRules;
 
-        public TreeAndInvalidRules(Tree tree, List<Rule> invalidRules) {
+        public TreeAndInvalidRules(Tree tree, CompiledTree compiledTree, List<Rule> invalidRules) {
             this.tree = tree;
+            this.compiledTree = compiledTree;
             this.invalidRules = invalidRules;
         }
     }
@@ -27,6 +27,7 @@ import java.util.List;
 import java.util.Objects;
 import org.opennms.horizon.flows.classification.ClassificationEngine;
 import org.opennms.horizon.flows.classification.ClassificationRequest;
+import org.opennms.horizon.flows.classification.PrimitiveClassificationRequest;
 import org.opennms.horizon.flows.classification.persistence.api.Rule;
 
 public class TimingClassificationEngine implements ClassificationEngine {
@@ -50,6 +51,13 @@ public class TimingClassificationEngine implements ClassificationEngine {
         }
     }
 
+    @Override
+    public String classify(PrimitiveClassificationRequest classificationRequest) {
+        try (final Timer.Context ctx = classifyTimer.time()) {
+            return delegate.classify(classificationRequest);
+        }
+    }
+
     @Override
     public void reload() throws InterruptedException {
         try (final Timer.Context ctx = reloadTimer.time()) {
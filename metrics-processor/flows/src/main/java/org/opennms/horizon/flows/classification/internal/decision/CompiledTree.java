@@ -0,0 +1,488 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.horizon.flows.classification.internal.decision;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.opennms.horizon.flows.classification.FilterService;
+import org.opennms.horizon.flows.classification.PrimitiveClassificationRequest;
+import org.opennms.horizon.flows.classification.internal.matcher.DstAddressMatcher;
+import org.opennms.horizon.flows.classification.internal.matcher.DstPortMatcher;
+import org.opennms.horizon.flows.classification.internal.matcher.FilterMatcher;
+import org.opennms.horizon.flows.classification.internal.matcher.Matcher;
+import org.opennms.horizon.flows.classification.internal.matcher.ProtocolMatcher;
+import org.opennms.horizon.flows.classification.internal.matcher.SrcAddressMatcher;
+import org.opennms.horizon.flows.classification.internal.matcher.SrcPortMatcher;
+import org.opennms.horizon.flows.classification.internal.value.IpRange;
+import org.opennms.horizon.flows.classification.internal.value.IpValue;
+import org.opennms.horizon.flows.classification.internal.value.PortValue;
+
+/**
+ * A decision tree that is flattened into arrays of primitives.
+ * <p>
+ * The compiled tree classifies {@link PrimitiveClassificationRequest}s with the same result as the {@link Tree} it
+ * was compiled from, but it neither allocates nor boxes during classification: nodes and leaves are referenced by
+ * their indexes, thresholds and matchers are stored as ints and longs, and the leaves that are collected while
+ * traversing the tree are merged by their classifiers' positions using the scratch space of the request.
+ * <p>
+ * Child references are encoded as follows: a non-negative value is the index of a node, a negative value is the
+ * bitwise complement of the index of a leaf, and {@link #NONE} denotes an empty leaf or a missing "na" child.
+ */
+public final class CompiledTree {
+
+    private static final int NONE = Integer.MIN_VALUE;
+
+    private static final byte PROTOCOL = 0;
+    private static final byte SRC_PORT = 1;
+    private static final byte DST_PORT = 2;
+    private static final byte SRC_ADDR = 3;
+    private static final byte DST_ADDR = 4;
+
+    private static final int LT = 0;
+    private static final int EQ = 1;
+    private static final int GT = 2;
+    private static final int NA = 3;
+
+    // number of longs used to store an address range: family, begin (high, low), end (high, low)
+    private static final int ADDR_RANGE_SIZE = 5;
+
+    // nodes
+    private final byte[] aspect;
+    private final int[] intThreshold;
+    private final boolean[] v6Threshold;
+    private final long[] highThreshold;
+    private final long[] lowThreshold;
+    private final int[] lt, eq, gt, na;
+
+    // leaves; the classifiers of a leaf are stored in [leafStart, leafEnd) sorted by their positions
+    private final int[] leafStart;
+    private final int[] leafEnd;
+
+    // classifiers; matchers that need not be checked are null
+    private final int[] position;
+    private final int[] matchedAspects;
+    private final String[] name;
+    private final int[][] protocols;
+    private final int[][] srcPorts, dstPorts;
+    private final long[][] srcAddrs, dstAddrs;
+    private final String[] filterExpression;
+    private final FilterService[] filterService;
+
+    private final int root;
+    // maximum number of leaves that are collected by a single classification
+    private final int maxLeaves;
+
+    private CompiledTree(Builder builder, int root, int maxLeaves) {
+        int nodes = builder.nodes.size();
+        aspect = new byte[nodes];
+        intThreshold = new int[nodes];
+        v6Threshold = new boolean[nodes];
+        highThreshold = new long[nodes];
+        lowThreshold = new long[nodes];
+        lt = new int[nodes];
+        eq = new int[nodes];
+        gt = new int[nodes];
+        na = new int[nodes];
+        for (int i = 0; i < nodes; i++) {
+            var node = builder.nodes.get(i);
+            aspect[i] = node.aspect;
+            intThreshold[i] = node.intThreshold;
+            v6Threshold[i] = node.v6Threshold;
+            highThreshold[i] = node.highThreshold;
+            lowThreshold[i] = node.lowThreshold;
+            lt[i] = node.lt;
+            eq[i] = node.eq;
+            gt[i] = node.gt;
+            na[i] = node.na;
+        }
+
+        leafStart = builder.leafStart.stream().mapToInt(Integer::intValue).toArray();
+        leafEnd = builder.leafEnd.stream().mapToInt(Integer::intValue).toArray();
+
+        int classifiers = builder.classifiers.size();
+        position = new int[classifiers];
+        matchedAspects = new int[classifiers];
+        name = new String[classifiers];
+        protocols = new int[classifiers][];
+        srcPorts = new int[classifiers][];
+        dstPorts = new int[classifiers][];
+        srcAddrs = new long[classifiers][];
+        dstAddrs = new long[classifiers][];
+        filterExpression = new String[classifiers];
+        filterService = new FilterService[classifiers];
+        for (int i = 0; i < classifiers; i++) {
+            compile(i, builder.classifiers.get(i));
+        }
+
+        this.root = root;
+        this.maxLeaves = maxLeaves;
+    }
+
+    /**
+     * Compiles the given decision tree.
+     */
+    public static CompiledTree of(Tree tree) {
+        var builder = new Builder();
+        int root = tree.accept(builder);
+        return new CompiledTree(builder, root, tree.accept(new MaxLeaves()));
+    }
+
+    /**
+     * Classifies a flow.
+     *
+     * @return Returns <code>null</code> if the request does not match a rule
+     * @see Tree#classify(org.opennms.horizon.flows.classification.ClassificationRequest)
+     */
+    public String classify(PrimitiveClassificationRequest request) {
+        int[] leaves = request.leaves(maxLeaves);
+        int count = collect(root, request, leaves, 0);
+        if (count == 0) {
+            return null;
+        }
+
+        // merge the classifiers of the collected leaves by their positions; classifiers with equal positions are
+        // taken in the order their leaves were collected, i.e. in the same order as Tree.merge yields them
+        int[] cursors = request.cursors();
+        for (int i = 0; i < count; i++) {
+            cursors[i] = leafStart[leaves[i]];
+        }
+        int result = -1;
+        int groupPosition = 0;
+        boolean inGroup = false;
+        while (true) {
+            int next = -1;
+            int nextPosition = 0;
+            for (int i = 0; i < count; i++) {
+                int c = cursors[i];
+                if (c < leafEnd[leaves[i]] && (next < 0 || position[c] < nextPosition)) {
+                    next = i;
+                    nextPosition = position[c];
+                }
+            }
+            if (next < 0) {
+                break;
+            }
+            int c = cursors[next]++;
+            // detect group change
+            if (!inGroup) {
+                inGroup = true;
+                groupPosition = nextPosition;
+            } else if (nextPosition != groupPosition) {
+                // all following classifiers have lower priority
+                if (result >= 0) {
+                    return name[result];
+                }
+                groupPosition = nextPosition;
+            }
+            // prefer more specific results
+            if ((result < 0 || matchedAspects[c] > matchedAspects[result]) && matches(c, request)) {
+                result = c;
+            }
+        }
+        return result >= 0 ? name[result] : null;
+    }
+
+    /**
+     * Collects the leaves that are reached by the given request in the same order as {@link Tree} does: the child
+     * selected by the comparison with a threshold comes before the "na" child.
+     */
+    private int collect(int ref, PrimitiveClassificationRequest request, int[] leaves, int count) {
+        while (ref >= 0) {
+            int order = compare(ref, request);
+            int naRef = na[ref];
+            if (order == NA) {
+                ref = naRef;
+                continue;
+            }
+            int next = order == LT ? lt[ref] : order == EQ ? eq[ref] : gt[ref];
+            if (naRef != NONE) {
+                count = collect(next, request, leaves, count);
+                ref = naRef;
+            } else {
+                ref = next;
+            }
+        }
+        if (ref != NONE) {
+            leaves[count++] = ~ref;
+        }
+        return count;
+    }
+
+    private int compare(int node, PrimitiveClassificationRequest request) {
+        switch (aspect[node]) {
+            case PROTOCOL:
+                return request.hasProtocol() ? compare(request.getProtocol(), intThreshold[node]) : NA;
+            case SRC_PORT:
+                return request.hasSrcPort() ? compare(request.getSrcPort(), intThreshold[node]) : NA;
+            case DST_PORT:
+                return request.hasDstPort() ? compare(request.getDstPort(), intThreshold[node]) : NA;
+            case SRC_ADDR:
+                return compare(request.getSrcAddress(), node);
+            default:
+                return compare(request.getDstAddress(), node);
+        }
+    }
+
+    private static int compare(int value, int threshold) {
+        return value < threshold ? LT : value == threshold ? EQ : GT;
+    }
+
+    private int compare(PrimitiveClassificationRequest.Address address, int node) {
+        if (!address.isPresent()) {
+            return NA;
+        }
+        int c = compare(
+                address.isV6(),
+                address.getHigh(),
+                address.getLow(),
+                v6Threshold[node],
+                highThreshold[node],
+                lowThreshold[node]);
+        return c < 0 ? LT : c == 0 ? EQ : GT;
+    }
+
+    // same order as IpAddr: IPv4 addresses come before IPv6 addresses
+    private static int compare(boolean v6, long high, long low, boolean otherV6, long otherHigh, long otherLow) {
+        if (v6 != otherV6) {
+            return v6 ? 1 : -1;
+        }
+        return high != otherHigh ? Long.compareUnsigned(high, otherHigh) : Long.compareUnsigned(low, otherLow);
+    }
+
+    private boolean matches(int c, PrimitiveClassificationRequest request) {
+        var ps = protocols[c];
+        if (ps != null && (!request.hasProtocol() || !contains(ps, request.getProtocol()))) {
+            return false;
+        }
+        var sp = srcPorts[c];
+        if (sp != null && (!request.hasSrcPort() || !inRanges(sp, request.getSrcPort()))) {
+            return false;
+        }
+        var dp = dstPorts[c];
+        if (dp != null && (!request.hasDstPort() || !inRanges(dp, request.getDstPort()))) {
+            return false;
+        }
+        var sa = srcAddrs[c];
+        if (sa != null && !inRanges(sa, request.getSrcAddress())) {
+            return false;
+        }
+        var da = dstAddrs[c];
+        if (da != null && !inRanges(da, request.getDstAddress())) {
+            return false;
+        }
+        var filter = filterExpression[c];
+        return filter == null || filterService[c].matches(request.getExporterAddress(), filter);
+    }
+
+    private static boolean contains(int[] values, int value) {
+        for (int v : values) {
+            if (v == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean inRanges(int[] ranges, int value) {
+        for (int i = 0; i < ranges.length; i += 2) {
+            if (ranges[i] <= value && value <= ranges[i + 1]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean inRanges(long[] ranges, PrimitiveClassificationRequest.Address address) {
+        if (!address.isPresent()) {
+            return false;
+        }
+        boolean v6 = address.isV6();
+        long high = address.getHigh();
+        long low = address.getLow();
+        for (int i = 0; i < ranges.length; i += ADDR_RANGE_SIZE) {
+            boolean rangeV6 = ranges[i] != 0;
+            if (compare(rangeV6, ranges[i + 1], ranges[i + 2], v6, high, low) <= 0
+                    && compare(v6, high, low, rangeV6, ranges[i + 3], ranges[i + 4]) <= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void compile(int c, Classifier classifier) {
+        position[c] = classifier.position;
+        matchedAspects[c] = classifier.result.matchedAspects;
+        name[c] = classifier.result.name;
+        for (Matcher matcher : classifier.matchers) {
+            if (matcher instanceof ProtocolMatcher m) {
+                protocols[c] = m.getProtocols().stream().mapToInt(Integer::intValue).toArray();
+            } else if (matcher instanceof SrcPortMatcher m) {
+                srcPorts[c] = compile(m.getValue());
+            } else if (matcher instanceof DstPortMatcher m) {
+                dstPorts[c] = compile(m.getValue());
+            } else if (matcher instanceof SrcAddressMatcher m) {
+                srcAddrs[c] = compile(m.getValue());
+            } else if (matcher instanceof DstAddressMatcher m) {
+                dstAddrs[c] = compile(m.getValue());
+            } else if (matcher instanceof FilterMatcher m) {
+                filterExpression[c] = m.getFilterExpression();
+                filterService[c] = m.getFilterService();
+            } else {
+                throw new IllegalArgumentException("Unsupported matcher: " + matcher);
+            }
+        }
+    }
+
+    private static int[] compile(PortValue value) {
+        var ranges = value.getPortRanges();
+        var result = new int[ranges.size() * 2];
+        for (int i = 0; i < ranges.size(); i++) {
+            result[2 * i] = ranges.get(i).getBegin();
+            result[2 * i + 1] = ranges.get(i).getEnd();
+        }
+        return result;
+    }
+
+    private static long[] compile(IpValue value) {
+        List<IpRange> ranges = value.getIpAddressRanges();
+        var result = new long[ranges.size() * ADDR_RANGE_SIZE];
+        var address = new PrimitiveClassificationRequest.Address();
+        for (int i = 0; i < ranges.size(); i++) {
+            int offset = i * ADDR_RANGE_SIZE;
+            address.set(ranges.get(i).begin);
+            result[offset] = address.isV6() ? 1 : 0;
+            result[offset + 1] = address.getHigh();
+            result[offset + 2] = address.getLow();
+            address.set(ranges.get(i).end);
+            result[offset + 3] = address.getHigh();
+            result[offset + 4] = address.getLow();
+        }
+        return result;
+    }
+
+    private static final class CompiledNode {
+        private byte aspect;
+        private int intThreshold;
+        private boolean v6Threshold;
+        private long highThreshold;
+        private long lowThreshold;
+        private int lt, eq, gt, na = NONE;
+    }
+
+    /**
+     * Flattens a tree in pre-order and returns the reference of each visited subtree.
+     */
+    private static final class Builder implements Tree.Visitor<Integer> {
+        private final List<CompiledNode> nodes = new ArrayList<>();
+        private final List<Integer> leafStart = new ArrayList<>();
+        private final List<Integer> leafEnd = new ArrayList<>();
+        private final List<Classifier> classifiers = new ArrayList<>();
+
+        @Override
+        public Integer visit(Tree.Node.WithChoice node) {
+            var compiled = node(node.threshold);
+            int ref = nodes.size() - 1;
+            compiled.lt = node.lt.accept(this);
+            compiled.eq = node.eq.accept(this);
+            compiled.gt = node.gt.accept(this);
+            compiled.na = node.na.accept(this);
+            return ref;
+        }
+
+        @Override
+        public Integer visit(Tree.Node.WithoutChoice node) {
+            var compiled = node(node.threshold);
+            int ref = nodes.size() - 1;
+            compiled.lt = node.lt.accept(this);
+            compiled.eq = node.eq.accept(this);
+            compiled.gt = node.gt.accept(this);
+            return ref;
+        }
+
+        @Override
+        public Integer visit(Tree.Leaf.Empty leaf) {
+            return NONE;
+        }
+
+        @Override
+        public Integer visit(Tree.Leaf.WithClassifiers leaf) {
+            leafStart.add(classifiers.size());
+            classifiers.addAll(leaf.classifiers);
+            leafEnd.add(classifiers.size());
+            return ~(leafStart.size() - 1);
+        }
+
+        private CompiledNode node(Threshold<?> threshold) {
+            var node = new CompiledNode();
+            if (threshold instanceof Threshold.Protocol t) {
+                node.aspect = PROTOCOL;
+                node.intThreshold = t.getThreshold();
+            } else if (threshold instanceof Threshold.SrcPort t) {
+                node.aspect = SRC_PORT;
+                node.intThreshold = t.getThreshold();
+            } else if (threshold instanceof Threshold.DstPort t) {
+                node.aspect = DST_PORT;
+                node.intThreshold = t.getThreshold();
+            } else if (threshold instanceof Threshold.Address address) {
+                node.aspect = threshold instanceof Threshold.SrcAddress ? SRC_ADDR : DST_ADDR;
+                var primitive = new PrimitiveClassificationRequest.Address();
+                primitive.set(address.getThreshold());
+                node.v6Threshold = primitive.isV6();
+                node.highThreshold = primitive.getHigh();
+                node.lowThreshold = primitive.getLow();
+            } else {
+                throw new IllegalArgumentException("Unsupported threshold: " + threshold);
+            }
+            nodes.add(node);
+            return node;
+        }
+    }
+
+    /**
+     * Determines the maximum number of leaves that may be collected by a single classification.
+     */
+    private static final class MaxLeaves implements Tree.Visitor<Integer> {
+        @Override
+        public Integer visit(Tree.Node.WithChoice node) {
+            return max(node.lt, node.eq, node.gt) + node.na.accept(this);
+        }
+
+        @Override
+        public Integer visit(Tree.Node.WithoutChoice node) {
+            return max(node.lt, node.eq, node.gt);
+        }
+
+        @Override
+        public Integer visit(Tree.Leaf.Empty leaf) {
+            return 0;
+        }
+
+        @Override
+        public Integer visit(Tree.Leaf.WithClassifiers leaf) {
+            return 1;
+        }
+
+        private int max(Tree lt, Tree eq, Tree gt) {
+            return Math.max(Math.max(lt.accept(this), eq.accept(this)), gt.accept(this));
+        }
+    }
+}
@@ -35,6 +35,14 @@ public class FilterMatcher implements Matcher {
         this.filterService = Objects.requireNonNull(filterService);
     }
 
+    public FilterService getFilterService() {
+        return filterService;
+    }
+
+    public String getFilterExpression() {
+        return filterExpression;
+    }
+
     @Override
     public boolean matches(ClassificationRequest request) {
         return this.filterService.matches(request.getExporterAddress(), filterExpression);
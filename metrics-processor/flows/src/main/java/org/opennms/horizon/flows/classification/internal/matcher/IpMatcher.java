@@ -38,6 +38,10 @@ class IpMatcher implements Matcher {
         this.valueExtractor = Objects.requireNonNull(valueExtractor);
     }
 
+    public IpValue getValue() {
+        return value;
+    }
+
     @Override
     public boolean matches(ClassificationRequest request) {
         var addr = valueExtractor.apply(request);
@@ -37,6 +37,10 @@ class PortMatcher implements Matcher {
         this.valueExtractor = Objects.requireNonNull(valueExtractor);
     }
 
+    public PortValue getValue() {
+        return value;
+    }
+
     @Override
     public boolean matches(ClassificationRequest request) {
         return this.value.matches(valueExtractor.apply(request));
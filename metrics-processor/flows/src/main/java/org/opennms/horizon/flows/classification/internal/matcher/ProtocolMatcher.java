@@ -37,6 +37,10 @@ public class ProtocolMatcher implements Matcher {
         this(ProtocolValue.of(protocols));
     }
 
+    public Set<Integer> getProtocols() {
+        return protocols;
+    }
+
     @Override
     public boolean matches(ClassificationRequest request) {
         return protocols.contains(request.getProtocol().getDecimal());
@@ -25,9 +25,12 @@ import com.google.protobuf.Int64Value;
 import io.grpc.ManagedChannel;
 import io.grpc.Metadata;
 import io.grpc.stub.MetadataUtils;
+import java.util.Collection;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 import lombok.RequiredArgsConstructor;
 import org.opennms.horizon.inventory.dto.IpInterfaceDTO;
+import org.opennms.horizon.inventory.dto.IpInterfacesQuery;
 import org.opennms.horizon.inventory.dto.NodeDTO;
 import org.opennms.horizon.inventory.dto.NodeIdQuery;
 import org.opennms.horizon.inventory.dto.NodeServiceGrpc;
@@ -88,4 +91,18 @@ public class InventoryClient {
                 .withDeadlineAfter(deadline, TimeUnit.MILLISECONDS)
                 .getIpInterfaceFromQuery(query);
     }
+
+    public Map<String, IpInterfaceDTO> getIpInterfacesFromQuery(
+            String tenantId, Collection<String> ipAddresses, String locationId) {
+        Metadata metadata = getMetadata(true, tenantId);
+
+        IpInterfacesQuery query = IpInterfacesQuery.newBuilder()
+                .addAllIpAddresses(ipAddresses)
+                .setLocationId(locationId)
+                .build();
+        return nodeStub.withInterceptors(MetadataUtils.newAttachHeadersInterceptor(metadata))
+                .withDeadlineAfter(deadline, TimeUnit.MILLISECONDS)
+                .getIpInterfacesFromQuery(query)
+                .getIpInterfacesMap();
+    }
 }
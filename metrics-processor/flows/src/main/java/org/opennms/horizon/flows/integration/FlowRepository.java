@@ -21,6 +21,7 @@
  */
 package org.opennms.horizon.flows.integration;
 
+import java.util.concurrent.CompletableFuture;
 import org.opennms.horizon.flows.document.TenantLocationSpecificFlowDocumentLog;
 
 /**
@@ -34,8 +35,9 @@ public interface FlowRepository {
      * Persist a batch of flows.
      *
      * @param enrichedFlows the flows which should be persisted
+     * @return completes once the flows are persisted, or exceptionally if they could not be persisted
      *
-     * @throws FlowException on any error happening during processing.
+     * @throws FlowException on any error happening before the flows were accepted for persisting.
      */
-    void persist(TenantLocationSpecificFlowDocumentLog enrichedFlows) throws FlowException;
+    CompletableFuture<Void> persist(TenantLocationSpecificFlowDocumentLog enrichedFlows) throws FlowException;
 }
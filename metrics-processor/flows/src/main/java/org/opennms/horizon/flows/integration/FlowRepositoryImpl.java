@@ -21,8 +21,27 @@
  */
 package org.opennms.horizon.flows.integration;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import io.grpc.Status;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
 import java.util.List;
-import lombok.RequiredArgsConstructor;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.opennms.dataplatform.flows.document.FlowDocument;
 import org.opennms.dataplatform.flows.document.NodeInfo;
 import org.opennms.dataplatform.flows.ingester.v1.StoreFlowDocumentsRequest;
@@ -32,30 +51,257 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.util.CollectionUtils;
 
-@RequiredArgsConstructor
-public class FlowRepositoryImpl implements FlowRepository {
+/**
+ * Persists flows by the ingestor without blocking the enrichment of further flows.
+ * <p>
+ * Persisted logs are queued and sent by a pool of sender threads, logs of the same tenant that are queued at the same
+ * time are combined into a single request of at most {@code maxBatchSize} documents. At most {@code maxPendingLogs}
+ * logs are queued or in flight; once that window is full, {@link #persist} blocks until a request completes.
+ * <p>
+ * The future returned by {@link #persist} completes once the ingestor accepted the flows. Requests failing with a
+ * transient status are retried with backoff, up to {@value #MAX_SEND_ATTEMPTS} times or until the repository is
+ * closed, after which the future fails. Requests the ingestor rejects for good fail with a
+ * {@link FlowRejectedException} without being retried.
+ */
+public class FlowRepositoryImpl implements FlowRepository, AutoCloseable {
     private static final Logger LOG = LoggerFactory.getLogger(FlowRepositoryImpl.class);
+
+    private static final long POLL_INTERVAL_MS = 100;
+    private static final long RETRY_INITIAL_BACKOFF_MS = 500;
+    private static final long RETRY_MAX_BACKOFF_MS = 30_000;
+    private static final int MAX_SEND_ATTEMPTS = 5;
+    private static final Set<Status.Code> TRANSIENT_CODES =
+            EnumSet.of(Status.Code.UNAVAILABLE, Status.Code.DEADLINE_EXCEEDED, Status.Code.ABORTED);
+
     private final IngestorClient ingestorClient;
+    private final int maxBatchSize;
+
+    private final Semaphore window;
+    private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private final ExecutorService senders;
+    private volatile boolean closed;
+
+    private final Timer persistLatency;
+    private final Histogram batchSize;
+    private final Meter persistFailures;
+    private final Meter persistRejected;
+    private final Meter persistRetriesExhausted;
+
+    public FlowRepositoryImpl(
+            IngestorClient ingestorClient,
+            int maxPendingLogs,
+            int maxBatchSize,
+            int senderThreads,
+            MetricRegistry metrics) {
+        this.ingestorClient = Objects.requireNonNull(ingestorClient);
+        this.maxBatchSize = maxBatchSize;
+        this.window = new Semaphore(maxPendingLogs);
+
+        persistLatency = metrics.timer("persistLatency");
+        batchSize = metrics.histogram("persistBatchSize");
+        persistFailures = metrics.meter("persistFailures");
+        persistRejected = metrics.meter("persistRejected");
+        persistRetriesExhausted = metrics.meter("persistRetriesExhausted");
+        metrics.gauge("persistPending", () -> (Gauge<Integer>) () -> maxPendingLogs - window.availablePermits());
+
+        var threadCount = new AtomicInteger();
+        senders = Executors.newFixedThreadPool(senderThreads, r -> {
+            Thread thread = new Thread(r, "flow-persister-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < senderThreads; i++) {
+            senders.execute(this::send);
+        }
+    }
 
     @Override
-    public void persist(TenantLocationSpecificFlowDocumentLog enrichedFlowsLog) {
+    public CompletableFuture<Void> persist(TenantLocationSpecificFlowDocumentLog enrichedFlowsLog)
+            throws FlowException {
         LOG.trace("Persisting flow data: {}", enrichedFlowsLog);
-        var enrichedFlows = enrichedFlowsLog.getMessageList();
 
-        if (CollectionUtils.isEmpty(enrichedFlows)) {
+        if (CollectionUtils.isEmpty(enrichedFlowsLog.getMessageList())) {
             LOG.trace("No EnrichedFlow present, skipping flow data persisting step. ");
-            return;
+            return CompletableFuture.completedFuture(null);
+        }
+        if (closed) {
+            throw new FlowException("Flow repository is closed");
         }
 
-        List<FlowDocument> listDataPlatformFlowDocuments = enrichedFlows.stream()
-                .map(doc -> this.mapFlowDocument(doc, enrichedFlowsLog))
-                .toList();
+        try {
+            window.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new FlowException("Interrupted while waiting for pending flows to be persisted", e);
+        }
+        var pending = new Pending(enrichedFlowsLog, System.nanoTime());
+        queue.add(pending);
+        return pending.result;
+    }
 
-        StoreFlowDocumentsRequest storeFlowDocumentsRequest = StoreFlowDocumentsRequest.newBuilder()
-                .addAllDocuments(listDataPlatformFlowDocuments)
-                .build();
+    /**
+     * Stops accepting flows and waits until all pending flows are persisted. Flows that could not be persisted in
+     * time are failed, so they are not acknowledged.
+     */
+    @Override
+    public void close() throws InterruptedException {
+        closed = true;
+        senders.shutdown();
+        if (!senders.awaitTermination(1, TimeUnit.MINUTES)) {
+            LOG.warn("Pending flows were not persisted in time, dropping {} logs", queue.size());
+            senders.shutdownNow();
+        }
+        List<Pending> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        fail(remaining, new FlowException("Flow repository closed before flows could be persisted"));
+    }
+
+    private void send() {
+        List<Pending> drained = new ArrayList<>();
+        while (true) {
+            Pending first;
+            try {
+                first = queue.poll(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (first == null) {
+                if (closed) {
+                    return;
+                }
+                continue;
+            }
+
+            // Take what else is waiting, up to about a batch worth of documents, and combine it by tenant
+            drained.add(first);
+            int documents = first.log.getMessageCount();
+            Pending next;
+            while (documents < maxBatchSize && (next = queue.poll()) != null) {
+                drained.add(next);
+                documents += next.log.getMessageCount();
+            }
+            Map<String, List<Pending>> byTenant = new LinkedHashMap<>();
+            for (Pending pending : drained) {
+                byTenant.computeIfAbsent(pending.log.getTenantId(), t -> new ArrayList<>()).add(pending);
+            }
+            drained.clear();
 
-        ingestorClient.sendData(storeFlowDocumentsRequest, enrichedFlowsLog.getTenantId());
+            for (var entry : byTenant.entrySet()) {
+                try {
+                    send(entry.getKey(), entry.getValue());
+                } catch (RuntimeException e) {
+                    // Never leave flows pending, that would leak their permits and stall their acknowledgement
+                    LOG.error("Failed to persist flows of tenant {}", entry.getKey(), e);
+                    fail(entry.getValue(), e);
+                }
+            }
+        }
+    }
+
+    private void send(String tenantId, List<Pending> pendings) {
+        var request = StoreFlowDocumentsRequest.newBuilder();
+        List<Pending> batch = new ArrayList<>();
+        for (Pending pending : pendings) {
+            List<FlowDocument> documents = new ArrayList<>(pending.log.getMessageCount());
+            try {
+                for (var doc : pending.log.getMessageList()) {
+                    documents.add(mapFlowDocument(doc, pending.log));
+                }
+            } catch (RuntimeException e) {
+                // Retrying won't fix the log, so drop it rather than holding back the flows behind it
+                LOG.error(
+                        "Failed to map flows of tenant {}, dropping {} flows",
+                        tenantId,
+                        pending.log.getMessageCount(),
+                        e);
+                persistFailures.mark();
+                complete(List.of(pending));
+                continue;
+            }
+            if (request.getDocumentsCount() > 0 && request.getDocumentsCount() + documents.size() > maxBatchSize) {
+                send(tenantId, request.build(), batch);
+                request = StoreFlowDocumentsRequest.newBuilder();
+                batch = new ArrayList<>();
+            }
+            request.addAllDocuments(documents);
+            batch.add(pending);
+        }
+        if (!batch.isEmpty()) {
+            send(tenantId, request.build(), batch);
+        }
+    }
+
+    /**
+     * Sends the request until the ingestor accepts it, rejects it for good, the attempts are exhausted or the
+     * repository is closed.
+     */
+    private void send(String tenantId, StoreFlowDocumentsRequest request, List<Pending> pendings) {
+        batchSize.update(request.getDocumentsCount());
+        long backoffMs = RETRY_INITIAL_BACKOFF_MS;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                ingestorClient.sendData(request, tenantId);
+                complete(pendings);
+                return;
+            } catch (RuntimeException e) {
+                // Already logged by the client
+                persistFailures.mark(pendings.size());
+                if (!TRANSIENT_CODES.contains(Status.fromThrowable(e).getCode())) {
+                    LOG.error("Ingestor rejected {} flows of tenant {}", request.getDocumentsCount(), tenantId);
+                    persistRejected.mark(pendings.size());
+                    fail(pendings, new FlowRejectedException("Ingestor rejected flows", e));
+                    return;
+                }
+                if (attempt >= MAX_SEND_ATTEMPTS) {
+                    LOG.error("Ingestor did not accept flows of tenant {} after {} attempts", tenantId, attempt);
+                    persistRetriesExhausted.mark(pendings.size());
+                    fail(pendings, new FlowException("Ingestor did not accept flows after " + attempt + " tries", e));
+                    return;
+                }
+                if (closed) {
+                    fail(pendings, new FlowException("Flow repository closed before flows could be persisted", e));
+                    return;
+                }
+            }
+            try {
+                Thread.sleep(backoffMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail(pendings, new FlowException("Interrupted while retrying to persist flows", e));
+                return;
+            }
+            backoffMs = Math.min(backoffMs * 2, RETRY_MAX_BACKOFF_MS);
+        }
+    }
+
+    private void complete(List<Pending> pendings) {
+        long now = System.nanoTime();
+        for (Pending pending : pendings) {
+            if (pending.result.complete(null)) {
+                persistLatency.update(now - pending.enqueuedAt, TimeUnit.NANOSECONDS);
+                window.release();
+            }
+        }
+    }
+
+    private void fail(List<Pending> pendings, Throwable cause) {
+        for (Pending pending : pendings) {
+            if (pending.result.completeExceptionally(cause)) {
+                window.release();
+            }
+        }
+    }
+
+    private static final class Pending {
+        private final TenantLocationSpecificFlowDocumentLog log;
+        private final long enqueuedAt;
+        private final CompletableFuture<Void> result = new CompletableFuture<>();
+
+        private Pending(TenantLocationSpecificFlowDocumentLog log, long enqueuedAt) {
+            this.log = log;
+            this.enqueuedAt = enqueuedAt;
+        }
     }
 
     // ========================================
@@ -22,23 +22,22 @@
 package org.opennms.horizon.flows.processing;
 
 import com.google.protobuf.UInt64Value;
-import io.grpc.Status;
-import io.grpc.StatusRuntimeException;
 import java.net.InetAddress;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import org.opennms.horizon.flows.classification.ClassificationEngine;
-import org.opennms.horizon.flows.classification.ClassificationRequest;
+import org.opennms.horizon.flows.classification.PrimitiveClassificationRequest;
 import org.opennms.horizon.flows.document.FlowDocument;
 import org.opennms.horizon.flows.document.Locality;
 import org.opennms.horizon.flows.document.NodeInfo;
 import org.opennms.horizon.flows.document.TenantLocationSpecificFlowDocumentLog;
-import org.opennms.horizon.flows.grpc.client.InventoryClient;
-import org.opennms.horizon.inventory.dto.IpInterfaceDTO;
 import org.opennms.horizon.shared.utils.InetAddressUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -46,7 +45,11 @@ import org.slf4j.LoggerFactory;
 public class DocumentEnricherImpl {
     private static final Logger LOG = LoggerFactory.getLogger(DocumentEnricherImpl.class);
 
-    private InventoryClient inventoryClient;
+    // Reused for every flow enriched by a thread, so that classifying does not allocate
+    private static final ThreadLocal<PrimitiveClassificationRequest> CLASSIFICATION_REQUEST =
+            ThreadLocal.withInitial(PrimitiveClassificationRequest::new);
+
+    private final NodeInfoCache nodeInfoCache;
 
     private final ClassificationEngine classificationEngine;
 
@@ -54,12 +57,12 @@ public class DocumentEnricherImpl {
     private final FlowDocumentClassificationRequestMapper flowDocumentBuilderClassificationRequestMapper;
 
     public DocumentEnricherImpl(
-            InventoryClient inventoryClient,
+            NodeInfoCache nodeInfoCache,
             ClassificationEngine classificationEngine,
             FlowDocumentClassificationRequestMapper flowDocumentClassificationRequestMapper,
             long clockSkewCorrectionThreshold) {
 
-        this.inventoryClient = Objects.requireNonNull(inventoryClient);
+        this.nodeInfoCache = Objects.requireNonNull(nodeInfoCache);
         this.classificationEngine = Objects.requireNonNull(classificationEngine);
         this.flowDocumentBuilderClassificationRequestMapper = flowDocumentClassificationRequestMapper;
 
@@ -73,9 +76,17 @@ public class DocumentEnricherImpl {
             return Collections.emptyList();
         }
 
-        return flows.stream()
-                .map(f -> this.enrichOne(f, flowsLog.getTenantId(), flowsLog.getLocationId()))
-                .toList();
+        // Resolve the nodes of all flows at once, most flows of a log share their addresses
+        Set<String> ipAddresses = new HashSet<>();
+        for (FlowDocument flow : flows) {
+            ipAddresses.add(flow.getExporterAddress());
+            ipAddresses.add(flow.getSrcAddress());
+            ipAddresses.add(flow.getDstAddress());
+        }
+        Map<String, NodeInfo> nodeInfos =
+                nodeInfoCache.resolve(flowsLog.getTenantId(), flowsLog.getLocationId(), ipAddresses);
+
+        return flows.stream().map(f -> this.enrichOne(f, nodeInfos)).toList();
     }
 
     private boolean isPrivateAddress(String ipAddress) {
@@ -83,43 +94,14 @@ public class DocumentEnricherImpl {
         return inetAddress.isLoopbackAddress() || inetAddress.isLinkLocalAddress() || inetAddress.isSiteLocalAddress();
     }
 
-    private NodeInfo getNodeInfo(String location, String ipAddress, String tenantId) {
-
-        IpInterfaceDTO iface;
-        try {
-            iface = inventoryClient.getIpInterfaceFromQuery(tenantId, ipAddress, location);
-        } catch (StatusRuntimeException e) {
-            if (!Status.NOT_FOUND.getCode().equals(e.getStatus().getCode())) {
-                LOG.warn(
-                        "Fail to get NodeInfo ipAddress: {} location: {} unknown error: {}",
-                        ipAddress,
-                        location,
-                        e.getStatus());
-            }
-            return null;
-        }
-
-        if (iface == null) {
-            return null;
-        }
-        return NodeInfo.newBuilder()
-                .setNodeId(iface.getNodeId())
-                .setInterfaceId(iface.getId())
-                .setForeignId(iface.getHostname()) // temp until we have better solution
-                .build();
-    }
-
     // Note that protobuf semantics prevent nulls in many places here
-    private FlowDocument enrichOne(FlowDocument flow, String tenantId, String location) {
+    private FlowDocument enrichOne(FlowDocument flow, Map<String, NodeInfo> nodeInfos) {
         var document = FlowDocument.newBuilder(flow); // Can never return null
 
         // Node data
-        Optional.ofNullable(getNodeInfo(location, flow.getExporterAddress(), tenantId))
-                .ifPresent(document::setExporterNode);
-        Optional.ofNullable(getNodeInfo(location, flow.getSrcAddress(), tenantId))
-                .ifPresent(document::setSrcNode);
-        Optional.ofNullable(getNodeInfo(location, flow.getDstAddress(), tenantId))
-                .ifPresent(document::setDestNode);
+        Optional.ofNullable(nodeInfos.get(flow.getExporterAddress())).ifPresent(document::setExporterNode);
+        Optional.ofNullable(nodeInfos.get(flow.getSrcAddress())).ifPresent(document::setSrcNode);
+        Optional.ofNullable(nodeInfos.get(flow.getDstAddress())).ifPresent(document::setDestNode);
 
         // Locality
         document.setSrcLocality(isPrivateAddress(flow.getSrcAddress()) ? Locality.PRIVATE : Locality.PUBLIC);
@@ -132,8 +114,9 @@ public class DocumentEnricherImpl {
             document.setFlowLocality(Locality.PRIVATE);
         }
 
-        ClassificationRequest classificationRequest =
-                flowDocumentBuilderClassificationRequestMapper.createClassificationRequest(document.build(), location);
+        // The classified fields are not touched by the enrichment above, so the original flow can be used
+        PrimitiveClassificationRequest classificationRequest = CLASSIFICATION_REQUEST.get().reset();
+        flowDocumentBuilderClassificationRequestMapper.fillClassificationRequest(flow, classificationRequest);
 
         // Check whether classification is possible
         if (classificationRequest.isClassifiable()) {
@@ -22,8 +22,14 @@
 package org.opennms.horizon.flows.processing;
 
 import org.opennms.horizon.flows.classification.ClassificationRequest;
+import org.opennms.horizon.flows.classification.PrimitiveClassificationRequest;
 import org.opennms.horizon.flows.document.FlowDocument;
 
 public interface FlowDocumentClassificationRequestMapper {
     ClassificationRequest createClassificationRequest(FlowDocument document, String location);
+
+    /**
+     * Fills a reset, reusable request with the values of the given document.
+     */
+    void fillClassificationRequest(FlowDocument document, PrimitiveClassificationRequest request);
 }
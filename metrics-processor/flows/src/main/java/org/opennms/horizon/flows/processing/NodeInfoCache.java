@@ -0,0 +1,215 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.horizon.flows.processing;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import org.opennms.horizon.flows.document.NodeInfo;
+import org.opennms.horizon.flows.grpc.client.InventoryClient;
+import org.opennms.horizon.inventory.dto.IpInterfaceDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Resolves IP addresses to the {@link NodeInfo} of their interface in the inventory.
+ * <p>
+ * Lookups are scoped by tenant and location. Both found and unknown addresses are cached, unknown ones usually for a
+ * shorter time so newly discovered nodes show up soon. All addresses missing from the cache are resolved with a
+ * single inventory call, and concurrent lookups of the same address wait for the call already in flight instead of
+ * issuing their own.
+ */
+public class NodeInfoCache {
+    private static final Logger LOG = LoggerFactory.getLogger(NodeInfoCache.class);
+
+    private record Key(String tenantId, String locationId, String ipAddress) {}
+
+    private final InventoryClient inventoryClient;
+    private final boolean enabled;
+
+    private final Cache<Key, NodeInfo> found;
+    private final Cache<Key, Boolean> notFound;
+    private final ConcurrentMap<Key, CompletableFuture<Optional<NodeInfo>>> inFlight = new ConcurrentHashMap<>();
+
+    private final Meter hits;
+    private final Meter misses;
+    private final Meter evictions;
+    private final Meter coalesced;
+
+    /**
+     * @param expireAfterWriteInSec time to keep found addresses, 0 to keep them until evicted by size
+     * @param negativeExpireAfterWriteInSec time to keep unknown addresses, 0 to keep them until evicted by size
+     */
+    public NodeInfoCache(
+            InventoryClient inventoryClient,
+            boolean enabled,
+            long maximumSize,
+            long expireAfterWriteInSec,
+            long negativeExpireAfterWriteInSec,
+            MetricRegistry metrics) {
+        this.inventoryClient = Objects.requireNonNull(inventoryClient);
+        this.enabled = enabled;
+
+        hits = metrics.meter("nodeCacheHits");
+        misses = metrics.meter("nodeCacheMisses");
+        evictions = metrics.meter("nodeCacheEvictions");
+        coalesced = metrics.meter("nodeCacheCoalesced");
+
+        found = buildCache(maximumSize, expireAfterWriteInSec);
+        notFound = buildCache(maximumSize, negativeExpireAfterWriteInSec);
+        metrics.gauge("nodeCacheSize", () -> (Gauge<Long>) () -> found.size() + notFound.size());
+    }
+
+    private <V> Cache<Key, V> buildCache(long maximumSize, long expireAfterWriteInSec) {
+        RemovalListener<Key, V> listener = notification -> {
+            if (notification.wasEvicted()) {
+                evictions.mark();
+            }
+        };
+        var builder = CacheBuilder.newBuilder().maximumSize(maximumSize).removalListener(listener);
+        if (expireAfterWriteInSec > 0) {
+            builder.expireAfterWrite(expireAfterWriteInSec, TimeUnit.SECONDS);
+        }
+        return builder.build();
+    }
+
+    /**
+     * @return the NodeInfo of each given address that has an interface in the inventory, keyed by the address
+     */
+    public Map<String, NodeInfo> resolve(String tenantId, String locationId, Collection<String> ipAddresses) {
+        Map<String, NodeInfo> result = new HashMap<>();
+        Map<Key, CompletableFuture<Optional<NodeInfo>>> owned = new HashMap<>();
+        Map<Key, CompletableFuture<Optional<NodeInfo>>> waiting = new HashMap<>();
+
+        for (String ipAddress : new LinkedHashSet<>(ipAddresses)) {
+            if (ipAddress == null || ipAddress.isEmpty()) {
+                continue;
+            }
+            Key key = new Key(tenantId, locationId, ipAddress);
+            if (lookup(key, result)) {
+                hits.mark();
+                continue;
+            }
+            misses.mark();
+
+            var future = new CompletableFuture<Optional<NodeInfo>>();
+            var pending = inFlight.putIfAbsent(key, future);
+            if (pending != null) {
+                coalesced.mark();
+                waiting.put(key, pending);
+            } else if (lookup(key, result)) {
+                // Loaded by another thread in the meantime
+                inFlight.remove(key, future);
+            } else {
+                owned.put(key, future);
+            }
+        }
+
+        if (!owned.isEmpty()) {
+            load(tenantId, locationId, owned);
+            collect(owned, result);
+        }
+        collect(waiting, result);
+        return result;
+    }
+
+    private boolean lookup(Key key, Map<String, NodeInfo> result) {
+        if (!enabled) {
+            return false;
+        }
+        NodeInfo nodeInfo = found.getIfPresent(key);
+        if (nodeInfo != null) {
+            result.put(key.ipAddress(), nodeInfo);
+            return true;
+        }
+        return notFound.getIfPresent(key) != null;
+    }
+
+    private void load(String tenantId, String locationId, Map<Key, CompletableFuture<Optional<NodeInfo>>> owned) {
+        Set<String> ipAddresses = new LinkedHashSet<>();
+        owned.keySet().forEach(key -> ipAddresses.add(key.ipAddress()));
+        try {
+            Map<String, IpInterfaceDTO> ipInterfaces;
+            try {
+                ipInterfaces = inventoryClient.getIpInterfacesFromQuery(tenantId, ipAddresses, locationId);
+            } catch (StatusRuntimeException e) {
+                if (!Status.NOT_FOUND.getCode().equals(e.getStatus().getCode())) {
+                    // Don't cache anything, the next flows will try again
+                    LOG.warn(
+                            "Fail to get NodeInfo for {} ipAddresses location: {} unknown error: {}",
+                            ipAddresses.size(),
+                            locationId,
+                            e.getStatus());
+                    return;
+                }
+                // Unknown location, so none of the addresses can be found
+                ipInterfaces = Collections.emptyMap();
+            }
+
+            for (var entry : owned.entrySet()) {
+                Key key = entry.getKey();
+                Optional<NodeInfo> nodeInfo =
+                        Optional.ofNullable(ipInterfaces.get(key.ipAddress())).map(NodeInfoCache::toNodeInfo);
+                if (enabled) {
+                    // Cache before completing so that no lookup slips in between
+                    nodeInfo.ifPresentOrElse(info -> found.put(key, info), () -> notFound.put(key, Boolean.TRUE));
+                }
+                entry.getValue().complete(nodeInfo);
+            }
+        } finally {
+            owned.forEach((key, future) -> {
+                future.complete(Optional.empty());
+                inFlight.remove(key, future);
+            });
+        }
+    }
+
+    private static void collect(Map<Key, CompletableFuture<Optional<NodeInfo>>> futures, Map<String, NodeInfo> result) {
+        // Owners always complete their futures, bounded by the deadline of the inventory call
+        futures.forEach((key, future) -> future.join().ifPresent(info -> result.put(key.ipAddress(), info)));
+    }
+
+    private static NodeInfo toNodeInfo(IpInterfaceDTO iface) {
+        return NodeInfo.newBuilder()
+                .setNodeId(iface.getNodeId())
+                .setInterfaceId(iface.getId())
+                .setForeignId(iface.getHostname()) // temp until we have better solution
+                .build();
+    }
+}
@@ -21,9 +21,13 @@
  */
 package org.opennms.horizon.flows.processing;
 
+import java.util.concurrent.CompletableFuture;
 import org.opennms.horizon.flows.document.TenantLocationSpecificFlowDocumentLog;
 import org.opennms.horizon.flows.integration.FlowException;
 
 public interface Pipeline {
-    void process(final TenantLocationSpecificFlowDocumentLog flowLog) throws FlowException;
+    /**
+     * @return completes once the flows are persisted by all repositories, or exceptionally if any of them failed
+     */
+    CompletableFuture<Void> process(final TenantLocationSpecificFlowDocumentLog flowLog) throws FlowException;
 }
@@ -26,8 +26,11 @@ import com.codahale.metrics.Histogram;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.Timer;
 import com.google.common.collect.Maps;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 import org.opennms.horizon.flows.document.TenantLocationSpecificFlowDocumentLog;
 import org.opennms.horizon.flows.integration.FlowException;
 import org.opennms.horizon.flows.integration.FlowRepository;
@@ -70,7 +73,7 @@ public class PipelineImpl implements Pipeline {
         this.logEnrichementTimer = metricRegistry.timer("logEnrichment");
     }
 
-    public void process(TenantLocationSpecificFlowDocumentLog flowsLog) throws FlowException {
+    public CompletableFuture<Void> process(TenantLocationSpecificFlowDocumentLog flowsLog) throws FlowException {
         var flows = flowsLog.getMessageList();
         // Track the number of flows per call
         this.flowsPerLog.update(flows.size());
@@ -79,7 +82,7 @@ public class PipelineImpl implements Pipeline {
         if (flows.isEmpty()) {
             this.emptyFlows.inc();
             LOG.info("Received empty flows for tenant-id={}. Nothing to do.", flowsLog.getTenantId());
-            return;
+            return CompletableFuture.completedFuture(null);
         }
 
         // Enrich with model data
@@ -98,9 +101,11 @@ public class PipelineImpl implements Pipeline {
         // TODO: DC-543 (Mark nodes and interfaces as having associated flows)
 
         // Push flows to persistence
+        final List<CompletableFuture<Void>> persisted = new ArrayList<>();
         for (final var persister : this.persisters.entrySet()) {
-            persister.getValue().persist(enrichedFlowsLog.build());
+            persisted.add(persister.getValue().persist(enrichedFlowsLog.build()));
         }
+        return CompletableFuture.allOf(persisted.toArray(CompletableFuture[]::new));
     }
 
     @SuppressWarnings("rawtypes")
@@ -135,9 +140,15 @@ public class PipelineImpl implements Pipeline {
             this.logTimer = Objects.requireNonNull(logTimer);
         }
 
-        public void persist(final TenantLocationSpecificFlowDocumentLog flowsLog) throws FlowException {
-            try (final var ctx = this.logTimer.time()) {
-                this.repository.persist(flowsLog);
+        public CompletableFuture<Void> persist(final TenantLocationSpecificFlowDocumentLog flowsLog)
+                throws FlowException {
+            // Timed until the repository persisted the flows, not only until it accepted them
+            final var ctx = this.logTimer.time();
+            try {
+                return this.repository.persist(flowsLog).whenComplete((r, ex) -> ctx.stop());
+            } catch (FlowException | RuntimeException e) {
+                ctx.stop();
+                throw e;
             }
         }
     }
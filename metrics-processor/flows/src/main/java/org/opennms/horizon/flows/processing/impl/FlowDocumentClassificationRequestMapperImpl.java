@@ -24,6 +24,7 @@ package org.opennms.horizon.flows.processing.impl;
 import java.util.function.Function;
 import lombok.Setter;
 import org.opennms.horizon.flows.classification.ClassificationRequest;
+import org.opennms.horizon.flows.classification.PrimitiveClassificationRequest;
 import org.opennms.horizon.flows.classification.persistence.api.Protocol;
 import org.opennms.horizon.flows.classification.persistence.api.Protocols;
 import org.opennms.horizon.flows.document.FlowDocument;
@@ -54,4 +55,23 @@ public class FlowDocumentClassificationRequestMapperImpl implements FlowDocument
 
         return request;
     }
+
+    @Override
+    public void fillClassificationRequest(FlowDocument document, PrimitiveClassificationRequest request) {
+        if (document.hasProtocol()) {
+            Protocol protocol = protocolLookupOp.apply(document.getProtocol().getValue());
+            if (protocol != null) {
+                request.setProtocol(protocol.getDecimal());
+            }
+        }
+        request.setExporterAddress(document.getHost());
+        request.getDstAddress().set(document.getDstAddress());
+        if (document.hasDstPort()) {
+            request.setDstPort(document.getDstPort().getValue());
+        }
+        request.getSrcAddress().set(document.getSrcAddress());
+        if (document.hasSrcPort()) {
+            request.setSrcPort(document.getSrcPort().getValue());
+        }
+    }
 }
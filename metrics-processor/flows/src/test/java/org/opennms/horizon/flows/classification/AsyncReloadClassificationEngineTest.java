@@ -24,11 +24,16 @@ package org.opennms.horizon.flows.classification;
 import static org.awaitility.Awaitility.await;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThrows;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import org.junit.Test;
 import org.opennms.horizon.flows.classification.internal.AsyncReloadingClassificationEngine;
 import org.opennms.horizon.flows.classification.persistence.api.Rule;
@@ -110,4 +115,91 @@ public class AsyncReloadClassificationEngineTest {
         await().untilAsserted(() -> assertThat(interrupted.get(), is(4)));
         sleep.set(false);
     }
+
+    @Test
+    public void classificationOnlyWaitsForFirstReload() throws Exception {
+
+        var reloads = new AtomicInteger();
+        var gate = new AtomicReference<>(new CountDownLatch(1));
+
+        ClassificationEngine ce = new ClassificationEngine() {
+            @Override
+            public String classify(ClassificationRequest classificationRequest) {
+                return "app-" + reloads.get();
+            }
+
+            @Override
+            public List<Rule> getInvalidRules() {
+                return null;
+            }
+
+            @Override
+            public void reload() throws InterruptedException {
+                gate.get().await();
+                reloads.incrementAndGet();
+            }
+
+            public void addClassificationRulesReloadedListener(
+                    final ClassificationRulesReloadedListener classificationRulesReloadedListener) {}
+
+            public void removeClassificationRulesReloadedListener(
+                    final ClassificationRulesReloadedListener classificationRulesReloadedListener) {}
+        };
+
+        var x = new AsyncReloadingClassificationEngine(ce);
+
+        // the first reload blocks classification
+        var first = CompletableFuture.supplyAsync(() -> x.classify((ClassificationRequest) null));
+        Thread.sleep(100);
+        assertThat(first.isDone(), is(false));
+
+        gate.getAndSet(new CountDownLatch(1)).countDown();
+        assertThat(first.get(10, TimeUnit.SECONDS), is("app-1"));
+
+        // later reloads don't, the previous rules are used until the reload finished
+        x.reload();
+        var second = CompletableFuture.supplyAsync(() -> x.classify((ClassificationRequest) null));
+        assertThat(second.get(10, TimeUnit.SECONDS), is("app-1"));
+
+        gate.get().countDown();
+        await().untilAsserted(() -> assertThat(x.classify((ClassificationRequest) null), is("app-2")));
+    }
+
+    @Test
+    public void classificationFailsAfterFailedReload() {
+
+        var fail = new AtomicBoolean(true);
+
+        ClassificationEngine ce = new ClassificationEngine() {
+            @Override
+            public String classify(ClassificationRequest classificationRequest) {
+                return "app";
+            }
+
+            @Override
+            public List<Rule> getInvalidRules() {
+                return null;
+            }
+
+            @Override
+            public void reload() {
+                if (fail.get()) {
+                    throw new IllegalStateException("invalid rules");
+                }
+            }
+
+            public void addClassificationRulesReloadedListener(
+                    final ClassificationRulesReloadedListener classificationRulesReloadedListener) {}
+
+            public void removeClassificationRulesReloadedListener(
+                    final ClassificationRulesReloadedListener classificationRulesReloadedListener) {}
+        };
+
+        var x = new AsyncReloadingClassificationEngine(ce);
+        assertThrows(RuntimeException.class, () -> x.classify((ClassificationRequest) null));
+
+        fail.set(false);
+        x.reload();
+        await().untilAsserted(() -> assertThat(x.classify((ClassificationRequest) null), is("app")));
+    }
 }
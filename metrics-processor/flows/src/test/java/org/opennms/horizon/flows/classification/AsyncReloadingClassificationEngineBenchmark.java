@@ -0,0 +1,135 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.horizon.flows.classification;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.infra.ThreadParams;
+import org.opennms.horizon.flows.classification.internal.AsyncReloadingClassificationEngine;
+import org.opennms.horizon.flows.classification.internal.DefaultClassificationEngine;
+
+/**
+ * Measures the classification throughput of several threads sharing one classification engine.
+ * <p>
+ * Compares the plain {@link DefaultClassificationEngine} with the {@link AsyncReloadingClassificationEngine} wrapping
+ * it, optionally while the rules are reloaded in the background every {@code reloadIntervalMs}.
+ */
+public class AsyncReloadingClassificationEngineBenchmark {
+
+    // the number of classification request that are processed by a thread in a single benchmark method call
+    private static final int BATCH_SIZE = 1000;
+
+    private static final String PRE_DEFINED_RULES_RESOURCE = "/pre-defined-rules.csv";
+
+    public static void main(String[] args) throws Exception {
+        org.openjdk.jmh.Main.main(args);
+    }
+
+    @State(Scope.Benchmark)
+    public static class EngineState {
+
+        @Param({"default", "asyncReloading"})
+        public String engine;
+
+        // 0 disables reloads
+        @Param({"0", "100"})
+        public int reloadIntervalMs;
+
+        private ClassificationEngine classificationEngine;
+        private ScheduledExecutorService reloader;
+
+        @Setup
+        public void setup() throws InterruptedException, IOException {
+            var rules = ClassificationEngineBenchmark.getRules(PRE_DEFINED_RULES_RESOURCE);
+            var defaultEngine =
+                    new DefaultClassificationEngine(() -> rules, org.mockito.Mockito.mock(FilterService.class));
+            classificationEngine = "asyncReloading".equals(engine)
+                    ? new AsyncReloadingClassificationEngine(defaultEngine)
+                    : defaultEngine;
+            if (reloadIntervalMs > 0) {
+                reloader = Executors.newSingleThreadScheduledExecutor();
+                reloader.scheduleWithFixedDelay(
+                        () -> {
+                            try {
+                                classificationEngine.reload();
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                            }
+                        },
+                        reloadIntervalMs,
+                        reloadIntervalMs,
+                        TimeUnit.MILLISECONDS);
+            }
+        }
+
+        @TearDown
+        public void tearDown() {
+            if (reloader != null) {
+                reloader.shutdownNow();
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class RequestState {
+
+        private List<ClassificationRequest> classificationRequests;
+
+        @Setup(Level.Trial)
+        public void setup(ThreadParams threadParams) throws IOException {
+            var rules = ClassificationEngineBenchmark.getRules(PRE_DEFINED_RULES_RESOURCE);
+            // every thread classifies different flows
+            classificationRequests = RandomClassificationEngineTest.streamOfclassificationRequests(rules, 123456L)
+                    .skip((long) threadParams.getThreadIndex() * BATCH_SIZE)
+                    .limit(BATCH_SIZE)
+                    .collect(Collectors.toList());
+        }
+    }
+
+    @Benchmark
+    @Fork(value = 1)
+    @Threads(4)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 2)
+    public void classify(EngineState engineState, RequestState requestState, Blackhole blackhole) {
+        var classificationEngine = engineState.classificationEngine;
+        for (var cr : requestState.classificationRequests) {
+            blackhole.consume(classificationEngine.classify(cr));
+        }
+    }
+}
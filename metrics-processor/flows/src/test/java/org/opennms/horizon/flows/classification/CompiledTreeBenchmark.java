@@ -0,0 +1,119 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.horizon.flows.classification;
+
+import com.google.protobuf.UInt32Value;
+import java.io.IOException;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.opennms.horizon.flows.classification.internal.DefaultClassificationEngine;
+import org.opennms.horizon.flows.document.FlowDocument;
+import org.opennms.horizon.flows.processing.impl.FlowDocumentClassificationRequestMapperImpl;
+
+/**
+ * Compares classifying flow documents by the decision tree with classifying them by the compiled decision tree.
+ * <p>
+ * Rule sets are loaded from csv files like in {@link ClassificationEngineBenchmark}. Run with {@code -prof gc} to
+ * compare the allocation rates of both paths.
+ */
+public class CompiledTreeBenchmark {
+
+    // the number of flows that are classified in a single benchmark method call
+    private static final int BATCH_SIZE = 1000;
+
+    private static final String EXAMPLE_RULES_RESOURCE = "/example-rules.csv";
+    private static final String PRE_DEFINED_RULES_RESOURCE = "/pre-defined-rules.csv";
+
+    public static void main(String[] args) throws Exception {
+        org.openjdk.jmh.Main.main(args);
+    }
+
+    @State(Scope.Benchmark)
+    public static class BState {
+
+        @Param({EXAMPLE_RULES_RESOURCE, PRE_DEFINED_RULES_RESOURCE})
+        public String ruleSet;
+
+        private ClassificationEngine classificationEngine;
+        private List<FlowDocument> flows;
+        private final FlowDocumentClassificationRequestMapperImpl mapper =
+                new FlowDocumentClassificationRequestMapperImpl();
+
+        @Setup
+        public void setup() throws InterruptedException, IOException {
+            var rules = ClassificationEngineBenchmark.getRules(ruleSet);
+            classificationEngine =
+                    new DefaultClassificationEngine(() -> rules, org.mockito.Mockito.mock(FilterService.class));
+            flows = RandomClassificationEngineTest.streamOfclassificationRequests(rules, 123456l)
+                    .limit(BATCH_SIZE)
+                    .map(CompiledTreeBenchmark::flow)
+                    .collect(Collectors.toList());
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class TState {
+        private final PrimitiveClassificationRequest request = new PrimitiveClassificationRequest();
+    }
+
+    private static FlowDocument flow(ClassificationRequest cr) {
+        return FlowDocument.newBuilder()
+                .setProtocol(UInt32Value.of(cr.getProtocol().getDecimal()))
+                .setSrcPort(UInt32Value.of(cr.getSrcPort()))
+                .setDstPort(UInt32Value.of(cr.getDstPort()))
+                .setSrcAddress(cr.getSrcAddress().toString())
+                .setDstAddress(cr.getDstAddress().toString())
+                .build();
+    }
+
+    @Benchmark
+    @Fork(value = 1)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 2)
+    public void classifyByTree(BState state, Blackhole blackhole) {
+        for (var flow : state.flows) {
+            var cr = state.mapper.createClassificationRequest(flow, "default");
+            blackhole.consume(state.classificationEngine.classify(cr));
+        }
+    }
+
+    @Benchmark
+    @Fork(value = 1)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 2)
+    public void classifyByCompiledTree(BState state, TState threadState, Blackhole blackhole) {
+        for (var flow : state.flows) {
+            var cr = threadState.request.reset();
+            state.mapper.fillClassificationRequest(flow, cr);
+            blackhole.consume(state.classificationEngine.classify(cr));
+        }
+    }
+}
@@ -116,6 +116,9 @@ public class ExampleRulesTest {
                             .findFirst()
                             .map(r -> r.name);
                     assertThat("classification request: " + cr, byEngine, is(byBruteForce));
+                    var byCompiledTree = Optional.ofNullable(
+                            classificationEngine.classify(PrimitiveClassificationRequest.of(cr)));
+                    assertThat("classification request: " + cr, byCompiledTree, is(byBruteForce));
                 });
     }
 }
@@ -0,0 +1,98 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.horizon.flows.classification;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+public class PrimitiveClassificationRequestTest {
+
+    @Test
+    void testParsesAddressesLikeIpAddr() {
+        var address = new PrimitiveClassificationRequest.Address();
+        for (var literal : new String[] {
+            "0.0.0.0",
+            "10.0.0.1",
+            "255.255.255.255",
+            "::",
+            "::1",
+            "1::",
+            "fe80::1:2",
+            "2001:db8:0:0:0:0:2:1",
+            "FFFF:ffff:ffff:ffff:ffff:ffff:ffff:ffff",
+            "::ffff:10.0.0.1",
+            "::ffff:a00:1",
+            "1::2::3"
+        }) {
+            assertParsed(address, literal);
+        }
+
+        var random = new Random(42);
+        for (int i = 0; i < 1000; i++) {
+            assertParsed(address, (random.nextInt() >>> 24) + "." + random.nextInt(256) + ".0." + random.nextInt(256));
+            var sb = new StringBuilder();
+            for (int g = 0; g < 8; g++) {
+                sb.append(g == 0 ? "" : ":").append(Integer.toHexString(random.nextInt(0x10000)));
+            }
+            assertParsed(address, sb.toString());
+        }
+    }
+
+    @Test
+    void testUnknownProtocolIsAbsent() {
+        var request = new PrimitiveClassificationRequest();
+        request.setProtocol(6);
+        assertTrue(request.hasProtocol());
+        request.setProtocol(255);
+        assertFalse(request.hasProtocol());
+        request.setProtocol(-1);
+        assertFalse(request.hasProtocol());
+    }
+
+    @Test
+    void testClassifiable() {
+        var request = new PrimitiveClassificationRequest();
+        assertFalse(request.isClassifiable());
+        request.setProtocol(6);
+        request.setSrcPort(123);
+        assertFalse(request.isClassifiable());
+        request.setDstPort(456);
+        assertTrue(request.isClassifiable());
+        assertFalse(request.reset().isClassifiable());
+    }
+
+    private static void assertParsed(PrimitiveClassificationRequest.Address address, String literal) {
+        IpAddr expected;
+        try {
+            expected = IpAddr.of(literal);
+        } catch (RuntimeException e) {
+            return;
+        }
+        address.set(literal);
+        assertTrue(address.isPresent(), literal);
+        assertEquals(expected, address.toIpAddr(), literal);
+    }
+}
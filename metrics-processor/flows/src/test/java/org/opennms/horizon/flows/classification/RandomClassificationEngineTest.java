@@ -68,7 +68,7 @@ import org.slf4j.LoggerFactory;
  * <p>
  * Random rule sets are generated and used to instantiate classification engines. Then randomized classification
  * requests are generated based on the rule sets. Classification is checked by comparing the outcome when classifying
- * by the decision tree or by a simple brute force algorithm.
+ * by the decision tree, by the compiled decision tree, or by a simple brute force algorithm.
  */
 public class RandomClassificationEngineTest {
 
@@ -133,6 +133,7 @@ public class RandomClassificationEngineTest {
 
         var res = rulesAndRequests.get2().stream().allMatch(r -> {
             var appByTree = Optional.ofNullable(ce.classify(r));
+            var appByCompiledTree = Optional.ofNullable(ce.classify(PrimitiveClassificationRequest.of(r)));
             // brute force classification
             // -> take the result of the first matching classifier
             var appDirect = classifiers.stream()
@@ -140,7 +141,7 @@ public class RandomClassificationEngineTest {
                     .filter(s -> s != null)
                     .findFirst()
                     .map(cr -> cr.name);
-            return Objects.equals(appByTree, appDirect);
+            return Objects.equals(appByTree, appDirect) && Objects.equals(appByCompiledTree, appDirect);
         });
         LOG.debug("checked classification");
         return res;
@@ -21,9 +21,21 @@
  */
 package org.opennms.horizon.flows.integration;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.codahale.metrics.MetricRegistry;
 import io.grpc.ManagedChannel;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.ArgumentMatcher;
 import org.mockito.MockedStatic;
 import org.mockito.Mockito;
@@ -39,6 +51,7 @@ class FlowRepositoryImplTest {
 
     private final String tenantId = "any-tenant-id";
 
+    private final MetricRegistry metricRegistry = new MetricRegistry();
     private FlowRepositoryImpl flowRepository;
     private final IngesterGrpc.IngesterBlockingStub ingesterBlockingStub =
             Mockito.mock(IngesterGrpc.IngesterBlockingStub.class);
@@ -47,7 +60,7 @@ class FlowRepositoryImplTest {
 
     @BeforeEach
     public void setUp() {
-        flowRepository = new FlowRepositoryImpl(ingestorClient);
+        flowRepository = new FlowRepositoryImpl(ingestorClient, 10, 100, 1, metricRegistry);
         ingestorClient.setIngesterBlockingStub(ingesterBlockingStub);
         Mockito.when(ingesterBlockingStub.withDeadlineAfter(Mockito.anyLong(), Mockito.any()))
                 .thenReturn(ingesterBlockingStub);
@@ -65,14 +78,15 @@ class FlowRepositoryImplTest {
     }
 
     @Test
-    void testCorrectNumberOfInteractionsWithIngesterStub() {
+    void testCorrectNumberOfInteractionsWithIngesterStub() throws Exception {
         // Given
         var flowsLog = TenantLocationSpecificFlowDocumentLog.newBuilder()
                 .setTenantId(tenantId)
                 .addMessage(FlowDocument.newBuilder());
 
         // When
-        flowRepository.persist(flowsLog.build());
+        var persisted = flowRepository.persist(flowsLog.build());
+        flowRepository.close();
 
         // Then
         class FlowDocumentArgumentMatcher implements ArgumentMatcher<StoreFlowDocumentsRequest> {
@@ -84,5 +98,118 @@ class FlowRepositoryImplTest {
 
         Mockito.verify(ingesterBlockingStub, Mockito.times(3))
                 .storeFlowDocuments(Mockito.argThat(new FlowDocumentArgumentMatcher()));
+        assertTrue(persisted.isDone());
+        assertFalse(persisted.isCompletedExceptionally());
+    }
+
+    @Test
+    void testRetriesUntilIngestorAcceptsFlows() throws Exception {
+        // Given
+        var flowsLog = TenantLocationSpecificFlowDocumentLog.newBuilder()
+                .setTenantId(tenantId)
+                .addMessage(FlowDocument.newBuilder())
+                .build();
+        // The client gives up after three attempts, so the repository has to retry the request
+        Mockito.reset(ingesterBlockingStub);
+        Mockito.when(ingesterBlockingStub.withDeadlineAfter(Mockito.anyLong(), Mockito.any()))
+                .thenReturn(ingesterBlockingStub);
+        Mockito.when(ingesterBlockingStub.withInterceptors(Mockito.any())).thenReturn(ingesterBlockingStub);
+        Mockito.when(ingesterBlockingStub.storeFlowDocuments(Mockito.any()))
+                .thenThrow(new StatusRuntimeException(Status.UNAVAILABLE))
+                .thenThrow(new StatusRuntimeException(Status.UNAVAILABLE))
+                .thenThrow(new StatusRuntimeException(Status.UNAVAILABLE))
+                .thenReturn(StoreFlowDocumentsResponse.newBuilder().build());
+
+        // When
+        CompletableFuture<Void> persisted = flowRepository.persist(flowsLog);
+
+        // Then
+        persisted.get(10, TimeUnit.SECONDS);
+        Mockito.verify(ingesterBlockingStub, Mockito.times(4)).storeFlowDocuments(Mockito.any());
+        assertEquals(1, metricRegistry.meter("persistFailures").getCount());
+        flowRepository.close();
+    }
+
+    @Test
+    void testFailsFlowsNotPersistedOnClose() throws Exception {
+        // Given
+        var flowsLog = TenantLocationSpecificFlowDocumentLog.newBuilder()
+                .setTenantId(tenantId)
+                .addMessage(FlowDocument.newBuilder())
+                .build();
+        Mockito.reset(ingesterBlockingStub);
+        Mockito.when(ingesterBlockingStub.withDeadlineAfter(Mockito.anyLong(), Mockito.any()))
+                .thenReturn(ingesterBlockingStub);
+        Mockito.when(ingesterBlockingStub.withInterceptors(Mockito.any())).thenReturn(ingesterBlockingStub);
+        Mockito.when(ingesterBlockingStub.storeFlowDocuments(Mockito.any()))
+                .thenThrow(new StatusRuntimeException(Status.UNAVAILABLE));
+
+        // When
+        CompletableFuture<Void> persisted = flowRepository.persist(flowsLog);
+        flowRepository.close();
+
+        // Then
+        var e = assertThrows(ExecutionException.class, () -> persisted.get(10, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof FlowException);
+        assertEquals(0, metricRegistry.timer("persistLatency").getCount());
+    }
+
+    @Test
+    void testFailsRejectedFlowsWithoutRetrying() throws Exception {
+        // Given
+        var flowsLog = TenantLocationSpecificFlowDocumentLog.newBuilder()
+                .setTenantId(tenantId)
+                .addMessage(FlowDocument.newBuilder())
+                .build();
+        Mockito.reset(ingesterBlockingStub);
+        Mockito.when(ingesterBlockingStub.withDeadlineAfter(Mockito.anyLong(), Mockito.any()))
+                .thenReturn(ingesterBlockingStub);
+        Mockito.when(ingesterBlockingStub.withInterceptors(Mockito.any())).thenReturn(ingesterBlockingStub);
+        Mockito.when(ingesterBlockingStub.storeFlowDocuments(Mockito.any()))
+                .thenThrow(new StatusRuntimeException(Status.RESOURCE_EXHAUSTED));
+
+        // When
+        CompletableFuture<Void> persisted = flowRepository.persist(flowsLog);
+
+        // Then
+        var e = assertThrows(ExecutionException.class, () -> persisted.get(10, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof FlowRejectedException);
+        // Only the attempts of the client itself
+        Mockito.verify(ingesterBlockingStub, Mockito.times(3)).storeFlowDocuments(Mockito.any());
+        assertEquals(1, metricRegistry.meter("persistRejected").getCount());
+        flowRepository.close();
+    }
+
+    @Test
+    void testCombinesLogsOfTenant() throws Exception {
+        // Given
+        var flowsLog = TenantLocationSpecificFlowDocumentLog.newBuilder()
+                .setTenantId(tenantId)
+                .addMessage(FlowDocument.newBuilder())
+                .addMessage(FlowDocument.newBuilder())
+                .build();
+        Mockito.reset(ingesterBlockingStub);
+        Mockito.when(ingesterBlockingStub.withDeadlineAfter(Mockito.anyLong(), Mockito.any()))
+                .thenReturn(ingesterBlockingStub);
+        Mockito.when(ingesterBlockingStub.withInterceptors(Mockito.any())).thenReturn(ingesterBlockingStub);
+        Mockito.when(ingesterBlockingStub.storeFlowDocuments(Mockito.any()))
+                .thenReturn(StoreFlowDocumentsResponse.newBuilder().build());
+
+        // When
+        for (int i = 0; i < 10; i++) {
+            flowRepository.persist(flowsLog);
+        }
+        flowRepository.close();
+
+        // Then
+        var requests = ArgumentCaptor.forClass(StoreFlowDocumentsRequest.class);
+        Mockito.verify(ingesterBlockingStub, Mockito.atLeastOnce()).storeFlowDocuments(requests.capture());
+        assertEquals(
+                20,
+                requests.getAllValues().stream()
+                        .mapToInt(StoreFlowDocumentsRequest::getDocumentsCount)
+                        .sum());
+        assertEquals(10, metricRegistry.timer("persistLatency").getCount());
+        assertEquals(0, metricRegistry.meter("persistFailures").getCount());
     }
 }
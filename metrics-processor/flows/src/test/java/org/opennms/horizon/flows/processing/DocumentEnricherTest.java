@@ -23,6 +23,7 @@ package org.opennms.horizon.flows.processing;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import com.codahale.metrics.MetricRegistry;
 import com.google.protobuf.Descriptors;
 import com.google.protobuf.UInt32Value;
 import com.google.protobuf.UInt64Value;
@@ -33,13 +34,14 @@ import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 import org.opennms.horizon.flows.classification.ClassificationEngine;
-import org.opennms.horizon.flows.classification.ClassificationRequest;
+import org.opennms.horizon.flows.classification.PrimitiveClassificationRequest;
 import org.opennms.horizon.flows.document.FlowDocument;
 import org.opennms.horizon.flows.document.Locality;
 import org.opennms.horizon.flows.document.NetflowVersion;
@@ -52,7 +54,7 @@ class DocumentEnricherTest {
     private InventoryClient mockInventoryClient;
     private ClassificationEngine mockClassificationEngine;
     private FlowDocumentClassificationRequestMapper mockFlowDocumentClassificationRequestMapper;
-    private ClassificationRequest mockClassificationRequest;
+    private NodeInfoCache nodeInfoCache;
 
     private TenantLocationSpecificFlowDocumentLog testDocumentLog;
 
@@ -63,7 +65,7 @@ class DocumentEnricherTest {
         mockInventoryClient = Mockito.mock(InventoryClient.class);
         mockClassificationEngine = Mockito.mock(ClassificationEngine.class);
         mockFlowDocumentClassificationRequestMapper = Mockito.mock(FlowDocumentClassificationRequestMapper.class);
-        mockClassificationRequest = Mockito.mock(ClassificationRequest.class);
+        nodeInfoCache = new NodeInfoCache(mockInventoryClient, true, 1000, 60, 60, new MetricRegistry());
 
         testDocumentLog = TenantLocationSpecificFlowDocumentLog.newBuilder()
                 .setTenantId("x-tenant-id-x")
@@ -79,11 +81,7 @@ class DocumentEnricherTest {
                 .build();
 
         target = new DocumentEnricherImpl(
-                mockInventoryClient, mockClassificationEngine, mockFlowDocumentClassificationRequestMapper, 0);
-
-        Mockito.when(mockFlowDocumentClassificationRequestMapper.createClassificationRequest(
-                        Mockito.any(FlowDocument.class), Mockito.any(String.class)))
-                .thenReturn(mockClassificationRequest);
+                nodeInfoCache, mockClassificationEngine, mockFlowDocumentClassificationRequestMapper, 0);
     }
 
     @Test
@@ -92,7 +90,7 @@ class DocumentEnricherTest {
         // Setup Test Data and Interactions
         //
         target = new DocumentEnricherImpl(
-                mockInventoryClient, mockClassificationEngine, mockFlowDocumentClassificationRequestMapper, 100);
+                nodeInfoCache, mockClassificationEngine, mockFlowDocumentClassificationRequestMapper, 100);
 
         //
         // Execute
@@ -111,7 +109,7 @@ class DocumentEnricherTest {
         // Setup Test Data and Interactions
         //
         target = new DocumentEnricherImpl(
-                mockInventoryClient, mockClassificationEngine, mockFlowDocumentClassificationRequestMapper, 100);
+                nodeInfoCache, mockClassificationEngine, mockFlowDocumentClassificationRequestMapper, 100);
 
         var now = Instant.now();
         int timeOffset = 100;
@@ -174,7 +172,7 @@ class DocumentEnricherTest {
         // Setup Test Data and Interactions
         //
         target = new DocumentEnricherImpl(
-                mockInventoryClient, mockClassificationEngine, mockFlowDocumentClassificationRequestMapper, 100);
+                nodeInfoCache, mockClassificationEngine, mockFlowDocumentClassificationRequestMapper, 100);
 
         var now = Instant.now();
         int timeOffset = 99;
@@ -221,7 +219,7 @@ class DocumentEnricherTest {
         // Setup Test Data and Interactions
         //
         target = new DocumentEnricherImpl(
-                mockInventoryClient, mockClassificationEngine, mockFlowDocumentClassificationRequestMapper, 100);
+                nodeInfoCache, mockClassificationEngine, mockFlowDocumentClassificationRequestMapper, 100);
         var noneLog = TenantLocationSpecificFlowDocumentLog.newBuilder();
 
         //
@@ -241,10 +239,11 @@ class DocumentEnricherTest {
         // Setup Test Data and Interactions
         //
         target = new DocumentEnricherImpl(
-                mockInventoryClient, mockClassificationEngine, mockFlowDocumentClassificationRequestMapper, 100);
+                nodeInfoCache, mockClassificationEngine, mockFlowDocumentClassificationRequestMapper, 100);
         StatusRuntimeException testException = new StatusRuntimeException(Status.NOT_FOUND);
 
-        Mockito.when(mockInventoryClient.getIpInterfaceFromQuery("x-tenant-id-x", "1.1.1.1", "x-location-x"))
+        Mockito.when(mockInventoryClient.getIpInterfacesFromQuery(
+                        Mockito.eq("x-tenant-id-x"), Mockito.anyCollection(), Mockito.eq("x-location-x")))
                 .thenThrow(testException);
 
         //
@@ -271,15 +270,16 @@ class DocumentEnricherTest {
         // Setup Test Data and Interactions
         //
         target = new DocumentEnricherImpl(
-                mockInventoryClient, mockClassificationEngine, mockFlowDocumentClassificationRequestMapper, 100);
+                nodeInfoCache, mockClassificationEngine, mockFlowDocumentClassificationRequestMapper, 100);
         IpInterfaceDTO testIpInterfaceDTO = IpInterfaceDTO.newBuilder()
                 .setNodeId(123123)
                 .setId(456456)
                 .setHostname("x-hostname-x")
                 .build();
 
-        Mockito.when(mockInventoryClient.getIpInterfaceFromQuery("x-tenant-id-x", "1.1.1.1", "x-location-x"))
-                .thenReturn(testIpInterfaceDTO);
+        Mockito.when(mockInventoryClient.getIpInterfacesFromQuery(
+                        Mockito.eq("x-tenant-id-x"), Mockito.anyCollection(), Mockito.eq("x-location-x")))
+                .thenReturn(Map.of("1.1.1.1", testIpInterfaceDTO));
 
         //
         // Execute
@@ -313,10 +313,11 @@ class DocumentEnricherTest {
         // Setup Test Data and Interactions
         //
         target = new DocumentEnricherImpl(
-                mockInventoryClient, mockClassificationEngine, mockFlowDocumentClassificationRequestMapper, 100);
+                nodeInfoCache, mockClassificationEngine, mockFlowDocumentClassificationRequestMapper, 100);
         StatusRuntimeException testException = new StatusRuntimeException(Status.INVALID_ARGUMENT);
 
-        Mockito.when(mockInventoryClient.getIpInterfaceFromQuery("x-tenant-id-x", "1.1.1.1", "x-location-x"))
+        Mockito.when(mockInventoryClient.getIpInterfacesFromQuery(
+                        Mockito.eq("x-tenant-id-x"), Mockito.anyCollection(), Mockito.eq("x-location-x")))
                 .thenThrow(testException);
 
         //
@@ -335,8 +336,17 @@ class DocumentEnricherTest {
         //
         // Setup Test Data and Interactions
         //
-        Mockito.when(mockClassificationRequest.isClassifiable()).thenReturn(true);
-        Mockito.when(mockClassificationEngine.classify(mockClassificationRequest))
+        Mockito.doAnswer(invocation -> {
+                    PrimitiveClassificationRequest request = invocation.getArgument(1);
+                    request.setProtocol(6);
+                    request.setSrcPort(510);
+                    request.setDstPort(80);
+                    return null;
+                })
+                .when(mockFlowDocumentClassificationRequestMapper)
+                .fillClassificationRequest(
+                        Mockito.any(FlowDocument.class), Mockito.any(PrimitiveClassificationRequest.class));
+        Mockito.when(mockClassificationEngine.classify(Mockito.any(PrimitiveClassificationRequest.class)))
                 .thenReturn("x-application-x");
 
         //
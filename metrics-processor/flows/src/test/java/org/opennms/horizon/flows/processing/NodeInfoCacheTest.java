@@ -0,0 +1,172 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.horizon.flows.processing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.codahale.metrics.MetricRegistry;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.opennms.horizon.flows.document.NodeInfo;
+import org.opennms.horizon.flows.grpc.client.InventoryClient;
+import org.opennms.horizon.inventory.dto.IpInterfaceDTO;
+
+class NodeInfoCacheTest {
+    private static final String TENANT_ID = "x-tenant-id-x";
+    private static final String LOCATION_ID = "x-location-x";
+
+    private final IpInterfaceDTO testIpInterfaceDTO = IpInterfaceDTO.newBuilder()
+            .setNodeId(123123)
+            .setId(456456)
+            .setHostname("x-hostname-x")
+            .build();
+
+    private InventoryClient mockInventoryClient;
+    private MetricRegistry metrics;
+
+    private NodeInfoCache target;
+
+    @BeforeEach
+    public void setUp() {
+        mockInventoryClient = Mockito.mock(InventoryClient.class);
+        metrics = new MetricRegistry();
+        target = new NodeInfoCache(mockInventoryClient, true, 1000, 60, 60, metrics);
+    }
+
+    @Test
+    void testResolvesAllAddressesInOneCall() {
+        Mockito.when(mockInventoryClient.getIpInterfacesFromQuery(TENANT_ID, Set.of("1.1.1.1", "2.2.2.2"), LOCATION_ID))
+                .thenReturn(Map.of("1.1.1.1", testIpInterfaceDTO));
+
+        Map<String, NodeInfo> result = target.resolve(TENANT_ID, LOCATION_ID, List.of("1.1.1.1", "2.2.2.2", "1.1.1.1"));
+
+        assertEquals(1, result.size());
+        assertEquals(123123, result.get("1.1.1.1").getNodeId());
+        assertEquals(456456, result.get("1.1.1.1").getInterfaceId());
+        assertEquals("x-hostname-x", result.get("1.1.1.1").getForeignId());
+        Mockito.verify(mockInventoryClient, Mockito.times(1))
+                .getIpInterfacesFromQuery(Mockito.any(), Mockito.anyCollection(), Mockito.any());
+    }
+
+    @Test
+    void testCachesFoundAndUnknownAddresses() {
+        Mockito.when(mockInventoryClient.getIpInterfacesFromQuery(
+                        Mockito.eq(TENANT_ID), Mockito.anyCollection(), Mockito.eq(LOCATION_ID)))
+                .thenReturn(Map.of("1.1.1.1", testIpInterfaceDTO));
+
+        target.resolve(TENANT_ID, LOCATION_ID, List.of("1.1.1.1", "2.2.2.2"));
+        Map<String, NodeInfo> result = target.resolve(TENANT_ID, LOCATION_ID, List.of("1.1.1.1", "2.2.2.2"));
+
+        assertEquals(Set.of("1.1.1.1"), result.keySet());
+        Mockito.verify(mockInventoryClient, Mockito.times(1))
+                .getIpInterfacesFromQuery(Mockito.any(), Mockito.anyCollection(), Mockito.any());
+        assertEquals(2, metrics.meter("nodeCacheHits").getCount());
+        assertEquals(2, metrics.meter("nodeCacheMisses").getCount());
+    }
+
+    @Test
+    void testScopesByTenantAndLocation() {
+        Mockito.when(mockInventoryClient.getIpInterfacesFromQuery(
+                        Mockito.any(), Mockito.anyCollection(), Mockito.any()))
+                .thenReturn(Map.of("1.1.1.1", testIpInterfaceDTO));
+
+        target.resolve(TENANT_ID, LOCATION_ID, List.of("1.1.1.1"));
+        target.resolve("other-tenant", LOCATION_ID, List.of("1.1.1.1"));
+        target.resolve(TENANT_ID, "other-location", List.of("1.1.1.1"));
+
+        Mockito.verify(mockInventoryClient, Mockito.times(3))
+                .getIpInterfacesFromQuery(Mockito.any(), Mockito.anyCollection(), Mockito.any());
+    }
+
+    @Test
+    void testDoesNotCacheFailedLookups() {
+        Mockito.when(mockInventoryClient.getIpInterfacesFromQuery(
+                        Mockito.eq(TENANT_ID), Mockito.anyCollection(), Mockito.eq(LOCATION_ID)))
+                .thenThrow(new StatusRuntimeException(Status.UNAVAILABLE))
+                .thenReturn(Map.of("1.1.1.1", testIpInterfaceDTO));
+
+        assertTrue(target.resolve(TENANT_ID, LOCATION_ID, List.of("1.1.1.1")).isEmpty());
+        assertEquals(1, target.resolve(TENANT_ID, LOCATION_ID, List.of("1.1.1.1")).size());
+    }
+
+    @Test
+    void testCachesUnknownLocation() {
+        Mockito.when(mockInventoryClient.getIpInterfacesFromQuery(
+                        Mockito.eq(TENANT_ID), Mockito.anyCollection(), Mockito.eq(LOCATION_ID)))
+                .thenThrow(new StatusRuntimeException(Status.NOT_FOUND));
+
+        assertTrue(target.resolve(TENANT_ID, LOCATION_ID, List.of("1.1.1.1")).isEmpty());
+        assertTrue(target.resolve(TENANT_ID, LOCATION_ID, List.of("1.1.1.1")).isEmpty());
+        Mockito.verify(mockInventoryClient, Mockito.times(1))
+                .getIpInterfacesFromQuery(Mockito.any(), Mockito.anyCollection(), Mockito.any());
+    }
+
+    @Test
+    void testCoalescesConcurrentLookups() throws Exception {
+        CountDownLatch inCall = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Mockito.when(mockInventoryClient.getIpInterfacesFromQuery(
+                        Mockito.eq(TENANT_ID), Mockito.anyCollection(), Mockito.eq(LOCATION_ID)))
+                .thenAnswer(invocation -> {
+                    inCall.countDown();
+                    release.await(10, TimeUnit.SECONDS);
+                    return Map.of("1.1.1.1", testIpInterfaceDTO);
+                });
+
+        var first = CompletableFuture.supplyAsync(() -> target.resolve(TENANT_ID, LOCATION_ID, List.of("1.1.1.1")));
+        assertTrue(inCall.await(10, TimeUnit.SECONDS));
+        var second = CompletableFuture.supplyAsync(() -> target.resolve(TENANT_ID, LOCATION_ID, List.of("1.1.1.1")));
+        while (metrics.meter("nodeCacheCoalesced").getCount() == 0) {
+            Thread.sleep(10);
+        }
+        release.countDown();
+
+        assertEquals(1, first.get(10, TimeUnit.SECONDS).size());
+        assertEquals(1, second.get(10, TimeUnit.SECONDS).size());
+        Mockito.verify(mockInventoryClient, Mockito.times(1))
+                .getIpInterfacesFromQuery(Mockito.any(), Mockito.anyCollection(), Mockito.any());
+    }
+
+    @Test
+    void testDisabled() {
+        target = new NodeInfoCache(mockInventoryClient, false, 1000, 60, 60, metrics);
+        Mockito.when(mockInventoryClient.getIpInterfacesFromQuery(
+                        Mockito.eq(TENANT_ID), Mockito.anyCollection(), Mockito.eq(LOCATION_ID)))
+                .thenReturn(Map.of("1.1.1.1", testIpInterfaceDTO));
+
+        target.resolve(TENANT_ID, LOCATION_ID, List.of("1.1.1.1"));
+        target.resolve(TENANT_ID, LOCATION_ID, List.of("1.1.1.1"));
+
+        Mockito.verify(mockInventoryClient, Mockito.times(2))
+                .getIpInterfacesFromQuery(Mockito.any(), Mockito.anyCollection(), Mockito.any());
+    }
+}
@@ -26,6 +26,8 @@ import static org.mockito.Mockito.mock;
 
 import com.codahale.metrics.MetricRegistry;
 import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
+import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mockito;
@@ -56,7 +58,10 @@ public class PipelineImplTest {
                 .setSystemId("systemId")
                 .addMessage(FlowDocument.newBuilder().setSrcAddress("127.0.0.1"))
                 .build();
-        pipeline.process(flowsLog);
+        Mockito.when(flowRepository.persist(any(TenantLocationSpecificFlowDocumentLog.class)))
+                .thenReturn(CompletableFuture.completedFuture(null));
+        var persisted = pipeline.process(flowsLog);
+        Assert.assertTrue(persisted.isDone());
         Mockito.verify(documentEnricher, Mockito.times(1)).enrich(any(TenantLocationSpecificFlowDocumentLog.class));
         Mockito.verify(flowRepository, Mockito.times(1)).persist((any(TenantLocationSpecificFlowDocumentLog.class)));
     }
@@ -29,6 +29,7 @@ import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 import org.opennms.horizon.flows.classification.ClassificationRequest;
 import org.opennms.horizon.flows.classification.IpAddr;
+import org.opennms.horizon.flows.classification.PrimitiveClassificationRequest;
 import org.opennms.horizon.flows.classification.persistence.api.Protocol;
 import org.opennms.horizon.flows.document.FlowDocument;
 
@@ -95,4 +96,36 @@ class FlowDocumentBuilderClassificationRequestMapperImplTest {
         Assert.assertNull(result.getSrcPort());
         Assert.assertNull(result.getDstPort());
     }
+
+    @Test
+    void testFillClassificationRequest() {
+        //
+        // Setup Test Data and Interactions
+        //
+        var testDocument = FlowDocument.newBuilder()
+                .setSrcAddress("1.1.1.1")
+                .setSrcPort(UInt32Value.of(1))
+                .setDstAddress("2001:db8::1")
+                .setDstPort(UInt32Value.of(2))
+                .setProtocol(UInt32Value.of(6))
+                .setHost("3.3.3.3");
+        Mockito.when(mockProtocolLookupOp.apply(6)).thenReturn(new Protocol(6, "TCP", "tcp"));
+        var result = new PrimitiveClassificationRequest();
+
+        //
+        // Execute
+        //
+        target.fillClassificationRequest(testDocument.build(), result);
+
+        //
+        // Verify the Results
+        //
+        Assert.assertTrue(result.isClassifiable());
+        Assert.assertEquals(6, result.getProtocol());
+        Assert.assertEquals(IpAddr.of("1.1.1.1"), result.getSrcAddress().toIpAddr());
+        Assert.assertEquals(IpAddr.of("2001:db8::1"), result.getDstAddress().toIpAddr());
+        Assert.assertEquals(1, result.getSrcPort());
+        Assert.assertEquals(2, result.getDstPort());
+        Assert.assertEquals("3.3.3.3", result.getExporterAddress());
+    }
 }
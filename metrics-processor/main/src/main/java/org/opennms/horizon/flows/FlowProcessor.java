@@ -24,48 +24,93 @@ package org.opennms.horizon.flows;
 import com.google.protobuf.InvalidProtocolBufferException;
 import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
 import org.opennms.horizon.flows.document.TenantLocationSpecificFlowDocumentLog;
+import org.opennms.horizon.flows.integration.FlowRejectedException;
 import org.opennms.horizon.flows.processing.Pipeline;
+import org.opennms.horizon.metrics.kafka.PartitionedWorkerPool;
 import org.opennms.horizon.tenantmetrics.TenantMetricsTracker;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.PropertySource;
 import org.springframework.kafka.annotation.KafkaListener;
-import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.kafka.support.Acknowledgment;
 import org.springframework.stereotype.Service;
 
 @Slf4j
 @Service
 @PropertySource("classpath:application.yml")
 public class FlowProcessor {
+    public static final String LISTENER_ID = "flows";
+
     private final Pipeline pipeline;
     private final TenantMetricsTracker metricsTracker;
+    private final PartitionedWorkerPool workerPool;
 
-    public FlowProcessor(final Pipeline pipeline, final TenantMetricsTracker metricsTracker) {
+    public FlowProcessor(
+            final Pipeline pipeline,
+            final TenantMetricsTracker metricsTracker,
+            @Qualifier("flowWorkerPool") final PartitionedWorkerPool workerPool) {
         this.pipeline = Objects.requireNonNull(pipeline);
         this.metricsTracker = metricsTracker;
+        this.workerPool = Objects.requireNonNull(workerPool);
+    }
+
+    @KafkaListener(
+            id = LISTENER_ID,
+            idIsGroup = false,
+            topics = "${kafka.flow-topics}",
+            concurrency = "${kafka.flows.consumer-threads:1}")
+    public void consume(ConsumerRecord<String, byte[]> consumerRecord, Acknowledgment acknowledgment) {
+        workerPool.submitAsync(
+                new TopicPartition(consumerRecord.topic(), consumerRecord.partition()),
+                consumerRecord.timestamp(),
+                () -> process(consumerRecord.value()),
+                acknowledgment::acknowledge);
     }
 
-    @KafkaListener(topics = "${kafka.flow-topics}", concurrency = "1")
-    public void consume(@Payload byte[] data) {
+    /**
+     * @return completes once the flows are persisted; fails if they could not be persisted, so they are processed
+     *     again. Flows that can never be processed complete normally.
+     */
+    public CompletableFuture<Void> process(byte[] data) {
         try {
             var flowDocumentLog = TenantLocationSpecificFlowDocumentLog.parseFrom(data);
             String tenantId = flowDocumentLog.getTenantId();
-            CompletableFuture.supplyAsync(() -> {
-                try {
-                    log.trace("Processing flow: tenant-id={}; flow={}", tenantId, flowDocumentLog);
-                    pipeline.process(flowDocumentLog);
-                    metricsTracker.addTenantFlowCompletedCount(tenantId, flowDocumentLog.getMessageCount());
-                } catch (Exception exc) {
-                    log.warn("Error processing flow: tenant-id={}; error: {}", tenantId, exc.getMessage(), exc);
-                } finally {
-                    // record as close as possible to the addTenantFlowCompletedCount (i.e.: after processing)
-                    // so both hopefully end up together in results so we can compute a reasonable success rate
-                    metricsTracker.addTenantFlowReceviedCount(tenantId, flowDocumentLog.getMessageCount());
-                }
-                return null;
-            });
+            try {
+                log.trace("Processing flow: tenant-id={}; flow={}", tenantId, flowDocumentLog);
+                return pipeline.process(flowDocumentLog)
+                        .whenComplete((r, exc) -> {
+                            if (exc == null) {
+                                metricsTracker.addTenantFlowCompletedCount(tenantId, flowDocumentLog.getMessageCount());
+                            } else {
+                                log.warn(
+                                        "Error persisting flow: tenant-id={}; error: {}",
+                                        tenantId,
+                                        exc.getMessage(),
+                                        exc);
+                            }
+                        })
+                        .exceptionallyCompose(exc -> isRejected(exc)
+                                ? CompletableFuture.completedFuture(null)
+                                : CompletableFuture.failedFuture(exc));
+            } catch (Exception exc) {
+                log.warn("Error processing flow: tenant-id={}; error: {}", tenantId, exc.getMessage(), exc);
+            } finally {
+                // record as close as possible to the addTenantFlowCompletedCount (i.e.: after processing)
+                // so both hopefully end up together in results so we can compute a reasonable success rate
+                metricsTracker.addTenantFlowReceviedCount(tenantId, flowDocumentLog.getMessageCount());
+            }
         } catch (InvalidProtocolBufferException e) {
             log.error("Invalid data from kafka", e);
         }
+        return CompletableFuture.completedFuture(null);
+    }
+
+    private static boolean isRejected(Throwable exc) {
+        Throwable cause = exc instanceof CompletionException && exc.getCause() != null ? exc.getCause() : exc;
+        return cause instanceof FlowRejectedException;
     }
 }
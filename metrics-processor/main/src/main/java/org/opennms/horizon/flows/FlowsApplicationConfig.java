@@ -42,6 +42,7 @@ import org.opennms.horizon.flows.integration.FlowRepository;
 import org.opennms.horizon.flows.integration.FlowRepositoryImpl;
 import org.opennms.horizon.flows.processing.DocumentEnricherImpl;
 import org.opennms.horizon.flows.processing.FlowDocumentClassificationRequestMapper;
+import org.opennms.horizon.flows.processing.NodeInfoCache;
 import org.opennms.horizon.flows.processing.Pipeline;
 import org.opennms.horizon.flows.processing.PipelineImpl;
 import org.opennms.horizon.flows.processing.impl.FlowDocumentClassificationRequestMapperImpl;
@@ -70,12 +71,24 @@ public class FlowsApplicationConfig {
     @Value("${flows.nodeCache.maximumSize:10000}")
     private long nodeCacheMaximumSize;
 
-    @Value("${flows.nodeCache.expireAfterWrite:0}")
+    @Value("${flows.nodeCache.expireAfterWrite:300}")
     private long nodeCacheExpireAfterWrite;
 
+    @Value("${flows.nodeCache.negativeExpireAfterWrite:60}")
+    private long nodeCacheNegativeExpireAfterWrite;
+
     @Value("${flows.nodeCache.recordStats:true}")
     private boolean nodeCacheRecordStats;
 
+    @Value("${flows.persistence.maxPendingLogs:1000}")
+    private int persistenceMaxPendingLogs;
+
+    @Value("${flows.persistence.maxBatchSize:5000}")
+    private int persistenceMaxBatchSize;
+
+    @Value("${flows.persistence.senderThreads:4}")
+    private int persistenceSenderThreads;
+
     @Value("${grpc.inventory.url}")
     private String inventoryGrpcAddress;
 
@@ -140,9 +153,15 @@ public class FlowsApplicationConfig {
         return pipeLine;
     }
 
-    @Bean
-    public FlowRepository createFlowRepositoryImpl(final IngestorClient ingestorClient) {
-        return new FlowRepositoryImpl(ingestorClient);
+    @Bean(destroyMethod = "close")
+    public FlowRepositoryImpl createFlowRepositoryImpl(
+            final IngestorClient ingestorClient, final MetricRegistry metricRegistry) {
+        return new FlowRepositoryImpl(
+                ingestorClient,
+                persistenceMaxPendingLogs,
+                persistenceMaxBatchSize,
+                persistenceSenderThreads,
+                metricRegistry);
     }
 
     @Bean
@@ -152,13 +171,24 @@ public class FlowsApplicationConfig {
         return new DefaultClassificationEngine(ClassificationRuleProvider.forList(rules), FilterService.NOOP);
     }
 
+    @Bean
+    public NodeInfoCache createNodeInfoCache(InventoryClient inventoryClient, MetricRegistry metricRegistry) {
+        return new NodeInfoCache(
+                inventoryClient,
+                nodeCacheEnabled,
+                nodeCacheMaximumSize,
+                nodeCacheExpireAfterWrite,
+                nodeCacheNegativeExpireAfterWrite,
+                metricRegistry);
+    }
+
     @Bean
     public DocumentEnricherImpl createDocumentEnricher(
-            InventoryClient inventoryClient,
+            NodeInfoCache nodeInfoCache,
             ClassificationEngine classificationEngine,
             FlowDocumentClassificationRequestMapper flowDocumentClassificationRequestMapper) {
         return new DocumentEnricherImpl(
-                inventoryClient,
+                nodeInfoCache,
                 classificationEngine,
                 flowDocumentClassificationRequestMapper,
                 clockSkewCorrectionThreshold);
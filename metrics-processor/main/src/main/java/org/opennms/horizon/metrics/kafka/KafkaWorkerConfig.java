@@ -0,0 +1,66 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.horizon.metrics.kafka;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.opennms.horizon.flows.FlowProcessor;
+import org.opennms.horizon.tsdata.TSDataProcessor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+
+@Configuration
+public class KafkaWorkerConfig {
+    @Value("${kafka.tsdata.worker-threads:4}")
+    private int tsDataWorkerThreads;
+
+    @Value("${kafka.tsdata.max-queued-per-partition:500}")
+    private int tsDataMaxQueuedPerPartition;
+
+    @Value("${kafka.flows.worker-threads:4}")
+    private int flowWorkerThreads;
+
+    @Value("${kafka.flows.max-queued-per-partition:100}")
+    private int flowMaxQueuedPerPartition;
+
+    @Bean(name = "tsDataWorkerPool", destroyMethod = "close")
+    public PartitionedWorkerPool tsDataWorkerPool(
+            KafkaListenerEndpointRegistry registry, MeterRegistry meterRegistry) {
+        return new PartitionedWorkerPool(
+                TSDataProcessor.LISTENER_ID,
+                tsDataWorkerThreads,
+                tsDataMaxQueuedPerPartition,
+                new ListenerContainerPartitionControl(registry, TSDataProcessor.LISTENER_ID),
+                meterRegistry);
+    }
+
+    @Bean(name = "flowWorkerPool", destroyMethod = "close")
+    public PartitionedWorkerPool flowWorkerPool(KafkaListenerEndpointRegistry registry, MeterRegistry meterRegistry) {
+        return new PartitionedWorkerPool(
+                FlowProcessor.LISTENER_ID,
+                flowWorkerThreads,
+                flowMaxQueuedPerPartition,
+                new ListenerContainerPartitionControl(registry, FlowProcessor.LISTENER_ID),
+                meterRegistry);
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.horizon.metrics.kafka;
+
+import java.util.Objects;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+
+/**
+ * Pauses and resumes partitions through the listener container with the given id. The container applies the change
+ * on its next poll, so this can be called from worker threads.
+ */
+@Slf4j
+public class ListenerContainerPartitionControl implements PartitionedWorkerPool.PartitionControl {
+    private final KafkaListenerEndpointRegistry registry;
+    private final String listenerId;
+
+    public ListenerContainerPartitionControl(KafkaListenerEndpointRegistry registry, String listenerId) {
+        this.registry = Objects.requireNonNull(registry);
+        this.listenerId = Objects.requireNonNull(listenerId);
+    }
+
+    @Override
+    public void pause(TopicPartition partition) {
+        MessageListenerContainer container = registry.getListenerContainer(listenerId);
+        if (container != null) {
+            container.pausePartition(partition);
+        } else {
+            log.warn("No listener container with id {} to pause {}", listenerId, partition);
+        }
+    }
+
+    @Override
+    public void resume(TopicPartition partition) {
+        MessageListenerContainer container = registry.getListenerContainer(listenerId);
+        if (container != null) {
+            container.resumePartition(partition);
+        }
+    }
+}
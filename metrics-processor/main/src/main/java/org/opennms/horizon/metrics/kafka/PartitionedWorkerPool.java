@@ -0,0 +1,378 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.horizon.metrics.kafka;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.TopicPartition;
+
+/**
+ * Processes Kafka records on a bounded set of worker threads while keeping the order within each partition.
+ * <p>
+ * Every partition gets its own queue ("lane") which is drained by at most one worker at a time, so records of
+ * different partitions are processed in parallel and the completion callback (usually the offset
+ * acknowledgement) of a partition is invoked in offset order once the record was processed.
+ * <p>
+ * Work submitted by {@link #submitAsync} may complete after it returned. Its completion callback is invoked once the
+ * returned stage completed and all callbacks of the preceding records of the partition were invoked. If the stage
+ * fails, the partition is paused and the work is retried with backoff until it succeeds. Meanwhile the callbacks of
+ * the later records of the partition are held back, so no offset past the failed record is acknowledged.
+ * <p>
+ * Once a lane holds {@code maxQueuedPerPartition} records the partition is paused, and it is resumed when the lane
+ * drained to half of that. Records already returned by the current poll are still accepted, so the bound is soft by
+ * at most one poll.
+ */
+@Slf4j
+public class PartitionedWorkerPool implements AutoCloseable {
+    private static final int MAX_TASKS_PER_TURN = 64;
+    private static final long RETRY_INITIAL_BACKOFF_MS = 500;
+    private static final long RETRY_MAX_BACKOFF_MS = 30_000;
+    private static final CompletableFuture<Void> COMPLETED = CompletableFuture.completedFuture(null);
+
+    /**
+     * Pauses and resumes the consumption of a partition. Implementations must be safe to call from any thread.
+     */
+    public interface PartitionControl {
+        void pause(TopicPartition partition);
+
+        void resume(TopicPartition partition);
+    }
+
+    private final String name;
+    private final int maxQueuedPerPartition;
+    private final PartitionControl partitionControl;
+    private final ExecutorService executor;
+    private final Map<TopicPartition, Lane> lanes = new ConcurrentHashMap<>();
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Timer processingTimer;
+    private final Counter retries;
+
+    public PartitionedWorkerPool(
+            String name,
+            int workerThreads,
+            int maxQueuedPerPartition,
+            PartitionControl partitionControl,
+            MeterRegistry meterRegistry) {
+        this.name = Objects.requireNonNull(name);
+        this.maxQueuedPerPartition = maxQueuedPerPartition;
+        this.partitionControl = Objects.requireNonNull(partitionControl);
+
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(workerThreads, r -> {
+            Thread thread = new Thread(r, name + "-worker-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        Gauge.builder("kafka.worker.queue.depth", this, PartitionedWorkerPool::getQueueDepth)
+                .tag("listener", name)
+                .register(meterRegistry);
+        Gauge.builder("kafka.worker.in.flight", inFlight, AtomicInteger::get)
+                .tag("listener", name)
+                .register(meterRegistry);
+        Gauge.builder("kafka.worker.paused.partitions", this, PartitionedWorkerPool::getPausedPartitions)
+                .tag("listener", name)
+                .register(meterRegistry);
+        Gauge.builder("kafka.worker.lag", this, PartitionedWorkerPool::getLagMs)
+                .tag("listener", name)
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+        processingTimer = Timer.builder("kafka.worker.processing")
+                .tag("listener", name)
+                .register(meterRegistry);
+        retries = Counter.builder("kafka.worker.retries")
+                .tag("listener", name)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Queues the work for the given partition.
+     *
+     * @param recordTimestamp timestamp of the record, used to report the processing lag
+     * @param work            the processing, exceptions are logged and do not stop the lane
+     * @param onComplete      invoked after the work completed, whether successful or not
+     */
+    public void submit(TopicPartition partition, long recordTimestamp, Runnable work, Runnable onComplete) {
+        submitAsync(
+                partition,
+                recordTimestamp,
+                () -> {
+                    work.run();
+                    return COMPLETED;
+                },
+                onComplete);
+    }
+
+    /**
+     * Queues work for the given partition that completes asynchronously.
+     *
+     * @param recordTimestamp timestamp of the record, used to report the processing lag
+     * @param work            starts the processing, exceptions thrown by it are logged and treated as completion.
+     *                        Invoked again if the returned stage fails.
+     * @param onComplete      invoked in order once the returned stage completed successfully
+     */
+    public void submitAsync(
+            TopicPartition partition,
+            long recordTimestamp,
+            Supplier<? extends CompletionStage<?>> work,
+            Runnable onComplete) {
+        Lane lane = lanes.computeIfAbsent(partition, Lane::new);
+        boolean schedule;
+        boolean pause = false;
+        synchronized (lane) {
+            lane.tasks.addLast(new Task(recordTimestamp, work, onComplete));
+            if (!lane.paused && lane.tasks.size() >= maxQueuedPerPartition) {
+                lane.paused = true;
+                pause = true;
+            }
+            schedule = !lane.scheduled;
+            lane.scheduled = true;
+        }
+        if (pause) {
+            log.debug("Pausing partition {} of {}, {} records queued", partition, name, maxQueuedPerPartition);
+            partitionControl.pause(partition);
+        }
+        if (schedule) {
+            executor.execute(() -> drain(lane));
+        }
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+            log.warn("Timed out waiting for {} workers to complete", name);
+            executor.shutdownNow();
+        }
+    }
+
+    long getQueueDepth() {
+        return lanes.values().stream().mapToLong(Lane::size).sum();
+    }
+
+    long getPausedPartitions() {
+        return lanes.values().stream().filter(Lane::isPaused).count();
+    }
+
+    long getLagMs() {
+        long oldest = lanes.values().stream()
+                .mapToLong(Lane::getOldestTimestamp)
+                .min()
+                .orElse(Long.MAX_VALUE);
+        return oldest == Long.MAX_VALUE ? 0 : Math.max(0, System.currentTimeMillis() - oldest);
+    }
+
+    private void drain(Lane lane) {
+        while (true) {
+            for (int i = 0; i < MAX_TASKS_PER_TURN; i++) {
+                if (!processNext(lane)) {
+                    return;
+                }
+            }
+            if (!executor.isShutdown()) {
+                // Give the other partitions a chance before continuing with this one
+                executor.execute(() -> drain(lane));
+                return;
+            }
+        }
+    }
+
+    private boolean processNext(Lane lane) {
+        Task task;
+        synchronized (lane) {
+            task = lane.tasks.peekFirst();
+            if (task == null) {
+                lane.scheduled = false;
+                return false;
+            }
+        }
+
+        CompletableFuture<Void> processed =
+                untilSucceeded(lane, task, start(lane, task), false, RETRY_INITIAL_BACKOFF_MS);
+
+        // Only this worker touches the chain, the lane lock hands it over to the next one
+        lane.completions = lane.completions
+                .thenCompose(v -> processed)
+                .thenRun(() -> complete(lane, task))
+                .whenComplete((v, e) -> {
+                    if (e != null) {
+                        log.warn("Record of partition {} not processed before closing, holding back its offset",
+                                lane.partition,
+                                e);
+                    }
+                });
+
+        boolean resume = false;
+        synchronized (lane) {
+            lane.tasks.pollFirst();
+            if (lane.paused && lane.retrying == 0 && lane.tasks.size() <= maxQueuedPerPartition / 2) {
+                lane.paused = false;
+                resume = true;
+            }
+        }
+        if (resume) {
+            log.debug("Resuming partition {} of {}", lane.partition, name);
+            partitionControl.resume(lane.partition);
+        }
+        return true;
+    }
+
+    private CompletionStage<?> start(Lane lane, Task task) {
+        inFlight.incrementAndGet();
+        long start = System.nanoTime();
+        try {
+            CompletionStage<?> result = task.work.get();
+            return result != null ? result : COMPLETED;
+        } catch (Exception e) {
+            log.error("Error processing record of partition {}", lane.partition, e);
+            return COMPLETED;
+        } finally {
+            processingTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            inFlight.decrementAndGet();
+        }
+    }
+
+    /**
+     * @return completes once the work succeeded, retrying it on the workers with backoff as long as it fails. Only
+     *     fails if the pool was closed before the work succeeded.
+     */
+    private CompletableFuture<Void> untilSucceeded(
+            Lane lane, Task task, CompletionStage<?> result, boolean retrying, long backoffMs) {
+        return result.handle((r, e) -> e).toCompletableFuture().thenCompose(e -> {
+            if (e == null) {
+                if (retrying) {
+                    endRetry(lane);
+                }
+                return COMPLETED;
+            }
+            if (executor.isShutdown()) {
+                return CompletableFuture.failedFuture(e);
+            }
+            log.warn("Failed to process record of partition {}, retrying in {}ms", lane.partition, backoffMs, e);
+            retries.increment();
+            if (!retrying) {
+                beginRetry(lane);
+            }
+            Executor delayed = CompletableFuture.delayedExecutor(backoffMs, TimeUnit.MILLISECONDS, executor);
+            long nextBackoffMs = Math.min(backoffMs * 2, RETRY_MAX_BACKOFF_MS);
+            return CompletableFuture.supplyAsync(() -> start(lane, task), delayed)
+                    .thenCompose(next -> untilSucceeded(lane, task, next, true, nextBackoffMs));
+        });
+    }
+
+    /**
+     * Pauses the partition while a record is retried, so the lane does not fill up with records that most likely
+     * fail for the same reason.
+     */
+    private void beginRetry(Lane lane) {
+        boolean pause;
+        synchronized (lane) {
+            lane.retrying++;
+            pause = !lane.paused;
+            lane.paused = true;
+        }
+        if (pause) {
+            log.debug("Pausing partition {} of {} while retrying a record", lane.partition, name);
+            partitionControl.pause(lane.partition);
+        }
+    }
+
+    private void endRetry(Lane lane) {
+        boolean resume;
+        synchronized (lane) {
+            lane.retrying--;
+            resume = lane.paused && lane.retrying == 0 && lane.tasks.size() <= maxQueuedPerPartition / 2;
+            if (resume) {
+                lane.paused = false;
+            }
+        }
+        if (resume) {
+            log.debug("Resuming partition {} of {}", lane.partition, name);
+            partitionControl.resume(lane.partition);
+        }
+    }
+
+    private void complete(Lane lane, Task task) {
+        try {
+            task.onComplete.run();
+        } catch (Exception e) {
+            log.warn("Error completing record of partition {}", lane.partition, e);
+        }
+    }
+
+    private static final class Lane {
+        private final TopicPartition partition;
+        private final Deque<Task> tasks = new ArrayDeque<>();
+        private boolean scheduled;
+        private boolean paused;
+        // Records whose failed work is being retried
+        private int retrying;
+        // Completes once the callbacks of all records processed so far were invoked
+        private CompletableFuture<Void> completions = COMPLETED;
+
+        private Lane(TopicPartition partition) {
+            this.partition = partition;
+        }
+
+        synchronized int size() {
+            return tasks.size();
+        }
+
+        synchronized boolean isPaused() {
+            return paused;
+        }
+
+        synchronized long getOldestTimestamp() {
+            Task head = tasks.peekFirst();
+            return head != null ? head.recordTimestamp : Long.MAX_VALUE;
+        }
+    }
+
+    private static final class Task {
+        private final long recordTimestamp;
+        private final Supplier<? extends CompletionStage<?>> work;
+        private final Runnable onComplete;
+
+        private Task(long recordTimestamp, Supplier<? extends CompletionStage<?>> work, Runnable onComplete) {
+            this.recordTimestamp = recordTimestamp;
+            this.work = work;
+            this.onComplete = onComplete;
+        }
+    }
+}
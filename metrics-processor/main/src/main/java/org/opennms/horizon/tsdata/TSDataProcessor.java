@@ -22,37 +22,52 @@
 package org.opennms.horizon.tsdata;
 
 import com.google.protobuf.InvalidProtocolBufferException;
-import java.util.concurrent.CompletableFuture;
-import java.util.function.Consumer;
-import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
 import org.apache.logging.log4j.util.Strings;
+import org.opennms.horizon.metrics.kafka.PartitionedWorkerPool;
 import org.opennms.taskset.contract.TenantLocationSpecificTaskSetResults;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.PropertySource;
 import org.springframework.kafka.annotation.KafkaListener;
-import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.kafka.support.Acknowledgment;
 import org.springframework.stereotype.Service;
 
 @Slf4j
 @Service
 @PropertySource("classpath:application.yml")
 public class TSDataProcessor {
+    public static final String LISTENER_ID = "tsdata";
 
     private final TaskSetResultProcessor taskSetResultProcessor;
+    private final PartitionedWorkerPool workerPool;
 
-    // NOTE: it might be better to split the asynchronous execution into a separate class to make testing here, and
-    // there,
-    //  more straight-forward (i.e. more "Real Obvious").  Then the submission here would look something like this:
-    //  `taskSetResultAsyncProcessor.submitTaskResultForProcessing(tenantId, result)`
-    @Setter // Testability
-    private Consumer<Runnable> submitForExecutionOp = this::defaultExecutionSubmissionOp;
-
-    public TSDataProcessor(TaskSetResultProcessor taskSetResultProcessor) {
+    public TSDataProcessor(
+            TaskSetResultProcessor taskSetResultProcessor,
+            @Qualifier("tsDataWorkerPool") PartitionedWorkerPool workerPool) {
         this.taskSetResultProcessor = taskSetResultProcessor;
+        this.workerPool = workerPool;
+    }
+
+    /**
+     * Hands the record over to the worker pool. The offset is only acknowledged once the record was processed, so
+     * nothing that is still in flight is lost on a crash.
+     */
+    @KafkaListener(
+            id = LISTENER_ID,
+            idIsGroup = false,
+            topics = "${kafka.topics}",
+            concurrency = "${kafka.tsdata.consumer-threads:1}")
+    public void consume(ConsumerRecord<String, byte[]> consumerRecord, Acknowledgment acknowledgment) {
+        workerPool.submit(
+                new TopicPartition(consumerRecord.topic(), consumerRecord.partition()),
+                consumerRecord.timestamp(),
+                () -> process(consumerRecord.value()),
+                acknowledgment::acknowledge);
     }
 
-    @KafkaListener(topics = "${kafka.topics}", concurrency = "1")
-    public void consume(@Payload byte[] data) {
+    public void process(byte[] data) {
         try {
             TenantLocationSpecificTaskSetResults results = TenantLocationSpecificTaskSetResults.parseFrom(data);
             String tenantId = results.getTenantId();
@@ -66,27 +81,9 @@ public class TSDataProcessor {
             }
 
             results.getResultsList()
-                    .forEach(result -> submitForExecutionOp.accept(
-                            () -> taskSetResultProcessor.processTaskResult(tenantId, locationId, result)));
+                    .forEach(result -> taskSetResultProcessor.processTaskResult(tenantId, locationId, result));
         } catch (InvalidProtocolBufferException e) {
             log.error("Invalid data from kafka", e);
         }
     }
-
-    // ========================================
-    // Internals
-    // ----------------------------------------
-
-    /**
-     * Default operation for submission of the given Supplier for execution which uses CompletableFuture's supplyAsync()
-     *  method to schedule execution.
-     *
-     * @param runnable
-     */
-    private void defaultExecutionSubmissionOp(Runnable runnable) {
-        CompletableFuture.supplyAsync(() -> {
-            runnable.run();
-            return null; // Not doing anything with the Future, so the value is of no consequence
-        });
-    }
 }
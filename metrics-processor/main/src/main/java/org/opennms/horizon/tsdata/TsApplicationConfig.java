@@ -48,18 +48,51 @@ public class TsApplicationConfig {
     @Value("${cortex.organizationid}")
     private String organizationId;
 
+    @Value("${cortex.spool.directory:}")
+    private String spoolDirectory;
+
+    @Value("${cortex.spool.segmentsizeinbytes:16777216}")
+    private int spoolSegmentSizeInBytes;
+
+    @Value("${cortex.spool.maxsizepertenantinbytes:268435456}")
+    private long spoolMaxSizePerTenantInBytes;
+
+    @Value("${cortex.spool.replayinitialbackoffinms:1000}")
+    private long spoolReplayInitialBackoffInMs;
+
+    @Value("${cortex.spool.replaymaxbackoffinms:60000}")
+    private long spoolReplayMaxBackoffInMs;
+
+    @Value("${cortex.batch.maxseries:2000}")
+    private int batchMaxSeries;
+
+    @Value("${cortex.batch.maxdelayinms:50}")
+    private long batchMaxDelayInMs;
+
+    @Value("${cortex.batch.maxpendingpertenant:16}")
+    private int batchMaxPendingPerTenant;
+
     @Bean
     public CortexTSSConfig cortexTSSConfig() {
-        return new CortexTSSConfig(
-                cortexWriteURL,
-                maxConcurrentHttpConnections,
-                cortexWriteTimeoutInMs,
-                readTimeoutInMs,
-                bulkheadMaxWaitDurationInMs,
-                organizationId);
+        return CortexTSSConfig.builder()
+                .writeUrl(cortexWriteURL)
+                .maxConcurrentHttpConnections(maxConcurrentHttpConnections)
+                .writeTimeoutInMs(cortexWriteTimeoutInMs)
+                .readTimeoutInMs(readTimeoutInMs)
+                .bulkheadMaxWaitDurationInMs(bulkheadMaxWaitDurationInMs)
+                .organizationId(organizationId)
+                .spoolDirectory(spoolDirectory)
+                .spoolSegmentSizeInBytes(spoolSegmentSizeInBytes)
+                .spoolMaxSizePerTenantInBytes(spoolMaxSizePerTenantInBytes)
+                .spoolReplayInitialBackoffInMs(spoolReplayInitialBackoffInMs)
+                .spoolReplayMaxBackoffInMs(spoolReplayMaxBackoffInMs)
+                .batchMaxSeries(batchMaxSeries)
+                .batchMaxDelayInMs(batchMaxDelayInMs)
+                .batchMaxPendingPerTenant(batchMaxPendingPerTenant)
+                .build();
     }
 
-    @Bean
+    @Bean(destroyMethod = "close")
     public CortexTSS createCortex(CortexTSSConfig cortexTSSConfig, MetricRegistry metricRegistry) {
         return new CortexTSS(cortexTSSConfig, metricRegistry);
     }
@@ -0,0 +1,104 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.horizon.tsdata.collector;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+import org.opennms.horizon.timeseries.cortex.CortexTSS;
+import org.opennms.horizon.tsdata.MetricNameConstants;
+import prometheus.PrometheusTypes;
+
+/**
+ * Caches sanitized, immutable {@link PrometheusTypes.Label} instances so that converting collector results does not
+ * rebuild and re-sanitize the same labels for every row of a table.
+ * <p>
+ * Labels are immutable protobuf messages, so the cached instances can be shared between any number of time series.
+ */
+public class PrometheusLabelCache {
+    private final Cache<PrefixKey, List<PrometheusTypes.Label>> prefixes;
+    private final Cache<String, PrometheusTypes.Label> metricNames;
+    private final Cache<String, String> labelNames;
+
+    public PrometheusLabelCache(long maximumSize) {
+        prefixes = CacheBuilder.newBuilder().maximumSize(maximumSize).build();
+        metricNames = CacheBuilder.newBuilder().maximumSize(maximumSize).build();
+        labelNames = CacheBuilder.newBuilder().maximumSize(maximumSize).build();
+    }
+
+    /**
+     * @return the labels shared by all results of one collector response, in a stable order
+     */
+    public List<PrometheusTypes.Label> getSnmpPrefix(String location, String systemId, String monitor, long nodeId) {
+        return get(prefixes, new PrefixKey(location, systemId, monitor, nodeId), this::buildSnmpPrefix);
+    }
+
+    /**
+     * @return the {@code __name__} label for the given metric name
+     */
+    public PrometheusTypes.Label getMetricNameLabel(String metricName) {
+        return get(metricNames, metricName, PrometheusLabelCache::buildMetricNameLabel);
+    }
+
+    public String getLabelName(String labelName) {
+        return get(labelNames, labelName, CortexTSS::sanitizeLabelName);
+    }
+
+    private List<PrometheusTypes.Label> buildSnmpPrefix(PrefixKey key) {
+        return List.of(
+                label("location", key.location()),
+                label("system_id", key.systemId()),
+                label("monitor", key.monitor()),
+                label("node_id", String.valueOf(key.nodeId())));
+    }
+
+    private PrometheusTypes.Label label(String name, String value) {
+        return PrometheusTypes.Label.newBuilder()
+                .setName(getLabelName(name))
+                .setValue(CortexTSS.sanitizeLabelValue(value))
+                .build();
+    }
+
+    private static PrometheusTypes.Label buildMetricNameLabel(String metricName) {
+        return PrometheusTypes.Label.newBuilder()
+                .setName(MetricNameConstants.METRIC_NAME_LABEL)
+                .setValue(CortexTSS.sanitizeMetricName(metricName))
+                .build();
+    }
+
+    private static <K, V> V get(Cache<K, V> cache, K key, Function<K, V> loader) {
+        // Avoid allocating the loader callable on the (common) hit path
+        V value = cache.getIfPresent(key);
+        if (value != null) {
+            return value;
+        }
+        try {
+            return cache.get(key, () -> loader.apply(key));
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private record PrefixKey(String location, String systemId, String monitor, long nodeId) {}
+}
@@ -22,12 +22,11 @@
 package org.opennms.horizon.tsdata.collector;
 
 import com.google.protobuf.Any;
+import com.google.protobuf.ByteString;
 import java.io.IOException;
 import java.math.BigInteger;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import org.opennms.horizon.snmp.api.SnmpResponseMetric;
 import org.opennms.horizon.snmp.api.SnmpResultMetric;
 import org.opennms.horizon.snmp.api.SnmpValueType;
@@ -45,8 +44,11 @@ public class TaskSetCollectorSnmpResponseProcessor {
 
     private static final Logger LOG = LoggerFactory.getLogger(TaskSetCollectorSnmpResponseProcessor.class);
 
+    private static final int LABEL_CACHE_SIZE = 100_000;
+
     private final CortexTSS cortexTSS;
     private final TenantMetricsTracker tenantMetricsTracker;
+    private final PrometheusLabelCache labelCache = new PrometheusLabelCache(LABEL_CACHE_SIZE);
 
     public TaskSetCollectorSnmpResponseProcessor(CortexTSS cortexTSS, TenantMetricsTracker tenantMetricsTracker) {
         this.cortexTSS = cortexTSS;
@@ -57,32 +59,27 @@ public class TaskSetCollectorSnmpResponseProcessor {
             throws IOException {
         var response = taskResult.getCollectorResponse();
         Any collectorMetric = response.getResult();
-        Map<String, String> labels = new HashMap<>();
-        labels.put("location", location);
-        labels.put("system_id", taskResult.getIdentity().getSystemId());
-        labels.put("monitor", response.getMonitorType());
-        labels.put("node_id", String.valueOf(response.getNodeId()));
+        // Shared by every result of the response, built and sanitized once per node
+        List<PrometheusTypes.Label> labelPrefix = labelCache.getSnmpPrefix(
+                location, taskResult.getIdentity().getSystemId(), response.getMonitorType(), response.getNodeId());
 
-        List<PrometheusTypes.TimeSeries> timeSeriesList = new ArrayList<>();
         var snmpResponse = collectorMetric.unpack(SnmpResponseMetric.class);
+        List<PrometheusTypes.TimeSeries> timeSeriesList = new ArrayList<>(snmpResponse.getResultsCount());
+        int sampleCount = 0;
 
         for (SnmpResultMetric snmpResult : snmpResponse.getResultsList()) {
             try {
                 PrometheusTypes.TimeSeries.Builder builder = prometheus.PrometheusTypes.TimeSeries.newBuilder();
-                builder.addLabels(PrometheusTypes.Label.newBuilder()
-                        .setName(MetricNameConstants.METRIC_NAME_LABEL)
-                        .setValue(CortexTSS.sanitizeMetricName(snmpResult.getAlias())));
-
-                labels.forEach((name, value) -> builder.addLabels(PrometheusTypes.Label.newBuilder()
-                        .setName(CortexTSS.sanitizeLabelName(name))
-                        .setValue(CortexTSS.sanitizeLabelValue(value))));
+                builder.addLabels(labelCache.getMetricNameLabel(snmpResult.getAlias()));
+                builder.addAllLabels(labelPrefix);
 
-                builder.addLabels(
-                        PrometheusTypes.Label.newBuilder().setName("instance").setValue(snmpResult.getInstance()));
+                builder.addLabels(PrometheusTypes.Label.newBuilder()
+                        .setName(MetricNameConstants.METRIC_INSTANCE_LABEL)
+                        .setValue(snmpResult.getInstance()));
 
                 for (final var e : snmpResult.getLabelsMap().entrySet()) {
                     builder.addLabels(PrometheusTypes.Label.newBuilder()
-                            .setName(CortexTSS.sanitizeLabelName(e.getKey()))
+                            .setName(labelCache.getLabelName(e.getKey()))
                             .setValue(CortexTSS.sanitizeLabelValue(e.getValue())));
                 }
                 int type = snmpResult.getValue().getTypeValue();
@@ -100,19 +97,41 @@ public class TaskSetCollectorSnmpResponseProcessor {
                                 .setValue(snmpResult.getValue().getUint64()));
                         break;
                     case SnmpValueType.COUNTER64_VALUE:
-                        double metric =
-                                new BigInteger(snmpResult.getValue().getBytes().toByteArray()).doubleValue();
                         builder.addSamples(PrometheusTypes.Sample.newBuilder()
                                 .setTimestamp(response.getTimestamp())
-                                .setValue(metric));
+                                .setValue(counter64ToDouble(snmpResult.getValue().getBytes())));
                         break;
                 }
-                tenantMetricsTracker.addTenantMetricSampleCount(tenantId, builder.getSamplesCount());
+                sampleCount += builder.getSamplesCount();
                 timeSeriesList.add(builder.build());
             } catch (Exception e) {
                 LOG.warn("Exception parsing metrics", e);
             }
         }
+        tenantMetricsTracker.addTenantMetricSampleCount(tenantId, sampleCount);
         cortexTSS.store(tenantId, timeSeriesList);
     }
+
+    /**
+     * Converts the big-endian two's complement encoding of a Counter64 (as produced by
+     * {@link BigInteger#toByteArray()}) to a double without going through {@link BigInteger} for values that fit
+     * into 64 bits.
+     */
+    static double counter64ToDouble(ByteString bytes) {
+        int size = bytes.size();
+        if (size == 0 || size > 9 || (size == 9 && bytes.byteAt(0) != 0)) {
+            return new BigInteger(bytes.toByteArray()).doubleValue();
+        }
+
+        // Sign-extend shorter encodings, a leading zero byte of a 9 byte encoding just marks the value as positive
+        long value = size < 9 && bytes.byteAt(0) < 0 ? -1L : 0L;
+        for (int i = size == 9 ? 1 : 0; i < size; i++) {
+            value = (value << 8) | (bytes.byteAt(i) & 0xFF);
+        }
+        if (size < 9 || value >= 0) {
+            return value;
+        }
+        // Unsigned value above Long.MAX_VALUE, halve it keeping the lowest bit for correct rounding
+        return (double) ((value >>> 1) | (value & 1)) * 2.0;
+    }
 }
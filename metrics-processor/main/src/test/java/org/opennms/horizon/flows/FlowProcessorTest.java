@@ -21,9 +21,16 @@
  */
 package org.opennms.horizon.flows;
 
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -31,8 +38,14 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.opennms.horizon.flows.document.FlowDocument;
 import org.opennms.horizon.flows.document.TenantLocationSpecificFlowDocumentLog;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.opennms.horizon.flows.integration.FlowException;
+import org.opennms.horizon.flows.integration.FlowRejectedException;
 import org.opennms.horizon.flows.processing.Pipeline;
+import org.opennms.horizon.metrics.kafka.PartitionedWorkerPool;
 import org.opennms.horizon.tenantmetrics.TenantMetricsTracker;
+import org.springframework.kafka.support.Acknowledgment;
 
 @ExtendWith(MockitoExtension.class)
 public class FlowProcessorTest {
@@ -45,11 +58,25 @@ public class FlowProcessorTest {
     @Mock
     private TenantMetricsTracker metricsTracker;
 
+    @Mock
+    private Acknowledgment acknowledgment;
+
+    @Mock
+    private PartitionedWorkerPool.PartitionControl partitionControl;
+
+    private PartitionedWorkerPool workerPool;
+
     private FlowProcessor processor;
 
     @BeforeEach
     public void setup() {
-        processor = new FlowProcessor(pipeline, metricsTracker);
+        workerPool = new PartitionedWorkerPool("flows", 1, 10, partitionControl, new SimpleMeterRegistry());
+        processor = new FlowProcessor(pipeline, metricsTracker, workerPool);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        workerPool.close();
     }
 
     @Test
@@ -60,11 +87,55 @@ public class FlowProcessorTest {
                 .addMessage(
                         FlowDocument.newBuilder().setSrcAddress("192.168.0.1").setDstAddress("1.1.1.1"))
                 .build();
+        when(pipeline.process(flows)).thenReturn(CompletableFuture.completedFuture(null));
 
-        processor.consume(flows.toByteArray());
+        processor.consume(new ConsumerRecord<>("flows", 0, 0L, null, flows.toByteArray()), acknowledgment);
 
         verify(pipeline, timeout(5000).only()).process(flows);
         verify(metricsTracker, timeout(5000).times(1)).addTenantFlowReceviedCount(TENANT_ID, 2);
         verify(metricsTracker, timeout(5000).times(1)).addTenantFlowCompletedCount(TENANT_ID, 2);
+        verify(acknowledgment, timeout(5000).times(1)).acknowledge();
+    }
+
+    @Test
+    void testDoesNotAcknowledgeFlowsNotPersisted() throws Exception {
+        TenantLocationSpecificFlowDocumentLog flows = TenantLocationSpecificFlowDocumentLog.newBuilder()
+                .setTenantId(TENANT_ID)
+                .addMessage(FlowDocument.newBuilder().setSrcAddress("127.0.0.1").setDstAddress("8.8.8.8"))
+                .build();
+        var persisted = new CompletableFuture<Void>();
+        when(pipeline.process(flows)).thenReturn(persisted);
+
+        processor.consume(new ConsumerRecord<>("flows", 0, 0L, null, flows.toByteArray()), acknowledgment);
+        processor.consume(new ConsumerRecord<>("flows", 0, 1L, null, flows.toByteArray()), acknowledgment);
+
+        verify(pipeline, timeout(5000).times(2)).process(flows);
+        verify(acknowledgment, after(200).never()).acknowledge();
+
+        persisted.completeExceptionally(new FlowException("Ingestor unavailable"));
+
+        // Processed again, but never acknowledged while persisting fails
+        verify(partitionControl, timeout(5000)).pause(new TopicPartition("flows", 0));
+        verify(pipeline, timeout(5000).atLeast(3)).process(flows);
+        verify(acknowledgment, after(200).never()).acknowledge();
+        verify(metricsTracker, never()).addTenantFlowCompletedCount(TENANT_ID, 1);
+    }
+
+    @Test
+    void testAcknowledgesFlowsRejectedByIngestor() throws Exception {
+        TenantLocationSpecificFlowDocumentLog flows = TenantLocationSpecificFlowDocumentLog.newBuilder()
+                .setTenantId(TENANT_ID)
+                .addMessage(FlowDocument.newBuilder().setSrcAddress("127.0.0.1").setDstAddress("8.8.8.8"))
+                .build();
+        when(pipeline.process(flows))
+                .thenReturn(CompletableFuture.failedFuture(
+                        new FlowRejectedException("Ingestor rejected flows", new RuntimeException())));
+
+        processor.consume(new ConsumerRecord<>("flows", 0, 0L, null, flows.toByteArray()), acknowledgment);
+
+        // Retrying won't help, so the flows are dropped rather than holding back the partition
+        verify(acknowledgment, timeout(5000).times(1)).acknowledge();
+        verify(pipeline, times(1)).process(flows);
+        verify(metricsTracker, never()).addTenantFlowCompletedCount(TENANT_ID, 1);
     }
 }
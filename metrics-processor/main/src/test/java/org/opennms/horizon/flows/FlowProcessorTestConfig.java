@@ -39,6 +39,7 @@ import org.opennms.horizon.flows.grpc.client.InventoryClient;
 import org.opennms.horizon.flows.integration.FlowRepository;
 import org.opennms.horizon.flows.integration.FlowRepositoryImpl;
 import org.opennms.horizon.flows.processing.DocumentEnricherImpl;
+import org.opennms.horizon.flows.processing.NodeInfoCache;
 import org.opennms.horizon.flows.processing.Pipeline;
 import org.opennms.horizon.flows.processing.PipelineImpl;
 import org.opennms.horizon.flows.processing.impl.FlowDocumentClassificationRequestMapperImpl;
@@ -53,6 +54,7 @@ import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
 import org.springframework.kafka.core.DefaultKafkaProducerFactory;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.core.ProducerFactory;
+import org.springframework.kafka.listener.ContainerProperties;
 
 // TODO: remove grey box tests and this custom test-only application wiring
 @TestConfiguration
@@ -72,11 +74,13 @@ public class FlowProcessorTestConfig {
     @Bean
     public DocumentEnricherImpl createDocumentEnricher(
             InventoryClient inventoryClient,
+            MetricRegistry metricRegistry,
             ClassificationEngine classificationEngine,
             FlowDocumentClassificationRequestMapperImpl flowDocumentClassificationRequestMapper) {
 
+        var nodeInfoCache = new NodeInfoCache(inventoryClient, true, 1000, 60, 60, metricRegistry);
         return new DocumentEnricherImpl(
-                inventoryClient, classificationEngine, flowDocumentClassificationRequestMapper, 1);
+                nodeInfoCache, classificationEngine, flowDocumentClassificationRequestMapper, 1);
     }
 
     @Bean
@@ -91,9 +95,10 @@ public class FlowProcessorTestConfig {
         return new DefaultClassificationEngine(ClassificationRuleProvider.forList(rules), FilterService.NOOP);
     }
 
-    @Bean
-    public FlowRepository createFlowRepositoryImpl(final IngestorClient ingestorClient) {
-        return new FlowRepositoryImpl(ingestorClient);
+    @Bean(destroyMethod = "close")
+    public FlowRepositoryImpl createFlowRepositoryImpl(
+            final IngestorClient ingestorClient, final MetricRegistry metricRegistry) {
+        return new FlowRepositoryImpl(ingestorClient, 100, 1000, 1, metricRegistry);
     }
 
     @Value("${spring.kafka.bootstrap-servers}")
@@ -133,6 +138,7 @@ public class FlowProcessorTestConfig {
         ConcurrentKafkaListenerContainerFactory<String, byte[]> factory =
                 new ConcurrentKafkaListenerContainerFactory<>();
         factory.setConsumerFactory(consumerFactory());
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
         return factory;
     }
 }
@@ -21,10 +21,13 @@
  */
 package org.opennms.horizon.flows.grpc.client;
 
+import io.grpc.stub.StreamObserver;
 import java.util.HashMap;
 import java.util.Map;
 import lombok.Getter;
 import org.opennms.horizon.inventory.dto.IpInterfaceDTO;
+import org.opennms.horizon.inventory.dto.IpInterfacesByAddress;
+import org.opennms.horizon.inventory.dto.IpInterfacesQuery;
 import org.opennms.horizon.inventory.dto.NodeIdQuery;
 import org.opennms.horizon.inventory.dto.NodeServiceGrpc;
 import org.slf4j.Logger;
@@ -37,6 +40,9 @@ public class GrpcInventoryMockServer extends NodeServiceGrpc.NodeServiceImplBase
     @Getter
     private final Map<String, NodeIdQuery> incomingNodeIdQueries = new HashMap<>();
 
+    @Getter
+    private final Map<String, IpInterfacesQuery> incomingIpInterfacesQueries = new HashMap<>();
+
     @Override
     public void getIpInterfaceFromQuery(
             org.opennms.horizon.inventory.dto.NodeIdQuery request,
@@ -46,4 +52,13 @@ public class GrpcInventoryMockServer extends NodeServiceGrpc.NodeServiceImplBase
         responseObserver.onNext(IpInterfaceDTO.newBuilder().build());
         responseObserver.onCompleted();
     }
+
+    @Override
+    public void getIpInterfacesFromQuery(
+            IpInterfacesQuery request, StreamObserver<IpInterfacesByAddress> responseObserver) {
+        LOG.info("Getting Ip interfaces from Query.. ");
+        incomingIpInterfacesQueries.put(request.getLocationId(), request);
+        responseObserver.onNext(IpInterfacesByAddress.newBuilder().build());
+        responseObserver.onCompleted();
+    }
 }
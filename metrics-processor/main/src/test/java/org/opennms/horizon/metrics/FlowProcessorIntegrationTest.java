@@ -50,7 +50,7 @@ import org.opennms.horizon.flows.grpc.client.GrpcIngesterMockServer;
 import org.opennms.horizon.flows.grpc.client.GrpcInventoryMockServer;
 import org.opennms.horizon.flows.grpc.client.IngestorApplicationConfig;
 import org.opennms.horizon.flows.grpc.client.InventoryApplicationConfig;
-import org.opennms.horizon.inventory.dto.NodeIdQuery;
+import org.opennms.horizon.inventory.dto.IpInterfacesQuery;
 import org.opennms.taskset.contract.TaskResult;
 import org.opennms.taskset.contract.TaskSetResults;
 import org.slf4j.Logger;
@@ -173,10 +173,10 @@ class FlowProcessorIntegrationTest {
         Assertions.assertEquals(String.format("%s,%s", tenantId, tenantId), grpcIngesterMockServer.getSavedTenantId());
 
         // Flow Documents are sent to Inventory for Enrichment
-        Map<String, NodeIdQuery> incomingNodeIdQueries = grpcInventoryMockServer.getIncomingNodeIdQueries();
-        Assertions.assertEquals(2, incomingNodeIdQueries.size());
-        Assertions.assertNotNull(incomingNodeIdQueries.get(LOCATION1));
-        Assertions.assertNotNull(incomingNodeIdQueries.get(LOCATION2));
+        Map<String, IpInterfacesQuery> incomingQueries = grpcInventoryMockServer.getIncomingIpInterfacesQueries();
+        Assertions.assertEquals(2, incomingQueries.size());
+        Assertions.assertNotNull(incomingQueries.get(LOCATION1));
+        Assertions.assertNotNull(incomingQueries.get(LOCATION2));
     }
 
     private ProducerRecord<String, byte[]> formatProducerRecord(byte[] rawContent, String tenantId) {
@@ -0,0 +1,175 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.horizon.metrics.kafka;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+class PartitionedWorkerPoolTest {
+    private static final TopicPartition PARTITION_0 = new TopicPartition("x-topic-x", 0);
+    private static final TopicPartition PARTITION_1 = new TopicPartition("x-topic-x", 1);
+
+    private final PartitionedWorkerPool.PartitionControl mockPartitionControl =
+            Mockito.mock(PartitionedWorkerPool.PartitionControl.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private PartitionedWorkerPool target;
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        target.close();
+    }
+
+    @Test
+    void testKeepsOrderWithinPartition() {
+        target = new PartitionedWorkerPool("x-test-x", 4, 1000, mockPartitionControl, meterRegistry);
+        List<Integer> processed0 = new CopyOnWriteArrayList<>();
+        List<Integer> acked0 = new CopyOnWriteArrayList<>();
+        List<Integer> processed1 = new CopyOnWriteArrayList<>();
+
+        for (int i = 0; i < 500; i++) {
+            int offset = i;
+            target.submit(PARTITION_0, 0, () -> processed0.add(offset), () -> acked0.add(offset));
+            target.submit(PARTITION_1, 0, () -> processed1.add(offset), () -> {});
+        }
+
+        List<Integer> expected = IntStream.range(0, 500).boxed().collect(Collectors.toList());
+        await().atMost(10, TimeUnit.SECONDS).until(() -> acked0.size() == 500 && processed1.size() == 500);
+        assertEquals(expected, processed0);
+        assertEquals(expected, acked0);
+        assertEquals(expected, processed1);
+        Mockito.verifyNoInteractions(mockPartitionControl);
+    }
+
+    @Test
+    void testPausesAndResumesFullPartition() throws InterruptedException {
+        target = new PartitionedWorkerPool("x-test-x", 1, 4, mockPartitionControl, meterRegistry);
+        CountDownLatch blocker = new CountDownLatch(1);
+        List<Integer> acked = new CopyOnWriteArrayList<>();
+
+        target.submit(PARTITION_0, 0, () -> awaitQuietly(blocker), () -> acked.add(0));
+        for (int i = 1; i < 4; i++) {
+            int offset = i;
+            target.submit(PARTITION_0, 0, () -> {}, () -> acked.add(offset));
+        }
+
+        Mockito.verify(mockPartitionControl).pause(PARTITION_0);
+        assertEquals(4.0, meterRegistry.get("kafka.worker.queue.depth").gauge().value());
+        assertEquals(1.0, meterRegistry.get("kafka.worker.paused.partitions").gauge().value());
+
+        blocker.countDown();
+
+        await().atMost(10, TimeUnit.SECONDS).until(() -> acked.size() == 4);
+        Mockito.verify(mockPartitionControl, Mockito.timeout(5000)).resume(PARTITION_0);
+        assertEquals(0.0, meterRegistry.get("kafka.worker.queue.depth").gauge().value());
+    }
+
+    @Test
+    void testAcknowledgesFailedRecords() {
+        target = new PartitionedWorkerPool("x-test-x", 1, 10, mockPartitionControl, meterRegistry);
+        List<Integer> acked = new CopyOnWriteArrayList<>();
+
+        target.submit(
+                PARTITION_0,
+                0,
+                () -> {
+                    throw new RuntimeException("x-test-exception-x");
+                },
+                () -> acked.add(0));
+        target.submit(PARTITION_0, 0, () -> {}, () -> acked.add(1));
+
+        await().atMost(10, TimeUnit.SECONDS).until(() -> acked.size() == 2);
+        assertEquals(List.of(0, 1), acked);
+    }
+
+    @Test
+    void testAcknowledgesAsyncRecordsInOrder() {
+        target = new PartitionedWorkerPool("x-test-x", 2, 10, mockPartitionControl, meterRegistry);
+        List<Integer> acked = new CopyOnWriteArrayList<>();
+        CompletableFuture<Void> first = new CompletableFuture<>();
+        CompletableFuture<Void> second = new CompletableFuture<>();
+
+        target.submitAsync(PARTITION_0, 0, () -> first, () -> acked.add(0));
+        target.submitAsync(PARTITION_0, 0, () -> second, () -> acked.add(1));
+
+        second.complete(null);
+        await().during(200, TimeUnit.MILLISECONDS).atMost(10, TimeUnit.SECONDS).until(acked::isEmpty);
+
+        first.complete(null);
+        await().atMost(10, TimeUnit.SECONDS).until(() -> acked.size() == 2);
+        assertEquals(List.of(0, 1), acked);
+    }
+
+    @Test
+    void testRetriesFailedAsyncRecord() {
+        target = new PartitionedWorkerPool("x-test-x", 1, 10, mockPartitionControl, meterRegistry);
+        List<Integer> acked = new CopyOnWriteArrayList<>();
+        AtomicInteger attempts = new AtomicInteger();
+        CompletableFuture<Void> retried = new CompletableFuture<>();
+
+        target.submitAsync(PARTITION_0, 0, () -> CompletableFuture.completedFuture(null), () -> acked.add(0));
+        target.submitAsync(
+                PARTITION_0,
+                0,
+                () -> attempts.incrementAndGet() == 1
+                        ? CompletableFuture.failedFuture(new RuntimeException("x-test-exception-x"))
+                        : retried,
+                () -> acked.add(1));
+        target.submitAsync(PARTITION_0, 0, () -> CompletableFuture.completedFuture(null), () -> acked.add(2));
+        target.submit(PARTITION_1, 0, () -> {}, () -> acked.add(10));
+
+        // The third offset is held back while the second record is retried
+        Mockito.verify(mockPartitionControl, Mockito.timeout(5000)).pause(PARTITION_0);
+        await().atMost(10, TimeUnit.SECONDS).until(() -> attempts.get() == 2);
+        await().during(200, TimeUnit.MILLISECONDS).atMost(10, TimeUnit.SECONDS).until(() -> acked.size() == 2);
+        assertEquals(List.of(0, 10), acked);
+        assertEquals(1.0, meterRegistry.get("kafka.worker.retries").counter().count());
+
+        retried.complete(null);
+
+        await().atMost(10, TimeUnit.SECONDS).until(() -> acked.size() == 4);
+        assertEquals(List.of(0, 10, 1, 2), acked);
+        Mockito.verify(mockPartitionControl, Mockito.timeout(5000)).resume(PARTITION_0);
+        assertEquals(2, attempts.get());
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -30,15 +30,21 @@ import java.util.Objects;
 import java.util.function.Predicate;
 import nl.altindag.log.LogCaptor;
 import nl.altindag.log.model.LogEvent;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
+import org.opennms.horizon.metrics.kafka.PartitionedWorkerPool;
 import org.opennms.taskset.contract.TaskResult;
 import org.opennms.taskset.contract.TenantLocationSpecificTaskSetResults;
+import org.springframework.kafka.support.Acknowledgment;
 
 class TSDataProcessorTest {
 
     private TaskSetResultProcessor mockTaskSetMonitorResultProcessor;
+    private PartitionedWorkerPool mockWorkerPool;
 
     private TaskResult testTaskResult1;
     private TaskResult testTaskResult2;
@@ -50,6 +56,7 @@ class TSDataProcessorTest {
     @BeforeEach
     public void setup() {
         mockTaskSetMonitorResultProcessor = Mockito.mock(TaskSetResultProcessor.class);
+        mockWorkerPool = Mockito.mock(PartitionedWorkerPool.class);
 
         testTaskResult1 = TaskResult.newBuilder().setId("x-task1-result-x").build();
 
@@ -66,16 +73,50 @@ class TSDataProcessorTest {
                 .setTenantId("")
                 .build();
 
-        target = new TSDataProcessor(mockTaskSetMonitorResultProcessor);
+        target = new TSDataProcessor(mockTaskSetMonitorResultProcessor, mockWorkerPool);
     }
 
     @Test
     void testConsumeFromKafka() {
+        Acknowledgment mockAcknowledgment = Mockito.mock(Acknowledgment.class);
+        ConsumerRecord<String, byte[]> consumerRecord = new ConsumerRecord<>(
+                "x-topic-x", 3, 13L, null, testTenantLocationSpecificTaskSetResults.toByteArray());
+
+        //
+        // Execute
+        //
+        target.consume(consumerRecord, mockAcknowledgment);
+
+        //
+        // Verify the Results
+        //
+        ArgumentCaptor<Runnable> workCaptor = ArgumentCaptor.forClass(Runnable.class);
+        ArgumentCaptor<Runnable> completionCaptor = ArgumentCaptor.forClass(Runnable.class);
+        Mockito.verify(mockWorkerPool)
+                .submit(
+                        Mockito.eq(new TopicPartition("x-topic-x", 3)),
+                        Mockito.anyLong(),
+                        workCaptor.capture(),
+                        completionCaptor.capture());
+        // Nothing is processed or acknowledged before the worker runs
+        Mockito.verifyNoInteractions(mockTaskSetMonitorResultProcessor, mockAcknowledgment);
+
+        workCaptor.getValue().run();
+        completionCaptor.getValue().run();
+
+        Mockito.verify(mockTaskSetMonitorResultProcessor)
+                .processTaskResult("x-tenant-id-x", "x-location-x", testTaskResult1);
+        Mockito.verify(mockTaskSetMonitorResultProcessor)
+                .processTaskResult("x-tenant-id-x", "x-location-x", testTaskResult2);
+        Mockito.verify(mockAcknowledgment).acknowledge();
+    }
+
+    @Test
+    void testProcess() {
         //
         // Execute
         //
-        target.setSubmitForExecutionOp(this::testExecutionSubmissionOp);
-        target.consume(testTenantLocationSpecificTaskSetResults.toByteArray());
+        target.process(testTenantLocationSpecificTaskSetResults.toByteArray());
 
         //
         // Verify the Results
@@ -94,7 +135,7 @@ class TSDataProcessorTest {
         //
         Exception actualException = null;
         try {
-            target.consume(testTenantLocationSpecificTaskSetResultsBlankTenant.toByteArray());
+            target.process(testTenantLocationSpecificTaskSetResultsBlankTenant.toByteArray());
             fail("Missing expected exception");
         } catch (Exception exc) {
             actualException = exc;
@@ -115,7 +156,7 @@ class TSDataProcessorTest {
             //
             // Execute
             //
-            target.consume("----INVALID----".getBytes());
+            target.process("----INVALID----".getBytes());
 
             //
             // Verify the Results
@@ -130,19 +171,4 @@ class TSDataProcessorTest {
             Mockito.verifyNoInteractions(mockTaskSetMonitorResultProcessor);
         }
     }
-
-    // ========================================
-    // Internals
-    // ----------------------------------------
-
-    /**
-     * Test async execution submission operation that directly executes the operation immediately, to simplify the tests
-     *  and avoid multi-threaded testing complexity.
-     *
-     * @param runnable
-     */
-    private void testExecutionSubmissionOp(Runnable runnable) {
-        // Immediately pass-through the call
-        runnable.run();
-    }
 }
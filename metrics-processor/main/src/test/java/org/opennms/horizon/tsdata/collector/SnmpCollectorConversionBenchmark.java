@@ -0,0 +1,173 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.horizon.tsdata.collector;
+
+import com.google.protobuf.Any;
+import com.google.protobuf.ByteString;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.opennms.horizon.snmp.api.SnmpResponseMetric;
+import org.opennms.horizon.snmp.api.SnmpResultMetric;
+import org.opennms.horizon.snmp.api.SnmpValueMetric;
+import org.opennms.horizon.snmp.api.SnmpValueType;
+import org.opennms.horizon.tenantmetrics.TenantMetricsTracker;
+import org.opennms.horizon.timeseries.cortex.CortexTSS;
+import org.opennms.horizon.tsdata.MetricNameConstants;
+import org.opennms.taskset.contract.CollectorResponse;
+import org.opennms.taskset.contract.Identity;
+import org.opennms.taskset.contract.TaskResult;
+import prometheus.PrometheusTypes;
+
+/**
+ * Use the Java Microbenchmarking Harness (JMH) to measure the conversion of SNMP collector results to Prometheus
+ * time series.
+ * <p>
+ * The {@code legacy} benchmark is the conversion as it was done before labels were cached, so running with the GC
+ * profiler ({@code -prof gc}) reports the allocation per operation before and after side by side.
+ */
+public class SnmpCollectorConversionBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        org.openjdk.jmh.Main.main(args);
+    }
+
+    @State(Scope.Benchmark)
+    public static class BState {
+
+        // number of interfaces in the walked table, each one yields 8 results
+        @Param({"100", "1000"})
+        public int interfaces;
+
+        private TaskSetCollectorSnmpResponseProcessor processor;
+        private TaskResult taskResult;
+
+        @Setup
+        public void setup() {
+            CortexTSS cortexTSS = Mockito.mock(CortexTSS.class, Mockito.withSettings().stubOnly());
+            TenantMetricsTracker tracker = Mockito.mock(TenantMetricsTracker.class, Mockito.withSettings().stubOnly());
+            processor = new TaskSetCollectorSnmpResponseProcessor(cortexTSS, tracker);
+
+            SnmpResponseMetric.Builder response = SnmpResponseMetric.newBuilder();
+            for (int i = 0; i < interfaces; i++) {
+                for (String alias : List.of("ifHCInOctets", "ifHCOutOctets", "ifHCInUcastPkts", "ifHCOutUcastPkts")) {
+                    response.addResults(result(alias, i)
+                            .setValue(SnmpValueMetric.newBuilder()
+                                    .setType(SnmpValueType.COUNTER64)
+                                    .setBytes(ByteString.copyFrom(
+                                            BigInteger.valueOf(Long.MAX_VALUE - i).toByteArray()))));
+                }
+                for (String alias : List.of("ifInErrors", "ifOutErrors", "ifInDiscards", "ifOutDiscards")) {
+                    response.addResults(result(alias, i)
+                            .setValue(SnmpValueMetric.newBuilder()
+                                    .setType(SnmpValueType.COUNTER32)
+                                    .setUint64(i)));
+                }
+            }
+
+            taskResult = TaskResult.newBuilder()
+                    .setIdentity(Identity.newBuilder().setSystemId("minion-1"))
+                    .setCollectorResponse(CollectorResponse.newBuilder()
+                            .setNodeId(13)
+                            .setMonitorType("SNMP")
+                            .setTimestamp(System.currentTimeMillis())
+                            .setResult(Any.pack(response.build())))
+                    .build();
+        }
+
+        private static SnmpResultMetric.Builder result(String alias, int ifIndex) {
+            return SnmpResultMetric.newBuilder()
+                    .setAlias(alias)
+                    .setInstance("node[13].interfaceSnmp[" + ifIndex + "]")
+                    .putLabels("ifName", "eth" + ifIndex)
+                    .putLabels("ifDescr", "Ethernet interface " + ifIndex);
+        }
+    }
+
+    @Benchmark
+    @Fork(value = 1)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 2)
+    public void convert(BState state) throws IOException {
+        state.processor.processSnmpCollectorResponse("tenant", "location", state.taskResult);
+    }
+
+    @Benchmark
+    @Fork(value = 1)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 2)
+    public void legacy(BState state, Blackhole blackhole) throws IOException {
+        blackhole.consume(legacyConvert("location", state.taskResult));
+    }
+
+    /**
+     * The conversion before the label cache and the Counter64 fast path were introduced.
+     */
+    private static List<PrometheusTypes.TimeSeries> legacyConvert(String location, TaskResult taskResult)
+            throws IOException {
+        var response = taskResult.getCollectorResponse();
+        Map<String, String> labels = new HashMap<>();
+        labels.put("location", location);
+        labels.put("system_id", taskResult.getIdentity().getSystemId());
+        labels.put("monitor", response.getMonitorType());
+        labels.put("node_id", String.valueOf(response.getNodeId()));
+
+        List<PrometheusTypes.TimeSeries> timeSeriesList = new ArrayList<>();
+        var snmpResponse = response.getResult().unpack(SnmpResponseMetric.class);
+        for (SnmpResultMetric snmpResult : snmpResponse.getResultsList()) {
+            PrometheusTypes.TimeSeries.Builder builder = PrometheusTypes.TimeSeries.newBuilder();
+            builder.addLabels(PrometheusTypes.Label.newBuilder()
+                    .setName(MetricNameConstants.METRIC_NAME_LABEL)
+                    .setValue(CortexTSS.sanitizeMetricName(snmpResult.getAlias())));
+            labels.forEach((name, value) -> builder.addLabels(PrometheusTypes.Label.newBuilder()
+                    .setName(CortexTSS.sanitizeLabelName(name))
+                    .setValue(CortexTSS.sanitizeLabelValue(value))));
+            builder.addLabels(PrometheusTypes.Label.newBuilder().setName("instance").setValue(snmpResult.getInstance()));
+            for (final var e : snmpResult.getLabelsMap().entrySet()) {
+                builder.addLabels(PrometheusTypes.Label.newBuilder()
+                        .setName(CortexTSS.sanitizeLabelName(e.getKey()))
+                        .setValue(CortexTSS.sanitizeLabelValue(e.getValue())));
+            }
+            double value = snmpResult.getValue().getTypeValue() == SnmpValueType.COUNTER64_VALUE
+                    ? new BigInteger(snmpResult.getValue().getBytes().toByteArray()).doubleValue()
+                    : snmpResult.getValue().getUint64();
+            builder.addSamples(PrometheusTypes.Sample.newBuilder()
+                    .setTimestamp(response.getTimestamp())
+                    .setValue(value));
+            timeSeriesList.add(builder.build());
+        }
+        return timeSeriesList;
+    }
+}
@@ -21,6 +21,8 @@
  */
 package org.opennms.horizon.tsdata.collector;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
 import com.google.protobuf.Any;
 import com.google.protobuf.ByteString;
 import java.io.IOException;
@@ -127,6 +129,24 @@ public class TaskSetCollectorSnmpResponseProcessorTest {
         Mockito.verify(mockCortexTSS).store(Mockito.eq("x-tenant-id-x"), Mockito.argThat(timeSeriesTimeStampMatcher));
     }
 
+    @Test
+    void testCounter64Conversion() {
+        for (BigInteger value : List.of(
+                BigInteger.ZERO,
+                BigInteger.valueOf(640004L),
+                BigInteger.valueOf(Long.MAX_VALUE),
+                BigInteger.ONE.shiftLeft(63),
+                BigInteger.ONE.shiftLeft(64).subtract(BigInteger.ONE),
+                BigInteger.ONE.shiftLeft(64).subtract(BigInteger.valueOf(1025)),
+                BigInteger.valueOf(-13L),
+                BigInteger.ONE.shiftLeft(70))) {
+            assertEquals(
+                    value.doubleValue(),
+                    TaskSetCollectorSnmpResponseProcessor.counter64ToDouble(ByteString.copyFrom(value.toByteArray())),
+                    "Conversion of " + value);
+        }
+    }
+
     // ========================================
     // Internals
     // ----------------------------------------
@@ -21,15 +21,24 @@
  */
 package org.opennms.horizon.timeseries.cortex;
 
+import com.codahale.metrics.Gauge;
 import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
 import io.github.resilience4j.bulkhead.Bulkhead;
 import io.github.resilience4j.bulkhead.BulkheadConfig;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.time.Duration;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import okhttp3.Call;
 import okhttp3.Callback;
@@ -52,13 +61,21 @@ import prometheus.PrometheusTypes;
  * We use the cortex api to write data (writes to the ingester) and the prometheus api to read data (reads from the Querier).
  * Even though it's possible to read from the ingester it does only give us the most resent data (still held in memory) therefore
  * we use the querier.
+ * <p>
+ * Write requests that fail with a transient error (or are rejected by the bulkhead) are put into a per-tenant
+ * {@link WriteAheadSpool} if one is configured and replayed in order by a single background thread once Cortex is
+ * reachable again. While a tenant has a backlog, new writes for that tenant are appended to the spool as well, so
+ * samples still arrive in order.
+ * <p>
+ * Unless disabled, series are first coalesced per tenant by a {@link CortexWriteBatcher} so that many small results
+ * turn into few remote-write requests.
  * Docs:
  * - https://cortexmetrics.io/docs/api/
  * - https://prometheus.io/docs/prometheus/latest/querying/api/
  *
  * @author jwhite
  */
-public class CortexTSS {
+public class CortexTSS implements AutoCloseable {
     private static final Logger LOG = LoggerFactory.getLogger(CortexTSS.class);
 
     private static final String X_SCOPE_ORG_ID_HEADER = "X-Scope-OrgID";
@@ -69,15 +86,26 @@ public class CortexTSS {
     private final MetricRegistry metrics;
     private final Meter samplesWritten;
     private final Meter samplesLost;
+    private final Meter samplesSpooled;
+    private final Meter samplesReplayed;
 
     private final Bulkhead asyncHttpCallsBulkhead;
     private final CortexTSSConfig config;
 
+    private final CortexWriteBatcher batcher;
+
+    private final WriteAheadSpool spool;
+    private final ScheduledExecutorService replayExecutor;
+    // Only accessed from the replay thread
+    private final Map<String, ReplayBackoff> replayBackoffs = new HashMap<>();
+
     public CortexTSS(final CortexTSSConfig config, final MetricRegistry metrics) {
         this.config = Objects.requireNonNull(config);
         this.metrics = Objects.requireNonNull(metrics);
         samplesWritten = metrics.meter("samplesWritten");
         samplesLost = metrics.meter("samplesLost");
+        samplesSpooled = metrics.meter("samplesSpooled");
+        samplesReplayed = metrics.meter("samplesReplayed");
 
         ConnectionPool connectionPool =
                 new ConnectionPool(config.getMaxConcurrentHttpConnections(), 5, TimeUnit.MINUTES);
@@ -98,6 +126,46 @@ public class CortexTSS {
                 .fairCallHandlingStrategyEnabled(true)
                 .build();
         asyncHttpCallsBulkhead = Bulkhead.of("asyncHttpCalls", bulkheadConfig);
+
+        if (config.getBatchMaxSeries() > 1) {
+            batcher = new CortexWriteBatcher(
+                    this::write,
+                    config.getBatchMaxSeries(),
+                    config.getBatchMaxDelayInMs(),
+                    config.getBatchMaxPendingPerTenant(),
+                    metrics);
+        } else {
+            batcher = null;
+        }
+
+        if (config.hasSpoolDirectory()) {
+            try {
+                spool = new WriteAheadSpool(
+                        Path.of(config.getSpoolDirectory()),
+                        config.getSpoolSegmentSizeInBytes(),
+                        config.getSpoolMaxSizePerTenantInBytes(),
+                        (tenantId, records) -> samplesLost.mark(records));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to open write spool at " + config.getSpoolDirectory(), e);
+            }
+            metrics.gauge("spoolDepth", () -> (Gauge<Long>) spool::getPendingRecords);
+            metrics.gauge("spoolBytes", () -> (Gauge<Long>) spool::getPendingBytes);
+            metrics.gauge("spoolReplayLagMs", () -> (Gauge<Long>) spool::getReplayLagMs);
+
+            replayExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "cortex-spool-replay");
+                thread.setDaemon(true);
+                return thread;
+            });
+            replayExecutor.scheduleWithFixedDelay(
+                    this::replaySpool,
+                    config.getSpoolReplayInitialBackoffInMs(),
+                    config.getSpoolReplayInitialBackoffInMs(),
+                    TimeUnit.MILLISECONDS);
+        } else {
+            spool = null;
+            replayExecutor = null;
+        }
     }
 
     public void store(String tenantId, prometheus.PrometheusTypes.TimeSeries.Builder timeSeriesBuilder)
@@ -106,6 +174,18 @@ public class CortexTSS {
     }
 
     public void store(String tenantId, List<PrometheusTypes.TimeSeries> timeSeriesList) throws IOException {
+        if (batcher != null) {
+            batcher.add(tenantId, timeSeriesList);
+        } else {
+            write(tenantId, timeSeriesList);
+        }
+    }
+
+    /**
+     * @return completes once the write request was accepted, spooled or given up on
+     */
+    private CompletableFuture<Void> write(String tenantId, List<PrometheusTypes.TimeSeries> timeSeriesList)
+            throws IOException {
         PrometheusRemote.WriteRequest.Builder writeBuilder = PrometheusRemote.WriteRequest.newBuilder();
         writeBuilder.addAllTimeseries(timeSeriesList);
 
@@ -115,6 +195,41 @@ public class CortexTSS {
         final byte[] writeRequestCompressed;
         writeRequestCompressed = Snappy.compress(writeRequest.toByteArray());
 
+        LOG.trace("Writing: {}", writeRequest);
+        if (spool != null && !spool.isEmpty(tenantId)) {
+            // Queue up behind the backlog, otherwise Cortex would reject the replayed samples as out of order
+            spool(tenantId, writeRequestCompressed);
+            return CompletableFuture.completedFuture(null);
+        }
+
+        final Request request = buildRequest(tenantId, writeRequestCompressed);
+        return asyncHttpCallsBulkhead
+                .executeCompletionStage(() -> executeAsync(request))
+                .handle((r, ex) -> {
+                    if (ex == null) {
+                        samplesWritten.mark(1);
+                    } else {
+                        handleFailedWrite(tenantId, writeRequestCompressed, unwrap(ex));
+                    }
+                    return (Void) null;
+                })
+                .toCompletableFuture();
+    }
+
+    @Override
+    public void close() {
+        if (batcher != null) {
+            batcher.close();
+        }
+        if (replayExecutor != null) {
+            replayExecutor.shutdownNow();
+        }
+        if (spool != null) {
+            spool.close();
+        }
+    }
+
+    private Request buildRequest(String tenantId, byte[] writeRequestCompressed) {
         // Build the HTTP request
         final RequestBody body = RequestBody.create(PROTOBUF_MEDIA_TYPE, writeRequestCompressed);
         final Request.Builder builder = new Request.Builder()
@@ -127,20 +242,88 @@ public class CortexTSS {
         if (tenantId != null && tenantId.trim().length() > 0) {
             builder.addHeader(X_SCOPE_ORG_ID_HEADER, tenantId);
         }
-        final Request request = builder.build();
+        return builder.build();
+    }
 
-        LOG.trace("Writing: {}", writeRequest);
-        asyncHttpCallsBulkhead
-                .executeCompletionStage(() -> executeAsync(request))
-                .whenComplete((r, ex) -> {
-                    if (ex == null) {
-                        samplesWritten.mark(1);
-                    } else {
-                        // FIXME: Data loss
-                        samplesLost.mark(1);
-                        LOG.error("Error occurred while storing result, sample will be lost.", ex);
-                    }
-                });
+    private void handleFailedWrite(String tenantId, byte[] writeRequestCompressed, Throwable ex) {
+        if (spool != null && isRetryable(ex)) {
+            LOG.warn("Error occurred while storing result, spooling it for replay: {}", ex.getMessage());
+            spool(tenantId, writeRequestCompressed);
+        } else {
+            samplesLost.mark(1);
+            LOG.error("Error occurred while storing result, sample will be lost.", ex);
+        }
+    }
+
+    private void spool(String tenantId, byte[] writeRequestCompressed) {
+        try {
+            if (spool.append(tenantId, writeRequestCompressed)) {
+                samplesSpooled.mark(1);
+            } else {
+                samplesLost.mark(1);
+                LOG.error(
+                        "Write request of {} bytes exceeds the spool segment size, sample will be lost.",
+                        writeRequestCompressed.length);
+            }
+        } catch (IOException e) {
+            samplesLost.mark(1);
+            LOG.error("Error occurred while spooling result, sample will be lost.", e);
+        }
+    }
+
+    void replaySpool() {
+        for (String tenantId : spool.getTenantIds()) {
+            try {
+                replayTenant(tenantId);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                LOG.error("Unexpected error while replaying spooled write requests for tenant '{}'", tenantId, e);
+            }
+        }
+    }
+
+    private void replayTenant(String tenantId) throws InterruptedException {
+        long now = System.currentTimeMillis();
+        ReplayBackoff backoff = replayBackoffs.get(tenantId);
+        if (backoff != null && now < backoff.nextAttemptAt) {
+            return;
+        }
+
+        WriteAheadSpool.Entry entry;
+        while ((entry = spool.peek(tenantId)) != null) {
+            try {
+                executeAsync(buildRequest(tenantId, entry.getPayload())).get();
+                samplesWritten.mark(1);
+                samplesReplayed.mark(1);
+            } catch (ExecutionException e) {
+                if (isRetryable(e.getCause())) {
+                    long delay = backoff == null
+                            ? config.getSpoolReplayInitialBackoffInMs()
+                            : Math.min(backoff.delay * 2, config.getSpoolReplayMaxBackoffInMs());
+                    replayBackoffs.put(tenantId, new ReplayBackoff(now + delay, delay));
+                    LOG.warn(
+                            "Replay of spooled write requests for tenant '{}' failed, retrying in {}ms: {}",
+                            tenantId,
+                            delay,
+                            e.getCause().getMessage());
+                    return;
+                }
+                samplesLost.mark(1);
+                LOG.error("Spooled write request was rejected, sample will be lost.", e.getCause());
+            }
+            spool.commit(entry);
+        }
+        replayBackoffs.remove(tenantId);
+    }
+
+    private static Throwable unwrap(Throwable ex) {
+        return ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+    }
+
+    private static boolean isRetryable(Throwable ex) {
+        return !(ex instanceof CortexWriteException) || ((CortexWriteException) ex).isRetryable();
     }
 
     public CompletableFuture<Void> executeAsync(Request request) {
@@ -163,9 +346,11 @@ public class CortexTSS {
                                 bodyAsString = "(error reading body)";
                             }
                         }
-                        future.completeExceptionally(new RuntimeException(String.format(
-                                "Writing to Prometheus failed: %s - %s: %s",
-                                response.code(), response.message(), bodyAsString)));
+                        future.completeExceptionally(new CortexWriteException(
+                                response.code(),
+                                String.format(
+                                        "Writing to Prometheus failed: %s - %s: %s",
+                                        response.code(), response.message(), bodyAsString)));
                     } else {
                         future.complete(null);
                     }
@@ -213,4 +398,14 @@ public class CortexTSS {
         }
         return sb.toString();
     }
+
+    private static final class ReplayBackoff {
+        private final long nextAttemptAt;
+        private final long delay;
+
+        private ReplayBackoff(long nextAttemptAt, long delay) {
+            this.nextAttemptAt = nextAttemptAt;
+            this.delay = delay;
+        }
+    }
 }
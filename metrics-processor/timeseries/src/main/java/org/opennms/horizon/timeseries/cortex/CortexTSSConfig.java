@@ -32,6 +32,14 @@ public class CortexTSSConfig {
     private final long bulkheadMaxWaitDurationInMs;
     private final String organizationId;
     private final boolean hasOrganizationId;
+    private final String spoolDirectory;
+    private final int spoolSegmentSizeInBytes;
+    private final long spoolMaxSizePerTenantInBytes;
+    private final long spoolReplayInitialBackoffInMs;
+    private final long spoolReplayMaxBackoffInMs;
+    private final int batchMaxSeries;
+    private final long batchMaxDelayInMs;
+    private final int batchMaxPendingPerTenant;
 
     public CortexTSSConfig() {
         this(builder());
@@ -45,6 +53,14 @@ public class CortexTSSConfig {
         this.bulkheadMaxWaitDurationInMs = builder.bulkheadMaxWaitDurationInMs;
         this.organizationId = builder.organizationId;
         this.hasOrganizationId = organizationId != null && organizationId.trim().length() > 0;
+        this.spoolDirectory = builder.spoolDirectory;
+        this.spoolSegmentSizeInBytes = builder.spoolSegmentSizeInBytes;
+        this.spoolMaxSizePerTenantInBytes = builder.spoolMaxSizePerTenantInBytes;
+        this.spoolReplayInitialBackoffInMs = builder.spoolReplayInitialBackoffInMs;
+        this.spoolReplayMaxBackoffInMs = builder.spoolReplayMaxBackoffInMs;
+        this.batchMaxSeries = builder.batchMaxSeries;
+        this.batchMaxDelayInMs = builder.batchMaxDelayInMs;
+        this.batchMaxPendingPerTenant = builder.batchMaxPendingPerTenant;
     }
 
     /**
@@ -95,6 +111,42 @@ public class CortexTSSConfig {
         return organizationId;
     }
 
+    public boolean hasSpoolDirectory() {
+        return spoolDirectory != null && spoolDirectory.trim().length() > 0;
+    }
+
+    public String getSpoolDirectory() {
+        return spoolDirectory;
+    }
+
+    public int getSpoolSegmentSizeInBytes() {
+        return spoolSegmentSizeInBytes;
+    }
+
+    public long getSpoolMaxSizePerTenantInBytes() {
+        return spoolMaxSizePerTenantInBytes;
+    }
+
+    public long getSpoolReplayInitialBackoffInMs() {
+        return spoolReplayInitialBackoffInMs;
+    }
+
+    public long getSpoolReplayMaxBackoffInMs() {
+        return spoolReplayMaxBackoffInMs;
+    }
+
+    public int getBatchMaxSeries() {
+        return batchMaxSeries;
+    }
+
+    public long getBatchMaxDelayInMs() {
+        return batchMaxDelayInMs;
+    }
+
+    public int getBatchMaxPendingPerTenant() {
+        return batchMaxPendingPerTenant;
+    }
+
     public static Builder builder() {
         return new Builder();
     }
@@ -106,6 +158,14 @@ public class CortexTSSConfig {
         private long readTimeoutInMs = 1000;
         private long bulkheadMaxWaitDurationInMs = Long.MAX_VALUE;
         private String organizationId = null;
+        private String spoolDirectory = null;
+        private int spoolSegmentSizeInBytes = 16 * 1024 * 1024;
+        private long spoolMaxSizePerTenantInBytes = 256L * 1024 * 1024;
+        private long spoolReplayInitialBackoffInMs = 1000;
+        private long spoolReplayMaxBackoffInMs = 60000;
+        private int batchMaxSeries = 2000;
+        private long batchMaxDelayInMs = 50;
+        private int batchMaxPendingPerTenant = 16;
 
         public Builder writeUrl(final String writeUrl) {
             this.writeUrl = writeUrl;
@@ -137,6 +197,46 @@ public class CortexTSSConfig {
             return this;
         }
 
+        public Builder spoolDirectory(final String spoolDirectory) {
+            this.spoolDirectory = spoolDirectory;
+            return this;
+        }
+
+        public Builder spoolSegmentSizeInBytes(final int spoolSegmentSizeInBytes) {
+            this.spoolSegmentSizeInBytes = spoolSegmentSizeInBytes;
+            return this;
+        }
+
+        public Builder spoolMaxSizePerTenantInBytes(final long spoolMaxSizePerTenantInBytes) {
+            this.spoolMaxSizePerTenantInBytes = spoolMaxSizePerTenantInBytes;
+            return this;
+        }
+
+        public Builder spoolReplayInitialBackoffInMs(final long spoolReplayInitialBackoffInMs) {
+            this.spoolReplayInitialBackoffInMs = spoolReplayInitialBackoffInMs;
+            return this;
+        }
+
+        public Builder spoolReplayMaxBackoffInMs(final long spoolReplayMaxBackoffInMs) {
+            this.spoolReplayMaxBackoffInMs = spoolReplayMaxBackoffInMs;
+            return this;
+        }
+
+        public Builder batchMaxSeries(final int batchMaxSeries) {
+            this.batchMaxSeries = batchMaxSeries;
+            return this;
+        }
+
+        public Builder batchMaxDelayInMs(final long batchMaxDelayInMs) {
+            this.batchMaxDelayInMs = batchMaxDelayInMs;
+            return this;
+        }
+
+        public Builder batchMaxPendingPerTenant(final int batchMaxPendingPerTenant) {
+            this.batchMaxPendingPerTenant = batchMaxPendingPerTenant;
+            return this;
+        }
+
         public CortexTSSConfig build() {
             return new CortexTSSConfig(this);
         }
@@ -151,6 +251,14 @@ public class CortexTSSConfig {
                 .add("readTimeoutInMs=" + readTimeoutInMs)
                 .add("bulkheadMaxWaitDurationInMs=" + bulkheadMaxWaitDurationInMs)
                 .add("organizationId=" + organizationId)
+                .add("spoolDirectory='" + spoolDirectory + "'")
+                .add("spoolSegmentSizeInBytes=" + spoolSegmentSizeInBytes)
+                .add("spoolMaxSizePerTenantInBytes=" + spoolMaxSizePerTenantInBytes)
+                .add("spoolReplayInitialBackoffInMs=" + spoolReplayInitialBackoffInMs)
+                .add("spoolReplayMaxBackoffInMs=" + spoolReplayMaxBackoffInMs)
+                .add("batchMaxSeries=" + batchMaxSeries)
+                .add("batchMaxDelayInMs=" + batchMaxDelayInMs)
+                .add("batchMaxPendingPerTenant=" + batchMaxPendingPerTenant)
                 .toString();
     }
 }
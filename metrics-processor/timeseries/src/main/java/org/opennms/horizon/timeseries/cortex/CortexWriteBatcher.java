@@ -0,0 +1,286 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.horizon.timeseries.cortex;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import prometheus.PrometheusTypes;
+
+/**
+ * Coalesces time series of a tenant into a single remote-write request.
+ * <p>
+ * Series are collected per tenant until either {@code maxSeries} distinct label sets are pending or the oldest
+ * pending series waited {@code maxDelayInMs}, whichever comes first. Series with identical label sets are merged
+ * into one series; if they carry samples with the same timestamp, the last one wins.
+ * <p>
+ * Batches of a tenant are written one after the other: a batch is only handed to the {@link Writer} once the write
+ * of the previous batch of the same tenant completed, so Cortex receives the samples of a tenant in order. Once
+ * {@code maxPendingBatches} batches of a tenant wait for or are being written, {@link #add} blocks until one of them
+ * completes, so a slow or unreachable Cortex pushes back on the producers rather than filling the heap.
+ */
+public class CortexWriteBatcher implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(CortexWriteBatcher.class);
+
+    /**
+     * Sink for the coalesced batches.
+     */
+    @FunctionalInterface
+    public interface Writer {
+        /**
+         * @return completes once the write finished, successfully or not
+         */
+        CompletionStage<?> write(String tenantId, List<PrometheusTypes.TimeSeries> timeSeriesList)
+                throws IOException;
+    }
+
+    enum FlushReason {
+        SIZE,
+        TIME,
+        SHUTDOWN
+    }
+
+    private static final long CLOSE_TIMEOUT_MS = 10_000;
+
+    private final Writer writer;
+    private final int maxSeries;
+    private final long maxDelayInMs;
+    private final int maxPendingBatches;
+
+    private final Map<String, TenantBatch> batches = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flushExecutor;
+
+    private final Histogram batchSize;
+    private final Map<FlushReason, Meter> flushes = new LinkedHashMap<>();
+    private final Meter seriesDeduplicated;
+    private final Timer batchLatency;
+    private final Meter producerBlocked;
+
+    public CortexWriteBatcher(
+            Writer writer, int maxSeries, long maxDelayInMs, int maxPendingBatches, MetricRegistry metrics) {
+        this.writer = Objects.requireNonNull(writer);
+        this.maxSeries = maxSeries;
+        this.maxDelayInMs = maxDelayInMs;
+        this.maxPendingBatches = Math.max(1, maxPendingBatches);
+
+        batchSize = metrics.histogram("batchSize");
+        for (FlushReason reason : FlushReason.values()) {
+            flushes.put(reason, metrics.meter(MetricRegistry.name("batchFlushes", reason.name().toLowerCase())));
+        }
+        seriesDeduplicated = metrics.meter("seriesDeduplicated");
+        batchLatency = metrics.timer("batchLatency");
+        producerBlocked = metrics.meter("producerBlocked");
+
+        flushExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "cortex-batch-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Blocks while the tenant has {@code maxPendingBatches} batches waiting for or being written.
+     */
+    public void add(String tenantId, List<PrometheusTypes.TimeSeries> timeSeriesList) {
+        if (timeSeriesList.isEmpty()) {
+            return;
+        }
+        batches.computeIfAbsent(tenantId == null ? "" : tenantId, TenantBatch::new)
+                .add(timeSeriesList);
+    }
+
+    /**
+     * Flushes all pending batches and waits a bounded time for the outstanding writes to complete.
+     */
+    @Override
+    public void close() {
+        flushExecutor.shutdownNow();
+        for (TenantBatch batch : batches.values()) {
+            batch.flush(batch.generation(), FlushReason.SHUTDOWN);
+            batch.wakeUpProducers();
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(CLOSE_TIMEOUT_MS);
+        for (TenantBatch batch : batches.values()) {
+            try {
+                batch.lastWrite().get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException | TimeoutException e) {
+                LOG.error("Failed to complete pending writes for tenant '{}' on shutdown", batch.tenantId, e);
+            }
+        }
+    }
+
+    private CompletableFuture<Void> write(String tenantId, Drained drained) {
+        CompletionStage<?> result;
+        try {
+            result = writer.write(tenantId, drained.timeSeriesList);
+        } catch (IOException | RuntimeException e) {
+            result = CompletableFuture.failedFuture(e);
+        }
+        return result.handle((r, ex) -> {
+                    // Measured up to the completion of the write, including the wait for the previous batch
+                    batchLatency.update(System.nanoTime() - drained.startedAt, TimeUnit.NANOSECONDS);
+                    if (ex != null) {
+                        LOG.error("Failed to write time series batch for tenant '{}'", tenantId, ex);
+                    }
+                    return (Void) null;
+                })
+                .toCompletableFuture();
+    }
+
+    private static final class Drained {
+        private final List<PrometheusTypes.TimeSeries> timeSeriesList;
+        private final long startedAt;
+
+        private Drained(List<PrometheusTypes.TimeSeries> timeSeriesList, long startedAt) {
+            this.timeSeriesList = timeSeriesList;
+            this.startedAt = startedAt;
+        }
+    }
+
+    private final class TenantBatch {
+        private final String tenantId;
+        private Map<List<PrometheusTypes.Label>, PrometheusTypes.TimeSeries.Builder> pending = new LinkedHashMap<>();
+        private long generation;
+        private long startedAt;
+        // Batches handed to the writer whose write did not complete yet
+        private int pendingBatches;
+        // Completes once the last batch handed to the writer was written, never completes exceptionally
+        private CompletableFuture<Void> lastWrite = CompletableFuture.completedFuture(null);
+
+        private TenantBatch(String tenantId) {
+            this.tenantId = tenantId;
+        }
+
+        synchronized void add(List<PrometheusTypes.TimeSeries> timeSeriesList) {
+            if (pendingBatches >= maxPendingBatches && !flushExecutor.isShutdown()) {
+                producerBlocked.mark();
+                try {
+                    // Releases the lock, so the batch can still be flushed meanwhile
+                    while (pendingBatches >= maxPendingBatches && !flushExecutor.isShutdown()) {
+                        wait();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (pending.isEmpty()) {
+                startedAt = System.nanoTime();
+                if (!flushExecutor.isShutdown()) {
+                    long scheduledGeneration = generation;
+                    flushExecutor.schedule(
+                            () -> flush(scheduledGeneration, FlushReason.TIME), maxDelayInMs, TimeUnit.MILLISECONDS);
+                }
+            }
+            for (PrometheusTypes.TimeSeries timeSeries : timeSeriesList) {
+                PrometheusTypes.TimeSeries.Builder existing = pending.get(timeSeries.getLabelsList());
+                if (existing != null) {
+                    existing.addAllSamples(timeSeries.getSamplesList());
+                    seriesDeduplicated.mark();
+                } else {
+                    pending.put(timeSeries.getLabelsList(), timeSeries.toBuilder());
+                }
+            }
+            if (pending.size() >= maxSeries) {
+                flush(generation, FlushReason.SIZE);
+            }
+        }
+
+        synchronized long generation() {
+            return generation;
+        }
+
+        synchronized CompletableFuture<Void> lastWrite() {
+            return lastWrite;
+        }
+
+        /**
+         * Drains the batch if it is still the expected generation and chains its write behind the previous one.
+         * Draining and chaining happen under the same lock, so batches are written in the order they were drained.
+         */
+        synchronized void flush(long expectedGeneration, FlushReason reason) {
+            Drained drained = drain(expectedGeneration);
+            if (drained == null) {
+                // Already flushed, e.g. because it was full before the delay expired
+                return;
+            }
+            batchSize.update(drained.timeSeriesList.size());
+            flushes.get(reason).mark();
+            pendingBatches++;
+            lastWrite = lastWrite.thenCompose(v -> write(tenantId, drained)).whenComplete((v, e) -> written());
+        }
+
+        private synchronized void written() {
+            pendingBatches--;
+            notifyAll();
+        }
+
+        synchronized void wakeUpProducers() {
+            notifyAll();
+        }
+
+        private Drained drain(long expectedGeneration) {
+            if (expectedGeneration != generation || pending.isEmpty()) {
+                return null;
+            }
+            List<PrometheusTypes.TimeSeries> result = new ArrayList<>(pending.size());
+            for (PrometheusTypes.TimeSeries.Builder builder : pending.values()) {
+                result.add(build(builder));
+            }
+            pending = new LinkedHashMap<>();
+            generation++;
+            return new Drained(result, startedAt);
+        }
+    }
+
+    private static PrometheusTypes.TimeSeries build(PrometheusTypes.TimeSeries.Builder builder) {
+        if (builder.getSamplesCount() > 1) {
+            // Remote-write expects the samples of a series in timestamp order and without duplicates
+            TreeMap<Long, PrometheusTypes.Sample> samples = new TreeMap<>();
+            for (PrometheusTypes.Sample sample : builder.getSamplesList()) {
+                samples.put(sample.getTimestamp(), sample);
+            }
+            builder.clearSamples().addAllSamples(samples.values());
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,499 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.horizon.timeseries.cortex;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bounded, on-disk spool for remote-write payloads that could not be delivered to Cortex.
+ * <p>
+ * Every tenant gets its own directory of fixed-size, memory-mapped segment files. Records are appended to the
+ * newest segment and consumed from the oldest one, so the replay order per tenant is the order in which the
+ * payloads were spooled. Once a tenant exceeds its byte budget the oldest segment is discarded and the records it
+ * still held are reported as dropped.
+ * <p>
+ * Segment layout: an 8 byte header (magic, read position) followed by records of the form
+ * {@code [int length][long enqueuedAtMs][byte[length] payload]}. The length is written last, so a record that was
+ * torn by a crash is simply not visible on recovery. Data is left to the page cache (no fsync per record), which
+ * survives process restarts but not a host crash. The directory should therefore live on a persistent volume, not on
+ * a tmpfs or a temp directory that is cleaned on reboot.
+ * <p>
+ * Segments are unmapped as soon as they are deleted and on {@link #close()}, after which the spool rejects appends.
+ */
+public class WriteAheadSpool implements Closeable {
+    private static final Logger LOG = LoggerFactory.getLogger(WriteAheadSpool.class);
+
+    private static final int MAGIC = 0x43535031; // "CSP1"
+    private static final int HEADER_SIZE = 8;
+    private static final int READ_POSITION_OFFSET = 4;
+    private static final int RECORD_HEADER_SIZE = Integer.BYTES + Long.BYTES;
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    private final Path directory;
+    private final int segmentSizeBytes;
+    private final int maxSegmentsPerTenant;
+    private final Map<String, TenantSpool> tenants = new ConcurrentHashMap<>();
+
+    private final DroppedListener droppedListener;
+
+    /**
+     * Notified with the number of records discarded because a tenant ran out of spool space.
+     */
+    @FunctionalInterface
+    public interface DroppedListener {
+        void dropped(String tenantId, int records);
+    }
+
+    public WriteAheadSpool(
+            Path directory, int segmentSizeBytes, long maxBytesPerTenant, DroppedListener droppedListener)
+            throws IOException {
+        if (segmentSizeBytes <= HEADER_SIZE + RECORD_HEADER_SIZE) {
+            throw new IllegalArgumentException("Segment size too small: " + segmentSizeBytes);
+        }
+        this.directory = Objects.requireNonNull(directory);
+        this.segmentSizeBytes = segmentSizeBytes;
+        // Always allow at least one segment to drain while another one is filled
+        this.maxSegmentsPerTenant =
+                (int) Math.max(2, Math.min(Integer.MAX_VALUE, maxBytesPerTenant / segmentSizeBytes));
+        this.droppedListener = Objects.requireNonNull(droppedListener);
+
+        Files.createDirectories(directory);
+        recover();
+    }
+
+    /**
+     * Appends the payload to the tail of the tenant's spool.
+     *
+     * @return false if the payload can never fit into a segment and was therefore not spooled
+     */
+    public boolean append(String tenantId, byte[] payload) throws IOException {
+        if (RECORD_HEADER_SIZE + payload.length > segmentSizeBytes - HEADER_SIZE) {
+            return false;
+        }
+        return tenants.computeIfAbsent(normalize(tenantId), this::newTenantSpool)
+                .append(payload, System.currentTimeMillis());
+    }
+
+    /**
+     * @return the oldest record of the tenant that was not yet committed, or null if the tenant's spool is empty
+     */
+    public Entry peek(String tenantId) {
+        TenantSpool spool = tenants.get(normalize(tenantId));
+        return spool != null ? spool.peek() : null;
+    }
+
+    /**
+     * Marks the given record as delivered. Committing a record that was discarded in the meantime is a no-op.
+     */
+    public void commit(Entry entry) {
+        TenantSpool spool = tenants.get(entry.getTenantId());
+        if (spool != null) {
+            spool.commit(entry);
+        }
+    }
+
+    public boolean isEmpty(String tenantId) {
+        TenantSpool spool = tenants.get(normalize(tenantId));
+        return spool == null || spool.getPendingRecords() == 0;
+    }
+
+    public Collection<String> getTenantIds() {
+        return new ArrayList<>(tenants.keySet());
+    }
+
+    public long getPendingRecords() {
+        return tenants.values().stream().mapToLong(TenantSpool::getPendingRecords).sum();
+    }
+
+    public long getPendingBytes() {
+        return tenants.values().stream().mapToLong(TenantSpool::getPendingBytes).sum();
+    }
+
+    /**
+     * @return the age in milliseconds of the oldest record waiting for replay, or 0 if nothing is pending
+     */
+    public long getReplayLagMs() {
+        long oldest = tenants.values().stream()
+                .mapToLong(TenantSpool::getOldestEnqueuedAt)
+                .min()
+                .orElse(Long.MAX_VALUE);
+        return oldest == Long.MAX_VALUE ? 0 : Math.max(0, System.currentTimeMillis() - oldest);
+    }
+
+    @Override
+    public void close() {
+        tenants.values().forEach(TenantSpool::close);
+    }
+
+    private TenantSpool newTenantSpool(String tenantId) {
+        return new TenantSpool(tenantId, directory.resolve(encodeTenantId(tenantId)));
+    }
+
+    private void recover() throws IOException {
+        try (DirectoryStream<Path> dirs = Files.newDirectoryStream(directory, Files::isDirectory)) {
+            for (Path tenantDir : dirs) {
+                String tenantId;
+                try {
+                    tenantId = decodeTenantId(tenantDir.getFileName().toString());
+                } catch (IllegalArgumentException e) {
+                    LOG.warn("Ignoring unexpected directory in spool: {}", tenantDir);
+                    continue;
+                }
+                TenantSpool spool = new TenantSpool(tenantId, tenantDir);
+                spool.recover();
+                if (spool.getPendingRecords() > 0) {
+                    tenants.put(tenantId, spool);
+                    LOG.info(
+                            "Recovered {} spooled write requests for tenant '{}'", spool.getPendingRecords(), tenantId);
+                }
+            }
+        }
+    }
+
+    private static String normalize(String tenantId) {
+        return tenantId == null ? "" : tenantId;
+    }
+
+    static String encodeTenantId(String tenantId) {
+        // Tenant ids are not guaranteed to be valid file names
+        return "t" + Base64.getUrlEncoder().withoutPadding().encodeToString(tenantId.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static String decodeTenantId(String dirName) {
+        if (!dirName.startsWith("t")) {
+            throw new IllegalArgumentException(dirName);
+        }
+        return new String(Base64.getUrlDecoder().decode(dirName.substring(1)), StandardCharsets.UTF_8);
+    }
+
+    public static final class Entry {
+        private final String tenantId;
+        private final Segment segment;
+        private final int position;
+        private final long enqueuedAt;
+        private final byte[] payload;
+
+        private Entry(String tenantId, Segment segment, int position, long enqueuedAt, byte[] payload) {
+            this.tenantId = tenantId;
+            this.segment = segment;
+            this.position = position;
+            this.enqueuedAt = enqueuedAt;
+            this.payload = payload;
+        }
+
+        public String getTenantId() {
+            return tenantId;
+        }
+
+        public long getEnqueuedAt() {
+            return enqueuedAt;
+        }
+
+        public byte[] getPayload() {
+            return payload;
+        }
+    }
+
+    private final class TenantSpool {
+        private final String tenantId;
+        private final Path directory;
+        private final Deque<Segment> segments = new ArrayDeque<>();
+        private long nextSequence;
+        private boolean closed;
+
+        private TenantSpool(String tenantId, Path directory) {
+            this.tenantId = tenantId;
+            this.directory = directory;
+        }
+
+        synchronized void recover() throws IOException {
+            List<Path> files = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SEGMENT_SUFFIX)) {
+                stream.forEach(files::add);
+            }
+            files.sort(null);
+            for (Path file : files) {
+                Segment segment = Segment.open(file);
+                if (segment == null || !segment.hasPending()) {
+                    if (segment != null) {
+                        segment.unmap();
+                    }
+                    Files.deleteIfExists(file);
+                    continue;
+                }
+                segments.addLast(segment);
+                nextSequence = Math.max(nextSequence, segment.sequence + 1);
+            }
+        }
+
+        synchronized boolean append(byte[] payload, long now) throws IOException {
+            if (closed) {
+                throw new IOException("Spool is closed");
+            }
+            Segment tail = segments.peekLast();
+            if (tail == null || !tail.hasRoomFor(payload.length)) {
+                if (segments.size() >= maxSegmentsPerTenant) {
+                    Segment evicted = segments.pollFirst();
+                    LOG.warn(
+                            "Spool for tenant '{}' is full, dropping {} write requests",
+                            tenantId,
+                            evicted.pendingRecords);
+                    droppedListener.dropped(tenantId, evicted.pendingRecords);
+                    evicted.delete();
+                }
+                Files.createDirectories(directory);
+                tail = Segment.create(directory, nextSequence++, segmentSizeBytes);
+                segments.addLast(tail);
+            }
+            tail.append(payload, now);
+            return true;
+        }
+
+        synchronized Entry peek() {
+            if (closed) {
+                return null;
+            }
+            Segment head = segments.peekFirst();
+            if (head == null || !head.hasPending()) {
+                return null;
+            }
+            return head.read(tenantId);
+        }
+
+        synchronized void commit(Entry entry) {
+            Segment head = segments.peekFirst();
+            if (head != entry.segment || head.readPosition != entry.position) {
+                // Already evicted or committed
+                return;
+            }
+            head.advance(entry.payload.length);
+            if (!head.hasPending()) {
+                segments.pollFirst();
+                try {
+                    head.delete();
+                } catch (IOException e) {
+                    LOG.warn("Failed to delete drained spool segment {}", head.path, e);
+                }
+            }
+        }
+
+        synchronized long getPendingRecords() {
+            return segments.stream().mapToLong(s -> s.pendingRecords).sum();
+        }
+
+        synchronized long getPendingBytes() {
+            return segments.stream()
+                    .mapToLong(s -> s.writePosition - s.readPosition)
+                    .sum();
+        }
+
+        synchronized long getOldestEnqueuedAt() {
+            Segment head = segments.peekFirst();
+            return head != null && head.hasPending()
+                    ? head.buffer.getLong(head.readPosition + Integer.BYTES)
+                    : Long.MAX_VALUE;
+        }
+
+        synchronized void close() {
+            closed = true;
+            segments.forEach(s -> {
+                s.buffer.force();
+                s.unmap();
+            });
+            segments.clear();
+        }
+    }
+
+    private static final class Segment {
+        private final long sequence;
+        private final Path path;
+        private final MappedByteBuffer buffer;
+        private int readPosition;
+        private int writePosition;
+        private int pendingRecords;
+
+        private Segment(
+                long sequence,
+                Path path,
+                MappedByteBuffer buffer,
+                int readPosition,
+                int writePosition,
+                int pendingRecords) {
+            this.sequence = sequence;
+            this.path = path;
+            this.buffer = buffer;
+            this.readPosition = readPosition;
+            this.writePosition = writePosition;
+            this.pendingRecords = pendingRecords;
+        }
+
+        static Segment create(Path directory, long sequence, int size) throws IOException {
+            Path path = directory.resolve(String.format("%020d%s", sequence, SEGMENT_SUFFIX));
+            try (FileChannel channel = FileChannel.open(
+                    path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                buffer.putInt(0, MAGIC);
+                buffer.putInt(READ_POSITION_OFFSET, HEADER_SIZE);
+                return new Segment(sequence, path, buffer, HEADER_SIZE, HEADER_SIZE, 0);
+            }
+        }
+
+        static Segment open(Path path) throws IOException {
+            String name = path.getFileName().toString();
+            long sequence;
+            try {
+                sequence = Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+            } catch (NumberFormatException e) {
+                LOG.warn("Discarding spool segment with unexpected name: {}", path);
+                return null;
+            }
+            try (FileChannel channel =
+                    FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                if (channel.size() < HEADER_SIZE || channel.size() > Integer.MAX_VALUE) {
+                    LOG.warn("Discarding spool segment with invalid size: {}", path);
+                    return null;
+                }
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+                if (buffer.getInt(0) != MAGIC) {
+                    Unmapper.unmap(buffer);
+                    LOG.warn("Discarding corrupt spool segment: {}", path);
+                    return null;
+                }
+
+                int readPosition = buffer.getInt(READ_POSITION_OFFSET);
+                int position = HEADER_SIZE;
+                int pending = 0;
+                while (position + RECORD_HEADER_SIZE <= buffer.capacity()) {
+                    int length = buffer.getInt(position);
+                    if (length <= 0 || position + RECORD_HEADER_SIZE + length > buffer.capacity()) {
+                        break;
+                    }
+                    if (position >= readPosition) {
+                        pending++;
+                    }
+                    position += RECORD_HEADER_SIZE + length;
+                }
+                if (readPosition < HEADER_SIZE || readPosition > position) {
+                    readPosition = position;
+                    pending = 0;
+                }
+                return new Segment(sequence, path, buffer, readPosition, position, pending);
+            }
+        }
+
+        boolean hasPending() {
+            return readPosition < writePosition;
+        }
+
+        boolean hasRoomFor(int payloadLength) {
+            return writePosition + RECORD_HEADER_SIZE + payloadLength <= buffer.capacity();
+        }
+
+        void append(byte[] payload, long enqueuedAt) {
+            buffer.putLong(writePosition + Integer.BYTES, enqueuedAt);
+            buffer.put(writePosition + RECORD_HEADER_SIZE, payload);
+            // Publish the record by writing its length last
+            buffer.putInt(writePosition, payload.length);
+            writePosition += RECORD_HEADER_SIZE + payload.length;
+            pendingRecords++;
+        }
+
+        Entry read(String tenantId) {
+            int length = buffer.getInt(readPosition);
+            long enqueuedAt = buffer.getLong(readPosition + Integer.BYTES);
+            byte[] payload = new byte[length];
+            buffer.get(readPosition + RECORD_HEADER_SIZE, payload);
+            return new Entry(tenantId, this, readPosition, enqueuedAt, payload);
+        }
+
+        void advance(int payloadLength) {
+            readPosition += RECORD_HEADER_SIZE + payloadLength;
+            pendingRecords--;
+            buffer.putInt(READ_POSITION_OFFSET, readPosition);
+        }
+
+        void delete() throws IOException {
+            unmap();
+            Files.deleteIfExists(path);
+        }
+
+        /**
+         * Releases the mapping right away instead of waiting for the buffer to be garbage collected. The segment must
+         * not be accessed afterwards.
+         */
+        void unmap() {
+            Unmapper.unmap(buffer);
+        }
+    }
+
+    /**
+     * There is no public API to unmap a buffer before it is garbage collected, so this goes through
+     * {@code sun.misc.Unsafe#invokeCleaner} (module jdk.unsupported). If that is not available the mapping is left to
+     * the garbage collector.
+     */
+    private static final class Unmapper {
+        private static final sun.misc.Unsafe UNSAFE = lookupUnsafe();
+
+        static void unmap(ByteBuffer buffer) {
+            if (UNSAFE == null) {
+                return;
+            }
+            try {
+                UNSAFE.invokeCleaner(buffer);
+            } catch (RuntimeException e) {
+                LOG.debug("Failed to unmap spool segment", e);
+            }
+        }
+
+        private static sun.misc.Unsafe lookupUnsafe() {
+            try {
+                Field field = sun.misc.Unsafe.class.getDeclaredField("theUnsafe");
+                field.setAccessible(true);
+                return (sun.misc.Unsafe) field.get(null);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                LOG.warn("Unable to unmap spool segments explicitly, leaving them to the garbage collector", e);
+                return null;
+            }
+        }
+    }
+}
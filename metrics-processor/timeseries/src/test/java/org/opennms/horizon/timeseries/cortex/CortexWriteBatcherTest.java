@@ -0,0 +1,164 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.horizon.timeseries.cortex;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.codahale.metrics.MetricRegistry;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import prometheus.PrometheusTypes;
+
+public class CortexWriteBatcherTest {
+    private static final String TENANT_ID = "x-tenant-x";
+
+    private final List<List<PrometheusTypes.TimeSeries>> written = new CopyOnWriteArrayList<>();
+    private final MetricRegistry metrics = new MetricRegistry();
+    private CortexWriteBatcher batcher;
+
+    @AfterEach
+    public void tearDown() {
+        if (batcher != null) {
+            batcher.close();
+        }
+    }
+
+    @Test
+    void testFlushesWhenFull() throws IOException {
+        batcher = new CortexWriteBatcher(this::write, 2, 60_000, 16, metrics);
+
+        batcher.add(TENANT_ID, List.of(series("a", 2, 2.0)));
+        batcher.add(TENANT_ID, List.of(series("a", 1, 1.0)));
+        assertTrue(written.isEmpty());
+
+        batcher.add(TENANT_ID, List.of(series("b", 1, 3.0)));
+
+        assertEquals(1, written.size());
+        List<PrometheusTypes.TimeSeries> batch = written.get(0);
+        assertEquals(2, batch.size());
+        // Identical label sets are merged, samples sorted by timestamp
+        assertEquals(2, batch.get(0).getSamplesCount());
+        assertEquals(1, batch.get(0).getSamples(0).getTimestamp());
+        assertEquals(2, batch.get(0).getSamples(1).getTimestamp());
+        assertEquals(1, metrics.meter("seriesDeduplicated").getCount());
+        assertEquals(1, metrics.meter("batchFlushes.size").getCount());
+    }
+
+    @Test
+    void testFlushesAfterDelay() throws IOException {
+        batcher = new CortexWriteBatcher(this::write, 2000, 10, 16, metrics);
+
+        batcher.add(TENANT_ID, List.of(series("a", 1, 1.0)));
+        batcher.add("other", List.of(series("a", 1, 1.0)));
+
+        await().atMost(5, TimeUnit.SECONDS).until(() -> written.size() == 2);
+        assertEquals(2, metrics.meter("batchFlushes.time").getCount());
+    }
+
+    @Test
+    void testFlushesOnClose() throws IOException {
+        batcher = new CortexWriteBatcher(this::write, 2000, 60_000, 16, metrics);
+
+        batcher.add(TENANT_ID, List.of(series("a", 1, 1.0), series("b", 1, 1.0)));
+        batcher.close();
+
+        assertEquals(1, written.size());
+        assertEquals(2, written.get(0).size());
+        assertEquals(1, metrics.meter("batchFlushes.shutdown").getCount());
+    }
+
+    @Test
+    void testWritesBatchesOfTenantInOrder() throws IOException {
+        CompletableFuture<Void> firstWrite = new CompletableFuture<>();
+        batcher = new CortexWriteBatcher(
+                (t, l) -> {
+                    written.add(l);
+                    return written.size() == 1 ? firstWrite : CompletableFuture.completedFuture(null);
+                },
+                1,
+                60_000,
+                16,
+                metrics);
+
+        batcher.add(TENANT_ID, List.of(series("a", 1, 1.0)));
+        batcher.add(TENANT_ID, List.of(series("b", 1, 1.0)));
+
+        // The second batch waits for the write of the first one
+        assertEquals(1, written.size());
+        assertEquals(0, metrics.timer("batchLatency").getCount());
+
+        firstWrite.complete(null);
+
+        assertEquals(2, written.size());
+        assertEquals("b", written.get(1).get(0).getLabels(0).getValue());
+        assertEquals(2, metrics.timer("batchLatency").getCount());
+    }
+
+    @Test
+    void testBlocksProducerWhileTooManyBatchesPending() throws Exception {
+        CompletableFuture<Void> firstWrite = new CompletableFuture<>();
+        batcher = new CortexWriteBatcher(
+                (t, l) -> {
+                    written.add(l);
+                    return written.size() == 1 ? firstWrite : CompletableFuture.completedFuture(null);
+                },
+                1,
+                60_000,
+                2,
+                metrics);
+
+        // The first batch is being written, the second one waits for it
+        batcher.add(TENANT_ID, List.of(series("a", 1, 1.0)));
+        batcher.add(TENANT_ID, List.of(series("b", 1, 1.0)));
+
+        CompletableFuture<Void> third =
+                CompletableFuture.runAsync(() -> batcher.add(TENANT_ID, List.of(series("c", 1, 1.0))));
+        await().atMost(5, TimeUnit.SECONDS).until(() -> metrics.meter("producerBlocked").getCount() == 1);
+        assertFalse(third.isDone());
+
+        firstWrite.complete(null);
+
+        third.get(5, TimeUnit.SECONDS);
+        assertEquals(3, written.size());
+        assertEquals("c", written.get(2).get(0).getLabels(0).getValue());
+    }
+
+    private CompletableFuture<Void> write(String tenantId, List<PrometheusTypes.TimeSeries> timeSeriesList) {
+        written.add(timeSeriesList);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    private static PrometheusTypes.TimeSeries series(String name, long timestamp, double value) {
+        return PrometheusTypes.TimeSeries.newBuilder()
+                .addLabels(PrometheusTypes.Label.newBuilder().setName("__name__").setValue(name))
+                .addSamples(PrometheusTypes.Sample.newBuilder().setTimestamp(timestamp).setValue(value))
+                .build();
+    }
+}
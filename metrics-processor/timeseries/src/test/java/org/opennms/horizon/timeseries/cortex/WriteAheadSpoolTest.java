@@ -0,0 +1,118 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.horizon.timeseries.cortex;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class WriteAheadSpoolTest {
+    private static final String TENANT_ID = "x-tenant-x";
+
+    @TempDir
+    Path spoolDir;
+
+    private final AtomicInteger dropped = new AtomicInteger();
+
+    @Test
+    void testReplaysInOrder() throws IOException {
+        WriteAheadSpool spool = new WriteAheadSpool(spoolDir, 1024, 4096, (t, n) -> dropped.addAndGet(n));
+
+        for (int i = 0; i < 100; i++) {
+            assertTrue(spool.append(TENANT_ID, new byte[] {(byte) i}));
+        }
+        assertEquals(100, spool.getPendingRecords());
+
+        for (int i = 0; i < 100; i++) {
+            WriteAheadSpool.Entry entry = spool.peek(TENANT_ID);
+            assertArrayEquals(new byte[] {(byte) i}, entry.getPayload());
+            spool.commit(entry);
+        }
+        assertNull(spool.peek(TENANT_ID));
+        assertTrue(spool.isEmpty(TENANT_ID));
+        assertEquals(0, spool.getPendingBytes());
+        assertEquals(0, dropped.get());
+    }
+
+    @Test
+    void testRecoversUncommittedRecords() throws IOException {
+        WriteAheadSpool spool = new WriteAheadSpool(spoolDir, 1024, 4096, (t, n) -> dropped.addAndGet(n));
+        spool.append(TENANT_ID, bytes("a"));
+        spool.append(TENANT_ID, bytes("b"));
+        spool.append("", bytes("c"));
+        spool.commit(spool.peek(TENANT_ID));
+        spool.close();
+
+        WriteAheadSpool recovered = new WriteAheadSpool(spoolDir, 1024, 4096, (t, n) -> dropped.addAndGet(n));
+        assertEquals(2, recovered.getPendingRecords());
+        assertArrayEquals(bytes("b"), recovered.peek(TENANT_ID).getPayload());
+        assertArrayEquals(bytes("c"), recovered.peek(null).getPayload());
+    }
+
+    @Test
+    void testDropsOldestSegmentWhenFull() throws IOException {
+        // At most 2 segments, each with room for 10 records of 50 bytes
+        WriteAheadSpool spool = new WriteAheadSpool(spoolDir, 8 + 10 * 62, 1, (t, n) -> dropped.addAndGet(n));
+
+        for (int i = 0; i < 25; i++) {
+            byte[] payload = new byte[50];
+            payload[0] = (byte) i;
+            spool.append(TENANT_ID, payload);
+        }
+
+        assertEquals(10, dropped.get());
+        assertEquals(15, spool.getPendingRecords());
+        assertEquals(10, spool.peek(TENANT_ID).getPayload()[0]);
+    }
+
+    @Test
+    void testRejectsOversizedPayload() throws IOException {
+        WriteAheadSpool spool = new WriteAheadSpool(spoolDir, 1024, 4096, (t, n) -> dropped.addAndGet(n));
+
+        assertFalse(spool.append(TENANT_ID, new byte[2048]));
+        assertTrue(spool.isEmpty(TENANT_ID));
+    }
+
+    @Test
+    void testRejectsAppendAfterClose() throws IOException {
+        WriteAheadSpool spool = new WriteAheadSpool(spoolDir, 1024, 4096, (t, n) -> dropped.addAndGet(n));
+        spool.append(TENANT_ID, bytes("a"));
+        spool.close();
+
+        assertThrows(IOException.class, () -> spool.append(TENANT_ID, bytes("b")));
+        assertNull(spool.peek(TENANT_ID));
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
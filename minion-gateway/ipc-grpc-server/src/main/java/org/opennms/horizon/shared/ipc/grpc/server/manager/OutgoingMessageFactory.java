@@ -23,14 +23,20 @@ package org.opennms.horizon.shared.ipc.grpc.server.manager;
 
 import io.grpc.stub.StreamObserver;
 import io.opentelemetry.api.trace.SpanContext;
+import java.util.Collection;
 import org.opennms.cloud.grpc.minion.CloudToMinionMessage;
+import org.opennms.cloud.grpc.minion.TwinPatchFormat;
 
 public interface OutgoingMessageFactory {
 
+    /**
+     * @param twinPatchFormats the twin patch formats the Minion supports besides JSON patches
+     */
     void create(
             String systemId,
             String tenantId,
             String location,
+            Collection<TwinPatchFormat> twinPatchFormats,
             SpanContext streamSpan,
             StreamObserver<CloudToMinionMessage> streamObserver);
 }
@@ -21,6 +21,7 @@
  */
 package org.opennms.miniongateway.grpc.server;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import io.opentelemetry.api.OpenTelemetry;
 import org.apache.ignite.Ignite;
 import org.opennms.horizon.shared.grpc.common.LocationServerInterceptor;
@@ -40,6 +41,9 @@ public class GrpcTwinPublisherConfig {
     @Value("${debug.span.content:false}")
     private boolean debugSpanContent;
 
+    @Value("${twin.sink.max-queued-per-stream:" + GrpcTwinPublisher.DEFAULT_MAX_QUEUED_PER_STREAM + "}")
+    private int maxQueuedPerStream;
+
     @Bean
     public ServerHandler serverHandler(
             GrpcTwinPublisher grpcTwinPublisher,
@@ -56,8 +60,14 @@ public class GrpcTwinPublisherConfig {
     }
 
     @Bean(initMethod = "start", destroyMethod = "close")
-    public GrpcTwinPublisher grpcTwinPublisher(Ignite ignite, OpenTelemetry openTelemetry) {
+    public GrpcTwinPublisher grpcTwinPublisher(
+            Ignite ignite, OpenTelemetry openTelemetry, MeterRegistry meterRegistry) {
         return new GrpcTwinPublisher(
-                ignite, openTelemetry.getTracer(getClass().getName()), debugSpanFullMessage, debugSpanContent);
+                ignite,
+                openTelemetry.getTracer(getClass().getName()),
+                debugSpanFullMessage,
+                debugSpanContent,
+                meterRegistry,
+                maxQueuedPerStream);
     }
 }
@@ -22,23 +22,40 @@
 package org.opennms.miniongateway.grpc.server.kafka;
 
 import com.google.protobuf.Message;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
 import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import org.apache.kafka.clients.producer.ProducerRecord;
 import org.opennms.horizon.shared.grpc.common.LocationServerInterceptor;
 import org.opennms.horizon.shared.grpc.common.TenantIDGrpcServerInterceptor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
 
 /**
  * A helper class which produces kafka messages.
  *
- * It additionally retrieves tenant information from present context.
+ * It additionally retrieves tenant information from present context.  Records are keyed by tenant and location, so
+ * all messages of a location land on the same partition and keep their order.  Sends are asynchronous; the number of
+ * sends awaiting acknowledgement is bounded, and a send blocks for up to {@code blockTimeoutMs} for room before the
+ * message is dropped.
+ *
  * @param <I> Input message (grpc side) kind
  * @param <O> Output message (kafka side) type
  */
 public class SinkMessageKafkaPublisher<I extends Message, O extends Message> {
 
+    public static final int DEFAULT_MAX_IN_FLIGHT = 10_000;
+    public static final long DEFAULT_BLOCK_TIMEOUT_MS = 5_000;
+
     private final Logger logger = LoggerFactory.getLogger(SinkMessageKafkaPublisher.class);
     private final KafkaTemplate<String, byte[]> kafkaTemplate;
     private final TenantIDGrpcServerInterceptor tenantInterceptor;
@@ -46,6 +63,10 @@ public class SinkMessageKafkaPublisher<I extends Message, O extends Message> {
     private final SinkMessageMapper<I, O> mapper;
     private final String topic;
     private final MeterRegistry meterRegistry;
+    private final long blockTimeoutMs;
+
+    private final Semaphore inFlight;
+    private final Map<MeterKey, SendMeters> sendMeters = new ConcurrentHashMap<>();
 
     public SinkMessageKafkaPublisher(
             KafkaTemplate<String, byte[]> kafkaTemplate,
@@ -54,12 +75,38 @@ public class SinkMessageKafkaPublisher<I extends Message, O extends Message> {
             SinkMessageMapper<I, O> mapper,
             String topic,
             MeterRegistry meterRegistry) {
+        this(
+                kafkaTemplate,
+                tenantInterceptor,
+                locationInterceptor,
+                mapper,
+                topic,
+                meterRegistry,
+                DEFAULT_MAX_IN_FLIGHT,
+                DEFAULT_BLOCK_TIMEOUT_MS);
+    }
+
+    public SinkMessageKafkaPublisher(
+            KafkaTemplate<String, byte[]> kafkaTemplate,
+            TenantIDGrpcServerInterceptor tenantInterceptor,
+            LocationServerInterceptor locationInterceptor,
+            SinkMessageMapper<I, O> mapper,
+            String topic,
+            MeterRegistry meterRegistry,
+            int maxInFlight,
+            long blockTimeoutMs) {
         this.kafkaTemplate = kafkaTemplate;
         this.tenantInterceptor = tenantInterceptor;
         this.locationInterceptor = locationInterceptor;
         this.mapper = mapper;
         this.topic = topic;
         this.meterRegistry = meterRegistry;
+        this.blockTimeoutMs = blockTimeoutMs;
+        this.inFlight = new Semaphore(maxInFlight);
+
+        Gauge.builder("kafka.send.inflight", inFlight, semaphore -> maxInFlight - semaphore.availablePermits())
+                .tag("topic", topic)
+                .register(meterRegistry);
     }
 
     /**
@@ -81,10 +128,99 @@ public class SinkMessageKafkaPublisher<I extends Message, O extends Message> {
                 locationId,
                 mapped);
 
-        this.meterRegistry
-                .timer("kafka.send", "topic", this.topic, "tenant", tenantId, "location", locationId)
-                .record(() -> {
-                    kafkaTemplate.send(new ProducerRecord<>(topic, mapped.toByteArray()));
-                });
+        SendMeters meters = sendMeters.computeIfAbsent(new MeterKey(tenantId, locationId), this::createSendMeters);
+
+        if (!acquireInFlight()) {
+            meters.rejected.increment();
+            logger.warn(
+                    "Dropping message for kafka topic {}; too many sends in flight; tenantId: {}; locationId={}",
+                    topic,
+                    tenantId,
+                    locationId);
+            return;
+        }
+
+        long start = System.nanoTime();
+        CompletableFuture<SendResult<String, byte[]>> future;
+        try {
+            future = kafkaTemplate.send(
+                    new ProducerRecord<>(topic, recordKey(tenantId, locationId), mapped.toByteArray()));
+        } catch (RuntimeException rtExc) {
+            inFlight.release();
+            meters.failed.increment();
+            throw rtExc;
+        }
+
+        future.whenComplete((result, exc) -> {
+            inFlight.release();
+            if (exc != null) {
+                meters.failed.increment();
+                logger.warn(
+                        "Failed to send message to kafka topic {}; tenantId: {}; locationId={}",
+                        topic,
+                        tenantId,
+                        locationId,
+                        exc);
+            } else {
+                meters.sent.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        });
+    }
+
+    static String recordKey(String tenantId, String locationId) {
+        return tenantId + "/" + locationId;
+    }
+
+    private boolean acquireInFlight() {
+        try {
+            return inFlight.tryAcquire(blockTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private SendMeters createSendMeters(MeterKey key) {
+        return new SendMeters(
+                meterRegistry.timer("kafka.send", "topic", topic, "tenant", key.tenantId, "location", key.locationId),
+                meterRegistry.counter(
+                        "kafka.send.failed", "topic", topic, "tenant", key.tenantId, "location", key.locationId),
+                meterRegistry.counter(
+                        "kafka.send.rejected", "topic", topic, "tenant", key.tenantId, "location", key.locationId));
+    }
+
+    private static final class MeterKey {
+        private final String tenantId;
+        private final String locationId;
+
+        private MeterKey(String tenantId, String locationId) {
+            this.tenantId = tenantId;
+            this.locationId = locationId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            MeterKey meterKey = (MeterKey) o;
+            return Objects.equals(tenantId, meterKey.tenantId) && Objects.equals(locationId, meterKey.locationId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(tenantId, locationId);
+        }
+    }
+
+    private static final class SendMeters {
+        private final Timer sent;
+        private final Counter failed;
+        private final Counter rejected;
+
+        private SendMeters(Timer sent, Counter failed, Counter rejected) {
+            this.sent = sent;
+            this.failed = failed;
+            this.rejected = rejected;
+        }
     }
 }
@@ -23,24 +23,80 @@ package org.opennms.miniongateway.grpc.server.kafka;
 
 import com.google.protobuf.Message;
 import io.micrometer.core.instrument.MeterRegistry;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import javax.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
+import org.apache.kafka.clients.producer.ProducerConfig;
 import org.opennms.horizon.shared.grpc.common.LocationServerInterceptor;
 import org.opennms.horizon.shared.grpc.common.TenantIDGrpcServerInterceptor;
+import org.springframework.core.env.Environment;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Component;
 
+/**
+ * Creates the publishers of the sink message forwarders, each with its own producer profile.
+ *
+ * The profile of a topic is read from {@code sink.kafka.producer.topics.<topic>.<setting>}, falling back to
+ * {@code sink.kafka.producer.<setting>} and then to the defaults below.  Settings are {@code linger-ms},
+ * {@code batch-size}, {@code compression-type}, {@code max-in-flight} and {@code block-timeout-ms}.
+ */
 @Component
 @RequiredArgsConstructor
 public class SinkMessageKafkaPublisherFactory {
 
+    public static final String PROPERTY_PREFIX = "sink.kafka.producer.";
+
+    public static final int DEFAULT_LINGER_MS = 10;
+    public static final int DEFAULT_BATCH_SIZE = 128 * 1024;
+    public static final String DEFAULT_COMPRESSION_TYPE = "lz4";
+
     private final TenantIDGrpcServerInterceptor tenantInterceptor;
     private final LocationServerInterceptor locationInterceptor;
     private final KafkaTemplate<String, byte[]> kafkaTemplate;
     private final MeterRegistry meterRegistry;
+    private final Environment environment;
+
+    // Each template owns a copy of the producer factory with its overrides, which is not managed by the context
+    private final List<KafkaTemplate<String, byte[]>> topicTemplates = new CopyOnWriteArrayList<>();
 
     public <I extends Message, O extends Message> SinkMessageKafkaPublisher<I, O> create(
             SinkMessageMapper<I, O> mapper, String topic) {
+        // Topics with different profiles cannot share a producer, the settings apply to all of its batches
+        Map<String, Object> producerOverrides = Map.of(
+                ProducerConfig.LINGER_MS_CONFIG,
+                property(topic, "linger-ms", Integer.class, DEFAULT_LINGER_MS),
+                ProducerConfig.BATCH_SIZE_CONFIG,
+                property(topic, "batch-size", Integer.class, DEFAULT_BATCH_SIZE),
+                ProducerConfig.COMPRESSION_TYPE_CONFIG,
+                property(topic, "compression-type", String.class, DEFAULT_COMPRESSION_TYPE));
+        KafkaTemplate<String, byte[]> topicTemplate =
+                new KafkaTemplate<>(kafkaTemplate.getProducerFactory(), producerOverrides);
+        topicTemplates.add(topicTemplate);
+
         return new SinkMessageKafkaPublisher<>(
-                kafkaTemplate, tenantInterceptor, locationInterceptor, mapper, topic, meterRegistry);
+                topicTemplate,
+                tenantInterceptor,
+                locationInterceptor,
+                mapper,
+                topic,
+                meterRegistry,
+                property(topic, "max-in-flight", Integer.class, SinkMessageKafkaPublisher.DEFAULT_MAX_IN_FLIGHT),
+                property(topic, "block-timeout-ms", Long.class, SinkMessageKafkaPublisher.DEFAULT_BLOCK_TIMEOUT_MS));
+    }
+
+    /**
+     * Closes the producers of the publishers, sending the records they still buffer.
+     */
+    @PreDestroy
+    public void shutdown() {
+        topicTemplates.forEach(KafkaTemplate::destroy);
+        topicTemplates.clear();
+    }
+
+    private <T> T property(String topic, String name, Class<T> type, T defaultValue) {
+        T globalValue = environment.getProperty(PROPERTY_PREFIX + name, type, defaultValue);
+        return environment.getProperty(PROPERTY_PREFIX + "topics." + topic + "." + name, type, globalValue);
     }
 }
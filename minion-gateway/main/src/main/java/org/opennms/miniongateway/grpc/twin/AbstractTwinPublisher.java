@@ -33,7 +33,9 @@ import java.io.Serializable;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.BiConsumer;
 import javax.cache.Cache.Entry;
 import org.apache.ignite.Ignite;
@@ -42,9 +44,13 @@ import org.apache.ignite.cache.query.QueryCursor;
 import org.apache.ignite.cache.query.ScanQuery;
 import org.apache.ignite.lang.IgniteBiPredicate;
 import org.opennms.cloud.grpc.minion.TwinRequestProto;
+import org.opennms.cloud.grpc.minion.TwinPatchFormat;
 import org.opennms.cloud.grpc.minion.TwinResponseProto;
 import org.opennms.horizon.shared.protobuf.marshalling.ProtoBufJsonSerializer;
+import org.opennms.horizon.shared.protobuf.util.TaskSetDeltaUtil;
+import org.opennms.taskset.contract.TaskDefinition;
 import org.opennms.taskset.contract.TaskSet;
+import org.opennms.taskset.contract.TaskSetDelta;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
@@ -58,6 +64,9 @@ public abstract class AbstractTwinPublisher implements TwinPublisher, TwinProvid
     protected final IgniteCache<SessionKey, TwinTracker> twinTrackerMap;
     protected final ObjectMapper objectMapper = new ObjectMapper();
 
+    // Local state per session, its monitor serializes the updates of the session
+    private final Map<SessionKey, SessionState> sessionStates = new ConcurrentHashMap<>();
+
     public AbstractTwinPublisher(Ignite ignite) {
         // TODO: Should probably pass a var args of classes from the impl ctor?
         configureProtobufJson(TaskSet.class);
@@ -101,7 +110,7 @@ public abstract class AbstractTwinPublisher implements TwinPublisher, TwinProvid
         return twinUpdate;
     }
 
-    private synchronized TwinTracker getTwinTracker(String key, String tenantId, String locationId) {
+    private TwinTracker getTwinTracker(String key, String tenantId, String locationId) {
         // Check if we have a session key specific to location else check session key without location.
         TwinTracker twinTracker = twinTrackerMap.get(new SessionKey(key, tenantId, locationId));
         if (twinTracker == null) {
@@ -110,6 +119,18 @@ public abstract class AbstractTwinPublisher implements TwinPublisher, TwinProvid
         return twinTracker;
     }
 
+    /**
+     * Maps the update to the full object it patches, for peers that cannot apply its patch format.
+     */
+    protected TwinResponseProto mapFullTwinResponse(TwinUpdate twinUpdate) {
+        TwinUpdate fullUpdate = new TwinUpdate(
+                twinUpdate.getKey(), twinUpdate.getTenantId(), twinUpdate.getLocation(), twinUpdate.getFullObject());
+        fullUpdate.setPatch(false);
+        fullUpdate.setVersion(twinUpdate.getVersion());
+        fullUpdate.setSessionId(twinUpdate.getSessionId());
+        return mapTwinResponse(fullUpdate);
+    }
+
     protected TwinResponseProto mapTwinResponse(TwinUpdate twinUpdate) {
         TwinResponseProto.Builder builder = TwinResponseProto.newBuilder();
         if (!Strings.isNullOrEmpty(twinUpdate.getSessionId())) {
@@ -120,6 +141,9 @@ public abstract class AbstractTwinPublisher implements TwinPublisher, TwinProvid
             builder.setTwinObject(ByteString.copyFrom(twinUpdate.getObject()));
         }
         builder.setIsPatchObject(twinUpdate.isPatch());
+        if (twinUpdate.isPatch()) {
+            builder.setPatchFormat(twinUpdate.getPatchFormat());
+        }
         builder.setVersion(twinUpdate.getVersion());
         return builder.build();
     }
@@ -128,29 +152,81 @@ public abstract class AbstractTwinPublisher implements TwinPublisher, TwinProvid
         return location != null ? key + "@" + location : key;
     }
 
-    private synchronized TwinUpdate getResponseFromUpdatedObj(byte[] updatedObj, SessionKey sessionKey) {
-        TwinTracker twinTracker = getTwinTracker(sessionKey.key, sessionKey.tenantId, sessionKey.locationId);
-        if (twinTracker == null || !Arrays.equals(twinTracker.getObj(), updatedObj)) {
-            TwinUpdate twinUpdate =
-                    new TwinUpdate(sessionKey.key, sessionKey.tenantId, sessionKey.locationId, updatedObj);
-            if (twinTracker == null) {
-                twinTracker = new TwinTracker(updatedObj);
-            } else {
-                // Generate patch and update response with patch.
-                byte[] patchValue = getPatchValue(twinTracker.getObj(), updatedObj, sessionKey);
-                if (patchValue != null) {
-                    twinUpdate.setObject(patchValue);
-                    twinUpdate.setPatch(true);
+    private SessionState getSessionState(SessionKey sessionKey) {
+        return sessionStates.computeIfAbsent(sessionKey, k -> new SessionState());
+    }
+
+    private TwinUpdate getResponseFromUpdatedObj(byte[] updatedObj, SessionKey sessionKey) {
+        synchronized (getSessionState(sessionKey)) {
+            TwinTracker twinTracker = getTwinTracker(sessionKey.key, sessionKey.tenantId, sessionKey.locationId);
+            if (twinTracker == null || !Arrays.equals(twinTracker.getObj(), updatedObj)) {
+                TwinUpdate twinUpdate =
+                        new TwinUpdate(sessionKey.key, sessionKey.tenantId, sessionKey.locationId, updatedObj);
+                if (twinTracker == null) {
+                    twinTracker = new TwinTracker(updatedObj);
+                } else {
+                    // Generate patch and update response with patch.
+                    byte[] patchValue = getPatchValue(twinTracker.getObj(), updatedObj, sessionKey);
+                    if (patchValue != null) {
+                        twinUpdate.setObject(patchValue);
+                        twinUpdate.setPatch(true);
+                    }
+                    // Update Twin tracker with updated obj.
+                    twinTracker.update(updatedObj);
                 }
-                // Update Twin tracker with updated obj.
+                twinTrackerMap.put(sessionKey, twinTracker);
+                twinUpdate.setVersion(twinTracker.getVersion());
+                twinUpdate.setSessionId(twinTracker.getSessionId());
+                return twinUpdate;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Task sets are patched with a {@link TaskSetDelta} computed against the task set published last by this
+     * publisher, which avoids parsing and diffing the JSON representation of the whole task set.
+     * <p>
+     * A full update is sent instead if there is no previous task set for the session or the tracker has been updated
+     * elsewhere in the meantime. The delta carries the full task set as well, for Minions that cannot apply it.
+     */
+    private TwinUpdate getResponseFromUpdatedTaskSet(TaskSet taskSet, SessionKey sessionKey) throws IOException {
+        SessionState state = getSessionState(sessionKey);
+        synchronized (state) {
+            TwinTracker twinTracker = getTwinTracker(sessionKey.key, sessionKey.tenantId, sessionKey.locationId);
+            Map<String, TaskDefinition> taskDefinitions = TaskSetDeltaUtil.index(taskSet);
+            TwinUpdate twinUpdate = new TwinUpdate(sessionKey.key, sessionKey.tenantId, sessionKey.locationId);
+
+            if (twinTracker != null && state.isCurrent(twinTracker)) {
+                TaskSetDelta delta = TaskSetDeltaUtil.diff(state.taskDefinitions, taskDefinitions);
+                if (TaskSetDeltaUtil.isEmpty(delta)) {
+                    return null;
+                }
+                byte[] updatedObj = objectMapper.writeValueAsBytes(taskSet);
                 twinTracker.update(updatedObj);
+                twinUpdate.setObject(delta.toByteArray());
+                twinUpdate.setPatch(true);
+                twinUpdate.setPatchFormat(TwinPatchFormat.TASK_SET_DELTA);
+                twinUpdate.setFullObject(updatedObj);
+            } else {
+                byte[] updatedObj = objectMapper.writeValueAsBytes(taskSet);
+                if (twinTracker == null) {
+                    twinTracker = new TwinTracker(updatedObj);
+                } else if (Arrays.equals(twinTracker.getObj(), updatedObj)) {
+                    state.update(taskDefinitions, twinTracker);
+                    return null;
+                } else {
+                    twinTracker.update(updatedObj);
+                }
+                twinUpdate.setObject(updatedObj);
             }
             twinTrackerMap.put(sessionKey, twinTracker);
+            state.update(taskDefinitions, twinTracker);
+
             twinUpdate.setVersion(twinTracker.getVersion());
             twinUpdate.setSessionId(twinTracker.getSessionId());
             return twinUpdate;
         }
-        return null;
     }
 
     private byte[] getPatchValue(byte[] originalObj, byte[] updatedObj, SessionKey sessionKey) {
@@ -165,11 +241,14 @@ public abstract class AbstractTwinPublisher implements TwinPublisher, TwinProvid
         return null;
     }
 
-    private synchronized void removeSessionKey(SessionKey sessionKey) {
-        twinTrackerMap.remove(sessionKey);
+    private void removeSessionKey(SessionKey sessionKey) {
+        synchronized (getSessionState(sessionKey)) {
+            twinTrackerMap.remove(sessionKey);
+            sessionStates.remove(sessionKey);
+        }
     }
 
-    public synchronized void forEachSession(String tenantId, BiConsumer<SessionKey, TwinTracker> consumer) {
+    public void forEachSession(String tenantId, BiConsumer<SessionKey, TwinTracker> consumer) {
         ScanQuery<SessionKey, TwinTracker> query = new ScanQuery<>();
         query.setFilter(new TenantSessionKeyPredicate(tenantId));
         QueryCursor<Entry<SessionKey, TwinTracker>> cursor = twinTrackerMap.query(query);
@@ -193,8 +272,12 @@ public abstract class AbstractTwinPublisher implements TwinPublisher, TwinProvid
         public void publish(T obj) throws IOException {
             try (MDCCloseable mdc = MDC.putCloseable("prefix", TwinConstants.LOG_PREFIX)) {
                 LOG.info("Published an object update for the session with key {}", sessionKey.toString());
-                byte[] objInBytes = objectMapper.writeValueAsBytes(obj);
-                TwinUpdate twinUpdate = getResponseFromUpdatedObj(objInBytes, sessionKey);
+                TwinUpdate twinUpdate;
+                if (obj instanceof TaskSet) {
+                    twinUpdate = getResponseFromUpdatedTaskSet((TaskSet) obj, sessionKey);
+                } else {
+                    twinUpdate = getResponseFromUpdatedObj(objectMapper.writeValueAsBytes(obj), sessionKey);
+                }
 
                 if (twinUpdate != null) {
                     handleSinkUpdate(sessionKey.locationId, twinUpdate);
@@ -209,6 +292,27 @@ public abstract class AbstractTwinPublisher implements TwinPublisher, TwinProvid
         }
     }
 
+    /**
+     * The object last published for a session, along with the tracker state it was published as.
+     */
+    private static class SessionState {
+        private Map<String, TaskDefinition> taskDefinitions;
+        private String sessionId;
+        private int version = -1;
+
+        private boolean isCurrent(TwinTracker twinTracker) {
+            return taskDefinitions != null
+                    && version == twinTracker.getVersion()
+                    && Objects.equals(sessionId, twinTracker.getSessionId());
+        }
+
+        private void update(Map<String, TaskDefinition> taskDefinitions, TwinTracker twinTracker) {
+            this.taskDefinitions = taskDefinitions;
+            this.sessionId = twinTracker.getSessionId();
+            this.version = twinTracker.getVersion();
+        }
+    }
+
     public static class SessionKey implements Serializable {
 
         public final String key;
@@ -21,11 +21,12 @@
  */
 package org.opennms.miniongateway.grpc.twin;
 
-import com.google.common.collect.LinkedListMultimap;
-import com.google.common.collect.Multimap;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
-import io.grpc.StatusRuntimeException;
+import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import io.opentelemetry.api.common.Attributes;
 import io.opentelemetry.api.trace.Span;
 import io.opentelemetry.api.trace.SpanBuilder;
@@ -35,18 +36,23 @@ import io.opentelemetry.api.trace.StatusCode;
 import io.opentelemetry.api.trace.Tracer;
 import java.io.IOException;
 import java.lang.reflect.UndeclaredThrowableException;
-import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.EnumSet;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.apache.ignite.Ignite;
 import org.apache.logging.log4j.util.Strings;
 import org.opennms.cloud.grpc.minion.CloudToMinionMessage;
+import org.opennms.cloud.grpc.minion.TwinPatchFormat;
 import org.opennms.cloud.grpc.minion.TwinResponseProto;
 import org.opennms.horizon.shared.grpc.common.GrpcIpcUtils;
 import org.opennms.horizon.shared.ipc.grpc.server.manager.OutgoingMessageFactory;
@@ -59,8 +65,15 @@ import org.slf4j.MDC.MDCCloseable;
 public class GrpcTwinPublisher extends AbstractTwinPublisher implements OutgoingMessageFactory {
 
     private static final Logger LOG = LoggerFactory.getLogger(GrpcTwinPublisher.class);
-    private Multimap<TenantKey, AdapterObserver> sinkStreamsByLocation = LinkedListMultimap.create();
-    private Map<TenantKey, AdapterObserver> sinkStreamsBySystemId = new HashMap<>();
+
+    public static final int DEFAULT_MAX_QUEUED_PER_STREAM = 1_000;
+
+    /**
+     * Sink streams by tenant, then location.  Updates only ever touch the streams of a single tenant.
+     */
+    private final Map<String, Map<String, Set<AdapterObserver>>> sinkStreamsByTenant = new ConcurrentHashMap<>();
+
+    private final Map<TenantKey, AdapterObserver> sinkStreamsBySystemId = new ConcurrentHashMap<>();
     private final ThreadFactory twinRpcThreadFactory =
             new ThreadFactoryBuilder().setNameFormat("twin-rpc-handler-%d").build();
     private final ExecutorService twinRpcExecutor = Executors.newCachedThreadPool(twinRpcThreadFactory);
@@ -68,72 +81,94 @@ public class GrpcTwinPublisher extends AbstractTwinPublisher implements Outgoing
     private final Tracer tracer;
     private final boolean debugSpanFullMessage;
     private final boolean debugSpanContent;
+    private final int maxQueuedPerStream;
+
+    private final Timer fanOutTimer;
+    private final Counter slowStreamCounter;
+    private final Counter droppedStreamCounter;
 
     public GrpcTwinPublisher(
-            Ignite ignite, final Tracer tracer, boolean debugSpanFullMessage, boolean debugSpanContent) {
+            Ignite ignite,
+            final Tracer tracer,
+            boolean debugSpanFullMessage,
+            boolean debugSpanContent,
+            MeterRegistry meterRegistry,
+            int maxQueuedPerStream) {
         super(ignite);
         this.tracer = tracer;
         this.debugSpanFullMessage = debugSpanFullMessage;
         this.debugSpanContent = debugSpanContent;
+        this.maxQueuedPerStream = maxQueuedPerStream;
+
+        fanOutTimer = meterRegistry.timer("twin.sink.fanout");
+        slowStreamCounter = meterRegistry.counter("twin.sink.stream.slow");
+        droppedStreamCounter = meterRegistry.counter("twin.sink.stream.dropped");
     }
 
     @Override
     protected void handleSinkUpdate(String locationId, TwinUpdate sinkUpdate) {
-        sendTwinResponseForSink(sinkUpdate.getTenantId(), locationId, mapTwinResponse(sinkUpdate));
+        sendTwinResponseForSink(sinkUpdate.getTenantId(), locationId, new SinkResponse(sinkUpdate));
     }
 
-    private synchronized boolean sendTwinResponseForSink(
-            String tenantId, String location, TwinResponseProto twinResponseProto) {
-        if (sinkStreamsByLocation.isEmpty()) {
+    private boolean sendTwinResponseForSink(String tenantId, String location, SinkResponse twinResponse) {
+        Map<String, Set<AdapterObserver>> tenantStreams = sinkStreamsByTenant.get(tenantId);
+        if (tenantStreams == null) {
             return false;
         }
-        try {
-            Object[] diagnosticCtx = {tenantId, twinResponseProto.getConsumerKey(), location};
+        fanOutTimer.record(() -> {
             if (Strings.isBlank(location)) {
                 // theoretical broadcast scenario - no location given, so we send update to all locations
                 LOG.debug(
                         "Sending sink update for tenant {} with key {} in all locations",
                         tenantId,
-                        twinResponseProto.getConsumerKey());
-                for (Entry<TenantKey, AdapterObserver> entry : new ArrayList<>(sinkStreamsByLocation.entries())) {
-                    if (tenantId.equals(entry.getKey().getTenantId())) {
-                        AdapterObserver stream = entry.getValue();
-                        try {
-                            LOG.debug(
-                                    "Sending sink update for tenant {}, key {}, location {}, system id {}",
-                                    diagnosticCtx);
-                            stream.onNext(twinResponseProto);
-                        } catch (StatusRuntimeException e) {
-                            LOG.debug(
-                                    "Failed to send sink update for tenant {}, key {}, location {}, system id {}",
-                                    diagnosticCtx);
-                            stream.complete();
-                        }
-                    }
-                }
+                        twinResponse.update.getKey());
+                tenantStreams.values().forEach(streams -> enqueue(streams, twinResponse));
             } else {
-                Collection<AdapterObserver> observers = sinkStreamsByLocation.get(new TenantKey(tenantId, location));
-                for (AdapterObserver stream : new ArrayList<>(observers)) {
-                    try {
-                        try {
-                            LOG.debug("Sending sink update for tenant {}, key {} at location {}", diagnosticCtx);
-                            stream.onNext(twinResponseProto);
-                        } catch (StatusRuntimeException e) {
-                            LOG.debug("Failed to send sink update for tenant {}, key {} at location {}", diagnosticCtx);
-                            stream.complete();
-                        }
-                    } catch (Exception e) {
-                        LOG.debug("Failed to send sink update for tenant {}, key {} at location {}", diagnosticCtx);
-                        LOG.debug("Exception : ", e);
-                    }
+                Set<AdapterObserver> streams = tenantStreams.get(location);
+                if (streams != null) {
+                    LOG.debug(
+                            "Sending sink update for tenant {}, key {} at location {}",
+                            tenantId,
+                            twinResponse.update.getKey(),
+                            location);
+                    enqueue(streams, twinResponse);
                 }
             }
-        } catch (Exception e) {
-            LOG.error("Error while sending Twin response for Sink stream", e);
-        }
+        });
         return true;
     }
 
+    private void enqueue(Set<AdapterObserver> streams, SinkResponse twinResponse) {
+        for (AdapterObserver stream : streams) {
+            try {
+                stream.onNext(twinResponse.forStream(stream));
+            } catch (Exception e) {
+                LOG.error("Error while sending Twin response for Sink stream", e);
+            }
+        }
+    }
+
+    private void addStream(TenantKey locationKey, AdapterObserver stream) {
+        // Add within compute(), so it cannot race with removeStream() dropping the emptied set
+        sinkStreamsByTenant
+                .computeIfAbsent(locationKey.getTenantId(), tenantId -> new ConcurrentHashMap<>())
+                .compute(locationKey.getKey(), (location, streams) -> {
+                    Set<AdapterObserver> result = streams != null ? streams : ConcurrentHashMap.newKeySet();
+                    result.add(stream);
+                    return result;
+                });
+    }
+
+    private void removeStream(TenantKey locationKey, AdapterObserver stream) {
+        Map<String, Set<AdapterObserver>> tenantStreams = sinkStreamsByTenant.get(locationKey.getTenantId());
+        if (tenantStreams != null) {
+            tenantStreams.computeIfPresent(locationKey.getKey(), (location, streams) -> {
+                streams.remove(stream);
+                return streams.isEmpty() ? null : streams;
+            });
+        }
+    }
+
     public void start() throws IOException {
         try (MDCCloseable mdc = MDC.putCloseable("prefix", GrpcIpcUtils.LOG_PREFIX)) {
             LOG.info("Activated Twin Service");
@@ -147,31 +182,137 @@ public class GrpcTwinPublisher extends AbstractTwinPublisher implements Outgoing
         }
     }
 
+    /**
+     * The response for an update, mapped once for all streams that can apply it.  Minions that do not support the
+     *  patch format of the update get the full object instead, so they can be upgraded after the gateway.
+     */
+    private class SinkResponse {
+        private final TwinUpdate update;
+        private TwinResponseProto response;
+        private TwinResponseProto fullResponse;
+
+        private SinkResponse(TwinUpdate update) {
+            this.update = update;
+        }
+
+        private TwinResponseProto forStream(AdapterObserver stream) {
+            if (update.isPatch()
+                    && update.getPatchFormat() != TwinPatchFormat.JSON_PATCH
+                    && !stream.twinPatchFormats.contains(update.getPatchFormat())) {
+                if (fullResponse == null) {
+                    fullResponse = mapFullTwinResponse(update);
+                }
+                return fullResponse;
+            }
+            if (response == null) {
+                response = mapTwinResponse(update);
+            }
+            return response;
+        }
+    }
+
+    /**
+     * Sink stream of a single Minion.  Updates are queued and written while the transport is ready, so a slow Minion
+     *  never blocks the fan-out to other streams; a stream that falls more than maxQueuedPerStream updates behind is
+     *  closed, and the Minion gets the full twin state again when it reconnects.
+     */
     class AdapterObserver implements StreamObserver<TwinResponseProto> {
         private final Logger logger = LoggerFactory.getLogger(AdapterObserver.class);
         private final StreamObserver<CloudToMinionMessage> delegate;
+        private final Set<TwinPatchFormat> twinPatchFormats;
+        private final ServerCallStreamObserver<CloudToMinionMessage> flowControl;
         private Runnable completionCallback;
         // private final Tracer tracer;
         private final Attributes attributes;
         private SpanContext streamSpanContext;
 
+        private final Queue<TwinResponseProto> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger queued = new AtomicInteger();
+        private final AtomicInteger drainRequests = new AtomicInteger();
+        private final AtomicBoolean completed = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+
         AdapterObserver(
                 StreamObserver<CloudToMinionMessage> delegate,
+                Collection<TwinPatchFormat> twinPatchFormats,
                 Tracer tracer,
                 SpanContext streamSpanContext,
                 Attributes streamAttributes) {
             this.delegate = delegate;
+            this.twinPatchFormats = twinPatchFormats.isEmpty()
+                    ? EnumSet.noneOf(TwinPatchFormat.class)
+                    : EnumSet.copyOf(twinPatchFormats);
             // this.tracer = tracer;
             this.streamSpanContext = streamSpanContext;
             this.attributes = streamAttributes;
+
+            if (delegate instanceof ServerCallStreamObserver) {
+                flowControl = (ServerCallStreamObserver<CloudToMinionMessage>) delegate;
+                flowControl.setOnReadyHandler(this::drain);
+            } else {
+                flowControl = null;
+            }
         }
 
         public void setCompletionCallback(Runnable completion) {
             this.completionCallback = completion;
         }
 
+        /**
+         * Queue the update for sending; never blocks.
+         */
         @Override
         public void onNext(TwinResponseProto value) {
+            if (completed.get()) {
+                return;
+            }
+            if (queued.incrementAndGet() > maxQueuedPerStream) {
+                logger.warn("Closing sink stream {} with {} unsent twin updates", attributes, maxQueuedPerStream);
+                droppedStreamCounter.increment();
+                complete();
+                return;
+            }
+            if (!isReady()) {
+                slowStreamCounter.increment();
+            }
+            queue.add(value);
+            drain();
+        }
+
+        private boolean isReady() {
+            return flowControl == null || flowControl.isReady();
+        }
+
+        /**
+         * Send queued updates while the transport is ready, and complete the stream once requested.  Only one thread
+         *  writes to the delegate at a time; a request to drain made while another thread is writing makes that thread
+         *  check again.
+         */
+        private void drain() {
+            if (drainRequests.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            do {
+                TwinResponseProto next;
+                while (!completed.get() && isReady() && (next = queue.poll()) != null) {
+                    queued.decrementAndGet();
+                    try {
+                        send(next);
+                    } catch (RuntimeException e) {
+                        logger.debug("Failed to send sink update to stream {}", attributes, e);
+                        completed.set(true);
+                    }
+                }
+                if (completed.get() && closed.compareAndSet(false, true)) {
+                    queue.clear();
+                    completionCallback.run();
+                }
+                missed = drainRequests.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void send(TwinResponseProto value) {
             SpanBuilder spanBuilder = tracer.spanBuilder("CloudToMinionMessage send " + value.getConsumerKey())
                     .setSpanKind(SpanKind.PRODUCER)
                     .setAllAttributes(this.attributes)
@@ -213,12 +354,13 @@ public class GrpcTwinPublisher extends AbstractTwinPublisher implements Outgoing
         }
 
         public void complete() {
-            completionCallback.run();
+            completed.set(true);
+            drain();
         }
 
         @Override
         public void onCompleted() {
-            completionCallback.run();
+            complete();
         }
 
         private CloudToMinionMessage map(TwinResponseProto value) {
@@ -249,28 +391,33 @@ public class GrpcTwinPublisher extends AbstractTwinPublisher implements Outgoing
             String systemId,
             String tenantId,
             String location,
+            Collection<TwinPatchFormat> twinPatchFormats,
             SpanContext streamSpanContext,
             StreamObserver<CloudToMinionMessage> streamObserver) {
         TenantKey systemIdKey = new TenantKey(tenantId, systemId);
         TenantKey locationKey = new TenantKey(tenantId, location);
-        if (sinkStreamsBySystemId.containsKey(systemIdKey)) {
-            StreamObserver<TwinResponseProto> sinkStream = sinkStreamsBySystemId.remove(systemIdKey);
-            sinkStreamsByLocation.remove(locationKey, sinkStream);
-            sinkStream.onCompleted(); // force termination of session.
+        AdapterObserver previous = sinkStreamsBySystemId.get(systemIdKey);
+        if (previous != null) {
+            previous.onCompleted(); // force termination of session.
         }
         var streamAttributes = Attributes.builder()
                 .put("user", tenantId)
                 .put("location", location)
                 .put("systemId", systemId)
                 .build();
-        AdapterObserver delegate = new AdapterObserver(streamObserver, tracer, streamSpanContext, streamAttributes);
+        AdapterObserver delegate =
+                new AdapterObserver(streamObserver, twinPatchFormats, tracer, streamSpanContext, streamAttributes);
         delegate.setCompletionCallback(() -> {
-            sinkStreamsByLocation.remove(locationKey, delegate);
-            sinkStreamsBySystemId.remove(systemIdKey);
+            removeStream(locationKey, delegate);
+            sinkStreamsBySystemId.remove(systemIdKey, delegate);
             // mark stream as done
             streamObserver.onCompleted();
         });
-        sinkStreamsByLocation.put(locationKey, delegate);
+        if (streamObserver instanceof ServerCallStreamObserver) {
+            // Drop the stream as soon as the Minion goes away, not on the next failed send
+            ((ServerCallStreamObserver<CloudToMinionMessage>) streamObserver).setOnCancelHandler(delegate::complete);
+        }
+        addStream(locationKey, delegate);
         sinkStreamsBySystemId.put(systemIdKey, delegate);
 
         forEachSession(tenantId, ((sessionKey, twinTracker) -> {
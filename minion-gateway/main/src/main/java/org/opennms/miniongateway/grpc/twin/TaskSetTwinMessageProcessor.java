@@ -107,7 +107,12 @@ public class TaskSetTwinMessageProcessor implements OutgoingMessageHandler {
         for (OutgoingMessageFactory outgoingMessageFactory : outgoingMessageFactoryList) {
             // streamObserver.accept(identity, cloudToMinionMessageStreamObserver);
             outgoingMessageFactory.create(
-                    systemId, tenantId, location, streamSpan.getSpanContext(), cloudToMinionMessageStreamObserver);
+                    systemId,
+                    tenantId,
+                    location,
+                    minionHeader.getTwinPatchFormatsList(),
+                    streamSpan.getSpanContext(),
+                    cloudToMinionMessageStreamObserver);
         }
     }
 }
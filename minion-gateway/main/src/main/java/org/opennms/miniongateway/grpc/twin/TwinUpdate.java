@@ -25,6 +25,7 @@ import java.util.HashMap;
 import java.util.Map;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
+import org.opennms.cloud.grpc.minion.TwinPatchFormat;
 
 @Data
 public class TwinUpdate {
@@ -35,6 +36,9 @@ public class TwinUpdate {
 
     private int version;
     private boolean isPatch;
+    private TwinPatchFormat patchFormat = TwinPatchFormat.JSON_PATCH;
+    // The whole object for peers that cannot apply a patch of a format other than JSON_PATCH
+    private byte[] fullObject;
     private String sessionId;
 
     @EqualsAndHashCode.Exclude
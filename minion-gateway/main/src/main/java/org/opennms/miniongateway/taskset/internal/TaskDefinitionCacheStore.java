@@ -0,0 +1,191 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.miniongateway.taskset.internal;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collection;
+import javax.cache.Cache;
+import javax.cache.integration.CacheLoaderException;
+import javax.cache.integration.CacheWriterException;
+import javax.sql.DataSource;
+import org.apache.ignite.cache.store.CacheStoreAdapter;
+import org.apache.ignite.lang.IgniteBiInClosure;
+import org.apache.ignite.lifecycle.LifecycleAware;
+import org.apache.ignite.resources.SpringResource;
+import org.opennms.miniongateway.grpc.server.model.TenantKey;
+import org.opennms.taskset.contract.TaskDefinition;
+
+/**
+ * Persists task definitions in their own table, one row per (tenant, location, task id).
+ *
+ * Unlike the blob store used for the other caches, this supports loading the whole cache on startup, which is needed
+ *  because task sets are assembled by scanning the cache and scans do not read through to the store.  Writes and
+ *  deletes of a batch are sent to the database as a single JDBC batch.
+ */
+public class TaskDefinitionCacheStore extends CacheStoreAdapter<TaskDefinitionKey, TaskDefinition>
+        implements LifecycleAware {
+
+    private static final String CREATE_TABLE_QUERY = "create table if not exists TASK_DEFINITIONS ("
+            + "tenant_id varchar not null, location_id varchar not null, task_id varchar not null, "
+            + "definition bytea not null, primary key (tenant_id, location_id, task_id))";
+    private static final String LOAD_QUERY =
+            "select definition from TASK_DEFINITIONS where tenant_id=? and location_id=? and task_id=?";
+    private static final String LOAD_ALL_QUERY =
+            "select tenant_id, location_id, task_id, definition from TASK_DEFINITIONS";
+    private static final String UPSERT_QUERY =
+            "insert into TASK_DEFINITIONS (tenant_id, location_id, task_id, definition) values (?, ?, ?, ?) "
+                    + "on conflict (tenant_id, location_id, task_id) do update set definition = excluded.definition";
+    private static final String DELETE_QUERY =
+            "delete from TASK_DEFINITIONS where tenant_id=? and location_id=? and task_id=?";
+
+    @SpringResource(resourceName = "dataSource")
+    private transient DataSource dataSource;
+
+    // ========================================
+    // Lifecycle
+    // ----------------------------------------
+
+    @Override
+    public void start() {
+        try (Connection connection = dataSource.getConnection();
+                Statement statement = connection.createStatement()) {
+            statement.executeUpdate(CREATE_TABLE_QUERY);
+        } catch (SQLException sqlException) {
+            throw new CacheLoaderException("Failed to create the task definition table", sqlException);
+        }
+    }
+
+    @Override
+    public void stop() {}
+
+    // ========================================
+    // CacheStore
+    // ----------------------------------------
+
+    @Override
+    public TaskDefinition load(TaskDefinitionKey key) throws CacheLoaderException {
+        try (Connection connection = dataSource.getConnection();
+                PreparedStatement statement = connection.prepareStatement(LOAD_QUERY)) {
+            setKey(statement, key);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() ? TaskDefinition.parseFrom(resultSet.getBytes(1)) : null;
+            }
+        } catch (SQLException | InvalidProtocolBufferException exc) {
+            throw new CacheLoaderException("Failed to load task definition: key=" + key, exc);
+        }
+    }
+
+    @Override
+    public void loadCache(IgniteBiInClosure<TaskDefinitionKey, TaskDefinition> closure, Object... args) {
+        try (Connection connection = dataSource.getConnection();
+                PreparedStatement statement = connection.prepareStatement(LOAD_ALL_QUERY);
+                ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                TenantKey tenantLocation = new TenantKey(resultSet.getString(1), resultSet.getString(2));
+                closure.apply(
+                        new TaskDefinitionKey(tenantLocation, resultSet.getString(3)),
+                        TaskDefinition.parseFrom(resultSet.getBytes(4)));
+            }
+        } catch (SQLException | InvalidProtocolBufferException exc) {
+            throw new CacheLoaderException("Failed to load task definitions", exc);
+        }
+    }
+
+    @Override
+    public void write(Cache.Entry<? extends TaskDefinitionKey, ? extends TaskDefinition> entry)
+            throws CacheWriterException {
+        try (Connection connection = dataSource.getConnection();
+                PreparedStatement statement = connection.prepareStatement(UPSERT_QUERY)) {
+            setUpsert(statement, entry);
+            statement.executeUpdate();
+        } catch (SQLException sqlException) {
+            throw new CacheWriterException("Failed to write task definition: key=" + entry.getKey(), sqlException);
+        }
+    }
+
+    @Override
+    public void writeAll(Collection<Cache.Entry<? extends TaskDefinitionKey, ? extends TaskDefinition>> entries)
+            throws CacheWriterException {
+        try (Connection connection = dataSource.getConnection();
+                PreparedStatement statement = connection.prepareStatement(UPSERT_QUERY)) {
+            for (var entry : entries) {
+                setUpsert(statement, entry);
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        } catch (SQLException sqlException) {
+            throw new CacheWriterException("Failed to write task definitions", sqlException);
+        }
+
+        // Per the CacheWriter contract, entries left in the collection are the ones that failed
+        entries.clear();
+    }
+
+    @Override
+    public void delete(Object key) throws CacheWriterException {
+        try (Connection connection = dataSource.getConnection();
+                PreparedStatement statement = connection.prepareStatement(DELETE_QUERY)) {
+            setKey(statement, (TaskDefinitionKey) key);
+            statement.executeUpdate();
+        } catch (SQLException sqlException) {
+            throw new CacheWriterException("Failed to delete task definition: key=" + key, sqlException);
+        }
+    }
+
+    @Override
+    public void deleteAll(Collection<?> keys) throws CacheWriterException {
+        try (Connection connection = dataSource.getConnection();
+                PreparedStatement statement = connection.prepareStatement(DELETE_QUERY)) {
+            for (Object key : keys) {
+                setKey(statement, (TaskDefinitionKey) key);
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        } catch (SQLException sqlException) {
+            throw new CacheWriterException("Failed to delete task definitions", sqlException);
+        }
+
+        keys.clear();
+    }
+
+    // ========================================
+    // Internals
+    // ----------------------------------------
+
+    private static void setKey(PreparedStatement statement, TaskDefinitionKey key) throws SQLException {
+        statement.setString(1, key.getTenantLocation().getTenantId());
+        statement.setString(2, key.getTenantLocation().getKey());
+        statement.setString(3, key.getTaskId());
+    }
+
+    private static void setUpsert(
+            PreparedStatement statement, Cache.Entry<? extends TaskDefinitionKey, ? extends TaskDefinition> entry)
+            throws SQLException {
+        setKey(statement, entry.getKey());
+        statement.setBytes(4, entry.getValue().toByteArray());
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.miniongateway.taskset.internal;
+
+import java.io.Serializable;
+import java.util.Objects;
+import org.apache.ignite.cache.affinity.AffinityKeyMapped;
+import org.opennms.miniongateway.grpc.server.model.TenantKey;
+
+/**
+ * Key of a single task definition in the task definition cache.  All definitions of a Tenant Location are colocated in
+ *  the partition of their TenantKey, so the task set of a location can be assembled from a single partition.
+ */
+public class TaskDefinitionKey implements Serializable {
+    @AffinityKeyMapped
+    private final TenantKey tenantLocation;
+
+    private final String taskId;
+
+    public TaskDefinitionKey(TenantKey tenantLocation, String taskId) {
+        this.tenantLocation = tenantLocation;
+        this.taskId = taskId;
+    }
+
+    public TenantKey getTenantLocation() {
+        return tenantLocation;
+    }
+
+    public String getTaskId() {
+        return taskId;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        TaskDefinitionKey that = (TaskDefinitionKey) o;
+        return Objects.equals(tenantLocation, that.tenantLocation) && Objects.equals(taskId, that.taskId);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(tenantLocation, taskId);
+    }
+
+    @Override
+    public String toString() {
+        return "TaskDefinitionKey{" + "tenantLocation=" + tenantLocation + ", taskId='" + taskId + '\'' + '}';
+    }
+}
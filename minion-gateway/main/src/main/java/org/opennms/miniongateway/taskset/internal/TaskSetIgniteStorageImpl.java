@@ -21,23 +21,49 @@
  */
 package org.opennms.miniongateway.taskset.internal;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.IdentityHashMap;
-import java.util.concurrent.locks.Lock;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import javax.annotation.PreDestroy;
+import javax.cache.Cache;
 import javax.cache.configuration.MutableCacheEntryListenerConfiguration;
+import javax.cache.processor.EntryProcessorResult;
+import javax.cache.processor.MutableEntry;
 import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteAtomicLong;
 import org.apache.ignite.IgniteCache;
+import org.apache.ignite.cache.CacheEntryProcessor;
+import org.apache.ignite.cache.query.QueryCursor;
+import org.apache.ignite.cache.query.ScanQuery;
+import org.apache.ignite.cache.store.jdbc.CacheJdbcBlobStoreFactory;
+import org.apache.ignite.configuration.CacheConfiguration;
+import org.apache.ignite.lang.IgniteBiPredicate;
 import org.opennms.miniongateway.grpc.server.model.TenantKey;
 import org.opennms.miniongateway.taskset.service.TaskSetStorage;
+import org.opennms.miniongateway.taskset.service.TaskSetStorageBatchUpdate;
 import org.opennms.miniongateway.taskset.service.TaskSetStorageListener;
-import org.opennms.miniongateway.taskset.service.TaskSetStorageUpdateFunction;
+import org.opennms.taskset.contract.TaskDefinition;
 import org.opennms.taskset.contract.TaskSet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 /**
+ * Task set storage that keeps every task definition in its own cache entry, keyed by Tenant Location and task ID.
  *
+ * Updates are applied per definition with entry processors, so no lock on the whole task set is needed and only the
+ *  changed definitions are written.  The TaskSet of a location is a view assembled from its definitions on demand;
+ *  all definitions of a location live in the same partition, so assembling it scans a single partition.
  */
 @Component
 public class TaskSetIgniteStorageImpl implements TaskSetStorage {
@@ -46,93 +72,119 @@ public class TaskSetIgniteStorageImpl implements TaskSetStorage {
 
     private Logger LOG = DEFAULT_LOGGER;
 
-    public static final String TASK_SET_IGNITE_CACHE_NAME = "taskSetCache";
+    public static final String TASK_DEFINITION_IGNITE_CACHE_NAME = "taskDefinitionCache";
 
-    private final IgniteCache<TenantKey, TaskSet> taskSetIgniteCache;
+    public static final long DEFAULT_PUBLISH_DELAY_MS = 100;
 
-    private final IdentityHashMap<TaskSetStorageListener, MutableCacheEntryListenerConfiguration<TenantKey, TaskSet>>
+    /**
+     * Cache used to read the task sets stored by earlier versions, one blob per location in the shared ENTRIES table.
+     */
+    private static final String LEGACY_TASK_SET_IGNITE_CACHE_NAME = "legacyTaskSetCache";
+
+    private static final String LEGACY_TASK_SET_CREATE_TABLE_QUERY =
+            "create table if not exists ENTRIES (akey bytea primary key, val bytea)";
+
+    /**
+     * Maximum number of entries sent to the cluster in a single invokeAll().
+     */
+    private static final int MAX_INVOKE_BATCH_SIZE = 1_000;
+
+    private static final Comparator<TaskDefinition> TASK_ID_ORDER = Comparator.comparing(TaskDefinition::getId);
+
+    private final Ignite ignite;
+
+    private final IgniteCache<TaskDefinitionKey, TaskDefinition> taskDefinitionIgniteCache;
+
+    private final long publishDelayMs;
+
+    private final ScheduledExecutorService publishExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "task-set-view-publisher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final IdentityHashMap<
+                    TaskSetStorageListener, MutableCacheEntryListenerConfiguration<TaskDefinitionKey, TaskDefinition>>
             cacheListenerConfigForPublisherSession = new IdentityHashMap<>();
 
     private final Object lock = new Object();
 
-    public TaskSetIgniteStorageImpl(@Autowired Ignite ignite) {
-        taskSetIgniteCache = ignite.getOrCreateCache(TASK_SET_IGNITE_CACHE_NAME);
+    public TaskSetIgniteStorageImpl(
+            @Autowired Ignite ignite,
+            @Value("${task.set.publish-delay-ms:" + DEFAULT_PUBLISH_DELAY_MS + "}") long publishDelayMs) {
+        this.ignite = ignite;
+        this.publishDelayMs = publishDelayMs;
+
+        taskDefinitionIgniteCache = ignite.getOrCreateCache(TASK_DEFINITION_IGNITE_CACHE_NAME);
+
+        // Scans only see entries in memory; after a cluster restart they only exist in the backing store.  loadCache()
+        //  runs on all nodes of the cluster, each keeping its own partitions, so only the first node to start loads.
+        //  The flag is held in memory only, so it is reset along with the cache when the whole cluster restarts.
+        IgniteAtomicLong loaded = ignite.atomicLong(TASK_DEFINITION_IGNITE_CACHE_NAME + ".loaded", 0, true);
+        if (loaded.compareAndSet(0, 1)) {
+            LOG.info("Loading task definitions from the backing store");
+            taskDefinitionIgniteCache.loadCache(null);
+
+            migrateLegacyTaskSets();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        publishExecutor.shutdownNow();
     }
 
     @Override
     public TaskSet getTaskSetForLocation(String tenantId, String locationId) {
-        TenantKey tenantKey = new TenantKey(tenantId, locationId);
+        TaskSet taskSet = assembleTaskSet(new TenantKey(tenantId, locationId));
 
-        return taskSetIgniteCache.get(tenantKey);
+        if (taskSet.getTaskDefinitionCount() == 0) {
+            return null;
+        }
+        return taskSet;
     }
 
     @Override
     public void putTaskSetForLocation(String tenantId, String locationId, TaskSet taskSet) {
         TenantKey tenantKey = new TenantKey(tenantId, locationId);
 
-        taskSetIgniteCache.put(tenantKey, taskSet);
+        Set<String> removedTaskIds = new LinkedHashSet<>(currentTaskIds(tenantKey));
+        taskSet.getTaskDefinitionList().forEach(taskDefinition -> removedTaskIds.remove(taskDefinition.getId()));
+
+        applyUpdates(tenantKey, removedTaskIds, taskSet.getTaskDefinitionList());
     }
 
     @Override
     public boolean deleteTaskSetForLocation(String tenantId, String locationId) {
         TenantKey tenantKey = new TenantKey(tenantId, locationId);
 
-        return taskSetIgniteCache.remove(tenantKey);
+        return applyUpdates(tenantKey, currentTaskIds(tenantKey), List.of()).numRemoved > 0;
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public void atomicUpdateTaskSetForLocation(
-            String tenantId, String locationId, TaskSetStorageUpdateFunction updateFunction) {
-        TenantKey tenantKey = new TenantKey(tenantId, locationId);
+    public void updateTaskDefinitions(String tenantId, String locationId, TaskSetStorageBatchUpdate batchUpdate) {
+        UpdateCounts counts = applyUpdates(
+                new TenantKey(tenantId, locationId),
+                batchUpdate.getRemovedTaskIds(),
+                batchUpdate.getUpsertedTaskDefinitions());
 
-        Lock lock = taskSetIgniteCache.lock(tenantKey);
-        lock.lock();
-        try {
-            var currentTaskSet = taskSetIgniteCache.get(tenantKey);
-
-            LOG.debug("Calling update function in (distributed) critical section - STARTED");
-            var updatedTaskSet = updateFunction.process(currentTaskSet);
-            LOG.debug("Calling update function in (distributed) critical section - FINISHED");
-
-            // NOTE the rare instance equality check.  This is intentional.
-            if (updatedTaskSet != currentTaskSet) {
-                if (updatedTaskSet != null) {
-                    LOG.debug(
-                            "Updating task set after operation complete: tenantId={}; locationId={}",
-                            tenantId,
-                            locationId);
-                    taskSetIgniteCache.put(tenantKey, updatedTaskSet);
-                } else {
-                    LOG.debug(
-                            "Removing task set on update operation return null: tenantId={}; locationId={}",
-                            tenantId,
-                            locationId);
-                    taskSetIgniteCache.remove(tenantKey);
-                }
-            } else {
-                LOG.debug(
-                        "Skipping task set update - returned task set is the original: tenantId={}; locationId={}",
-                        tenantId,
-                        locationId);
-            }
-        } finally {
-            lock.unlock();
-        }
+        batchUpdate.completed(counts.numNew, counts.numReplaced, counts.numRemoved);
     }
 
     @Override
     public void addTaskSetStorageListener(TaskSetStorageListener listener) {
         LOG.debug("Registering listener for all TaskSet updates: listener={}", System.identityHashCode(listener));
 
-        var listenerFactory = new TaskSetTwinCacheListenerFactory(listener);
+        var viewPublisher = new TaskSetViewPublisher(listener, this::assembleTaskSet, publishExecutor, publishDelayMs);
+        var listenerFactory = new TaskSetTwinCacheListenerFactory(viewPublisher);
 
-        MutableCacheEntryListenerConfiguration<TenantKey, TaskSet> listenerConfiguration =
+        MutableCacheEntryListenerConfiguration<TaskDefinitionKey, TaskDefinition> listenerConfiguration =
                 new MutableCacheEntryListenerConfiguration<>(listenerFactory, null, false, false);
 
-        MutableCacheEntryListenerConfiguration<TenantKey, TaskSet> oldListener;
+        MutableCacheEntryListenerConfiguration<TaskDefinitionKey, TaskDefinition> oldListener;
 
         synchronized (lock) {
             oldListener = cacheListenerConfigForPublisherSession.putIfAbsent(listener, listenerConfiguration);
@@ -140,10 +192,214 @@ public class TaskSetIgniteStorageImpl implements TaskSetStorage {
 
         // Register only if it was not already registered
         if (oldListener == null) {
-            taskSetIgniteCache.registerCacheEntryListener(listenerConfiguration);
+            taskDefinitionIgniteCache.registerCacheEntryListener(listenerConfiguration);
         } else {
             // Why is the same TwinPublisher.Session being registered twice?
             LOG.warn("Internal error - publisher session is already registered to receive cache events");
         }
     }
+
+    // ========================================
+    // Internals
+    // ----------------------------------------
+
+    /**
+     * Move the task sets stored as a whole, one blob per location, by earlier versions into the task definition cache.
+     *  The blobs share their table with the twin cache, so only TaskSet entries are loaded; they are deleted once
+     *  migrated, so this only finds entries on the first start after the upgrade.  Locations that already have task
+     *  definitions are newer than the blob, which is deleted without being migrated.
+     */
+    private void migrateLegacyTaskSets() {
+        CacheJdbcBlobStoreFactory<TenantKey, TaskSet> storeFactory = new CacheJdbcBlobStoreFactory<>();
+        storeFactory.setDataSourceBean("dataSource");
+        storeFactory.setCreateTableQuery(LEGACY_TASK_SET_CREATE_TABLE_QUERY);
+
+        IgniteCache<TenantKey, TaskSet> legacyCache;
+        try {
+            legacyCache = ignite.getOrCreateCache(new CacheConfiguration<TenantKey, TaskSet>(
+                            LEGACY_TASK_SET_IGNITE_CACHE_NAME)
+                    .setCacheStoreFactory(storeFactory)
+                    .setWriteThrough(true));
+        } catch (RuntimeException exc) {
+            LOG.warn("Unable to open the legacy task set store; skipping the migration of task sets", exc);
+            return;
+        }
+
+        try {
+            legacyCache.loadCache((key, value) -> key instanceof TenantKey && value instanceof TaskSet);
+
+            Set<TenantKey> migrated = new LinkedHashSet<>();
+            try (QueryCursor<Cache.Entry<TenantKey, TaskSet>> cursor = legacyCache.query(new ScanQuery<TenantKey, TaskSet>())) {
+                for (Cache.Entry<TenantKey, TaskSet> entry : cursor) {
+                    TenantKey tenantKey = entry.getKey();
+                    if (currentTaskIds(tenantKey).isEmpty()) {
+                        LOG.info(
+                                "Migrating legacy task set: tenantId={}; locationId={}; task-count={}",
+                                tenantKey.getTenantId(),
+                                tenantKey.getKey(),
+                                entry.getValue().getTaskDefinitionCount());
+                        applyUpdates(tenantKey, List.of(), entry.getValue().getTaskDefinitionList());
+                    }
+                    migrated.add(tenantKey);
+                }
+            }
+
+            // Write-through deletes the blobs, so they are not migrated again on the next cluster start
+            legacyCache.removeAll(migrated);
+        } catch (RuntimeException exc) {
+            LOG.error("Failed to migrate legacy task sets; Inventory has to re-send them", exc);
+        } finally {
+            legacyCache.destroy();
+        }
+    }
+
+    /**
+     * Assemble the task set of the given Tenant Location from its task definitions, ordered by task ID so that the
+     *  same definitions always yield the same task set.
+     */
+    private TaskSet assembleTaskSet(TenantKey tenantKey) {
+        List<TaskDefinition> taskDefinitions = new ArrayList<>();
+        try (QueryCursor<Cache.Entry<TaskDefinitionKey, TaskDefinition>> cursor =
+                taskDefinitionIgniteCache.query(tenantLocationQuery(tenantKey))) {
+            cursor.forEach(entry -> taskDefinitions.add(entry.getValue()));
+        }
+        taskDefinitions.sort(TASK_ID_ORDER);
+
+        return TaskSet.newBuilder().addAllTaskDefinition(taskDefinitions).build();
+    }
+
+    private List<String> currentTaskIds(TenantKey tenantKey) {
+        List<String> taskIds = new ArrayList<>();
+        try (QueryCursor<Cache.Entry<TaskDefinitionKey, TaskDefinition>> cursor =
+                taskDefinitionIgniteCache.query(tenantLocationQuery(tenantKey))) {
+            cursor.forEach(entry -> taskIds.add(entry.getKey().getTaskId()));
+        }
+        return taskIds;
+    }
+
+    private ScanQuery<TaskDefinitionKey, TaskDefinition> tenantLocationQuery(TenantKey tenantKey) {
+        ScanQuery<TaskDefinitionKey, TaskDefinition> query = new ScanQuery<>();
+        query.setFilter(new TenantLocationPredicate(tenantKey));
+        // The TenantKey is the affinity key of all task definitions of the location
+        query.setPartition(ignite.affinity(TASK_DEFINITION_IGNITE_CACHE_NAME).partition(tenantKey));
+        return query;
+    }
+
+    /**
+     * Apply removals, followed by upserts, in chunks of at most MAX_INVOKE_BATCH_SIZE entries.
+     */
+    private UpdateCounts applyUpdates(
+            TenantKey tenantKey, Collection<String> removedTaskIds, Collection<TaskDefinition> upserts) {
+        UpdateCounts counts = new UpdateCounts();
+
+        Set<TaskDefinitionKey> removeChunk = new LinkedHashSet<>();
+        for (String taskId : removedTaskIds) {
+            removeChunk.add(new TaskDefinitionKey(tenantKey, taskId));
+            if (removeChunk.size() >= MAX_INVOKE_BATCH_SIZE) {
+                counts.numRemoved += countExisting(taskDefinitionIgniteCache.invokeAll(removeChunk, REMOVE));
+                removeChunk.clear();
+            }
+        }
+        if (!removeChunk.isEmpty()) {
+            counts.numRemoved += countExisting(taskDefinitionIgniteCache.invokeAll(removeChunk, REMOVE));
+        }
+
+        Map<TaskDefinitionKey, UpsertTaskDefinitionProcessor> upsertChunk = new LinkedHashMap<>();
+        for (TaskDefinition taskDefinition : upserts) {
+            upsertChunk.put(
+                    new TaskDefinitionKey(tenantKey, taskDefinition.getId()),
+                    new UpsertTaskDefinitionProcessor(taskDefinition));
+            if (upsertChunk.size() >= MAX_INVOKE_BATCH_SIZE) {
+                counts.addUpserts(upsertChunk.size(), countExisting(taskDefinitionIgniteCache.invokeAll(upsertChunk)));
+                upsertChunk.clear();
+            }
+        }
+        if (!upsertChunk.isEmpty()) {
+            counts.addUpserts(upsertChunk.size(), countExisting(taskDefinitionIgniteCache.invokeAll(upsertChunk)));
+        }
+
+        LOG.debug(
+                "Updated task definitions: tenantId={}; locationId={}; added-count={}; replaced-count={}; removed-count={}",
+                tenantKey.getTenantId(),
+                tenantKey.getKey(),
+                counts.numNew,
+                counts.numReplaced,
+                counts.numRemoved);
+
+        return counts;
+    }
+
+    private static int countExisting(Map<TaskDefinitionKey, EntryProcessorResult<Boolean>> results) {
+        int count = 0;
+        for (EntryProcessorResult<Boolean> result : results.values()) {
+            if (Boolean.TRUE.equals(result.get())) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static class UpdateCounts {
+        private int numNew;
+        private int numReplaced;
+        private int numRemoved;
+
+        private void addUpserts(int numUpserted, int numExisting) {
+            numNew += numUpserted - numExisting;
+            numReplaced += numExisting;
+        }
+    }
+
+    private static final RemoveTaskDefinitionProcessor REMOVE = new RemoveTaskDefinitionProcessor();
+
+    /**
+     * Removes the task definition; returns whether it existed.
+     */
+    static class RemoveTaskDefinitionProcessor
+            implements CacheEntryProcessor<TaskDefinitionKey, TaskDefinition, Boolean> {
+        @Override
+        public Boolean process(MutableEntry<TaskDefinitionKey, TaskDefinition> entry, Object... arguments) {
+            if (!entry.exists()) {
+                return false;
+            }
+            entry.remove();
+            return true;
+        }
+    }
+
+    /**
+     * Stores the task definition, skipping the write if an equal one is already stored; returns whether a definition
+     *  with the same ID existed.
+     */
+    static class UpsertTaskDefinitionProcessor
+            implements CacheEntryProcessor<TaskDefinitionKey, TaskDefinition, Boolean> {
+        private final TaskDefinition taskDefinition;
+
+        UpsertTaskDefinitionProcessor(TaskDefinition taskDefinition) {
+            this.taskDefinition = taskDefinition;
+        }
+
+        @Override
+        public Boolean process(MutableEntry<TaskDefinitionKey, TaskDefinition> entry, Object... arguments) {
+            boolean existed = entry.exists();
+            if (!existed || !taskDefinition.equals(entry.getValue())) {
+                entry.setValue(taskDefinition);
+            }
+            return existed;
+        }
+    }
+
+    static class TenantLocationPredicate implements IgniteBiPredicate<TaskDefinitionKey, TaskDefinition> {
+
+        private final TenantKey tenantKey;
+
+        TenantLocationPredicate(TenantKey tenantKey) {
+            this.tenantKey = tenantKey;
+        }
+
+        @Override
+        public boolean apply(TaskDefinitionKey taskDefinitionKey, TaskDefinition taskDefinition) {
+            return tenantKey.equals(taskDefinitionKey.getTenantLocation());
+        }
+    }
 }
@@ -21,87 +21,74 @@
  */
 package org.opennms.miniongateway.taskset.internal;
 
-import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.LinkedHashSet;
+import java.util.Set;
 import javax.cache.event.CacheEntryCreatedListener;
 import javax.cache.event.CacheEntryEvent;
 import javax.cache.event.CacheEntryListenerException;
+import javax.cache.event.CacheEntryRemovedListener;
 import javax.cache.event.CacheEntryUpdatedListener;
 import org.opennms.miniongateway.grpc.server.model.TenantKey;
-import org.opennms.miniongateway.taskset.service.TaskSetStorageListener;
-import org.opennms.taskset.contract.TaskSet;
+import org.opennms.taskset.contract.TaskDefinition;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Listener for updates to TaskSets in the Ignite Cache that forwards updates to Twin subscriptions.
- *
- * WARNING: the onUpdated method is called
+ * Listener for updates to task definitions in the Ignite Cache that notifies the view publisher of the affected
+ *  Tenant Locations, which forwards the assembled task sets to Twin subscriptions.
  */
 public class TaskSetTwinCacheListener
-        implements CacheEntryUpdatedListener<TenantKey, TaskSet>, CacheEntryCreatedListener<TenantKey, TaskSet> {
+        implements CacheEntryUpdatedListener<TaskDefinitionKey, TaskDefinition>,
+                CacheEntryCreatedListener<TaskDefinitionKey, TaskDefinition>,
+                CacheEntryRemovedListener<TaskDefinitionKey, TaskDefinition> {
 
     private static final Logger DEFAULT_LOGGER = LoggerFactory.getLogger(TaskSetTwinCacheListener.class);
 
     private Logger LOG = DEFAULT_LOGGER;
 
-    private final TaskSetStorageListener downstreamSession;
+    private final TaskSetViewPublisher viewPublisher;
+
+    public TaskSetTwinCacheListener(TaskSetViewPublisher viewPublisher) {
+        this.viewPublisher = viewPublisher;
+    }
 
-    public TaskSetTwinCacheListener(TaskSetStorageListener downstreamSession) {
-        this.downstreamSession = downstreamSession;
+    @Override
+    public void onCreated(
+            Iterable<CacheEntryEvent<? extends TaskDefinitionKey, ? extends TaskDefinition>> cacheEntryEvents)
+            throws CacheEntryListenerException {
+        LOG.debug("Have new task definition entry");
+        commonTaskDefinitionCacheEntryEventHandling(cacheEntryEvents);
     }
 
     @Override
-    public void onCreated(Iterable<CacheEntryEvent<? extends TenantKey, ? extends TaskSet>> cacheEntryEvents)
+    public void onUpdated(
+            Iterable<CacheEntryEvent<? extends TaskDefinitionKey, ? extends TaskDefinition>> cacheEntryEvents)
             throws CacheEntryListenerException {
-        LOG.debug("Have new task-set entry");
-        commonTaskSetCacheEntryEventHandling(cacheEntryEvents);
+        LOG.debug("Have update for task definitions");
+        commonTaskDefinitionCacheEntryEventHandling(cacheEntryEvents);
     }
 
     @Override
-    public void onUpdated(Iterable<CacheEntryEvent<? extends TenantKey, ? extends TaskSet>> cacheEntryEvents)
+    public void onRemoved(
+            Iterable<CacheEntryEvent<? extends TaskDefinitionKey, ? extends TaskDefinition>> cacheEntryEvents)
             throws CacheEntryListenerException {
-        LOG.debug("Have update for task-sets");
-        commonTaskSetCacheEntryEventHandling(cacheEntryEvents);
+        LOG.debug("Have removal of task definitions");
+        commonTaskDefinitionCacheEntryEventHandling(cacheEntryEvents);
     }
 
     // ========================================
     // Internals
     // ----------------------------------------
 
-    private void commonTaskSetCacheEntryEventHandling(
-            Iterable<CacheEntryEvent<? extends TenantKey, ? extends TaskSet>> cacheEntryEvents) {
-        Map<TenantKey, TaskSet> dedupMap = new HashMap<>();
+    private void commonTaskDefinitionCacheEntryEventHandling(
+            Iterable<CacheEntryEvent<? extends TaskDefinitionKey, ? extends TaskDefinition>> cacheEntryEvents) {
+        // Only need to send a single notification downstream per Tenant Location.
+        Set<TenantKey> changedTenantLocations = new LinkedHashSet<>();
 
         for (var oneEvent : cacheEntryEvents) {
-            var tenantLocation = oneEvent.getKey();
-            TaskSet taskSet = oneEvent.getValue();
-
-            // Put the last one over any prior ones; only need to send a single notification downstream per Tenant
-            // Location.
-            dedupMap.put(tenantLocation, taskSet);
+            changedTenantLocations.add(oneEvent.getKey().getTenantLocation());
         }
 
-        // Process all of the Tenant Location updates
-        for (var entry : dedupMap.entrySet()) {
-            var tenantLocation = entry.getKey();
-            publishUpdateForTenantLocation(tenantLocation.getTenantId(), tenantLocation.getKey(), entry.getValue());
-        }
-    }
-
-    private void publishUpdateForTenantLocation(String tenantId, String location, TaskSet taskSet)
-            throws CacheEntryListenerException {
-        LOG.debug(
-                "Have update for task-set: tenant-id={}; location={}; num-task={}",
-                tenantId,
-                location,
-                taskSet.getTaskDefinitionCount());
-
-        try {
-            downstreamSession.publish(tenantId, location, taskSet);
-        } catch (IOException ioException) {
-            LOG.error("Failed to update twin subscriber on taskset update", ioException);
-        }
+        changedTenantLocations.forEach(viewPublisher::taskSetChanged);
     }
 }
@@ -22,13 +22,12 @@
 package org.opennms.miniongateway.taskset.internal;
 
 import javax.cache.configuration.Factory;
-import org.opennms.miniongateway.taskset.service.TaskSetStorageListener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Factory that creates listeners for updates to TaskSets in the Ignite Cache and forwards the updates to Twin
- *  subscriptions.
+ * Factory that creates listeners for updates to task definitions in the Ignite Cache and forwards the updated task
+ *  sets to Twin subscriptions.
  */
 public class TaskSetTwinCacheListenerFactory implements Factory<TaskSetTwinCacheListener> {
 
@@ -36,15 +35,15 @@ public class TaskSetTwinCacheListenerFactory implements Factory<TaskSetTwinCache
 
     private Logger LOG = DEFAULT_LOGGER;
 
-    private final TaskSetStorageListener downstreamSession;
+    private final TaskSetViewPublisher viewPublisher;
 
-    public TaskSetTwinCacheListenerFactory(TaskSetStorageListener downstreamSession) {
-        this.downstreamSession = downstreamSession;
+    public TaskSetTwinCacheListenerFactory(TaskSetViewPublisher viewPublisher) {
+        this.viewPublisher = viewPublisher;
     }
 
     @Override
     public TaskSetTwinCacheListener create() {
         LOG.debug("Creating listener for task set updates");
-        return new TaskSetTwinCacheListener(downstreamSession);
+        return new TaskSetTwinCacheListener(viewPublisher);
     }
 }
@@ -0,0 +1,91 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.miniongateway.taskset.internal;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import org.opennms.miniongateway.grpc.server.model.TenantKey;
+import org.opennms.miniongateway.taskset.service.TaskSetStorageListener;
+import org.opennms.taskset.contract.TaskSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Publishes the materialized task set of a Tenant Location after its task definitions changed.
+ *
+ * Changes are coalesced: the first change of a location schedules a publish after a short delay, and further changes
+ *  made before the task set is assembled are covered by that same publish.  A bulk update of thousands of definitions
+ *  therefore results in a handful of publishes instead of one per definition.
+ */
+public class TaskSetViewPublisher {
+
+    private static final Logger DEFAULT_LOGGER = LoggerFactory.getLogger(TaskSetViewPublisher.class);
+
+    private Logger LOG = DEFAULT_LOGGER;
+
+    private final TaskSetStorageListener downstreamSession;
+    private final Function<TenantKey, TaskSet> taskSetAssembler;
+    private final ScheduledExecutorService executor;
+    private final long publishDelayMs;
+
+    private final Set<TenantKey> pending = ConcurrentHashMap.newKeySet();
+
+    public TaskSetViewPublisher(
+            TaskSetStorageListener downstreamSession,
+            Function<TenantKey, TaskSet> taskSetAssembler,
+            ScheduledExecutorService executor,
+            long publishDelayMs) {
+        this.downstreamSession = downstreamSession;
+        this.taskSetAssembler = taskSetAssembler;
+        this.executor = executor;
+        this.publishDelayMs = publishDelayMs;
+    }
+
+    public void taskSetChanged(TenantKey tenantLocation) {
+        if (pending.add(tenantLocation)) {
+            executor.schedule(() -> publish(tenantLocation), publishDelayMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void publish(TenantKey tenantLocation) {
+        // Clear before assembling, so changes made from here on schedule another publish
+        pending.remove(tenantLocation);
+
+        try {
+            TaskSet taskSet = taskSetAssembler.apply(tenantLocation);
+
+            LOG.debug(
+                    "Have update for task-set: tenant-id={}; location={}; num-task={}",
+                    tenantLocation.getTenantId(),
+                    tenantLocation.getKey(),
+                    taskSet.getTaskDefinitionCount());
+
+            downstreamSession.publish(tenantLocation.getTenantId(), tenantLocation.getKey(), taskSet);
+        } catch (IOException | RuntimeException exc) {
+            LOG.error("Failed to update twin subscriber on taskset update", exc);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.miniongateway.grpc.server.kafka;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.BytesValue;
+import io.grpc.Context;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.opennms.horizon.shared.constants.GrpcConstants;
+import org.opennms.horizon.shared.grpc.common.LocationServerInterceptor;
+import org.opennms.horizon.shared.grpc.common.TenantIDGrpcServerInterceptor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.mock.env.MockEnvironment;
+
+/**
+ * Throughput of sink message production to an embedded Kafka broker, with messages of 100 locations.
+ * <p>
+ * {@link #unkeyed} is the former publisher: no record key, producer defaults and a timer lookup per message.
+ * {@link #keyedProfile} is {@link SinkMessageKafkaPublisher} as created by the factory: keyed by tenant and location,
+ * with the default linger, batch size and compression profile and cached meters.
+ */
+@Fork(1)
+@Threads(4)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class SinkMessageKafkaPublisherBenchmark {
+
+    private static final String TOPIC = "sink-benchmark";
+    private static final String TENANT_ID = "x-tenant-id-x";
+    private static final int LOCATION_COUNT = 100;
+
+    @Param({"256", "4096"})
+    public int messageSize;
+
+    private EmbeddedKafkaBroker broker;
+    private KafkaTemplate<String, byte[]> kafkaTemplate;
+    private MeterRegistry meterRegistry;
+    private SinkMessageKafkaPublisher<BytesValue, BytesValue> publisher;
+    private BytesValue message;
+
+    public static void main(String[] args) throws Exception {
+        org.openjdk.jmh.Main.main(args);
+    }
+
+    @Setup
+    public void setUp() {
+        broker = new EmbeddedKafkaBroker(1, true, 8, TOPIC);
+        broker.afterPropertiesSet();
+
+        kafkaTemplate = new KafkaTemplate<>(new DefaultKafkaProducerFactory<>(Map.of(
+                ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, broker.getBrokersAsString(),
+                ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class,
+                ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class)));
+        meterRegistry = new SimpleMeterRegistry();
+
+        SinkMessageKafkaPublisherFactory factory = new SinkMessageKafkaPublisherFactory(
+                new TenantIDGrpcServerInterceptor(),
+                new LocationServerInterceptor(),
+                kafkaTemplate,
+                meterRegistry,
+                new MockEnvironment());
+        publisher = factory.create((tenantId, locationId, bare) -> bare, TOPIC);
+
+        byte[] payload = new byte[messageSize];
+        ThreadLocalRandom.current().nextBytes(payload);
+        message = BytesValue.of(ByteString.copyFrom(payload));
+    }
+
+    @TearDown
+    public void tearDown() {
+        kafkaTemplate.destroy();
+        broker.destroy();
+    }
+
+    @Benchmark
+    public void unkeyed() {
+        String locationId = randomLocation();
+        meterRegistry
+                .timer("kafka.send", "topic", TOPIC, "tenant", TENANT_ID, "location", locationId)
+                .record(() -> kafkaTemplate.send(new ProducerRecord<>(TOPIC, message.toByteArray())));
+    }
+
+    @Benchmark
+    public void keyedProfile() {
+        Context.current()
+                .withValues(
+                        GrpcConstants.TENANT_ID_CONTEXT_KEY, TENANT_ID,
+                        GrpcConstants.LOCATION_ID_CONTEXT_KEY, randomLocation())
+                .run(() -> publisher.send(message));
+    }
+
+    private static String randomLocation() {
+        return "location-" + ThreadLocalRandom.current().nextInt(LOCATION_COUNT);
+    }
+}
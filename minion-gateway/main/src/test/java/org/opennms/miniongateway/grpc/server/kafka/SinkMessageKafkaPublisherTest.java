@@ -21,6 +21,8 @@
  */
 package org.opennms.miniongateway.grpc.server.kafka;
 
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
@@ -29,6 +31,7 @@ import static org.mockito.Mockito.when;
 import com.google.protobuf.Message;
 import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
 import org.apache.kafka.clients.producer.ProducerRecord;
 import org.junit.Before;
 import org.junit.Test;
@@ -39,6 +42,7 @@ import org.opennms.horizon.flows.document.TenantLocationSpecificFlowDocumentLog;
 import org.opennms.horizon.shared.grpc.common.LocationServerInterceptor;
 import org.opennms.horizon.shared.grpc.common.TenantIDGrpcServerInterceptor;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
 
 public class SinkMessageKafkaPublisherTest {
 
@@ -50,6 +54,8 @@ public class SinkMessageKafkaPublisherTest {
     private final LocationServerInterceptor locationServerInterceptor = mock(LocationServerInterceptor.class);
     private final KafkaTemplate<String, byte[]> kafkaTemplate = mock(KafkaTemplate.class);
     private final SinkMessageMapper<Message, Message> mapper = mock(SinkMessageMapper.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CompletableFuture<SendResult<String, byte[]>> sendFuture = new CompletableFuture<>();
     private SinkMessageKafkaPublisher<Message, Message> messagePublisher;
 
     @Before
@@ -60,7 +66,13 @@ public class SinkMessageKafkaPublisherTest {
                 locationServerInterceptor,
                 mapper,
                 TEST_TOPIC_NAME,
-                new SimpleMeterRegistry());
+                meterRegistry,
+                1,
+                0);
+
+        when(kafkaTemplate.send(any(ProducerRecord.class))).thenReturn(sendFuture);
+        when(tenantIDGrpcInterceptor.readCurrentContextTenantId()).thenReturn(TEST_TENANT_ID);
+        when(locationServerInterceptor.readCurrentContextLocationId()).thenReturn(TEST_LOCATION_ID);
     }
 
     @Test
@@ -85,6 +97,38 @@ public class SinkMessageKafkaPublisherTest {
         verify(locationServerInterceptor).readCurrentContextLocationId();
     }
 
+    @Test
+    public void testBoundedInFlight() {
+        var flowsLog = FlowDocumentLog.newBuilder().build();
+        when(mapper.map(TEST_TENANT_ID, TEST_LOCATION_ID, flowsLog)).thenReturn(flowsLog);
+
+        // Only one send may await acknowledgement, the second one is dropped
+        messagePublisher.send(flowsLog);
+        messagePublisher.send(flowsLog);
+        verify(kafkaTemplate, Mockito.times(1)).send(any(ProducerRecord.class));
+        assertEquals(1.0, meterRegistry.get("kafka.send.rejected").counter().count(), 0);
+        assertEquals(1.0, meterRegistry.get("kafka.send.inflight").gauge().value(), 0);
+
+        // Acknowledgement makes room for the next send
+        sendFuture.complete(null);
+        assertEquals(1, meterRegistry.get("kafka.send").timer().count());
+        messagePublisher.send(flowsLog);
+        verify(kafkaTemplate, Mockito.times(2)).send(any(ProducerRecord.class));
+    }
+
+    @Test
+    public void testFailedSend() {
+        var flowsLog = FlowDocumentLog.newBuilder().build();
+        when(mapper.map(TEST_TENANT_ID, TEST_LOCATION_ID, flowsLog)).thenReturn(flowsLog);
+
+        messagePublisher.send(flowsLog);
+        sendFuture.completeExceptionally(new RuntimeException("x-test-exception-x"));
+
+        assertEquals(1.0, meterRegistry.get("kafka.send.failed").counter().count(), 0);
+        assertEquals(0, meterRegistry.get("kafka.send").timer().count());
+        assertEquals(0.0, meterRegistry.get("kafka.send.inflight").gauge().value(), 0);
+    }
+
     static class ProducerRecordMatcher implements ArgumentMatcher<ProducerRecord<String, byte[]>> {
 
         private final String topic;
@@ -97,7 +141,9 @@ public class SinkMessageKafkaPublisherTest {
 
         @Override
         public boolean matches(ProducerRecord<String, byte[]> record) {
-            return topic.equals(record.topic()) && Arrays.equals(payload.toByteArray(), record.value());
+            return topic.equals(record.topic())
+                    && (TEST_TENANT_ID + "/" + TEST_LOCATION_ID).equals(record.key())
+                    && Arrays.equals(payload.toByteArray(), record.value());
         }
     }
 }
@@ -0,0 +1,136 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.miniongateway.grpc.twin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteCache;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.opennms.cloud.grpc.minion.TwinPatchFormat;
+import org.opennms.cloud.grpc.minion.TwinRequestProto;
+import org.opennms.cloud.grpc.minion.TwinResponseProto;
+import org.opennms.horizon.shared.protobuf.util.TaskSetDeltaUtil;
+import org.opennms.miniongateway.grpc.twin.AbstractTwinPublisher.SessionKey;
+import org.opennms.taskset.contract.TaskDefinition;
+import org.opennms.taskset.contract.TaskSet;
+import org.opennms.taskset.contract.TaskSetDelta;
+
+public class AbstractTwinPublisherTest {
+
+    private final Map<SessionKey, TwinTracker> trackers = new HashMap<>();
+    private final List<TwinUpdate> updates = new ArrayList<>();
+
+    private AbstractTwinPublisher target;
+
+    @Before
+    public void setUp() {
+        IgniteCache<SessionKey, TwinTracker> cache = Mockito.mock(IgniteCache.class);
+        Mockito.when(cache.get(any())).thenAnswer(invocation -> trackers.get(invocation.getArgument(0)));
+        Mockito.doAnswer(invocation -> trackers.put(invocation.getArgument(0), invocation.getArgument(1)))
+                .when(cache)
+                .put(any(), any());
+        Ignite ignite = Mockito.mock(Ignite.class);
+        Mockito.when(ignite.<SessionKey, TwinTracker>cache(AbstractTwinPublisher.TWIN_TRACKER_CACHE_NAME))
+                .thenReturn(cache);
+
+        target = new AbstractTwinPublisher(ignite) {
+            @Override
+            protected void handleSinkUpdate(String locationId, TwinUpdate sinkUpdate) {
+                updates.add(sinkUpdate);
+            }
+
+            @Override
+            public void close() {}
+        };
+    }
+
+    @Test
+    public void testPublishesTaskSetDeltas() throws Exception {
+        publish(taskSet("a", "b"));
+        assertEquals(1, updates.size());
+        assertFalse(updates.get(0).isPatch());
+
+        publish(taskSet("a", "b", "c"));
+        assertEquals(2, updates.size());
+        TwinUpdate patch = updates.get(1);
+        assertTrue(patch.isPatch());
+        assertEquals(TwinPatchFormat.TASK_SET_DELTA, patch.getPatchFormat());
+        assertEquals(1, patch.getVersion());
+        TaskSetDelta delta = TaskSetDelta.parseFrom(patch.getObject());
+        assertEquals("c", delta.getAdded(0).getId());
+        assertTrue(delta.getReplacedList().isEmpty());
+        assertTrue(delta.getRemovedList().isEmpty());
+
+        TwinResponseProto response = target.mapTwinResponse(patch);
+        assertEquals(TwinPatchFormat.TASK_SET_DELTA, response.getPatchFormat());
+        assertTrue(response.getIsPatchObject());
+    }
+
+    @Test
+    public void testSkipsUnchangedTaskSet() throws Exception {
+        publish(taskSet("a", "b"));
+        publish(taskSet("a", "b"));
+
+        assertEquals(1, updates.size());
+    }
+
+    @Test
+    public void testFullTwinReflectsDeltas() throws Exception {
+        publish(taskSet("a", "b"));
+        publish(taskSet("b", "c"));
+
+        TwinResponseProto twin = target.getTwinResponse(
+                "x-tenant-id-x",
+                "x-location-x",
+                TwinRequestProto.newBuilder().setConsumerKey("task-set").build());
+        assertFalse(twin.getIsPatchObject());
+        assertEquals(1, twin.getVersion());
+
+        TaskSet applied = TaskSetDeltaUtil.apply(
+                taskSet("a", "b"), TaskSetDelta.parseFrom(updates.get(1).getObject()));
+        assertEquals(TaskSetDeltaUtil.index(taskSet("b", "c")), TaskSetDeltaUtil.index(applied));
+    }
+
+    private void publish(TaskSet taskSet) throws IOException {
+        target.register("task-set", TaskSet.class, "x-tenant-id-x", "x-location-x").publish(taskSet);
+    }
+
+    private static TaskSet taskSet(String... ids) {
+        TaskSet.Builder taskSet = TaskSet.newBuilder();
+        for (String id : ids) {
+            taskSet.addTaskDefinition(
+                    TaskDefinition.newBuilder().setId(id).setPluginName("ICMPMonitor").setSchedule("60000"));
+        }
+        return taskSet.build();
+    }
+}
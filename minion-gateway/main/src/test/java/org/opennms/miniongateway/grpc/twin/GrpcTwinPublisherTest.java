@@ -0,0 +1,174 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.miniongateway.grpc.twin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+
+import com.google.protobuf.ByteString;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.trace.SpanContext;
+import java.util.Collections;
+import java.util.List;
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteCache;
+import org.apache.ignite.cache.query.Query;
+import org.apache.ignite.cache.query.QueryCursor;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.opennms.cloud.grpc.minion.CloudToMinionMessage;
+import org.opennms.cloud.grpc.minion.TwinPatchFormat;
+import org.opennms.cloud.grpc.minion.TwinResponseProto;
+import org.opennms.miniongateway.grpc.twin.AbstractTwinPublisher.SessionKey;
+
+public class GrpcTwinPublisherTest {
+
+    private static final String TENANT_ID = "x-tenant-id-x";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private GrpcTwinPublisher target;
+
+    @Before
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public void setUp() {
+        QueryCursor<?> cursor = Mockito.mock(QueryCursor.class);
+        Mockito.when(cursor.iterator()).thenReturn(Collections.emptyIterator());
+        IgniteCache<SessionKey, TwinTracker> cache = Mockito.mock(IgniteCache.class);
+        Mockito.when(cache.query(any(Query.class))).thenReturn((QueryCursor) cursor);
+        Ignite ignite = Mockito.mock(Ignite.class);
+        Mockito.when(ignite.<SessionKey, TwinTracker>cache(AbstractTwinPublisher.TWIN_TRACKER_CACHE_NAME))
+                .thenReturn(cache);
+
+        target = new GrpcTwinPublisher(
+                ignite, OpenTelemetry.noop().getTracer("test"), false, false, meterRegistry, 2);
+    }
+
+    @Test
+    public void testFanOutByTenantAndLocation() {
+        ServerCallStreamObserver<CloudToMinionMessage> stream1 = connect("minion-1", TENANT_ID, "location-1");
+        ServerCallStreamObserver<CloudToMinionMessage> stream2 = connect("minion-2", TENANT_ID, "location-2");
+        ServerCallStreamObserver<CloudToMinionMessage> otherTenant = connect("minion-3", "x-other-x", "location-1");
+
+        target.handleSinkUpdate("location-1", update(TENANT_ID));
+        Mockito.verify(stream1).onNext(any());
+        Mockito.verify(stream2, Mockito.never()).onNext(any());
+
+        // No location is a broadcast to all locations of the tenant
+        target.handleSinkUpdate(null, update(TENANT_ID));
+        Mockito.verify(stream1, Mockito.times(2)).onNext(any());
+        Mockito.verify(stream2).onNext(any());
+        Mockito.verify(otherTenant, Mockito.never()).onNext(any());
+
+        assertEquals(2, meterRegistry.get("twin.sink.fanout").timer().count());
+    }
+
+    @Test
+    public void testQueuesWhileNotReady() {
+        ServerCallStreamObserver<CloudToMinionMessage> stream = connect("minion-1", TENANT_ID, "location-1");
+        ArgumentCaptor<Runnable> onReady = ArgumentCaptor.forClass(Runnable.class);
+        Mockito.verify(stream).setOnReadyHandler(onReady.capture());
+
+        Mockito.when(stream.isReady()).thenReturn(false);
+        target.handleSinkUpdate("location-1", update(TENANT_ID));
+        target.handleSinkUpdate("location-1", update(TENANT_ID));
+        Mockito.verify(stream, Mockito.never()).onNext(any());
+        assertEquals(2.0, meterRegistry.get("twin.sink.stream.slow").counter().count(), 0);
+
+        Mockito.when(stream.isReady()).thenReturn(true);
+        onReady.getValue().run();
+        Mockito.verify(stream, Mockito.times(2)).onNext(any());
+    }
+
+    @Test
+    public void testClosesStreamThatFallsBehind() {
+        ServerCallStreamObserver<CloudToMinionMessage> stream = connect("minion-1", TENANT_ID, "location-1");
+        Mockito.when(stream.isReady()).thenReturn(false);
+
+        for (int i = 0; i < 3; i++) {
+            target.handleSinkUpdate("location-1", update(TENANT_ID));
+        }
+
+        Mockito.verify(stream).onCompleted();
+        Mockito.verify(stream, Mockito.never()).onNext(any());
+        assertEquals(1.0, meterRegistry.get("twin.sink.stream.dropped").counter().count(), 0);
+
+        // The closed stream no longer receives updates
+        Mockito.when(stream.isReady()).thenReturn(true);
+        target.handleSinkUpdate("location-1", update(TENANT_ID));
+        Mockito.verify(stream, Mockito.never()).onNext(any());
+    }
+
+    @Test
+    public void testSendsTaskSetDeltaOnlyToMinionsSupportingIt() {
+        ServerCallStreamObserver<CloudToMinionMessage> legacy = connect("minion-1", TENANT_ID, "location-1");
+        ServerCallStreamObserver<CloudToMinionMessage> supporting =
+                connect("minion-2", TENANT_ID, "location-1", List.of(TwinPatchFormat.TASK_SET_DELTA));
+
+        TwinUpdate delta = new TwinUpdate("x-key-x", TENANT_ID, "location-1", new byte[] {1});
+        delta.setPatch(true);
+        delta.setPatchFormat(TwinPatchFormat.TASK_SET_DELTA);
+        delta.setFullObject(new byte[] {2});
+        delta.setVersion(3);
+        delta.setSessionId("x-session-x");
+        target.handleSinkUpdate("location-1", delta);
+
+        ArgumentCaptor<CloudToMinionMessage> legacyMessage = ArgumentCaptor.forClass(CloudToMinionMessage.class);
+        Mockito.verify(legacy).onNext(legacyMessage.capture());
+        TwinResponseProto legacyResponse = legacyMessage.getValue().getTwinResponse();
+        assertFalse(legacyResponse.getIsPatchObject());
+        assertEquals(ByteString.copyFrom(new byte[] {2}), legacyResponse.getTwinObject());
+        assertEquals(3, legacyResponse.getVersion());
+        assertEquals("x-session-x", legacyResponse.getSessionId());
+
+        ArgumentCaptor<CloudToMinionMessage> supportingMessage = ArgumentCaptor.forClass(CloudToMinionMessage.class);
+        Mockito.verify(supporting).onNext(supportingMessage.capture());
+        TwinResponseProto supportingResponse = supportingMessage.getValue().getTwinResponse();
+        assertTrue(supportingResponse.getIsPatchObject());
+        assertEquals(TwinPatchFormat.TASK_SET_DELTA, supportingResponse.getPatchFormat());
+        assertEquals(ByteString.copyFrom(new byte[] {1}), supportingResponse.getTwinObject());
+        assertEquals(3, supportingResponse.getVersion());
+    }
+
+    private ServerCallStreamObserver<CloudToMinionMessage> connect(String systemId, String tenantId, String location) {
+        return connect(systemId, tenantId, location, List.of());
+    }
+
+    @SuppressWarnings("unchecked")
+    private ServerCallStreamObserver<CloudToMinionMessage> connect(
+            String systemId, String tenantId, String location, List<TwinPatchFormat> twinPatchFormats) {
+        ServerCallStreamObserver<CloudToMinionMessage> stream = Mockito.mock(ServerCallStreamObserver.class);
+        Mockito.when(stream.isReady()).thenReturn(true);
+        target.create(systemId, tenantId, location, twinPatchFormats, SpanContext.getInvalid(), stream);
+        return stream;
+    }
+
+    private static TwinUpdate update(String tenantId) {
+        return new TwinUpdate("x-key-x", tenantId, null, new byte[] {1});
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.miniongateway.grpc.twin;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.github.fge.jsonpatch.diff.JsonDiff;
+import com.google.protobuf.Any;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.opennms.horizon.shared.protobuf.marshalling.ProtoBufJsonSerializer;
+import org.opennms.horizon.shared.protobuf.util.TaskSetDeltaUtil;
+import org.opennms.icmp.contract.IcmpMonitorRequest;
+import org.opennms.taskset.contract.TaskDefinition;
+import org.opennms.taskset.contract.TaskSet;
+import org.opennms.taskset.contract.TaskSetDelta;
+import org.opennms.taskset.contract.TaskType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Cost of the patch for a task set update adding a single monitor, depending on the size of the task set.
+ * <p>
+ * {@link #jsonDiff} is the generic twin patch, parsing the JSON of both versions and diffing the trees.
+ * {@link #taskSetDelta} indexes the new version and diffs it against the index retained from the previous publish.
+ * Both start from what the publisher has at hand: the serialized previous version and the new task set.
+ */
+@Fork(1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class TaskSetDeltaBenchmark {
+
+    @Param({"1000", "10000", "50000"})
+    public int size;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private byte[] previousJson;
+    private Map<String, TaskDefinition> previousIndex;
+    private TaskSet current;
+    private byte[] currentJson;
+
+    public static void main(String[] args) throws Exception {
+        org.openjdk.jmh.Main.main(args);
+    }
+
+    @Setup
+    public void setUp() throws IOException {
+        SimpleModule module = new SimpleModule();
+        module.addSerializer(new ProtoBufJsonSerializer<>(TaskSet.class));
+        objectMapper.registerModule(module);
+
+        TaskSet.Builder taskSet = TaskSet.newBuilder();
+        for (int i = 0; i < size; i++) {
+            taskSet.addTaskDefinition(monitor(i));
+        }
+        TaskSet previous = taskSet.build();
+        current = taskSet.addTaskDefinition(monitor(size)).build();
+
+        previousJson = objectMapper.writeValueAsBytes(previous);
+        previousIndex = TaskSetDeltaUtil.index(previous);
+        currentJson = objectMapper.writeValueAsBytes(current);
+    }
+
+    @Benchmark
+    public JsonNode jsonDiff() throws IOException {
+        JsonNode source = objectMapper.readTree(previousJson);
+        JsonNode target = objectMapper.readTree(currentJson);
+        return JsonDiff.asJson(source, target);
+    }
+
+    @Benchmark
+    public TaskSetDelta taskSetDelta() {
+        return TaskSetDeltaUtil.diff(previousIndex, TaskSetDeltaUtil.index(current));
+    }
+
+    private static TaskDefinition monitor(int i) {
+        String ip = "10." + (i >> 16 & 0xFF) + "." + (i >> 8 & 0xFF) + "." + (i & 0xFF);
+        return TaskDefinition.newBuilder()
+                .setId("nodeId:" + i + "/ip=" + ip + "/ICMPMonitor")
+                .setType(TaskType.MONITOR)
+                .setPluginName("ICMPMonitor")
+                .setNodeId(i)
+                .setSchedule("60000")
+                .setConfiguration(Any.pack(IcmpMonitorRequest.newBuilder()
+                        .setHost(ip)
+                        .setTimeout(800)
+                        .setRetries(2)
+                        .build()))
+                .putMetricLabels("instance", ip)
+                .build();
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.miniongateway.taskset.internal;
+
+import com.google.protobuf.Any;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteCache;
+import org.apache.ignite.Ignition;
+import org.apache.ignite.cache.CacheAtomicityMode;
+import org.apache.ignite.configuration.CacheConfiguration;
+import org.apache.ignite.configuration.IgniteConfiguration;
+import org.apache.ignite.spi.discovery.tcp.TcpDiscoverySpi;
+import org.apache.ignite.spi.discovery.tcp.ipfinder.vm.TcpDiscoveryVmIpFinder;
+import org.opennms.icmp.contract.IcmpMonitorRequest;
+import org.opennms.miniongateway.grpc.server.model.TenantKey;
+import org.opennms.miniongateway.taskset.service.TaskSetGrpcServiceUpdateProcessor;
+import org.opennms.taskset.contract.TaskDefinition;
+import org.opennms.taskset.contract.TaskSet;
+import org.opennms.taskset.contract.TaskType;
+import org.opennms.taskset.service.contract.AddSingleTaskOp;
+import org.opennms.taskset.service.contract.UpdateSingleTaskOp;
+import org.opennms.taskset.service.contract.UpdateTasksRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Throughput of concurrent task set updates of a single location on a local, single node Ignite cluster.
+ * <p>
+ * Every operation replaces {@code batchSize} random definitions of a location holding {@code size} definitions, as
+ * inventory does when it re-onboards nodes.  {@link #lockAndRewrite} is the former storage: a lock on the TaskSet
+ * entry, then read, rebuild and write the whole TaskSet.  {@link #perDefinition} is
+ * {@link TaskSetIgniteStorageImpl#updateTaskDefinitions}, which only touches the definitions in the batch.
+ */
+@Fork(1)
+@Threads(4)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class TaskSetStorageBenchmark {
+
+    private static final String TENANT_ID = "x-tenant-id-x";
+    private static final String LOCATION_ID = "x-location-x";
+
+    @Param({"1000", "10000"})
+    public int size;
+
+    @Param({"1", "100"})
+    public int batchSize;
+
+    private Ignite ignite;
+    private IgniteCache<TenantKey, TaskSet> taskSetCache;
+    private TaskSetIgniteStorageImpl storage;
+
+    public static void main(String[] args) throws Exception {
+        org.openjdk.jmh.Main.main(args);
+    }
+
+    @Setup
+    public void setUp() {
+        TcpDiscoveryVmIpFinder ipFinder = new TcpDiscoveryVmIpFinder();
+        ipFinder.setAddresses(List.of("127.0.0.1:47500..47509"));
+
+        ignite = Ignition.start(new IgniteConfiguration()
+                .setIgniteInstanceName("task-set-storage-benchmark")
+                .setDiscoverySpi(new TcpDiscoverySpi().setIpFinder(ipFinder)));
+
+        taskSetCache = ignite.getOrCreateCache(new CacheConfiguration<TenantKey, TaskSet>("taskSetCache")
+                .setAtomicityMode(CacheAtomicityMode.TRANSACTIONAL));
+        ignite.getOrCreateCache(new CacheConfiguration<TaskDefinitionKey, TaskDefinition>(
+                        TaskSetIgniteStorageImpl.TASK_DEFINITION_IGNITE_CACHE_NAME)
+                .setAtomicityMode(CacheAtomicityMode.ATOMIC));
+        storage = new TaskSetIgniteStorageImpl(ignite, TaskSetIgniteStorageImpl.DEFAULT_PUBLISH_DELAY_MS);
+
+        TaskSet.Builder taskSet = TaskSet.newBuilder();
+        for (int i = 0; i < size; i++) {
+            taskSet.addTaskDefinition(monitor(i, 800));
+        }
+        taskSetCache.put(new TenantKey(TENANT_ID, LOCATION_ID), taskSet.build());
+        storage.putTaskSetForLocation(TENANT_ID, LOCATION_ID, taskSet.build());
+    }
+
+    @TearDown
+    public void tearDown() {
+        storage.shutdown();
+        ignite.close();
+    }
+
+    @Benchmark
+    public int lockAndRewrite() {
+        TaskSetGrpcServiceUpdateProcessor processor = new TaskSetGrpcServiceUpdateProcessor(randomUpdate());
+        TenantKey tenantKey = new TenantKey(TENANT_ID, LOCATION_ID);
+
+        Lock lock = taskSetCache.lock(tenantKey);
+        lock.lock();
+        try {
+            TaskSet current = taskSetCache.get(tenantKey);
+            TaskSet updated = processor.process(current);
+            if (updated != current) {
+                taskSetCache.put(tenantKey, updated);
+            }
+        } finally {
+            lock.unlock();
+        }
+        return processor.getNumReplaced();
+    }
+
+    @Benchmark
+    public int perDefinition() {
+        TaskSetGrpcServiceUpdateProcessor processor = new TaskSetGrpcServiceUpdateProcessor(randomUpdate());
+
+        storage.updateTaskDefinitions(TENANT_ID, LOCATION_ID, processor);
+        return processor.getNumReplaced();
+    }
+
+    private UpdateTasksRequest randomUpdate() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        UpdateTasksRequest.Builder request =
+                UpdateTasksRequest.newBuilder().setTenantId(TENANT_ID).setLocationId(LOCATION_ID);
+        for (int i = 0; i < batchSize; i++) {
+            request.addUpdate(UpdateSingleTaskOp.newBuilder()
+                    .setAddTask(AddSingleTaskOp.newBuilder()
+                            .setTaskDefinition(monitor(random.nextInt(size), random.nextInt(500, 1000)))));
+        }
+        return request.build();
+    }
+
+    private static TaskDefinition monitor(int i, int timeout) {
+        String ip = "10." + (i >> 16 & 0xFF) + "." + (i >> 8 & 0xFF) + "." + (i & 0xFF);
+        return TaskDefinition.newBuilder()
+                .setId("nodeId:" + i + "/ip=" + ip + "/ICMPMonitor")
+                .setType(TaskType.MONITOR)
+                .setPluginName("ICMPMonitor")
+                .setNodeId(i)
+                .setSchedule("60000")
+                .setConfiguration(Any.pack(IcmpMonitorRequest.newBuilder()
+                        .setHost(ip)
+                        .setTimeout(timeout)
+                        .setRetries(2)
+                        .build()))
+                .putMetricLabels("instance", ip)
+                .build();
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.miniongateway.taskset.internal;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.opennms.miniongateway.grpc.server.model.TenantKey;
+import org.opennms.miniongateway.taskset.service.TaskSetStorageListener;
+import org.opennms.taskset.contract.TaskDefinition;
+import org.opennms.taskset.contract.TaskSet;
+
+public class TaskSetViewPublisherTest {
+
+    private final TenantKey testTenantLocation = new TenantKey("x-tenant-id-x", "x-location-x");
+    private final TaskSet testTaskSet = TaskSet.newBuilder()
+            .addTaskDefinition(TaskDefinition.newBuilder().setId("x-task-001-id-x"))
+            .build();
+
+    private TaskSetStorageListener mockListener;
+    private ScheduledExecutorService mockExecutor;
+    private AtomicInteger assembleCount;
+
+    private TaskSetViewPublisher target;
+
+    @Before
+    public void setUp() {
+        mockListener = Mockito.mock(TaskSetStorageListener.class);
+        mockExecutor = Mockito.mock(ScheduledExecutorService.class);
+        assembleCount = new AtomicInteger();
+
+        target = new TaskSetViewPublisher(
+                mockListener,
+                tenantLocation -> {
+                    assembleCount.incrementAndGet();
+                    return testTaskSet;
+                },
+                mockExecutor,
+                100);
+    }
+
+    @Test
+    public void testCoalescesChangesUntilPublished() throws Exception {
+        //
+        // Execute
+        //
+        target.taskSetChanged(testTenantLocation);
+        target.taskSetChanged(testTenantLocation);
+        target.taskSetChanged(new TenantKey("x-tenant-id-x", "x-other-location-x"));
+
+        List<Runnable> scheduled = captureScheduled(2);
+        scheduled.get(0).run();
+        target.taskSetChanged(testTenantLocation);
+
+        //
+        // Verify the Results
+        //
+        assertEquals(1, assembleCount.get());
+        Mockito.verify(mockListener).publish("x-tenant-id-x", "x-location-x", testTaskSet);
+        // A change after the publish schedules the next one
+        assertEquals(3, captureScheduled(3).size());
+    }
+
+    private List<Runnable> captureScheduled(int expectedCount) {
+        ArgumentCaptor<Runnable> captor = ArgumentCaptor.forClass(Runnable.class);
+        Mockito.verify(mockExecutor, Mockito.times(expectedCount))
+                .schedule(captor.capture(), Mockito.eq(100L), Mockito.eq(TimeUnit.MILLISECONDS));
+        return new ArrayList<>(captor.getAllValues());
+    }
+}
@@ -90,7 +90,7 @@ public class TaskSetGrpcService extends TaskSetServiceGrpc.TaskSetServiceImplBas
         TaskSetGrpcServiceUpdateProcessor updateProcessor = taskSetGrpcServiceUpdateProcessorFactory.create(request);
 
         try {
-            taskSetStorage.atomicUpdateTaskSetForLocation(
+            taskSetStorage.updateTaskDefinitions(
                     request.getTenantId(), request.getLocationId(), updateProcessor);
         } catch (RuntimeException rtExc) {
             // Log exceptions here that might otherwise get swallowed
@@ -21,9 +21,14 @@
  */
 package org.opennms.miniongateway.taskset.service;
 
+import java.util.Collection;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
 import java.util.Set;
 import lombok.Getter;
+import org.opennms.taskset.contract.TaskDefinition;
 import org.opennms.taskset.contract.TaskSet;
 import org.opennms.taskset.service.contract.UpdateTasksRequest;
 import org.slf4j.Logger;
@@ -32,7 +37,7 @@ import org.slf4j.LoggerFactory;
 /**
  * Process task set updates in the TaskSetGrpcService.
  */
-public class TaskSetGrpcServiceUpdateProcessor implements TaskSetStorageUpdateFunction {
+public class TaskSetGrpcServiceUpdateProcessor implements TaskSetStorageUpdateFunction, TaskSetStorageBatchUpdate {
 
     private static final Logger LOG = LoggerFactory.getLogger(TaskSetGrpcServiceUpdateProcessor.class);
 
@@ -78,8 +83,6 @@ public class TaskSetGrpcServiceUpdateProcessor implements TaskSetStorageUpdateFu
     // ----------------------------------------
 
     /**
-     * CRITICAL SECTION WARNING - this method is called with a distributed lock held.  Keep it short and sweet.
-     *
      * Process the updates given to the Task Set.  Note that existing task definitions with the same IDs as added ones
      *  are replaced by the new ones.
      *
@@ -127,6 +130,58 @@ public class TaskSetGrpcServiceUpdateProcessor implements TaskSetStorageUpdateFu
         return result;
     }
 
+    // ========================================
+    // Batch Update
+    // ----------------------------------------
+
+    @Override
+    public Collection<String> getRemovedTaskIds() {
+        Set<String> removedTaskIds = new LinkedHashSet<>();
+        for (var update : updateTasksRequest.getUpdateList()) {
+            if (update.hasRemoveTask()) {
+                removedTaskIds.add(update.getRemoveTask().getTaskId());
+            }
+        }
+        return removedTaskIds;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * If the request adds multiple task definitions with the same ID, the last one wins.
+     */
+    @Override
+    public Collection<TaskDefinition> getUpsertedTaskDefinitions() {
+        Map<String, TaskDefinition> upserted = new LinkedHashMap<>();
+        for (var update : updateTasksRequest.getUpdateList()) {
+            if (update.hasAddTask()) {
+                var taskDefinition = update.getAddTask().getTaskDefinition();
+                upserted.put(taskDefinition.getId(), taskDefinition);
+            } else if (!update.hasRemoveTask()) {
+                LOG.error(
+                        "Ignoring unrecognized update request with no add-task and no remove-task: tenantId={}; locationId={}",
+                        updateTasksRequest.getTenantId(),
+                        updateTasksRequest.getLocationId());
+            }
+        }
+        return upserted.values();
+    }
+
+    @Override
+    public void completed(int numNew, int numReplaced, int numRemoved) {
+        this.numNew = numNew;
+        this.numReplaced = numReplaced;
+        this.numRemoved = numRemoved;
+
+        LOG.debug(
+                "Updated tasks: tenantId={}; locationId={}; added-count={}; replaced-count={}; removed-count={}",
+                updateTasksRequest.getTenantId(),
+                updateTasksRequest.getLocationId(),
+                numNew,
+                numReplaced,
+                numRemoved);
+    }
+
     // ========================================
     // Internals
     // ----------------------------------------
@@ -63,7 +63,7 @@ public class TaskSetPublishKafkaConsumer {
                     taskSetGrpcServiceUpdateProcessorFactory.create(request);
 
             try {
-                taskSetStorage.atomicUpdateTaskSetForLocation(
+                taskSetStorage.updateTaskDefinitions(
                         request.getTenantId(), request.getLocationId(), updateProcessor);
             } catch (RuntimeException rtExc) {
                 // Log exceptions here that might otherwise get swallowed
@@ -31,21 +31,15 @@ public interface TaskSetStorage {
     boolean deleteTaskSetForLocation(String tenantId, String locationId);
 
     /**
-     * Atomically update the task set for the given Tenant Location.  The given update operation function is called
-     *  with a distributed lock on the entry.
-     *
-     *      - It is VERY IMPORTANT that the updateOp execute quickly as it is called in a critical section, not to
-     *        mention that the lock is distributed, so contention across multiple service instances is a concern.
+     * Apply a batch of removals and upserts to the individual task definitions of the given Tenant Location.  Each task
+     *  definition is updated atomically on its own; no lock is taken on the task set as a whole, so concurrent batches
+     *  for the same location do not serialize on each other.  Definitions not named in the batch are left untouched.
      *
      * @param tenantId ID of the Tenant to which the Task Set belongs.
      * @param locationId location to which the Task Set belongs.
-     * @param updateFunction function that receives the original Task Set for the location (or null if none currently
-     *                       exists) and returns one of the following: (1) null to indicate the task set should be
-     *                       removed; (2) the original task set itself, in which case the cache is not updated; (3) a
-     *                       new TaskSet instance, in which case the cache entry is updated to the new instance.
+     * @param batchUpdate removals and upserts to apply; notified with the resulting counts once applied.
      */
-    void atomicUpdateTaskSetForLocation(
-            String tenantId, String locationId, TaskSetStorageUpdateFunction updateFunction);
+    void updateTaskDefinitions(String tenantId, String locationId, TaskSetStorageBatchUpdate batchUpdate);
 
     /**
      * Add a listener for all TaskSet updates.
@@ -0,0 +1,50 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.miniongateway.taskset.service;
+
+import java.util.Collection;
+import org.opennms.taskset.contract.TaskDefinition;
+
+/**
+ * Batch of task definition updates applied to the individual definitions of a task set, without reading or rewriting
+ *  the task set as a whole.
+ */
+public interface TaskSetStorageBatchUpdate {
+    /**
+     * @return IDs of the task definitions to remove; removals are applied before the upserts.
+     */
+    Collection<String> getRemovedTaskIds();
+
+    /**
+     * @return task definitions to store; each one replaces an existing task definition with the same ID.
+     */
+    Collection<TaskDefinition> getUpsertedTaskDefinitions();
+
+    /**
+     * Called once the batch has been applied.
+     *
+     * @param numNew number of upserted task definitions that did not exist before.
+     * @param numReplaced number of upserted task definitions that replaced an existing one.
+     * @param numRemoved number of removed task definitions that actually existed.
+     */
+    void completed(int numNew, int numReplaced, int numRemoved);
+}
@@ -125,8 +125,7 @@ class TaskSetGrpcServiceTest {
         //
         InOrder inOrder = Mockito.inOrder(mockUpdateTasksRepsonseStreamObserver);
 
-        // The response counts are both zero because the callback passed to atomicUpdateTaskSetForLocation has not
-        //  been executed.
+        // The response counts come from the processor, which the storage notifies once the batch is applied.
         inOrder.verify(mockUpdateTasksRepsonseStreamObserver)
                 .onNext(Mockito.argThat((response) -> response.getNumNew() == 13
                         && response.getNumRemoved() == 15
@@ -142,7 +141,7 @@ class TaskSetGrpcServiceTest {
         RuntimeException testException = new RuntimeException("x-test-exception-x");
         Mockito.doThrow(testException)
                 .when(mockTaskSetStorage)
-                .atomicUpdateTaskSetForLocation("x-tenant-id-x", "505050", mockTaskSetGrpcServiceUpdateProcessor);
+                .updateTaskDefinitions("x-tenant-id-x", "505050", mockTaskSetGrpcServiceUpdateProcessor);
 
         //
         // Execute
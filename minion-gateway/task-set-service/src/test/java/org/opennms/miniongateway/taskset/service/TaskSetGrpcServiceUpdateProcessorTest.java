@@ -23,6 +23,7 @@ package org.opennms.miniongateway.taskset.service;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.util.List;
 import nl.altindag.log.LogCaptor;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -269,4 +270,54 @@ class TaskSetGrpcServiceUpdateProcessorTest {
         assertEquals(0, target.getNumRemoved());
         assertEquals(0, target.getNumReplaced());
     }
+
+    @Test
+    void testBatchUpdateAdd1Remove1() {
+        //
+        // Setup Test Data and Interactions
+        //
+        var target = new TaskSetGrpcServiceUpdateProcessor(testRequestAdd1Remove1);
+
+        //
+        // Execute
+        //
+        var removedTaskIds = target.getRemovedTaskIds();
+        var upsertedTaskDefinitions = target.getUpsertedTaskDefinitions();
+        target.completed(1, 0, 1);
+
+        //
+        // Verify the Results
+        //
+        assertEquals(List.of("x-task-002-id-x"), List.copyOf(removedTaskIds));
+        assertEquals(List.of(testTaskDefinition1), List.copyOf(upsertedTaskDefinitions));
+        assertEquals(1, target.getNumNew());
+        assertEquals(1, target.getNumRemoved());
+        assertEquals(0, target.getNumReplaced());
+    }
+
+    @Test
+    void testBatchUpdateLastAddWins() {
+        //
+        // Setup Test Data and Interactions
+        //
+        TaskDefinition testTaskDefinition1Updated =
+                testTaskDefinition1.toBuilder().setPluginName("x-other-plugin-x").build();
+        UpdateTasksRequest testRequest = testRequestAdd1.toBuilder()
+                .addUpdate(UpdateSingleTaskOp.newBuilder()
+                        .setAddTask(AddSingleTaskOp.newBuilder().setTaskDefinition(testTaskDefinition1Updated)))
+                .addUpdate(UpdateSingleTaskOp.newBuilder().build())
+                .build();
+        var target = new TaskSetGrpcServiceUpdateProcessor(testRequest);
+
+        //
+        // Execute
+        //
+        var upsertedTaskDefinitions = target.getUpsertedTaskDefinitions();
+
+        //
+        // Verify the Results
+        //
+        assertEquals(List.of(testTaskDefinition1Updated), List.copyOf(upsertedTaskDefinitions));
+        assertTrue(target.getRemovedTaskIds().isEmpty());
+    }
 }
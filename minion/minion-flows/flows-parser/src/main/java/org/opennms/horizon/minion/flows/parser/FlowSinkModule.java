@@ -132,6 +132,12 @@ public class FlowSinkModule implements SinkModule<FlowDocument, FlowDocumentLog>
             public int getNumThreads() {
                 return 1;
             }
+
+            @Override
+            public int getMaxBatchSize() {
+                // Ship whatever piled up during flow storms in a single stream message
+                return 100;
+            }
         };
     }
 }
@@ -23,9 +23,11 @@ package org.opennms.horizon.minion.grpc;
 
 import static org.opennms.horizon.shared.ipc.rpc.api.RpcModule.MINION_HEADERS_MODULE;
 
+import com.codahale.metrics.Gauge;
 import com.codahale.metrics.MetricRegistry;
 import com.google.protobuf.ByteString;
 import com.google.protobuf.Empty;
+import com.google.protobuf.InvalidProtocolBufferException;
 import com.google.protobuf.Message;
 import io.grpc.Context;
 import io.grpc.ManagedChannel;
@@ -36,15 +38,12 @@ import io.opentracing.Tracer;
 import java.io.IOException;
 import java.security.cert.CertificateExpiredException;
 import java.security.cert.CertificateNotYetValidException;
-import java.util.Map;
+import java.util.List;
 import java.util.Objects;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
@@ -57,11 +56,14 @@ import org.opennms.cloud.grpc.minion.MinionToCloudMessage;
 import org.opennms.cloud.grpc.minion.RpcRequestProto;
 import org.opennms.cloud.grpc.minion.RpcResponseProto;
 import org.opennms.cloud.grpc.minion.SinkMessage;
+import org.opennms.cloud.grpc.minion.SinkMessageBatch;
+import org.opennms.cloud.grpc.minion.TwinPatchFormat;
 import org.opennms.horizon.minion.grpc.channel.ManagedChannelFactory;
 import org.opennms.horizon.minion.grpc.rpc.RpcRequestHandler;
 import org.opennms.horizon.shared.ipc.rpc.IpcIdentity;
 import org.opennms.horizon.shared.ipc.rpc.api.minion.ClientRequestDispatcher;
 import org.opennms.horizon.shared.ipc.sink.api.MessageConsumerManager;
+import org.opennms.horizon.shared.ipc.sink.api.SendQueue;
 import org.opennms.horizon.shared.ipc.sink.api.SendQueueFactory;
 import org.opennms.horizon.shared.ipc.sink.api.SinkModule;
 import org.opennms.horizon.shared.ipc.sink.common.AbstractMessageDispatcherFactory;
@@ -81,13 +83,17 @@ import org.slf4j.MDC.MDCCloseable;
  * Minion also sends it's headers (SystemId/location) to OpenNMS whenever the stub is initialized.
  * <p>
  * Sink: Sink runs in uni-directional streaming mode. If the sink module is async and OpenNMS Server is not active, the
- * messages are buffered and blocked till minion is able to connect to OpenNMS.
+ * messages are buffered and blocked till minion is able to connect to OpenNMS. Messages of async modules are taken from
+ * the queue in batches and shipped as a single {@link SinkMessageBatch} stream message. Messages of async modules that
+ * cannot be sent are parked in a persistent replay queue and sent in order by a single replay loop once the stream is
+ * back. New messages are parked as well as long as the replay backlog is not empty, so they never overtake older ones.
  */
 public class MinionGrpcClient extends AbstractMessageDispatcherFactory<String> implements ClientRequestDispatcher {
 
     private static final Logger LOG = LoggerFactory.getLogger(MinionGrpcClient.class);
     private static final long SINK_BLOCKING_TIMEOUT = 1000;
-    private static final int SINK_BLOCKING_THREAD_POOL_SIZE = 100;
+    private static final long SINK_REPLAY_SHUTDOWN_TIMEOUT = 10_000;
+    static final String SINK_REPLAY_QUEUE_ID = "sink-replay";
     private ManagedChannel channel;
     private CloudServiceStub asyncStub;
     private IpcIdentity ipcIdentity;
@@ -96,15 +102,14 @@ public class MinionGrpcClient extends AbstractMessageDispatcherFactory<String> i
     private StreamObserver<MinionToCloudMessage> sinkStream;
     private Context.CancellableContext cloudToMinionStreamCancellableContext;
 
-    private final AtomicLong counter = new AtomicLong();
-    private final ThreadFactory blockingSinkMessageThreadFactory =
-            (runnable) -> new Thread(runnable, "blocking-sink-message-" + counter.incrementAndGet());
-    // Each request is handled in a new thread which unmarshals and executes the request.
-    // This maintains a blocking thread for each dispatch module when OpenNMS is not in active state.
-
-    private final ScheduledExecutorService blockingSinkMessageScheduler =
-            Executors.newScheduledThreadPool(SINK_BLOCKING_THREAD_POOL_SIZE, blockingSinkMessageThreadFactory);
-    private final Map<SinkMessage, ScheduledFuture<?>> pendingMessages = new ConcurrentHashMap<>(2000);
+    // Replays the messages parked while OpenNMS is not in active state, one at a time and in order.
+    private final ExecutorService sinkReplayExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "sink-replay");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicLong replayBacklog = new AtomicLong();
+    private SendQueue replayQueue;
     private final Tracer tracer;
     private final ManagedChannelFactory managedChannelFactory;
 
@@ -153,6 +158,8 @@ public class MinionGrpcClient extends AbstractMessageDispatcherFactory<String> i
         this.sendQueueFactory = Objects.requireNonNull(sendQueueFactory);
         this.managedChannelFactory = managedChannelFactory;
         this.grpcShutdownHandler = grpcShutdownHandler;
+
+        metricRegistry.register(MetricRegistry.name("sink", "replay-backlog"), (Gauge<Long>) replayBacklog::get);
     }
 
     // ========================================
@@ -160,6 +167,11 @@ public class MinionGrpcClient extends AbstractMessageDispatcherFactory<String> i
     // ----------------------------------------
 
     public void start() throws IOException {
+        // Messages parked before a restart are replayed first
+        replayQueue = sendQueueFactory.createQueue(SINK_REPLAY_QUEUE_ID);
+        replayBacklog.set(replayQueue.size());
+        sinkReplayExecutor.execute(this::replayParkedSinkMessages);
+
         channel = managedChannelFactory.create(grpcHost, grpcPort, overrideAuthority);
         asyncStub = newStubOperation.apply(channel);
 
@@ -171,7 +183,14 @@ public class MinionGrpcClient extends AbstractMessageDispatcherFactory<String> i
     }
 
     public void shutdown() {
-        blockingSinkMessageScheduler.shutdown();
+        sinkReplayExecutor.shutdownNow();
+        if (replayQueue != null && awaitSinkReplay()) {
+            try {
+                replayQueue.close();
+            } catch (Exception e) {
+                LOG.warn("Failed to persist parked sink messages", e);
+            }
+        }
         if (rpcStream != null) {
             rpcStream.onCompleted();
         }
@@ -184,6 +203,22 @@ public class MinionGrpcClient extends AbstractMessageDispatcherFactory<String> i
         LOG.info("Minion with systemId {} stopped", ipcIdentity.getId());
     }
 
+    /**
+     * @return whether the replay loop stopped, so the replay queue can be closed
+     */
+    private boolean awaitSinkReplay() {
+        try {
+            if (sinkReplayExecutor.awaitTermination(SINK_REPLAY_SHUTDOWN_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+            LOG.error("Sink replay did not stop in time, not persisting parked sink messages");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOG.error("Interrupted while waiting for the sink replay to stop, not persisting parked sink messages");
+        }
+        return false;
+    }
+
     // ========================================
     // Misc
     // ----------------------------------------
@@ -213,18 +248,38 @@ public class MinionGrpcClient extends AbstractMessageDispatcherFactory<String> i
     public <S extends Message, T extends Message> void dispatch(
             SinkModule<S, T> module, String metadata, byte[] message) {
         try (MDCCloseable mdc = MDC.putCloseable("prefix", MessageConsumerManager.LOG_PREFIX)) {
-            String messageId = UUID.randomUUID().toString();
-            SinkMessage.Builder sinkMessageBuilder = SinkMessage.newBuilder()
-                    .setMessageId(messageId)
-                    .setModuleId(module.getId())
-                    .setContent(ByteString.copyFrom(message));
+            MinionToCloudMessage cloudMessage = MinionToCloudMessage.newBuilder()
+                    .setSinkMessage(buildSinkMessage(module, message))
+                    .build();
 
             // If module has asyncpolicy, keep attempting to send message.
             if (module.getAsyncPolicy() != null) {
-                sendBlockingSinkMessage(sinkMessageBuilder.build());
+                sendBlockingSinkMessage(cloudMessage);
             } else {
-                sendSinkMessage(sinkMessageBuilder.build());
+                sendSinkMessage(cloudMessage);
+            }
+        }
+    }
+
+    @Override
+    public <S extends Message, T extends Message> void dispatch(
+            SinkModule<S, T> module, String metadata, List<byte[]> messages) {
+        if (messages.size() == 1) {
+            dispatch(module, metadata, messages.get(0));
+            return;
+        }
+
+        try (MDCCloseable mdc = MDC.putCloseable("prefix", MessageConsumerManager.LOG_PREFIX)) {
+            SinkMessageBatch.Builder batchBuilder = SinkMessageBatch.newBuilder();
+            for (byte[] message : messages) {
+                batchBuilder.addMessages(buildSinkMessage(module, message));
             }
+            MinionToCloudMessage cloudMessage = MinionToCloudMessage.newBuilder()
+                    .setSinkMessageBatch(batchBuilder)
+                    .build();
+
+            // Batches are only taken from the queues of async modules, keep attempting to send them.
+            sendBlockingSinkMessage(cloudMessage);
         }
     }
 
@@ -325,8 +380,11 @@ public class MinionGrpcClient extends AbstractMessageDispatcherFactory<String> i
     }
 
     private void initializeCloudReceiver() {
-        Identity identity =
-                Identity.newBuilder().setSystemId(ipcIdentity.getId()).build();
+        // The twin subscriber applies task set deltas, so the gateway may send them instead of full task sets
+        Identity identity = Identity.newBuilder()
+                .setSystemId(ipcIdentity.getId())
+                .addTwinPatchFormats(TwinPatchFormat.TASK_SET_DELTA)
+                .build();
 
         cloudToMinionStreamCancellableContext = Context.current().withCancellation();
         cloudToMinionStreamCancellableContext.run(() -> {
@@ -335,36 +393,86 @@ public class MinionGrpcClient extends AbstractMessageDispatcherFactory<String> i
         });
     }
 
-    private void sendBlockingSinkMessage(SinkMessage sinkMessage) {
-        boolean succeeded = sendSinkMessage(sinkMessage);
-        if (succeeded) {
-            return;
+    private static SinkMessage buildSinkMessage(SinkModule<?, ?> module, byte[] message) {
+        return SinkMessage.newBuilder()
+                .setMessageId(UUID.randomUUID().toString())
+                .setModuleId(module.getId())
+                .setContent(ByteString.copyFrom(message))
+                .build();
+    }
+
+    private void sendBlockingSinkMessage(MinionToCloudMessage sinkMessage) {
+        synchronized (this) {
+            // Never overtake parked messages, they are replayed in order
+            if (replayBacklog.get() == 0 && sendSinkMessage(sinkMessage)) {
+                return;
+            }
+            replayBacklog.incrementAndGet();
+        }
+
+        // Blocks if the queue is full, which pushes back on the dispatcher instead of growing unbounded
+        try {
+            replayQueue.enqueue(sinkMessage.toByteArray());
+        } catch (InterruptedException e) {
+            replayBacklog.decrementAndGet();
+            Thread.currentThread().interrupt();
+            LOG.warn("Interrupted while parking sink message, dropping it");
+        }
+    }
+
+    private void replayParkedSinkMessages() {
+        while (!Thread.currentThread().isInterrupted()) {
+            MinionToCloudMessage sinkMessage;
+            try {
+                sinkMessage = MinionToCloudMessage.parseFrom(replayQueue.dequeue());
+            } catch (InterruptedException e) {
+                return;
+            } catch (InvalidProtocolBufferException | RuntimeException e) {
+                LOG.warn("Dropping unreadable parked sink message", e);
+                releaseReplayBacklog();
+                continue;
+            }
+
+            try {
+                while (!replaySinkMessage(sinkMessage)) {
+                    Thread.sleep(SINK_BLOCKING_TIMEOUT);
+                }
+            } catch (InterruptedException e) {
+                // Already removed from the queue, put it back so it is replayed after the restart
+                requeueParkedSinkMessage(sinkMessage);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Puts the message back at the tail of the queue. It may therefore be replayed after messages parked later.
+     */
+    private void requeueParkedSinkMessage(MinionToCloudMessage sinkMessage) {
+        try {
+            replayQueue.enqueue(sinkMessage.toByteArray());
+        } catch (InterruptedException | RuntimeException e) {
+            releaseReplayBacklog();
+            LOG.warn("Failed to park sink message again on shutdown, dropping it", e);
+        }
+    }
+
+    private synchronized boolean replaySinkMessage(MinionToCloudMessage sinkMessage) {
+        if (!sendSinkMessage(sinkMessage)) {
+            return false;
         }
-        // Recursively try to send sink message until it succeeds.
-        scheduleSinkMessageAfterDelay(sinkMessage);
+        releaseReplayBacklog();
+        return true;
     }
 
-    private void scheduleSinkMessageAfterDelay(SinkMessage sinkMessage) {
-        // try until we get a successful send
-        ScheduledFuture<?> future = blockingSinkMessageScheduler.scheduleWithFixedDelay(
-                () -> {
-                    if (sendSinkMessage(sinkMessage)) {
-                        // canceling myself?
-                        pendingMessages.remove(sinkMessage).cancel(false);
-                    }
-                },
-                SINK_BLOCKING_TIMEOUT,
-                SINK_BLOCKING_TIMEOUT,
-                TimeUnit.MILLISECONDS);
-        pendingMessages.put(sinkMessage, future);
+    private void releaseReplayBacklog() {
+        replayBacklog.decrementAndGet();
     }
 
-    private synchronized boolean sendSinkMessage(SinkMessage sinkMessage) {
+    private synchronized boolean sendSinkMessage(MinionToCloudMessage sinkMessage) {
         if (sinkStream != null) {
             try {
-                sinkStream.onNext(MinionToCloudMessage.newBuilder()
-                        .setSinkMessage(sinkMessage)
-                        .build());
+                sinkStream.onNext(sinkMessage);
                 return true;
             } catch (Throwable e) {
                 if (LOG.isDebugEnabled()) {
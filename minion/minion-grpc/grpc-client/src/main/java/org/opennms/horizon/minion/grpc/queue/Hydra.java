@@ -21,6 +21,9 @@
  */
 package org.opennms.horizon.minion.grpc.queue;
 
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
 /**
  * A multi-headed queue.
  *
@@ -40,6 +43,15 @@ public interface Hydra<E> {
 
         public E poll();
 
+        public E poll(final long timeout, final TimeUnit unit) throws InterruptedException;
+
+        /**
+         * Removes at most {@code max} available elements without waiting and adds them to {@code target}.
+         *
+         * @return the number of elements transferred
+         */
+        public int drainTo(final Collection<? super E> target, final int max);
+
         public void put(final E element) throws InterruptedException;
     }
 }
@@ -21,6 +21,8 @@
  */
 package org.opennms.horizon.minion.grpc.queue;
 
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -121,6 +123,54 @@ public class LinkedHydra<E> implements Hydra<E> {
             }
         }
 
+        @Override
+        public E poll(final long timeout, final TimeUnit unit) throws InterruptedException {
+            final var lock = LinkedHydra.this.lock;
+            lock.lockInterruptibly();
+            try {
+                long nanos = unit.toNanos(timeout);
+                while (this.head == null) {
+                    if (nanos <= 0L) {
+                        return null;
+                    }
+                    nanos = available.awaitNanos(nanos);
+                }
+
+                final var element = this.dequeue();
+
+                if (this.head != null) {
+                    this.available.signal();
+                }
+
+                return element;
+
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public int drainTo(final Collection<? super E> target, final int max) {
+            final var lock = LinkedHydra.this.lock;
+            lock.lock();
+            try {
+                int count = 0;
+                while (count < max && this.head != null) {
+                    target.add(this.dequeue());
+                    count++;
+                }
+
+                if (this.head != null) {
+                    this.available.signal();
+                }
+
+                return count;
+
+            } finally {
+                lock.unlock();
+            }
+        }
+
         @Override
         public void put(final E element) throws InterruptedException {
             final var lock = LinkedHydra.this.lock;
@@ -21,10 +21,12 @@
  */
 package org.opennms.horizon.minion.grpc.queue;
 
+import java.util.Collection;
 import java.util.Queue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 public class NaiveHydra<E> implements Hydra<E> {
 
@@ -59,6 +61,26 @@ public class NaiveHydra<E> implements Hydra<E> {
             return element;
         }
 
+        public E poll(final long timeout, final TimeUnit unit) throws InterruptedException {
+            final var element = this.local.poll(timeout, unit);
+            NaiveHydra.this.global.remove(element);
+            return element;
+        }
+
+        public int drainTo(final Collection<? super E> target, final int max) {
+            int count = 0;
+            while (count < max) {
+                final var element = this.local.poll();
+                if (element == null) {
+                    break;
+                }
+                NaiveHydra.this.global.remove(element);
+                target.add(element);
+                count++;
+            }
+            return count;
+        }
+
         public void put(final E element) throws InterruptedException {
             NaiveHydra.this.global.offer(element);
             this.local.put(element);
@@ -25,8 +25,13 @@ import com.google.common.primitives.Bytes;
 import com.google.common.primitives.Longs;
 import java.io.Closeable;
 import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -82,6 +87,8 @@ public class SwappingSendQueueFactory implements SendQueueFactory, Closeable {
 
         private final Hydra.SubQueue<Element> elements;
 
+        private final AtomicInteger size = new AtomicInteger();
+
         public OffHeapSendQueue(final String id) throws IOException {
             this.store = SwappingSendQueueFactory.this.stores.getStore(new Prefix(id));
 
@@ -90,6 +97,7 @@ public class SwappingSendQueueFactory implements SendQueueFactory, Closeable {
             this.store.iterate(key -> {
                 try {
                     this.elements.put(new Element(Bytes.concat(key)));
+                    this.size.incrementAndGet();
                 } catch (final InterruptedException ex) {
                     Thread.currentThread().interrupt();
                     throw new RuntimeException(ex);
@@ -129,12 +137,14 @@ public class SwappingSendQueueFactory implements SendQueueFactory, Closeable {
 
             // Now we have room in memory for a block
             this.elements.put(newElement);
+            this.size.incrementAndGet();
         }
 
         @Override
         public byte[] dequeue() throws InterruptedException {
             try {
                 final var element = this.elements.take();
+                this.size.decrementAndGet();
 
                 SwappingSendQueueFactory.this.totalSemaphore.release();
                 if (element.isInMemory()) {
@@ -148,6 +158,60 @@ public class SwappingSendQueueFactory implements SendQueueFactory, Closeable {
             }
         }
 
+        @Override
+        public List<byte[]> dequeueBatch(final int max, final Duration timeout) throws InterruptedException {
+            final var batch = new ArrayList<Element>();
+            batch.add(this.elements.take());
+            this.elements.drainTo(batch, max - batch.size());
+
+            // Linger for more elements, but never lose the ones already taken
+            final var deadline = System.nanoTime() + timeout.toNanos();
+            try {
+                while (batch.size() < max) {
+                    final var remaining = deadline - System.nanoTime();
+                    if (remaining <= 0L) {
+                        break;
+                    }
+
+                    final var element = this.elements.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (element == null) {
+                        break;
+                    }
+
+                    batch.add(element);
+                    this.elements.drainTo(batch, max - batch.size());
+                }
+            } catch (final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+
+            this.size.addAndGet(-batch.size());
+
+            int inMemory = 0;
+            for (final var element : batch) {
+                if (element.isInMemory()) {
+                    inMemory++;
+                }
+            }
+            SwappingSendQueueFactory.this.totalSemaphore.release(batch.size());
+            SwappingSendQueueFactory.this.memorySemaphore.release(inMemory);
+
+            try {
+                final var messages = new ArrayList<byte[]>(batch.size());
+                for (final var element : batch) {
+                    messages.add(element.read(this.store));
+                }
+                return messages;
+            } catch (final IOException ex) {
+                throw new RuntimeException(ex);
+            }
+        }
+
+        @Override
+        public int size() {
+            return this.size.get();
+        }
+
         @Override
         public void close() throws Exception {
             for (Element element = this.elements.poll(); element != null; element = this.elements.poll()) {
@@ -21,10 +21,14 @@
  */
 package org.opennms.horizon.minion.grpc;
 
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
+import com.codahale.metrics.Gauge;
 import com.codahale.metrics.MetricRegistry;
+import com.google.protobuf.ByteString;
 import io.grpc.ManagedChannel;
 import io.grpc.Status;
 import io.grpc.StatusRuntimeException;
@@ -35,7 +39,10 @@ import java.io.IOException;
 import java.security.cert.CertificateExpiredException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.function.BiConsumer;
 import java.util.function.Function;
 import org.junit.jupiter.api.BeforeEach;
@@ -48,12 +55,17 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.opennms.cloud.grpc.minion.CloudServiceGrpc;
 import org.opennms.cloud.grpc.minion.CloudToMinionMessage;
 import org.opennms.cloud.grpc.minion.Identity;
+import org.opennms.cloud.grpc.minion.MinionToCloudMessage;
 import org.opennms.cloud.grpc.minion.RpcRequestProto;
 import org.opennms.cloud.grpc.minion.RpcResponseProto;
+import org.opennms.cloud.grpc.minion.SinkMessage;
 import org.opennms.horizon.minion.grpc.channel.ManagedChannelFactory;
 import org.opennms.horizon.minion.grpc.rpc.RpcRequestHandler;
 import org.opennms.horizon.shared.ipc.rpc.IpcIdentity;
+import org.opennms.horizon.shared.ipc.sink.api.AsyncPolicy;
+import org.opennms.horizon.shared.ipc.sink.api.SendQueue;
 import org.opennms.horizon.shared.ipc.sink.api.SendQueueFactory;
+import org.opennms.horizon.shared.ipc.sink.api.SinkModule;
 
 /**
  * WARNING: this test does not provide complete coverage of the MinionGrpcClient.
@@ -111,6 +123,28 @@ public class MinionGrpcClientTest {
 
     private IpcIdentity testIpcIdentity;
 
+    private final BlockingQueue<byte[]> parkedMessages = new LinkedBlockingQueue<>();
+
+    private final SendQueue testReplayQueue = new SendQueue() {
+        @Override
+        public void enqueue(byte[] message) throws InterruptedException {
+            parkedMessages.put(message);
+        }
+
+        @Override
+        public byte[] dequeue() throws InterruptedException {
+            return parkedMessages.take();
+        }
+
+        @Override
+        public int size() {
+            return parkedMessages.size();
+        }
+
+        @Override
+        public void close() {}
+    };
+
     @BeforeEach
     public void setUp() {
         mockMetricRegistry = Mockito.mock(MetricRegistry.class);
@@ -343,6 +377,115 @@ public class MinionGrpcClientTest {
         verifyCloudMessageObserver(cloudMessageObserverCaptor.getValue());
     }
 
+    @Test
+    void testReplaysParkedSinkMessagesInOrder() throws Exception {
+        try (var ignored = expect(connectionCall("x-grpc-host-x", 1313, null))
+                .with(reconnectStrategyFactoryCall())
+                .with(stubFactoryCall())) {
+            target.setGrpcHost("x-grpc-host-x");
+            target.setGrpcPort(1313);
+            target.start();
+        }
+
+        SinkModule mockSinkModule = Mockito.mock(SinkModule.class);
+        when(mockSinkModule.getId()).thenReturn("x-module-x");
+        when(mockSinkModule.getAsyncPolicy()).thenReturn(Mockito.mock(AsyncPolicy.class));
+
+        // Not connected yet, so the messages are parked
+        target.dispatch(mockSinkModule, null, "x-message-1-x".getBytes());
+        target.dispatch(mockSinkModule, null, "x-message-2-x".getBytes());
+
+        var onConnectHandler = ArgumentCaptor.forClass(Runnable.class);
+        verify(mockSimpleReconnectStrategyFactory)
+                .create(eq(mockManagedChannel), onConnectHandler.capture(), any(Runnable.class));
+        when(mockAsyncStub.cloudToMinionRPC(any(StreamObserver.class))).thenReturn(mockRpcStream);
+        when(mockAsyncStub.minionToCloudMessages(any(StreamObserver.class))).thenReturn(mockSinkStream);
+        onConnectHandler.getValue().run();
+
+        var sentMessages = ArgumentCaptor.forClass(MinionToCloudMessage.class);
+        verify(mockSinkStream, timeout(5000).times(2)).onNext(sentMessages.capture());
+        assertEquals("x-message-1-x", sentMessages.getAllValues().get(0).getSinkMessage().getContent().toStringUtf8());
+        assertEquals("x-message-2-x", sentMessages.getAllValues().get(1).getSinkMessage().getContent().toStringUtf8());
+
+        target.shutdown();
+    }
+
+    @Test
+    void testKeepsParkedSinkMessageBeingReplayedOnShutdown() throws Exception {
+        try (var ignored = expect(connectionCall("x-grpc-host-x", 1313, null))
+                .with(reconnectStrategyFactoryCall())
+                .with(stubFactoryCall())) {
+            target.setGrpcHost("x-grpc-host-x");
+            target.setGrpcPort(1313);
+            target.start();
+        }
+
+        SinkModule mockSinkModule = Mockito.mock(SinkModule.class);
+        when(mockSinkModule.getId()).thenReturn("x-module-x");
+        when(mockSinkModule.getAsyncPolicy()).thenReturn(Mockito.mock(AsyncPolicy.class));
+
+        // Not connected, so the replay loop takes the message and waits for the stream
+        target.dispatch(mockSinkModule, null, "x-message-x".getBytes());
+        await().atMost(5, TimeUnit.SECONDS).until(parkedMessages::isEmpty);
+
+        target.shutdown();
+
+        assertEquals(1, parkedMessages.size());
+        assertEquals(
+                "x-message-x",
+                MinionToCloudMessage.parseFrom(parkedMessages.peek())
+                        .getSinkMessage()
+                        .getContent()
+                        .toStringUtf8());
+    }
+
+    @Test
+    void testCountsMessagesParkedBeforeRestart() throws Exception {
+        for (int i = 1; i <= 2; i++) {
+            var content = ByteString.copyFromUtf8("x-parked-" + i + "-x");
+            parkedMessages.put(MinionToCloudMessage.newBuilder()
+                    .setSinkMessage(SinkMessage.newBuilder().setContent(content))
+                    .build()
+                    .toByteArray());
+        }
+        var backlog = ArgumentCaptor.forClass(Gauge.class);
+        verify(mockMetricRegistry).register(eq("sink.replay-backlog"), backlog.capture());
+
+        try (var ignored = expect(connectionCall("x-grpc-host-x", 1313, null))
+                .with(reconnectStrategyFactoryCall())
+                .with(stubFactoryCall())) {
+            target.setGrpcHost("x-grpc-host-x");
+            target.setGrpcPort(1313);
+            target.start();
+        }
+        assertEquals(2L, backlog.getValue().getValue());
+
+        SinkModule mockSinkModule = Mockito.mock(SinkModule.class);
+        when(mockSinkModule.getId()).thenReturn("x-module-x");
+        when(mockSinkModule.getAsyncPolicy()).thenReturn(Mockito.mock(AsyncPolicy.class));
+
+        var onConnectHandler = ArgumentCaptor.forClass(Runnable.class);
+        verify(mockSimpleReconnectStrategyFactory)
+                .create(eq(mockManagedChannel), onConnectHandler.capture(), any(Runnable.class));
+        when(mockAsyncStub.cloudToMinionRPC(any(StreamObserver.class))).thenReturn(mockRpcStream);
+        when(mockAsyncStub.minionToCloudMessages(any(StreamObserver.class))).thenReturn(mockSinkStream);
+        onConnectHandler.getValue().run();
+
+        // Must not overtake the restored messages
+        target.dispatch(mockSinkModule, null, "x-message-x".getBytes());
+
+        var sentMessages = ArgumentCaptor.forClass(MinionToCloudMessage.class);
+        verify(mockSinkStream, timeout(5000).times(3)).onNext(sentMessages.capture());
+        assertEquals(
+                List.of("x-parked-1-x", "x-parked-2-x", "x-message-x"),
+                sentMessages.getAllValues().stream()
+                        .map(message -> message.getSinkMessage().getContent().toStringUtf8())
+                        .toList());
+        assertEquals(0L, backlog.getValue().getValue());
+
+        target.shutdown();
+    }
+
     // ========================================
     // Internals
     // ----------------------------------------
@@ -434,7 +577,8 @@ public class MinionGrpcClientTest {
         return new Expectation(runnable);
     }
 
-    private Runnable connectionCall(String hostname, int port, String authority) {
+    private Runnable connectionCall(String hostname, int port, String authority) throws IOException {
+        when(mockSendQueueFactory.createQueue(MinionGrpcClient.SINK_REPLAY_QUEUE_ID)).thenReturn(testReplayQueue);
         when(managedChannelFactory.create(hostname, port, authority)).thenReturn(mockManagedChannel);
         if (authority != null) {
             target.setOverrideAuthority(authority);
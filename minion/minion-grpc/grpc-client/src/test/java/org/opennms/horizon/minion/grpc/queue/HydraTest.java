@@ -24,6 +24,9 @@ package org.opennms.horizon.minion.grpc.queue;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 import org.junit.jupiter.api.Test;
 
 public abstract class HydraTest {
@@ -84,4 +87,39 @@ public abstract class HydraTest {
         assertEquals(42, queue3.take());
         assertNull(hydra.poll());
     }
+
+    @Test
+    public void testDrainTo() throws InterruptedException {
+        final var hydra = this.spawn();
+        final var queue1 = hydra.queue();
+        final var queue2 = hydra.queue();
+
+        queue1.put(23);
+        queue2.put(42);
+        queue1.put(13);
+        queue1.put(37);
+
+        final var drained = new ArrayList<Integer>();
+        assertEquals(2, queue1.drainTo(drained, 2));
+        assertEquals(List.of(23, 13), drained);
+
+        assertEquals(1, queue1.drainTo(drained, 10));
+        assertEquals(List.of(23, 13, 37), drained);
+        assertEquals(0, queue1.drainTo(drained, 10));
+
+        assertEquals(42, hydra.poll());
+        assertNull(hydra.poll());
+    }
+
+    @Test
+    public void testPollWithTimeout() throws InterruptedException {
+        final var hydra = this.spawn();
+        final var queue = hydra.queue();
+
+        assertNull(queue.poll(10, TimeUnit.MILLISECONDS));
+
+        queue.put(23);
+        assertEquals(23, queue.poll(10, TimeUnit.MILLISECONDS));
+        assertNull(hydra.poll());
+    }
 }
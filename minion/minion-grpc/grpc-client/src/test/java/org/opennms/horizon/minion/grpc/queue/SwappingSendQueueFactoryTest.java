@@ -29,6 +29,7 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.common.primitives.Longs;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.util.List;
 import java.util.Random;
 import java.util.concurrent.Callable;
@@ -95,6 +96,29 @@ public class SwappingSendQueueFactoryTest {
         assertArrayEquals("9".getBytes(), queue.dequeue());
     }
 
+    @Test
+    public void testDequeueBatch() throws Exception {
+        final var queue = this.factory.createQueue("test");
+        for (int i = 0; i < 10; i++) {
+            queue.enqueue(String.valueOf(i).getBytes());
+        }
+
+        // Mixes elements kept in memory with elements persisted off-heap
+        final var batch = queue.dequeueBatch(8, Duration.ZERO);
+        assertEquals(8, batch.size());
+        for (int i = 0; i < 8; i++) {
+            assertArrayEquals(String.valueOf(i).getBytes(), batch.get(i));
+        }
+
+        final var rest = queue.dequeueBatch(8, Duration.ofMillis(10));
+        assertEquals(2, rest.size());
+        assertArrayEquals("8".getBytes(), rest.get(0));
+        assertArrayEquals("9".getBytes(), rest.get(1));
+        assertEquals(0, queue.size());
+
+        assertEquals(MEMORY_ELEMENTS + OFF_HEAP_ELEMENTS, this.factory.getTotalPermits());
+    }
+
     @Test
     public void testQueueRestore() throws Exception {
         final var queue = this.factory.createQueue("test");
@@ -112,6 +136,7 @@ public class SwappingSendQueueFactoryTest {
         queue.close();
 
         final var otherQueue = this.factory.createQueue("test");
+        assertEquals(10, otherQueue.size());
 
         assertArrayEquals("0".getBytes(), otherQueue.dequeue());
         assertArrayEquals("1".getBytes(), otherQueue.dequeue());
@@ -123,6 +148,7 @@ public class SwappingSendQueueFactoryTest {
         assertArrayEquals("7".getBytes(), otherQueue.dequeue());
         assertArrayEquals("8".getBytes(), otherQueue.dequeue());
         assertArrayEquals("9".getBytes(), otherQueue.dequeue());
+        assertEquals(0, otherQueue.size());
     }
 
     @Test
@@ -31,6 +31,8 @@ import com.google.common.collect.Sets;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.protobuf.InvalidProtocolBufferException;
 import com.google.protobuf.Message;
+import com.google.protobuf.TypeRegistry;
+import com.google.protobuf.util.JsonFormat;
 import java.io.Closeable;
 import java.io.IOException;
 import java.util.Collections;
@@ -45,11 +47,15 @@ import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import org.opennms.cloud.grpc.minion.Identity;
+import org.opennms.cloud.grpc.minion.TwinPatchFormat;
 import org.opennms.cloud.grpc.minion.TwinRequestProto;
 import org.opennms.cloud.grpc.minion.TwinResponseProto;
 import org.opennms.horizon.minion.ipc.twin.api.TwinSubscriber;
 import org.opennms.horizon.shared.ipc.rpc.IpcIdentity;
 import org.opennms.horizon.shared.protobuf.marshalling.ProtoBufJsonDeserializer;
+import org.opennms.horizon.shared.protobuf.util.TaskSetDeltaUtil;
+import org.opennms.taskset.contract.TaskSet;
+import org.opennms.taskset.contract.TaskSetDelta;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -127,6 +133,7 @@ public abstract class AbstractTwinSubscriber implements TwinSubscriber {
                 twinUpdate.setObject(twinResponseProto.getTwinObject().toByteArray());
             }
             twinUpdate.setPatch(twinResponseProto.getIsPatchObject());
+            twinUpdate.setPatchFormat(twinResponseProto.getPatchFormat());
             twinUpdate.setVersion(twinResponseProto.getVersion());
             return twinUpdate;
         } catch (InvalidProtocolBufferException e) {
@@ -156,19 +163,33 @@ public abstract class AbstractTwinSubscriber implements TwinSubscriber {
         public final String sessionId;
         public final int version;
 
+        // The JSON representation of the value, or the task set if it resulted from a TaskSetDelta
         public final JsonNode value;
+        public final TaskSet taskSet;
 
         private Value(final String sessionId, final int version, final JsonNode value) {
             this.sessionId = Objects.requireNonNull(sessionId);
             this.version = version;
             this.value = Objects.requireNonNull(value);
+            this.taskSet = null;
+        }
+
+        private Value(final String sessionId, final int version, final TaskSet taskSet) {
+            this.sessionId = Objects.requireNonNull(sessionId);
+            this.version = version;
+            this.value = null;
+            this.taskSet = Objects.requireNonNull(taskSet);
+        }
+
+        private boolean sameAs(final Value other) {
+            return Objects.equals(this.value, other.value) && Objects.equals(this.taskSet, other.taskSet);
         }
     }
 
     public class Subscription {
         private final String key;
 
-        private final Set<Consumer<JsonNode>> consumers = Sets.newConcurrentHashSet();
+        private final Set<Consumer<Value>> consumers = Sets.newConcurrentHashSet();
 
         private Value value = null;
 
@@ -198,13 +219,15 @@ public abstract class AbstractTwinSubscriber implements TwinSubscriber {
          * @return a Closable, stopping the consumption when closed
          */
         public synchronized <T> Closeable consume(final Class<T> clazz, final Consumer<T> consumer) {
-            final Consumer<JsonNode> jsonConsumer = (json) -> {
+            final Consumer<Value> jsonConsumer = (value) -> {
                 try {
-                    // Deserialize to the final class
-                    final var value = AbstractTwinSubscriber.this.objectMapper.treeToValue(json, clazz);
+                    // Deserialize to the final class, unless the value already is one
+                    final T typed = clazz.isInstance(value.taskSet)
+                            ? clazz.cast(value.taskSet)
+                            : AbstractTwinSubscriber.this.objectMapper.treeToValue(toJson(value), clazz);
 
                     // Forward to typed consumer
-                    consumer.accept(value);
+                    consumer.accept(typed);
 
                 } catch (final Exception e) {
                     LOG.error("Processing twin update failed: {} as {}", this.key, clazz, e);
@@ -220,7 +243,7 @@ public abstract class AbstractTwinSubscriber implements TwinSubscriber {
                 }
             } else {
                 // If value already exists, forward to consumer without requesting
-                jsonConsumer.accept(this.value.value);
+                jsonConsumer.accept(this.value);
             }
 
             // Add the consumer to the subscription
@@ -234,8 +257,8 @@ public abstract class AbstractTwinSubscriber implements TwinSubscriber {
             Objects.requireNonNull(value);
 
             // Call all consumers if value has changed
-            if (!(this.value != null && Objects.equals(this.value.value, value.value))) {
-                this.consumers.forEach(c -> c.accept(value.value));
+            if (!(this.value != null && this.value.sameAs(value))) {
+                this.consumers.forEach(c -> c.accept(value));
             }
 
             // Remember value
@@ -281,14 +304,22 @@ public abstract class AbstractTwinSubscriber implements TwinSubscriber {
                 } else {
                     if (update.getVersion() == this.value.version + 1) {
                         // Version advanced - apply path
-                        try {
-                            final var patchObj = objectMapper.readTree(update.getObject());
+                        if (update.getPatchFormat() == TwinPatchFormat.TASK_SET_DELTA) {
+                            final var delta = TaskSetDelta.parseFrom(update.getObject());
+
+                            final TaskSet taskSet = TaskSetDeltaUtil.apply(toTaskSet(this.value), delta);
 
-                            final JsonNode value = JsonPatch.apply(patchObj, this.value.value);
+                            this.accept(new Value(update.getSessionId(), update.getVersion(), taskSet));
+                        } else {
+                            try {
+                                final var patchObj = objectMapper.readTree(update.getObject());
 
-                            this.accept(new Value(update.getSessionId(), update.getVersion(), value));
-                        } catch (final JsonPatchApplicationException e) {
-                            throw new IOException("Unable to apply patch", e);
+                                final JsonNode value = JsonPatch.apply(patchObj, toJson(this.value));
+
+                                this.accept(new Value(update.getSessionId(), update.getVersion(), value));
+                            } catch (final JsonPatchApplicationException e) {
+                                throw new IOException("Unable to apply patch", e);
+                            }
                         }
 
                     } else {
@@ -304,8 +335,24 @@ public abstract class AbstractTwinSubscriber implements TwinSubscriber {
     // Internals
     // ----------------------------------------
 
+    private JsonNode toJson(final Value value) throws IOException {
+        if (value.value != null) {
+            return value.value;
+        }
+        final var typeRegistry = TypeRegistry.newBuilder().add(TaskSet.getDescriptor()).build();
+        return objectMapper.readTree(JsonFormat.printer().usingTypeRegistry(typeRegistry).print(value.taskSet));
+    }
+
+    private TaskSet toTaskSet(final Value value) throws IOException {
+        if (value.taskSet != null) {
+            return value.taskSet;
+        }
+        lazyAddProtobufJsonForClass(TaskSet.class);
+        return objectMapper.treeToValue(value.value, TaskSet.class);
+    }
+
     private void lazyAddProtobufJsonForClass(Class<? extends Message> clazz) {
-        if (!mapperKnownClasses.contains(clazz)) {
+        if (mapperKnownClasses.add(clazz)) {
             SimpleModule simpleModule = new SimpleModule();
             simpleModule.addDeserializer(clazz, new ProtoBufJsonDeserializer<>(clazz));
             objectMapper.registerModule(simpleModule);
@@ -25,6 +25,7 @@ import java.util.HashMap;
 import java.util.Map;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
+import org.opennms.cloud.grpc.minion.TwinPatchFormat;
 
 @Data
 public class TwinUpdate {
@@ -33,6 +34,7 @@ public class TwinUpdate {
     private byte[] object;
     private int version;
     private boolean isPatch;
+    private TwinPatchFormat patchFormat = TwinPatchFormat.JSON_PATCH;
     private String sessionId;
 
     @EqualsAndHashCode.Exclude
@@ -21,28 +21,35 @@
  */
 package org.opennms.horizon.minion.ipc.twin.common;
 
+import static org.junit.Assert.assertEquals;
+
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.module.SimpleModule;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
+import org.opennms.cloud.grpc.minion.TwinPatchFormat;
 import org.opennms.horizon.minion.ipc.twin.common.AbstractTwinSubscriber.Subscription;
 import org.opennms.horizon.shared.ipc.rpc.IpcIdentity;
 import org.opennms.horizon.shared.protobuf.marshalling.ProtoBufJsonSerializer;
 import org.opennms.taskset.contract.TaskDefinition;
 import org.opennms.taskset.contract.TaskSet;
+import org.opennms.taskset.contract.TaskSetDelta;
 import org.opennms.taskset.contract.TaskType;
 
 public class SubscriptionTest {
 
-    Subscription subscription = new LocalTwinSubscriberImpl(new IpcIdentity() {
+    LocalTwinSubscriberImpl subscriber = new LocalTwinSubscriberImpl(new IpcIdentity() {
         @Override
         public String getId() {
             return "blahId";
         }
-    })
-    .new Subscription("blahKey");
+    });
+
+    Subscription subscription = subscriber.new Subscription("blahKey");
 
     @Before
     public void setUp() throws Exception {}
@@ -82,4 +89,57 @@ public class SubscriptionTest {
 
         subscription.update(twinUpdate);
     }
+
+    @Test
+    public void applyTaskSetDelta() throws IOException {
+        // Registers the deserializer for task sets
+        subscriber.subscribe("otherKey", TaskSet.class, taskSet -> {});
+
+        List<TaskSet> received = new ArrayList<>();
+        subscription.update(fullUpdate(TaskSet.newBuilder()
+                .addTaskDefinition(task("a"))
+                .addTaskDefinition(task("b"))
+                .build()));
+        subscription.consume(TaskSet.class, received::add);
+
+        TwinUpdate patch = new TwinUpdate("blahKey");
+        patch.setSessionId("blahSessionId");
+        patch.setVersion(2);
+        patch.setPatch(true);
+        patch.setPatchFormat(TwinPatchFormat.TASK_SET_DELTA);
+        patch.setObject(TaskSetDelta.newBuilder()
+                .addAdded(task("c"))
+                .addRemoved("a")
+                .build()
+                .toByteArray());
+        subscription.update(patch);
+
+        assertEquals(2, received.size());
+        assertEquals(
+                TaskSet.newBuilder()
+                        .addTaskDefinition(task("b"))
+                        .addTaskDefinition(task("c"))
+                        .build(),
+                received.get(1));
+    }
+
+    private static TwinUpdate fullUpdate(TaskSet taskSet) throws IOException {
+        SimpleModule simpleModule = new SimpleModule();
+        simpleModule.addSerializer(new ProtoBufJsonSerializer<>(TaskSet.class));
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.registerModule(simpleModule);
+
+        TwinUpdate twinUpdate = new TwinUpdate("blahKey", objectMapper.writeValueAsBytes(taskSet));
+        twinUpdate.setSessionId("blahSessionId");
+        twinUpdate.setVersion(1);
+        return twinUpdate;
+    }
+
+    private static TaskDefinition task(String id) {
+        return TaskDefinition.newBuilder()
+                .setId(id)
+                .setType(TaskType.MONITOR)
+                .setPluginName("ICMPMonitor")
+                .build();
+    }
 }
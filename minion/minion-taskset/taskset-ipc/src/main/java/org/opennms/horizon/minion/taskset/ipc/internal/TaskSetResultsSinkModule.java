@@ -21,7 +21,6 @@
  */
 package org.opennms.horizon.minion.taskset.ipc.internal;
 
-import org.opennms.horizon.shared.ipc.sink.aggregation.IdentityAggregationPolicy;
 import org.opennms.horizon.shared.ipc.sink.api.AggregationPolicy;
 import org.opennms.horizon.shared.ipc.sink.api.AsyncPolicy;
 import org.opennms.horizon.shared.ipc.sink.api.SinkModule;
@@ -32,12 +31,40 @@ import org.slf4j.LoggerFactory;
 /**
  * Sink Module for processing TaskSetResults.  Note this is used in the communication between the Minion and
  * Minion Gateway, so Tenant IDs are not explicitly handled here.
+ * <p>
+ * Results are merged into batches of up to {@code batchSize} task results, or whatever accumulated within
+ * {@code batchIntervalMs}, so that a batch travels as a single sink message.
  */
 public class TaskSetResultsSinkModule implements SinkModule<TaskSetResults, TaskSetResults> {
 
     public static final String MODULE_ID = "task-set-result";
+
+    public static final int DEFAULT_BATCH_SIZE = 500;
+    public static final int DEFAULT_BATCH_INTERVAL_MS = 1000;
+    public static final int DEFAULT_QUEUE_SIZE = 100;
+    public static final int DEFAULT_NUM_THREADS = 2;
+
+    // All results are shipped under the identity of this minion, so they all share a bucket
+    private static final Object AGGREGATION_KEY = MODULE_ID;
+
     private final Logger logger = LoggerFactory.getLogger(TaskSetResultsSinkModule.class);
 
+    private final int batchSize;
+    private final int batchIntervalMs;
+    private final int queueSize;
+    private final int numThreads;
+
+    public TaskSetResultsSinkModule() {
+        this(DEFAULT_BATCH_SIZE, DEFAULT_BATCH_INTERVAL_MS, DEFAULT_QUEUE_SIZE, DEFAULT_NUM_THREADS);
+    }
+
+    public TaskSetResultsSinkModule(int batchSize, int batchIntervalMs, int queueSize, int numThreads) {
+        this.batchSize = batchSize;
+        this.batchIntervalMs = batchIntervalMs;
+        this.queueSize = queueSize;
+        this.numThreads = numThreads;
+    }
+
     @Override
     public String getId() {
         return MODULE_ID;
@@ -79,18 +106,60 @@ public class TaskSetResultsSinkModule implements SinkModule<TaskSetResults, Task
     }
 
     @Override
-    public AggregationPolicy<TaskSetResults, TaskSetResults, ?> getAggregationPolicy() {
-        return new IdentityAggregationPolicy<>();
+    public AggregationPolicy<TaskSetResults, TaskSetResults, TaskSetResults.Builder> getAggregationPolicy() {
+        return new AggregationPolicy<>() {
+            @Override
+            public int getCompletionSize() {
+                return batchSize;
+            }
+
+            @Override
+            public int getCompletionIntervalMs() {
+                return batchIntervalMs;
+            }
+
+            @Override
+            public Object key(TaskSetResults message) {
+                return AGGREGATION_KEY;
+            }
+
+            @Override
+            public int weight(TaskSetResults message) {
+                // Batched monitors already hand over many results in one message
+                return Math.max(1, message.getResultsCount());
+            }
+
+            @Override
+            public TaskSetResults.Builder aggregate(TaskSetResults.Builder accumulator, TaskSetResults newMessage) {
+                if (accumulator == null) {
+                    return newMessage.toBuilder();
+                }
+                return accumulator.addAllResults(newMessage.getResultsList());
+            }
+
+            @Override
+            public TaskSetResults build(TaskSetResults.Builder accumulator) {
+                return accumulator.build();
+            }
+        };
     }
 
     @Override
     public AsyncPolicy getAsyncPolicy() {
         return new AsyncPolicy() {
+            @Override
             public int getQueueSize() {
-                return 10;
+                return queueSize;
             }
 
+            @Override
             public int getNumThreads() {
+                return numThreads;
+            }
+
+            @Override
+            public int getMaxBatchSize() {
+                // Batches are already large, only pick up what queued behind a slow stream
                 return 10;
             }
         };
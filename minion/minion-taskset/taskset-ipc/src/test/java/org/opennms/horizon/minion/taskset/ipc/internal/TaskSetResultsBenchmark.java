@@ -0,0 +1,102 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.horizon.minion.taskset.ipc.internal;
+
+import java.util.concurrent.TimeUnit;
+import org.opennms.horizon.shared.ipc.sink.aggregation.Aggregator;
+import org.opennms.taskset.contract.Identity;
+import org.opennms.taskset.contract.MonitorResponse;
+import org.opennms.taskset.contract.TaskResult;
+import org.opennms.taskset.contract.TaskSetResults;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures how many single poll results per second make it through the aggregation of the
+ * {@link TaskSetResultsSinkModule} into marshalled sink messages.
+ * <p>
+ * A batch size of 1 matches the former identity policy, where every result became a sink message of its own. The
+ * consumed blackhole tokens stand in for the per-message cost of the gRPC stream and the Kafka record downstream.
+ */
+@Fork(1)
+@Threads(4)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class TaskSetResultsBenchmark {
+
+    private static final long PER_MESSAGE_TOKENS = 2_000;
+
+    public static void main(String[] args) throws Exception {
+        org.openjdk.jmh.Main.main(args);
+    }
+
+    @State(Scope.Benchmark)
+    public static class Pipeline {
+        @Param({"1", "100", "500"})
+        public int batchSize;
+
+        TaskSetResultsSinkModule module;
+        Aggregator<TaskSetResults, TaskSetResults, TaskSetResults.Builder> aggregator;
+        TaskSetResults result;
+
+        @Setup(Level.Trial)
+        public void setUp(Blackhole blackhole) {
+            module = new TaskSetResultsSinkModule(batchSize, 1000, 100, 2);
+            aggregator = new Aggregator<>(module.getId(), module.getAggregationPolicy(), message -> {
+                blackhole.consume(module.marshal(message));
+                Blackhole.consumeCPU(PER_MESSAGE_TOKENS);
+            });
+            result = TaskSetResults.newBuilder()
+                    .addResults(TaskResult.newBuilder()
+                            .setId("nodeId:1-ICMP-127.0.0.1")
+                            .setIdentity(Identity.newBuilder().setSystemId("minion-1"))
+                            .setMonitorResponse(MonitorResponse.newBuilder()
+                                    .setStatus("Up")
+                                    .setResponseTimeMs(1.5)
+                                    .setMonitorType("ICMP")
+                                    .setMonitoredEntityId("127.0.0.1")
+                                    .setTimestamp(System.currentTimeMillis())))
+                    .build();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws Exception {
+            aggregator.close();
+        }
+    }
+
+    @Benchmark
+    public void sendResult(Pipeline pipeline) throws InterruptedException {
+        pipeline.aggregator.aggregate(pipeline.result);
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.horizon.minion.taskset.ipc.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.codahale.metrics.MetricRegistry;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Test;
+import org.opennms.horizon.shared.ipc.sink.aggregation.Aggregator;
+import org.opennms.taskset.contract.MonitorResponse;
+import org.opennms.taskset.contract.TaskResult;
+import org.opennms.taskset.contract.TaskSetResults;
+
+public class TaskSetResultsSinkModuleTest {
+
+    private final List<TaskSetResults> sent = new CopyOnWriteArrayList<>();
+    private final MetricRegistry metrics = new MetricRegistry();
+
+    private Aggregator<TaskSetResults, TaskSetResults, TaskSetResults.Builder> aggregator;
+
+    @After
+    public void tearDown() throws Exception {
+        if (aggregator != null) {
+            aggregator.close();
+        }
+    }
+
+    @Test
+    public void testBatchesBySize() throws Exception {
+        aggregator = create(new TaskSetResultsSinkModule(10, 0, 10, 1));
+
+        for (int i = 0; i < 25; i++) {
+            aggregator.aggregate(results(i, 1));
+        }
+
+        assertEquals(2, sent.size());
+        assertEquals(10, sent.get(0).getResultsCount());
+        assertEquals("task-0", sent.get(0).getResults(0).getId());
+        assertEquals("task-19", sent.get(1).getResults(9).getId());
+        assertEquals(2, metrics.histogram("task-set-result.aggregation.size").getCount());
+    }
+
+    @Test
+    public void testCountsResultsOfBatchedMessages() throws Exception {
+        aggregator = create(new TaskSetResultsSinkModule(10, 0, 10, 1));
+
+        aggregator.aggregate(results(0, 4));
+        aggregator.aggregate(results(4, 4));
+        assertTrue(sent.isEmpty());
+
+        aggregator.aggregate(results(8, 4));
+        assertEquals(1, sent.size());
+        assertEquals(12, sent.get(0).getResultsCount());
+        assertEquals(
+                12, metrics.histogram("task-set-result.aggregation.size").getSnapshot().getMax());
+    }
+
+    @Test(timeout = 10_000)
+    public void testFlushesAfterInterval() throws Exception {
+        aggregator = create(new TaskSetResultsSinkModule(1000, 50, 10, 1));
+
+        aggregator.aggregate(results(0, 3));
+        aggregator.aggregate(results(3, 2));
+
+        while (sent.isEmpty()) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        assertEquals(1, sent.size());
+        assertEquals(5, sent.get(0).getResultsCount());
+        assertTrue(metrics.timer("task-set-result.aggregation.latency").getSnapshot().getMax()
+                >= TimeUnit.MILLISECONDS.toNanos(50));
+    }
+
+    private Aggregator<TaskSetResults, TaskSetResults, TaskSetResults.Builder> create(
+            TaskSetResultsSinkModule module) {
+        return new Aggregator<>(module.getId(), module.getAggregationPolicy(), sent::add, metrics);
+    }
+
+    private static TaskSetResults results(int first, int count) {
+        TaskSetResults.Builder results = TaskSetResults.newBuilder();
+        for (int i = first; i < first + count; i++) {
+            results.addResults(TaskResult.newBuilder()
+                    .setId("task-" + i)
+                    .setMonitorResponse(MonitorResponse.newBuilder().setStatus("Up")));
+        }
+        return results.build();
+    }
+}
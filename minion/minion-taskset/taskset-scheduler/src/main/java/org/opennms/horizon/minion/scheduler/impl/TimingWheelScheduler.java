@@ -0,0 +1,443 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.horizon.minion.scheduler.impl;
+
+import com.cronutils.model.CronType;
+import com.cronutils.model.definition.CronDefinitionBuilder;
+import com.cronutils.model.time.ExecutionTime;
+import com.cronutils.parser.CronParser;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import org.opennms.horizon.minion.scheduler.OpennmsScheduler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Scheduler based on a hierarchical timing wheel, in the style of the classic kernel timer wheels.
+ * <p>
+ * Each level has {@link #WHEEL_SIZE} buckets; a bucket of level 0 covers one tick, a bucket of level n covers
+ * {@code WHEEL_SIZE^n} ticks. Tasks are kept in intrusive doubly-linked lists, so scheduling and canceling are O(1).
+ * Whenever level 0 wraps around, the next bucket of the level above is cascaded down. A single tick thread advances the
+ * wheel and hands due tasks to a bounded worker pool; a recurring run that does not fit into the pool's queue is
+ * skipped, a one-shot run is retried on the next tick.
+ * <p>
+ * Periodic tasks start at a stable offset within their period derived from the task id, so tasks sharing a period
+ * are spread over it instead of all running at once, and keep their phase from run to run. Like with
+ * {@code scheduleAtFixedRate}, a run never overlaps the previous one of the same task; runs missed because a
+ * previous one took too long are skipped.
+ */
+public class TimingWheelScheduler implements OpennmsScheduler {
+
+    private static final Logger DEFAULT_LOGGER = LoggerFactory.getLogger(TimingWheelScheduler.class);
+
+    private Logger log = DEFAULT_LOGGER;
+
+    static final int WHEEL_BITS = 9;
+    static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+    static final int LEVELS = 4;
+
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+    private static final long MAX_TICKS = (1L << (WHEEL_BITS * LEVELS)) - 1;
+
+    private final CronParser cronParser = new CronParser(CronDefinitionBuilder.instanceDefinitionFor(CronType.QUARTZ));
+
+    private final long tickNanos;
+    private final long startNanos = System.nanoTime();
+    private final Bucket[][] wheels = new Bucket[LEVELS][WHEEL_SIZE];
+    private final ThreadPoolExecutor workers;
+    private final Thread tickThread;
+    private final Map<String, ScheduledTask> scheduledTasks = new ConcurrentHashMap<>();
+    private final AtomicLong rejectedRuns = new AtomicLong();
+
+    private volatile boolean running = true;
+
+    // Guarded by this
+    private long nextTick;
+
+    public TimingWheelScheduler(long tickMs, int threads, int queueSize) {
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMs);
+        for (Bucket[] wheel : wheels) {
+            for (int i = 0; i < wheel.length; i++) {
+                wheel[i] = new Bucket();
+            }
+        }
+
+        AtomicLong threadCounter = new AtomicLong();
+        ThreadFactory threadFactory = runnable -> {
+            Thread result = new Thread(runnable);
+            result.setDaemon(true);
+            result.setName("opennms.workflow.scheduler.thread." + threadCounter.getAndIncrement());
+            return result;
+        };
+        this.workers = new ThreadPoolExecutor(
+                threads, threads, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(queueSize), threadFactory);
+
+        this.tickThread = new Thread(this::runTicks, "opennms.workflow.scheduler.tick");
+        this.tickThread.setDaemon(true);
+        this.tickThread.start();
+    }
+
+    // ========================================
+    // Lifecycle Management
+    // ----------------------------------------
+
+    @Override
+    public void shutdown() {
+        log.info("Shutting down scheduler");
+        running = false;
+        tickThread.interrupt();
+        workers.shutdownNow();
+    }
+
+    // ========================================
+    // Operations
+    // ----------------------------------------
+
+    @Override
+    public void scheduleTaskOnCron(String taskId, String cronExpression, Runnable operation) {
+        ExecutionTime executionTime = ExecutionTime.forCron(cronParser.parse(cronExpression));
+        ScheduledTask task = new CronTask(taskId, operation, executionTime);
+        replace(task).schedule(nextCronDeadline(executionTime));
+    }
+
+    @Override
+    public void schedulePeriodically(String taskId, long period, TimeUnit unit, Runnable operation) {
+        long periodNanos = Math.max(1, unit.toNanos(period));
+        ScheduledTask task = new PeriodicTask(taskId, operation, periodNanos);
+        replace(task).schedule(System.nanoTime() + spread(taskId, periodNanos));
+    }
+
+    @Override
+    public void scheduleOnce(String taskId, long period, TimeUnit unit, Runnable operation) {
+        ScheduledTask task = new ScheduledTask(taskId, operation);
+        replace(task).schedule(System.nanoTime() + unit.toNanos(period));
+    }
+
+    @Override
+    public void cancelTask(String taskId) {
+        ScheduledTask task = scheduledTasks.remove(taskId);
+        if (task != null) {
+            task.cancel();
+        }
+    }
+
+    public int getTaskCount() {
+        return scheduledTasks.size();
+    }
+
+    /**
+     * @return the number of runs that were deferred or skipped because the worker pool was saturated
+     */
+    public long getRejectedRuns() {
+        return rejectedRuns.get();
+    }
+
+    // ========================================
+    // Internal Operations
+    // ----------------------------------------
+
+    private ScheduledTask replace(ScheduledTask task) {
+        // Remember the task before scheduling it to avoid a possible race condition on reschedule
+        ScheduledTask old = scheduledTasks.put(task.taskId, task);
+        if (old != null) {
+            log.debug("replacing existing operation for task: task-id={}", task.taskId);
+            old.cancel();
+        }
+        return task;
+    }
+
+    /**
+     * A stable offset within the period, so tasks sharing a period do not all start at the same time.
+     */
+    static long spread(String taskId, long periodNanos) {
+        // Murmur3 finalizer, similar task ids have similar hash codes
+        long h = taskId.hashCode();
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return Math.floorMod(h, periodNanos);
+    }
+
+    private long nextCronDeadline(ExecutionTime executionTime) {
+        // The contract says it will never be empty
+        Duration duration = executionTime.timeToNextExecution(ZonedDateTime.now()).get();
+        return System.nanoTime() + duration.toNanos();
+    }
+
+    private long toTick(long deadlineNanos) {
+        long elapsed = deadlineNanos - startNanos;
+        return elapsed <= 0 ? 0 : (elapsed + tickNanos - 1) / tickNanos;
+    }
+
+    // Guarded by this
+    private void place(ScheduledTask task) {
+        long expires = task.deadlineTick;
+        long ticks = expires - nextTick;
+        Bucket bucket;
+        if (ticks < 0) {
+            // Already due, run on the next tick
+            bucket = wheels[0][(int) (nextTick & WHEEL_MASK)];
+        } else {
+            if (ticks > MAX_TICKS) {
+                expires = nextTick + MAX_TICKS;
+                ticks = MAX_TICKS;
+            }
+            int level = 0;
+            while (ticks >= 1L << (WHEEL_BITS * (level + 1))) {
+                level++;
+            }
+            bucket = wheels[level][(int) ((expires >>> (WHEEL_BITS * level)) & WHEEL_MASK)];
+        }
+        bucket.add(task);
+    }
+
+    private void runTicks() {
+        List<ScheduledTask> due = new ArrayList<>();
+        while (running) {
+            long deadline;
+            synchronized (this) {
+                deadline = startNanos + nextTick * tickNanos;
+            }
+            long wait = deadline - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(this, wait);
+                continue;
+            }
+
+            synchronized (this) {
+                int index = (int) (nextTick & WHEEL_MASK);
+                // Cascade the buckets of the levels above whenever the level below wrapped around
+                for (int level = 1; level < LEVELS && index == 0; level++) {
+                    index = (int) ((nextTick >>> (WHEEL_BITS * level)) & WHEEL_MASK);
+                    for (ScheduledTask task : wheels[level][index].drain()) {
+                        place(task);
+                    }
+                }
+                for (ScheduledTask task : wheels[0][(int) (nextTick & WHEEL_MASK)].drain()) {
+                    if (task.deadlineTick > nextTick) {
+                        // Clamped to the reach of the wheel
+                        place(task);
+                    } else {
+                        due.add(task);
+                    }
+                }
+                nextTick++;
+            }
+
+            for (ScheduledTask task : due) {
+                dispatch(task);
+            }
+            due.clear();
+        }
+    }
+
+    private void dispatch(ScheduledTask task) {
+        try {
+            workers.execute(task);
+        } catch (RejectedExecutionException e) {
+            if (!running) {
+                return;
+            }
+            rejectedRuns.incrementAndGet();
+            log.debug("Deferring run of task, all workers are busy: task-id={}", task.taskId);
+            task.rejected();
+        }
+    }
+
+    // ========================================
+    // Internal Classes
+    // ----------------------------------------
+
+    /**
+     * Intrusive doubly-linked list of tasks, guarded by the scheduler.
+     */
+    private static final class Bucket {
+        private ScheduledTask head;
+
+        private void add(ScheduledTask task) {
+            task.bucket = this;
+            task.prev = null;
+            task.next = head;
+            if (head != null) {
+                head.prev = task;
+            }
+            head = task;
+        }
+
+        private void remove(ScheduledTask task) {
+            if (task.prev != null) {
+                task.prev.next = task.next;
+            } else {
+                head = task.next;
+            }
+            if (task.next != null) {
+                task.next.prev = task.prev;
+            }
+            task.bucket = null;
+            task.prev = null;
+            task.next = null;
+        }
+
+        private List<ScheduledTask> drain() {
+            if (head == null) {
+                return List.of();
+            }
+            List<ScheduledTask> tasks = new ArrayList<>();
+            for (ScheduledTask task = head; task != null; ) {
+                ScheduledTask next = task.next;
+                task.bucket = null;
+                task.prev = null;
+                task.next = null;
+                tasks.add(task);
+                task = next;
+            }
+            head = null;
+            return tasks;
+        }
+    }
+
+    /**
+     * A task that runs once; also the base of the recurring ones.
+     */
+    private class ScheduledTask implements Runnable {
+        final String taskId;
+        final Runnable operation;
+        volatile boolean cancelled;
+
+        // Guarded by the scheduler
+        long deadlineNanos;
+        long deadlineTick;
+        Bucket bucket;
+        ScheduledTask prev;
+        ScheduledTask next;
+
+        ScheduledTask(String taskId, Runnable operation) {
+            this.taskId = taskId;
+            this.operation = operation;
+        }
+
+        void schedule(long deadlineNanos) {
+            synchronized (TimingWheelScheduler.this) {
+                if (cancelled || !running) {
+                    return;
+                }
+                this.deadlineNanos = deadlineNanos;
+                this.deadlineTick = toTick(deadlineNanos);
+                place(this);
+            }
+        }
+
+        void cancel() {
+            cancelled = true;
+            synchronized (TimingWheelScheduler.this) {
+                if (bucket != null) {
+                    bucket.remove(this);
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            if (cancelled) {
+                return;
+            }
+            try {
+                operation.run();
+            } catch (Exception exc) {
+                log.warn("task failure: task-id={}", taskId, exc);
+            } finally {
+                rescheduleAfterRun();
+            }
+        }
+
+        void rescheduleAfterRun() {
+            // Remove the one-shot task once it completes, unless it was replaced in the meantime
+            scheduledTasks.remove(taskId, this);
+        }
+
+        void rejected() {
+            // Try again on the next tick, a one-shot task is often a retry that must not get lost
+            schedule(System.nanoTime());
+        }
+    }
+
+    private class PeriodicTask extends ScheduledTask {
+        private final long periodNanos;
+
+        PeriodicTask(String taskId, Runnable operation, long periodNanos) {
+            super(taskId, operation);
+            this.periodNanos = periodNanos;
+        }
+
+        @Override
+        void rescheduleAfterRun() {
+            long last;
+            synchronized (TimingWheelScheduler.this) {
+                last = deadlineNanos;
+            }
+            // Keep the phase, skipping the runs that were missed
+            long now = System.nanoTime();
+            long next = last + periodNanos;
+            if (next - now < 0) {
+                next += ((now - next) / periodNanos + 1) * periodNanos;
+            }
+            schedule(next);
+        }
+
+        @Override
+        void rejected() {
+            rescheduleAfterRun();
+        }
+    }
+
+    private class CronTask extends ScheduledTask {
+        private final ExecutionTime executionTime;
+
+        CronTask(String taskId, Runnable operation, ExecutionTime executionTime) {
+            super(taskId, operation);
+            this.executionTime = executionTime;
+        }
+
+        @Override
+        void rescheduleAfterRun() {
+            schedule(nextCronDeadline(executionTime));
+        }
+
+        @Override
+        void rejected() {
+            rescheduleAfterRun();
+        }
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.horizon.minion.scheduler.impl;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import org.opennms.horizon.minion.scheduler.OpennmsScheduler;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the {@link TimingWheelScheduler} with the {@link OpennmsSchedulerImpl} on top of a
+ * {@link java.util.concurrent.ScheduledThreadPoolExecutor}.
+ * <p>
+ * {@link #scheduleAndCancel} measures the cost of (re)scheduling and canceling a task while many other tasks are
+ * scheduled, like when a large task set is updated. {@link #soak} keeps many periodic tasks running for a while and
+ * reports how many runs happened and how far the intervals between two runs of a task deviated from the period.
+ */
+@Fork(1)
+public class SchedulerBenchmark {
+
+    private static final int THREADS = 20;
+
+    public static void main(String[] args) throws Exception {
+        org.openjdk.jmh.Main.main(args);
+    }
+
+    static OpennmsScheduler create(String implementation) {
+        if ("wheel".equals(implementation)) {
+            return new TimingWheelScheduler(10, THREADS, 100_000);
+        }
+        OpennmsSchedulerImpl scheduler = new OpennmsSchedulerImpl();
+        scheduler.setScheduledThreadPoolExecutor(
+                new ScheduledThreadPoolExecutorFactory().create(THREADS, "opennms.workflow.scheduler.thread."));
+        return scheduler;
+    }
+
+    @State(Scope.Benchmark)
+    public static class Resident {
+        @Param({"wheel", "executor"})
+        public String implementation;
+
+        @Param({"100000"})
+        public int tasks;
+
+        OpennmsScheduler scheduler;
+        long next;
+
+        @Setup
+        public void setUp() {
+            scheduler = create(implementation);
+            for (int i = 0; i < tasks; i++) {
+                scheduler.schedulePeriodically("resident-" + i, 5, TimeUnit.MINUTES, () -> {});
+            }
+        }
+
+        @TearDown
+        public void tearDown() {
+            scheduler.shutdown();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 3)
+    @Measurement(iterations = 5)
+    public void scheduleAndCancel(Resident resident) {
+        String taskId = "task-" + resident.next++;
+        resident.scheduler.schedulePeriodically(taskId, 1, TimeUnit.MINUTES, () -> {});
+        resident.scheduler.cancelTask(taskId);
+    }
+
+    @State(Scope.Benchmark)
+    public static class Soak {
+        @Param({"wheel", "executor"})
+        public String implementation;
+
+        @Param({"100000"})
+        public int tasks;
+
+        @Param({"1000"})
+        public long periodMs;
+
+        OpennmsScheduler scheduler;
+        AtomicLongArray lastRun;
+        final LongAdder runs = new LongAdder();
+        final LongAdder deviationMicros = new LongAdder();
+
+        @Setup(Level.Iteration)
+        public void setUp() {
+            scheduler = create(implementation);
+            lastRun = new AtomicLongArray(tasks);
+            runs.reset();
+            deviationMicros.reset();
+            long periodNanos = TimeUnit.MILLISECONDS.toNanos(periodMs);
+            for (int i = 0; i < tasks; i++) {
+                int task = i;
+                scheduler.schedulePeriodically("task-" + i, periodMs, TimeUnit.MILLISECONDS, () -> {
+                    long now = System.nanoTime();
+                    long last = lastRun.getAndSet(task, now);
+                    if (last != 0) {
+                        runs.increment();
+                        deviationMicros.add(Math.abs(now - last - periodNanos) / 1000);
+                    }
+                });
+            }
+        }
+
+        @TearDown(Level.Iteration)
+        public void tearDown() {
+            scheduler.shutdown();
+        }
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class SoakCounters {
+        public long runs;
+        public long meanDeviationMicros;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 3)
+    public void soak(Soak soak, SoakCounters counters) throws InterruptedException {
+        Thread.sleep(TimeUnit.SECONDS.toMillis(30));
+        counters.runs = soak.runs.sum();
+        counters.meanDeviationMicros = soak.deviationMicros.sum() / Math.max(1, counters.runs);
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.horizon.minion.scheduler.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TimingWheelSchedulerTest {
+    private TimingWheelScheduler scheduler;
+
+    @Before
+    public void setUp() {
+        scheduler = new TimingWheelScheduler(1, 2, 100);
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void testScheduleOnce() throws Exception {
+        CountDownLatch latch = new CountDownLatch(1);
+        long start = System.nanoTime();
+
+        scheduler.scheduleOnce("task-1", 50, TimeUnit.MILLISECONDS, latch::countDown);
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+        // Removed once it completed
+        waitForTaskCount(0);
+    }
+
+    @Test
+    public void testScheduleOnceCascades() throws Exception {
+        // Beyond the reach of level 0 with 1ms ticks
+        long delay = TimingWheelScheduler.WHEEL_SIZE + 200;
+        CountDownLatch latch = new CountDownLatch(1);
+        long start = System.nanoTime();
+
+        scheduler.scheduleOnce("task-1", delay, TimeUnit.MILLISECONDS, latch::countDown);
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue("ran after " + elapsed + "ms", elapsed >= delay && elapsed < delay + 500);
+    }
+
+    @Test
+    public void testSchedulePeriodically() throws Exception {
+        CountDownLatch latch = new CountDownLatch(5);
+
+        scheduler.schedulePeriodically("task-1", 20, TimeUnit.MILLISECONDS, latch::countDown);
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals(1, scheduler.getTaskCount());
+    }
+
+    @Test
+    public void testFailingPeriodicTaskKeepsRunning() throws Exception {
+        CountDownLatch latch = new CountDownLatch(3);
+
+        scheduler.schedulePeriodically("task-1", 20, TimeUnit.MILLISECONDS, () -> {
+            latch.countDown();
+            throw new IllegalStateException("failure");
+        });
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testCancelTask() throws Exception {
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        scheduler.schedulePeriodically("task-1", 10, TimeUnit.MILLISECONDS, () -> {
+            runs.incrementAndGet();
+            started.countDown();
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        scheduler.cancelTask("task-1");
+        int cancelledAt = runs.get();
+        Thread.sleep(100);
+
+        // At most the run that was in flight while canceling
+        assertTrue(runs.get() <= cancelledAt + 1);
+        assertEquals(0, scheduler.getTaskCount());
+    }
+
+    @Test
+    public void testReplaceTask() throws Exception {
+        AtomicInteger oldRuns = new AtomicInteger();
+        scheduler.scheduleOnce("task-1", 100, TimeUnit.MILLISECONDS, oldRuns::incrementAndGet);
+        CountDownLatch latch = new CountDownLatch(1);
+
+        scheduler.scheduleOnce("task-1", 10, TimeUnit.MILLISECONDS, latch::countDown);
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        Thread.sleep(200);
+        assertEquals(0, oldRuns.get());
+    }
+
+    @Test
+    public void testSpreadsTasksOverPeriod() {
+        long period = TimeUnit.SECONDS.toNanos(60);
+        Set<Long> seconds = new HashSet<>();
+        for (int i = 0; i < 1000; i++) {
+            long offset = TimingWheelScheduler.spread("task-" + i, period);
+            assertTrue(offset >= 0 && offset < period);
+            seconds.add(TimeUnit.NANOSECONDS.toSeconds(offset));
+        }
+        // Similar task ids end up all over the period
+        assertEquals(60, seconds.size());
+        assertEquals(TimingWheelScheduler.spread("task-1", period), TimingWheelScheduler.spread("task-1", period));
+    }
+
+    private void waitForTaskCount(int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (scheduler.getTaskCount() != expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, scheduler.getTaskCount());
+    }
+}
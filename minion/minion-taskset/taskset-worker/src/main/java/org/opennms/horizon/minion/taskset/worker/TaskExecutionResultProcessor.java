@@ -21,6 +21,7 @@
  */
 package org.opennms.horizon.minion.taskset.worker;
 
+import java.util.Map;
 import org.opennms.horizon.minion.plugin.api.CollectionSet;
 import org.opennms.horizon.minion.plugin.api.ScanResultsResponse;
 import org.opennms.horizon.minion.plugin.api.ServiceMonitorRequest;
@@ -49,4 +50,14 @@ public interface TaskExecutionResultProcessor {
             ServiceMonitorResponse serviceMonitorResponse);
 
     void queueSendResult(TaskDefinition taskDefinition, CollectionSet collectionSet);
+
+    /**
+     * Queue the results of several monitors to be sent out together.  Results of tasks that are not found in the
+     * given task definitions are dropped.
+     *
+     * @param taskDefinitions task definitions by task id
+     * @param results
+     */
+    void queueSendResults(
+            Map<String, TaskDefinition> taskDefinitions, Map<ServiceMonitorRequest, ServiceMonitorResponse> results);
 }
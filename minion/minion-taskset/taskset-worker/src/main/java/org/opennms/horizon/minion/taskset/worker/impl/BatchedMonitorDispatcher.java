@@ -0,0 +1,133 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.horizon.minion.taskset.worker.impl;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.opennms.horizon.minion.plugin.api.BatchedServiceMonitor;
+import org.opennms.horizon.minion.plugin.api.ServiceMonitorManager;
+import org.opennms.horizon.minion.plugin.api.ServiceMonitorRequest;
+import org.opennms.horizon.minion.plugin.api.ServiceMonitorResponse;
+import org.opennms.horizon.minion.plugin.api.registries.MonitorRegistry;
+import org.opennms.horizon.minion.taskset.worker.TaskExecutionResultProcessor;
+import org.opennms.taskset.contract.MonitorSetConfig;
+import org.opennms.taskset.contract.TaskDefinition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Hands periodic monitor tasks to the {@link BatchedServiceMonitor} of their monitor types, if all of them support
+ * batching.  The results of each batch cycle are sent out as one message.
+ */
+public class BatchedMonitorDispatcher {
+    private static final Logger DEFAULT_LOGGER = LoggerFactory.getLogger(BatchedMonitorDispatcher.class);
+
+    private Logger log = DEFAULT_LOGGER;
+
+    private final MonitorRegistry monitorRegistry;
+    private final TaskExecutionResultProcessor resultProcessor;
+    private final Executor executor;
+
+    // By manager instance, so a re-registered plugin gets a fresh batched monitor. Empty if it cannot batch.
+    private final Map<ServiceMonitorManager, Optional<BatchedServiceMonitor>> batchedMonitors =
+            new ConcurrentHashMap<>();
+    private final Map<String, TaskDefinition> taskDefinitions = new ConcurrentHashMap<>();
+
+    public BatchedMonitorDispatcher(
+            MonitorRegistry monitorRegistry, TaskExecutionResultProcessor resultProcessor, Executor executor) {
+        this.monitorRegistry = monitorRegistry;
+        this.resultProcessor = resultProcessor;
+        this.executor = executor;
+    }
+
+    /**
+     * Schedules the monitors of the given task with their batched monitors.
+     *
+     * @return false if any of the monitor types does not support batching, the task must be scheduled on its own then
+     */
+    public boolean schedule(TaskDefinition taskDefinition, long period, TimeUnit unit, MonitorSetConfig monitors) {
+        Map<BatchedServiceMonitor, List<ServiceMonitorRequest>> requestsByMonitor = new LinkedHashMap<>();
+        for (final var config : monitors.getMonitorConfigList()) {
+            final var monitorManager = monitorRegistry.getService(config.getMonitorType());
+            if (monitorManager == null) {
+                return false;
+            }
+            Optional<BatchedServiceMonitor> batchedMonitor =
+                    batchedMonitors.computeIfAbsent(monitorManager, this::create);
+            if (batchedMonitor.isEmpty()) {
+                return false;
+            }
+            requestsByMonitor
+                    .computeIfAbsent(batchedMonitor.get(), m -> new ArrayList<>())
+                    .add(ServiceMonitorRequest.builder()
+                            .taskId(taskDefinition.getId())
+                            .monitoredEntityId(config.getMonitoredEntityId())
+                            .monitorType(config.getMonitorType())
+                            .configuration(config.getConfiguration())
+                            .build());
+        }
+        if (requestsByMonitor.isEmpty()) {
+            return false;
+        }
+
+        taskDefinitions.put(taskDefinition.getId(), taskDefinition);
+        requestsByMonitor.forEach(
+                (monitor, requests) -> monitor.schedule(taskDefinition.getId(), period, unit, requests));
+        return true;
+    }
+
+    public void cancel(String taskId) {
+        if (taskDefinitions.remove(taskId) != null) {
+            for (Optional<BatchedServiceMonitor> batchedMonitor : batchedMonitors.values()) {
+                batchedMonitor.ifPresent(monitor -> monitor.cancel(taskId));
+            }
+        }
+    }
+
+    public void close() {
+        for (Optional<BatchedServiceMonitor> batchedMonitor : batchedMonitors.values()) {
+            batchedMonitor.ifPresent(BatchedServiceMonitor::close);
+        }
+        batchedMonitors.clear();
+        taskDefinitions.clear();
+    }
+
+    private Optional<BatchedServiceMonitor> create(ServiceMonitorManager monitorManager) {
+        return Optional.ofNullable(monitorManager.createBatched(this::send));
+    }
+
+    private void send(Map<ServiceMonitorRequest, ServiceMonitorResponse> results) {
+        // Batched monitors call back from their I/O threads
+        try {
+            executor.execute(() -> resultProcessor.queueSendResults(taskDefinitions, results));
+        } catch (RejectedExecutionException e) {
+            log.warn("Dropping {} monitor results; executor is shut down", results.size());
+        }
+    }
+}
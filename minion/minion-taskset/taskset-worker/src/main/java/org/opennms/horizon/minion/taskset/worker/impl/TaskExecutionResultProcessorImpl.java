@@ -23,6 +23,7 @@ package org.opennms.horizon.minion.taskset.worker.impl;
 
 import com.google.protobuf.Any;
 import java.util.Collections;
+import java.util.Map;
 import java.util.Optional;
 import org.opennms.horizon.minion.plugin.api.CollectionSet;
 import org.opennms.horizon.minion.plugin.api.ScanResultsResponse;
@@ -30,7 +31,7 @@ import org.opennms.horizon.minion.plugin.api.ServiceMonitorRequest;
 import org.opennms.horizon.minion.plugin.api.ServiceMonitorResponse;
 import org.opennms.horizon.minion.taskset.worker.TaskExecutionResultProcessor;
 import org.opennms.horizon.shared.ipc.rpc.IpcIdentity;
-import org.opennms.horizon.shared.ipc.sink.api.SyncDispatcher;
+import org.opennms.horizon.shared.ipc.sink.api.AsyncDispatcher;
 import org.opennms.taskset.contract.CollectorResponse;
 import org.opennms.taskset.contract.Identity;
 import org.opennms.taskset.contract.MonitorResponse;
@@ -47,11 +48,11 @@ public class TaskExecutionResultProcessorImpl implements TaskExecutionResultProc
 
     private Logger log = DEFAULT_LOGGER;
 
-    private final SyncDispatcher<TaskSetResults> taskSetSinkDispatcher;
+    private final AsyncDispatcher<TaskSetResults> taskSetSinkDispatcher;
     private final IpcIdentity identity;
 
     public TaskExecutionResultProcessorImpl(
-            SyncDispatcher<TaskSetResults> taskSetSinkDispatcher, IpcIdentity identity) {
+            AsyncDispatcher<TaskSetResults> taskSetSinkDispatcher, IpcIdentity identity) {
         this.taskSetSinkDispatcher = taskSetSinkDispatcher;
         this.identity = identity;
     }
@@ -83,23 +84,7 @@ public class TaskExecutionResultProcessorImpl implements TaskExecutionResultProc
                 taskDefinition.getId(),
                 serviceMonitorRequest.getMonitoredEntityId(),
                 response.getStatus());
-        final var monitorResponse = MonitorResponse.newBuilder()
-                .setResponseTimeMs(response.getResponseTime())
-                .setStatus(Optional.of(response)
-                        .map(ServiceMonitorResponse::getStatus)
-                        .map(Object::toString)
-                        .orElse(MonitorResponse.getDefaultInstance().getStatus()))
-                .setReason(Optional.of(response)
-                        .map(ServiceMonitorResponse::getReason)
-                        .orElse(MonitorResponse.getDefaultInstance().getReason()))
-                .putAllMetrics(Optional.of(response)
-                        .flatMap(r -> Optional.ofNullable(r.getAdditionalMetrics()))
-                        .orElse(Collections.emptyMap()))
-                .setTimestamp(response.getTimestamp())
-                .setMonitoredEntityId(serviceMonitorRequest.getMonitoredEntityId())
-                .setMonitorType(serviceMonitorRequest.getMonitorType())
-                .putAllMetricLabels(taskDefinition.getMetricLabelsMap())
-                .build();
+        final var monitorResponse = formatMonitorResponse(taskDefinition, serviceMonitorRequest, response);
 
         final var taskSetResults = formatTaskSetResults(taskDefinition.getId(), monitorResponse);
 
@@ -110,6 +95,39 @@ public class TaskExecutionResultProcessorImpl implements TaskExecutionResultProc
         }
     }
 
+    @Override
+    public void queueSendResults(
+            Map<String, TaskDefinition> taskDefinitions, Map<ServiceMonitorRequest, ServiceMonitorResponse> results) {
+        final var taskSetResults = TaskSetResults.newBuilder();
+        for (final var entry : results.entrySet()) {
+            final var serviceMonitorRequest = entry.getKey();
+            final var taskDefinition = taskDefinitions.get(serviceMonitorRequest.getTaskId());
+            if (taskDefinition == null) {
+                // Canceled while the poll was outstanding
+                continue;
+            }
+            log.debug(
+                    "Poll Status: id = {}, meid = {}, status = {}; ",
+                    taskDefinition.getId(),
+                    serviceMonitorRequest.getMonitoredEntityId(),
+                    entry.getValue().getStatus());
+            taskSetResults.addResults(TaskResult.newBuilder()
+                    .setId(taskDefinition.getId())
+                    .setMonitorResponse(formatMonitorResponse(taskDefinition, serviceMonitorRequest, entry.getValue()))
+                    .setIdentity(Identity.newBuilder().setSystemId(identity.getId())));
+        }
+        if (taskSetResults.getResultsCount() == 0) {
+            return;
+        }
+        log.info("Poll Status: {} results", taskSetResults.getResultsCount());
+
+        try {
+            taskSetSinkDispatcher.send(taskSetResults.build());
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     @Override
     public void queueSendResult(TaskDefinition taskDefinition, CollectionSet collectionSet) {
         final var collectorResponse = formatCollectorResponse(taskDefinition, collectionSet);
@@ -126,6 +144,29 @@ public class TaskExecutionResultProcessorImpl implements TaskExecutionResultProc
     // Internals
     // ----------------------------------------
 
+    private MonitorResponse formatMonitorResponse(
+            TaskDefinition taskDefinition,
+            ServiceMonitorRequest serviceMonitorRequest,
+            ServiceMonitorResponse response) {
+        return MonitorResponse.newBuilder()
+                .setResponseTimeMs(response.getResponseTime())
+                .setStatus(Optional.of(response)
+                        .map(ServiceMonitorResponse::getStatus)
+                        .map(Object::toString)
+                        .orElse(MonitorResponse.getDefaultInstance().getStatus()))
+                .setReason(Optional.of(response)
+                        .map(ServiceMonitorResponse::getReason)
+                        .orElse(MonitorResponse.getDefaultInstance().getReason()))
+                .putAllMetrics(Optional.of(response)
+                        .flatMap(r -> Optional.ofNullable(r.getAdditionalMetrics()))
+                        .orElse(Collections.emptyMap()))
+                .setTimestamp(response.getTimestamp())
+                .setMonitoredEntityId(serviceMonitorRequest.getMonitoredEntityId())
+                .setMonitorType(serviceMonitorRequest.getMonitorType())
+                .putAllMetricLabels(taskDefinition.getMetricLabelsMap())
+                .build();
+    }
+
     private TaskSetResults formatTaskSetResults(String id, ScannerResponse scannerResponse) {
         TaskResult taskResult = TaskResult.newBuilder()
                 .setId(id)
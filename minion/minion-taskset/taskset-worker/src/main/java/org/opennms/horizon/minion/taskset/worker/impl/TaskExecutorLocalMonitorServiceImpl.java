@@ -56,19 +56,23 @@ public class TaskExecutorLocalMonitorServiceImpl implements TaskExecutorLocalSer
     private TaskExecutionResultProcessor resultProcessor;
     private MonitorRegistry monitorRegistry;
     private ExecutorService executor;
+    private BatchedMonitorDispatcher batchedMonitorDispatcher;
     private AtomicBoolean active = new AtomicBoolean(false);
+    private volatile boolean batched;
 
     public TaskExecutorLocalMonitorServiceImpl(
             OpennmsScheduler scheduler,
             TaskDefinition taskDefinition,
             TaskExecutionResultProcessor resultProcessor,
             MonitorRegistry monitorRegistry,
-            ExecutorService executor) {
+            ExecutorService executor,
+            BatchedMonitorDispatcher batchedMonitorDispatcher) {
         this.taskDefinition = taskDefinition;
         this.scheduler = scheduler;
         this.resultProcessor = resultProcessor;
         this.monitorRegistry = monitorRegistry;
         this.executor = executor;
+        this.batchedMonitorDispatcher = batchedMonitorDispatcher;
     }
 
     // ========================================
@@ -84,8 +88,16 @@ public class TaskExecutorLocalMonitorServiceImpl implements TaskExecutorLocalSer
             if (whenSpec.matches("^\\d+$")) {
                 long period = Long.parseLong(taskDefinition.getSchedule());
 
-                scheduler.schedulePeriodically(
-                        taskDefinition.getId(), period, TimeUnit.MILLISECONDS, this::executeSerializedIteration);
+                // Share the polling cycles of other tasks with the same period if the monitors support it
+                batched = batchedMonitorDispatcher.schedule(
+                        taskDefinition,
+                        period,
+                        TimeUnit.MILLISECONDS,
+                        taskDefinition.getConfiguration().unpack(MonitorSetConfig.class));
+                if (!batched) {
+                    scheduler.schedulePeriodically(
+                            taskDefinition.getId(), period, TimeUnit.MILLISECONDS, this::executeSerializedIteration);
+                }
             } else {
                 // Not a number, REQUIRED to be a CRON expression
                 scheduler.scheduleTaskOnCron(taskDefinition.getId(), whenSpec, this::executeSerializedIteration);
@@ -103,7 +115,11 @@ public class TaskExecutorLocalMonitorServiceImpl implements TaskExecutorLocalSer
 
     @Override
     public void cancel() {
-        scheduler.cancelTask(taskDefinition.getId());
+        if (batched) {
+            batchedMonitorDispatcher.cancel(taskDefinition.getId());
+        } else {
+            scheduler.cancelTask(taskDefinition.getId());
+        }
     }
 
     // ========================================
@@ -61,7 +61,9 @@ public class TaskExecutorLocalScannerServiceImpl implements TaskExecutorLocalSer
             Scanner scanner = lookupScanner(taskDefinition);
             log.info("Create Scanner for {}", taskDefinition.getPluginName());
             if (scanner != null) {
-                future = scanner.scan(taskDefinition.getConfiguration());
+                future = scanner.scan(
+                        taskDefinition.getConfiguration(),
+                        partialResults -> resultProcessor.queueSendResult(taskDefinition.getId(), partialResults));
                 future.whenComplete(this::handleExecutionComplete);
             }
         } catch (Exception exc) {
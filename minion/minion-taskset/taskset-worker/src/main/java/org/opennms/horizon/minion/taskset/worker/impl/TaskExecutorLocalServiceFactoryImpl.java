@@ -52,6 +52,7 @@ public class TaskExecutorLocalServiceFactoryImpl implements TaskExecutorLocalSer
     private final ScannerRegistry scannerRegistry;
 
     private ExecutorService executor;
+    private final BatchedMonitorDispatcher batchedMonitorDispatcher;
 
     // ========================================
     // Constructor
@@ -76,6 +77,7 @@ public class TaskExecutorLocalServiceFactoryImpl implements TaskExecutorLocalSer
         this.executor = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
                 .setNameFormat("monitor-service-response-handler")
                 .build());
+        this.batchedMonitorDispatcher = new BatchedMonitorDispatcher(monitorRegistry, resultProcessor, executor);
     }
 
     // ========================================
@@ -91,7 +93,12 @@ public class TaskExecutorLocalServiceFactoryImpl implements TaskExecutorLocalSer
 
             case MONITOR:
                 return new TaskExecutorLocalMonitorServiceImpl(
-                        scheduler, taskDefinition, resultProcessor, monitorRegistry, executor);
+                        scheduler,
+                        taskDefinition,
+                        resultProcessor,
+                        monitorRegistry,
+                        executor,
+                        batchedMonitorDispatcher);
 
             case LISTENER:
                 TaskListenerRetryable listenerService =
@@ -112,6 +119,7 @@ public class TaskExecutorLocalServiceFactoryImpl implements TaskExecutorLocalSer
     }
 
     public void close() {
+        batchedMonitorDispatcher.close();
         executor.shutdown();
     }
 }
@@ -0,0 +1,351 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.horizon.minion.icmp;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.RateLimiter;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import org.opennms.horizon.minion.plugin.api.BatchedServiceMonitor;
+import org.opennms.horizon.minion.plugin.api.ServiceMonitorRequest;
+import org.opennms.horizon.minion.plugin.api.ServiceMonitorResponse;
+import org.opennms.horizon.shared.icmp.Pinger;
+import org.opennms.horizon.shared.icmp.PingerFactory;
+import org.opennms.icmp.contract.IcmpMonitorRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Polls all ICMP monitors of the same period from one timing wheel.
+ * <p>
+ * The period is divided into slots of one tick and each monitored entity gets a fixed slot, derived from its task
+ * and entity ids so it keeps its place when the task set is updated. On every tick the entities of the current slot
+ * of each wheel are sent as one burst through the shared pinger, paced to at most the configured packets per second,
+ * and their responses are handed to the result sink together once the last one arrived or timed out. An entity whose
+ * previous probe is still outstanding is skipped, like a task whose previous iteration is still active.
+ * <p>
+ * Periods that are not a multiple of the tick are rounded up to the next multiple, so an entity is never probed more
+ * often than requested.
+ * <p>
+ * The result sink is called from the pinger's receiver thread and must not block.
+ */
+public class BatchedIcmpMonitor implements BatchedServiceMonitor {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BatchedIcmpMonitor.class);
+
+    private final IcmpMonitor requestParser;
+    private final PingerFactory pingerFactory;
+    private final long tickMs;
+    private final RateLimiter rateLimiter;
+    private final Consumer<Map<ServiceMonitorRequest, ServiceMonitorResponse>> resultSink;
+    private final ScheduledExecutorService ticker;
+
+    @VisibleForTesting
+    final long epoch = System.currentTimeMillis();
+
+    // Guarded by this
+    private final Map<Long, Wheel> wheels = new HashMap<>();
+    private final Map<String, List<Member>> members = new HashMap<>();
+    private long lastTick;
+
+    public BatchedIcmpMonitor(
+            PingerFactory pingerFactory,
+            long tickMs,
+            double maxPacketsPerSecond,
+            Consumer<Map<ServiceMonitorRequest, ServiceMonitorResponse>> resultSink) {
+        this(pingerFactory, tickMs, maxPacketsPerSecond, resultSink, Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "icmp-monitor-wheel");
+            thread.setDaemon(true);
+            return thread;
+        }));
+    }
+
+    /**
+     * @param ticker drives the wheels, or null if the caller calls {@link #tick(long)} itself
+     */
+    @VisibleForTesting
+    BatchedIcmpMonitor(
+            PingerFactory pingerFactory,
+            long tickMs,
+            double maxPacketsPerSecond,
+            Consumer<Map<ServiceMonitorRequest, ServiceMonitorResponse>> resultSink,
+            ScheduledExecutorService ticker) {
+        this.requestParser = new IcmpMonitor(pingerFactory);
+        this.pingerFactory = pingerFactory;
+        this.tickMs = tickMs;
+        this.rateLimiter = maxPacketsPerSecond > 0 ? RateLimiter.create(maxPacketsPerSecond) : null;
+        this.resultSink = Objects.requireNonNull(resultSink);
+        this.ticker = ticker;
+        if (ticker != null) {
+            ticker.scheduleAtFixedRate(this::tickNow, tickMs, tickMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public void schedule(String taskId, long period, TimeUnit unit, List<ServiceMonitorRequest> requests) {
+        long requestedMs = unit.toMillis(period);
+        long periodMs = Math.max(1, (requestedMs + tickMs - 1) / tickMs) * tickMs;
+        if (periodMs != requestedMs) {
+            LOG.info(
+                    "Rounding ICMP monitor period up to a multiple of the {}ms tick; task={}, period={}ms, used={}ms",
+                    tickMs,
+                    taskId,
+                    requestedMs,
+                    periodMs);
+        }
+        List<Member> scheduled = new ArrayList<>(requests.size());
+        for (ServiceMonitorRequest request : requests) {
+            try {
+                scheduled.add(new Member(request, requestParser.parseRequest(request.getConfiguration())));
+            } catch (Exception e) {
+                LOG.warn(
+                        "Skipping ICMP monitor with invalid configuration; task={}, monitor={}",
+                        taskId,
+                        request.getMonitoredEntityId(),
+                        e);
+            }
+        }
+
+        synchronized (this) {
+            cancel(taskId);
+            Wheel wheel = wheels.computeIfAbsent(periodMs, Wheel::new);
+            for (Member member : scheduled) {
+                wheel.add(member);
+            }
+            members.put(taskId, scheduled);
+        }
+    }
+
+    @Override
+    public synchronized void cancel(String taskId) {
+        List<Member> removed = members.remove(taskId);
+        if (removed == null) {
+            return;
+        }
+        for (Member member : removed) {
+            member.cancelled = true;
+            Wheel wheel = wheels.get(member.wheel);
+            if (wheel != null && wheel.remove(member)) {
+                wheels.remove(member.wheel);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        if (ticker != null) {
+            ticker.shutdownNow();
+        }
+        synchronized (this) {
+            members.values().forEach(list -> list.forEach(member -> member.cancelled = true));
+            members.clear();
+            wheels.clear();
+        }
+    }
+
+    @VisibleForTesting
+    synchronized int getMemberCount() {
+        return members.values().stream().mapToInt(List::size).sum();
+    }
+
+    private void tickNow() {
+        try {
+            tick(System.currentTimeMillis());
+        } catch (RuntimeException e) {
+            LOG.error("Failed to run ICMP monitor wheel tick", e);
+        }
+    }
+
+    /**
+     * Sends the probes of all slots that became due up to the given time. Ticks that were missed because a previous
+     * burst took too long are caught up, but no entity is probed twice in one call.
+     */
+    @VisibleForTesting
+    void tick(long now) {
+        List<Member> due = new ArrayList<>();
+        synchronized (this) {
+            long tick = (now - epoch) / tickMs;
+            if (tick <= lastTick) {
+                return;
+            }
+            for (Wheel wheel : wheels.values()) {
+                long from = Math.max(lastTick + 1, tick - wheel.slots.length + 1);
+                for (long t = from; t <= tick; t++) {
+                    due.addAll(wheel.slots[(int) (t % wheel.slots.length)]);
+                }
+            }
+            lastTick = tick;
+        }
+        if (!due.isEmpty()) {
+            new Cycle(due.size()).send(due);
+        }
+    }
+
+    private final class Wheel {
+        private final long period;
+        private final List<Member>[] slots;
+        private int size;
+
+        @SuppressWarnings("unchecked")
+        private Wheel(long period) {
+            this.period = period;
+            this.slots = new List[(int) (period / tickMs)];
+            for (int i = 0; i < slots.length; i++) {
+                slots[i] = new ArrayList<>();
+            }
+        }
+
+        private void add(Member member) {
+            int slot = Math.floorMod(
+                    Objects.hash(member.request.getTaskId(), member.request.getMonitoredEntityId()), slots.length);
+            slots[slot].add(member);
+            member.wheel = period;
+            member.slot = slot;
+            size++;
+        }
+
+        /**
+         * @return whether the wheel is empty now
+         */
+        private boolean remove(Member member) {
+            if (slots[member.slot].remove(member)) {
+                size--;
+            }
+            return size == 0;
+        }
+    }
+
+    private static final class Member {
+        private final ServiceMonitorRequest request;
+        private final IcmpMonitorRequest icmpRequest;
+        private final AtomicBoolean active = new AtomicBoolean();
+        private long wheel;
+        private int slot;
+        private volatile boolean cancelled;
+
+        private Member(ServiceMonitorRequest request, IcmpMonitorRequest icmpRequest) {
+            this.request = request;
+            this.icmpRequest = icmpRequest;
+        }
+    }
+
+    /**
+     * The probes sent in one tick. The number of outstanding probes starts at one for the sender itself, so the
+     * results cannot be handed out before the last probe was sent.
+     */
+    private final class Cycle {
+        private final AtomicInteger outstanding = new AtomicInteger(1);
+
+        // Guarded by this
+        private final Map<ServiceMonitorRequest, ServiceMonitorResponse> results;
+
+        private Cycle(int expected) {
+            results = new LinkedHashMap<>((int) (expected / 0.75f) + 1);
+        }
+
+        private void send(List<Member> due) {
+            for (Member member : due) {
+                if (member.cancelled) {
+                    continue;
+                }
+                if (!member.active.compareAndSet(false, true)) {
+                    LOG.debug(
+                            "Skipping ICMP monitor as its prior probe is still outstanding; task={}, monitor={}",
+                            member.request.getTaskId(),
+                            member.request.getMonitoredEntityId());
+                    continue;
+                }
+                if (rateLimiter != null) {
+                    rateLimiter.acquire();
+                }
+                outstanding.incrementAndGet();
+                probe(member);
+            }
+            completed();
+        }
+
+        private void probe(Member member) {
+            IcmpMonitorRequest icmpRequest = member.icmpRequest;
+            CompletableFuture<ServiceMonitorResponse> future = new CompletableFuture<>();
+            future.whenComplete((response, e) -> handle(member, response, e));
+            try {
+                InetAddress host = InetAddress.getByName(icmpRequest.getHost());
+                Pinger pinger = pingerFactory.getInstance(icmpRequest.getDscp(), icmpRequest.getAllowFragmentation());
+                pinger.ping(
+                        host,
+                        icmpRequest.getTimeout(),
+                        icmpRequest.getRetries(),
+                        icmpRequest.getPacketSize(),
+                        1,
+                        new IcmpMonitor.MyPingResponseCallback(future));
+            } catch (Exception e) {
+                future.completeExceptionally(e);
+            }
+        }
+
+        private void handle(Member member, ServiceMonitorResponse response, Throwable e) {
+            member.active.set(false);
+            if (e != null) {
+                LOG.warn(
+                        "Failed to poll ICMP monitor; task={}, monitor={}, message={}",
+                        member.request.getTaskId(),
+                        member.request.getMonitoredEntityId(),
+                        e.getMessage());
+            } else if (!member.cancelled) {
+                synchronized (this) {
+                    results.put(member.request, response);
+                }
+            }
+            completed();
+        }
+
+        private void completed() {
+            if (outstanding.decrementAndGet() != 0) {
+                return;
+            }
+            Map<ServiceMonitorRequest, ServiceMonitorResponse> completed;
+            synchronized (this) {
+                completed = results;
+            }
+            if (completed.isEmpty()) {
+                return;
+            }
+            try {
+                resultSink.accept(completed);
+            } catch (RuntimeException e) {
+                LOG.warn("Failed to hand out {} ICMP monitor results", completed.size(), e);
+            }
+        }
+    }
+}
@@ -23,6 +23,7 @@ package org.opennms.horizon.minion.icmp;
 
 import com.google.protobuf.Any;
 import com.google.protobuf.Descriptors;
+import com.google.protobuf.InvalidProtocolBufferException;
 import java.net.InetAddress;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
@@ -78,13 +79,7 @@ public class IcmpMonitor implements ServiceMonitor {
         CompletableFuture<ServiceMonitorResponse> future = new CompletableFuture<>();
 
         try {
-            if (!config.is(IcmpMonitorRequest.class)) {
-                throw new IllegalArgumentException(
-                        "configuration must be an IcmpMonitorRequest; type-url=" + config.getTypeUrl());
-            }
-
-            IcmpMonitorRequest icmpMonitorRequest = config.unpack(IcmpMonitorRequest.class);
-            IcmpMonitorRequest effectiveRequest = populateDefaultsAsNeeded(icmpMonitorRequest);
+            IcmpMonitorRequest effectiveRequest = parseRequest(config);
 
             String hostString = effectiveRequest.getHost();
             InetAddress host = InetAddress.getByName(hostString);
@@ -110,6 +105,15 @@ public class IcmpMonitor implements ServiceMonitor {
     // Internal Methods
     // ----------------------------------------
 
+    IcmpMonitorRequest parseRequest(Any config) throws InvalidProtocolBufferException {
+        if (!config.is(IcmpMonitorRequest.class)) {
+            throw new IllegalArgumentException(
+                    "configuration must be an IcmpMonitorRequest; type-url=" + config.getTypeUrl());
+        }
+
+        return populateDefaultsAsNeeded(config.unpack(IcmpMonitorRequest.class));
+    }
+
     private IcmpMonitorRequest populateDefaultsAsNeeded(IcmpMonitorRequest request) {
         IcmpMonitorRequest.Builder resultBuilder = request.newBuilder(request);
 
@@ -140,7 +144,7 @@ public class IcmpMonitor implements ServiceMonitor {
     // Internal Classes
     // ----------------------------------------
 
-    private static class MyPingResponseCallback implements PingResponseCallback {
+    static class MyPingResponseCallback implements PingResponseCallback {
         private final Logger logger = LoggerFactory.getLogger(MyPingResponseCallback.class);
         private final CompletableFuture<ServiceMonitorResponse> future;
 
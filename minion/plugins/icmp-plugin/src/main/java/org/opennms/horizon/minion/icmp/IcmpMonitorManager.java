@@ -22,15 +22,23 @@
 package org.opennms.horizon.minion.icmp;
 
 import com.google.protobuf.Message;
+import java.util.Map;
+import java.util.function.Consumer;
 import lombok.RequiredArgsConstructor;
+import org.opennms.horizon.minion.plugin.api.BatchedServiceMonitor;
 import org.opennms.horizon.minion.plugin.api.ServiceMonitor;
 import org.opennms.horizon.minion.plugin.api.ServiceMonitorManager;
+import org.opennms.horizon.minion.plugin.api.ServiceMonitorRequest;
+import org.opennms.horizon.minion.plugin.api.ServiceMonitorResponse;
 import org.opennms.horizon.shared.icmp.PingerFactory;
 import org.opennms.icmp.contract.IcmpMonitorRequest;
 
 @RequiredArgsConstructor
 public class IcmpMonitorManager implements ServiceMonitorManager {
     private final PingerFactory pingerFactory;
+    private final boolean batched;
+    private final long batchTickMs;
+    private final double batchMaxPacketsPerSecond;
 
     @Override
     public ServiceMonitor create() {
@@ -43,4 +51,13 @@ public class IcmpMonitorManager implements ServiceMonitorManager {
     public Message.Builder createRequestBuilder() {
         return IcmpMonitorRequest.newBuilder();
     }
+
+    @Override
+    public BatchedServiceMonitor createBatched(
+            Consumer<Map<ServiceMonitorRequest, ServiceMonitorResponse>> resultSink) {
+        if (!batched) {
+            return null;
+        }
+        return new BatchedIcmpMonitor(pingerFactory, batchTickMs, batchMaxPacketsPerSecond, resultSink);
+    }
 }
@@ -21,8 +21,7 @@
  */
 package org.opennms.horizon.minion.icmp;
 
-import com.google.common.base.Throwables;
-import com.google.common.collect.Sets;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.util.concurrent.RateLimiter;
 import com.google.protobuf.Any;
 import com.google.protobuf.InvalidProtocolBufferException;
@@ -31,13 +30,11 @@ import java.net.UnknownHostException;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Set;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
-import java.util.stream.StreamSupport;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import org.opennms.horizon.minion.plugin.api.ScanResultsResponse;
 import org.opennms.horizon.minion.plugin.api.ScanResultsResponseImpl;
 import org.opennms.horizon.minion.plugin.api.Scanner;
@@ -54,10 +51,21 @@ import org.opennms.taskset.contract.PingResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Sweeps the ranges of a {@link PingSweepRequest}.
+ * <p>
+ * Addresses are generated lazily while sending, so the size of the ranges does not matter for the heap. Responses
+ * are handed out in batches of {@link #BATCH_SIZE} or at least every {@link #BATCH_INTERVAL_MS} if the caller asked
+ * for partial results. The rate starts at the requested packets per second and is halved whenever the pinger fails
+ * to send too many probes, then raised back step by step.
+ */
 public class PingScan implements Scanner {
 
     private static final Logger LOG = LoggerFactory.getLogger(PingScan.class);
 
+    static final int BATCH_SIZE = 1000;
+    static final long BATCH_INTERVAL_MS = TimeUnit.SECONDS.toMillis(10);
+
     private final PingerFactory pingerFactory;
 
     private final ExecutorService executor;
@@ -69,6 +77,11 @@ public class PingScan implements Scanner {
 
     @Override
     public CompletableFuture<ScanResultsResponse> scan(Any config) {
+        return scan(config, null);
+    }
+
+    @Override
+    public CompletableFuture<ScanResultsResponse> scan(Any config, Consumer<ScanResultsResponse> partialResults) {
 
         if (!config.is(PingSweepRequest.class)) {
             throw new IllegalArgumentException(
@@ -78,12 +91,6 @@ public class PingScan implements Scanner {
         try {
             var request = config.unpack(PingSweepRequest.class);
 
-            final Pinger pinger = pingerFactory.getInstance();
-            final PingSweepResultTracker tracker = new PingSweepResultTracker();
-
-            int packetSize = request.getPacketSize();
-
-            var ipRanges = request.getIpRangeList();
             List<IPPollRange> ranges = new ArrayList<>();
             for (IpRange dto : request.getIpRangeList()) {
                 IPPollRange pollRange = new IPPollRange(
@@ -91,63 +98,14 @@ public class PingScan implements Scanner {
                 ranges.add(pollRange);
             }
 
-            // Use a RateLimiter to limit the ping packets per second that we send
-            RateLimiter limiter = RateLimiter.create(request.getPacketsPerSecond());
-
-            List<IPPollAddress> addresses = StreamSupport.stream(
-                            getAddresses(ranges).spliterator(), false)
-                    .filter(j -> j.address() != null)
-                    .collect(Collectors.toList());
-
-            var response = CompletableFuture.supplyAsync(
-                    () -> {
-                        addresses.forEach(pollAddress -> {
-                            try {
-                                tracker.expectCallbackFor(pollAddress.address());
-                                limiter.acquire();
-                                pinger.ping(
-                                        pollAddress.address(),
-                                        pollAddress.timeout(),
-                                        pollAddress.retries(),
-                                        packetSize,
-                                        1,
-                                        tracker);
-                            } catch (Exception e) {
-                                tracker.handleError(pollAddress.address(), null, e);
-                                tracker.completeExceptionally(e);
-                            }
-                        });
-
-                        try {
-                            tracker.getLatch().await();
-                        } catch (InterruptedException e) {
-                            throw Throwables.propagate(e);
-                        }
-                        tracker.complete();
-                        return tracker.getPingSweepResponse();
-                    },
-                    executor);
-
-            var builder = ScanResultsResponseImpl.builder();
-
-            response.whenComplete(((pingSweepResponse, throwable) -> {
-                if (throwable != null) {
-                    builder.reason(throwable.getMessage());
-                } else {
-                    var discoveryResultBuilder = DiscoveryScanResult.newBuilder();
-                    pingSweepResponse.getPingResults().forEach(result -> {
-                        var pingResponse = PingResponse.newBuilder();
-                        pingResponse.setIpAddress(InetAddressUtils.toIpAddrString(result.address()));
-                        pingResponse.setRtt(result.rtt());
-                        discoveryResultBuilder.setActiveDiscoveryId(request.getActiveDiscoveryId());
-                        discoveryResultBuilder.addPingResponse(pingResponse);
-                    });
-                    builder.results(discoveryResultBuilder.build());
-                    future.complete(builder.build());
-                }
-            }));
-
-            return future;
+            final PingSweep sweep = new PingSweep(
+                    pingerFactory.getInstance(),
+                    request,
+                    new AdaptiveRate(request.getPacketsPerSecond()),
+                    partialResults,
+                    future);
+            final Iterator<IPPollAddress> addresses = getAddresses(ranges).iterator();
+            executor.execute(() -> sweep.run(addresses));
 
         } catch (InvalidProtocolBufferException | UnknownHostException e) {
 
@@ -157,55 +115,209 @@ public class PingScan implements Scanner {
         return future;
     }
 
-    private static class PingSweepResultTracker extends CompletableFuture<PingSweepResponse>
-            implements PingResponseCallback {
+    /**
+     * Sends the probes of one sweep and collects their responses.
+     * <p>
+     * The number of outstanding probes starts at one for the sender itself, so the sweep cannot complete before
+     * the last probe was sent.
+     */
+    @VisibleForTesting
+    static class PingSweep implements PingResponseCallback {
+
+        private final Pinger pinger;
+        private final PingSweepRequest request;
+        private final AdaptiveRate rate;
+        private final Consumer<ScanResultsResponse> partialResults;
+        private final CompletableFuture<ScanResultsResponse> future;
+        private final AtomicInteger outstanding = new AtomicInteger(1);
 
-        private final Set<InetAddress> waitingFor = Sets.newConcurrentHashSet();
-        private final CountDownLatch m_doneSignal = new CountDownLatch(1);
-        private final PingSweepResponse pingSweepResponse = new PingSweepResponse();
+        // Guarded by this
+        private List<PingResponse> batch = new ArrayList<>();
+        private long lastFlush = System.currentTimeMillis();
 
-        public void expectCallbackFor(InetAddress address) {
-            waitingFor.add(address);
+        PingSweep(
+                Pinger pinger,
+                PingSweepRequest request,
+                AdaptiveRate rate,
+                Consumer<ScanResultsResponse> partialResults,
+                CompletableFuture<ScanResultsResponse> future) {
+            this.pinger = pinger;
+            this.request = request;
+            this.rate = rate;
+            this.partialResults = partialResults;
+            this.future = future;
+        }
+
+        void run(Iterator<IPPollAddress> addresses) {
+            try {
+                // Stop sending once the scan was cancelled
+                while (addresses.hasNext() && !future.isDone()) {
+                    IPPollAddress pollAddress = addresses.next();
+                    if (pollAddress.address() == null) {
+                        continue;
+                    }
+                    rate.acquire();
+                    outstanding.incrementAndGet();
+                    try {
+                        pinger.ping(
+                                pollAddress.address(),
+                                pollAddress.timeout(),
+                                pollAddress.retries(),
+                                request.getPacketSize(),
+                                1,
+                                this);
+                    } catch (Exception e) {
+                        handleError(pollAddress.address(), null, e);
+                    }
+                    flushIfDue();
+                }
+            } catch (RuntimeException e) {
+                LOG.error("Exception while doing PingScan", e);
+                future.completeExceptionally(e);
+            } finally {
+                afterHandled();
+            }
         }
 
         @Override
         public void handleResponse(InetAddress address, EchoPacket response) {
             if (response != null) {
                 double responseTimeMicros = Math.round(response.elapsedTime(TimeUnit.MICROSECONDS));
-                double responseTimeMillis = responseTimeMicros / 1000.0;
-                PingResult sweepResult = new PingResult(address, responseTimeMillis);
-                pingSweepResponse.addPingResult(sweepResult);
+                PingResponse pingResponse = PingResponse.newBuilder()
+                        .setIpAddress(InetAddressUtils.toIpAddrString(address))
+                        .setRtt(responseTimeMicros / 1000.0)
+                        .build();
+                List<PingResponse> full = null;
+                synchronized (this) {
+                    batch.add(pingResponse);
+                    if (partialResults != null && batch.size() >= BATCH_SIZE) {
+                        full = drain();
+                    }
+                }
+                publish(full);
             }
-            afterHandled(address);
+            rate.record(false);
+            afterHandled();
         }
 
         @Override
         public void handleTimeout(InetAddress address, EchoPacket request) {
-            afterHandled(address);
+            rate.record(false);
+            afterHandled();
         }
 
         @Override
         public void handleError(InetAddress address, EchoPacket request, Throwable t) {
-            afterHandled(address);
+            LOG.debug("Failed to ping {}", address, t);
+            rate.record(true);
+            afterHandled();
+        }
+
+        private void afterHandled() {
+            if (outstanding.decrementAndGet() == 0) {
+                List<PingResponse> remaining;
+                synchronized (this) {
+                    remaining = drain();
+                }
+                future.complete(toResponse(remaining));
+            }
         }
 
-        private void afterHandled(InetAddress address) {
-            waitingFor.remove(address);
-            if (waitingFor.isEmpty()) {
-                m_doneSignal.countDown();
+        private void flushIfDue() {
+            if (partialResults == null) {
+                return;
+            }
+            List<PingResponse> due = null;
+            synchronized (this) {
+                if (!batch.isEmpty() && System.currentTimeMillis() - lastFlush >= BATCH_INTERVAL_MS) {
+                    due = drain();
+                }
+            }
+            publish(due);
+        }
+
+        private List<PingResponse> drain() {
+            List<PingResponse> drained = batch;
+            batch = new ArrayList<>();
+            lastFlush = System.currentTimeMillis();
+            return drained;
+        }
+
+        private void publish(List<PingResponse> responses) {
+            if (responses == null) {
+                return;
+            }
+            try {
+                partialResults.accept(toResponse(responses));
+            } catch (RuntimeException e) {
+                LOG.warn("Failed to hand out {} ping sweep results", responses.size(), e);
             }
         }
 
-        public void complete() {
-            complete(pingSweepResponse);
+        private ScanResultsResponse toResponse(List<PingResponse> responses) {
+            return ScanResultsResponseImpl.builder()
+                    .results(DiscoveryScanResult.newBuilder()
+                            .setActiveDiscoveryId(request.getActiveDiscoveryId())
+                            .addAllPingResponse(responses)
+                            .build())
+                    .build();
         }
+    }
+
+    /**
+     * Rate limit that backs off multiplicatively when too many probes of a window fail and recovers additively.
+     * <p>
+     * Timeouts do not count as loss, in a sweep most of the addresses are expected not to answer.
+     */
+    @VisibleForTesting
+    static class AdaptiveRate {
+        static final double MAX_ERROR_RATIO = 0.01;
+        static final int MIN_WINDOW = 10;
+        static final double MIN_RATE_DIVISOR = 64;
 
-        public PingSweepResponse getPingSweepResponse() {
-            return pingSweepResponse;
+        private final RateLimiter limiter;
+        private final double maxRate;
+        private final double minRate;
+        private final int window;
+
+        // Guarded by this
+        private int probes;
+        private int errors;
+
+        AdaptiveRate(double packetsPerSecond) {
+            limiter = RateLimiter.create(packetsPerSecond);
+            maxRate = packetsPerSecond;
+            minRate = Math.max(1.0, packetsPerSecond / MIN_RATE_DIVISOR);
+            // About one second worth of probes
+            window = Math.max(MIN_WINDOW, (int) packetsPerSecond);
+        }
+
+        void acquire() {
+            limiter.acquire();
+        }
+
+        synchronized void record(boolean error) {
+            probes++;
+            if (error) {
+                errors++;
+            }
+            if (probes < window) {
+                return;
+            }
+            double current = limiter.getRate();
+            double next = errors > probes * MAX_ERROR_RATIO
+                    ? Math.max(minRate, current / 2)
+                    : Math.min(maxRate, current + maxRate / 10);
+            if (next != current) {
+                LOG.debug("Adjusting ping sweep rate from {} to {} packets/s after {} errors", current, next, errors);
+                limiter.setRate(next);
+            }
+            probes = 0;
+            errors = 0;
         }
 
-        public CountDownLatch getLatch() {
-            return m_doneSignal;
+        double getRate() {
+            return limiter.getRate();
         }
     }
 
@@ -0,0 +1,172 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.horizon.minion.icmp;
+
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.opennms.horizon.minion.plugin.api.ServiceMonitorRequest;
+import org.opennms.horizon.minion.plugin.api.ServiceMonitorResponse;
+import org.opennms.horizon.shared.icmp.PingerFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares polling a period worth of ICMP monitors one poll at a time with polling them from the wheel of a
+ * {@link BatchedIcmpMonitor}, against the {@link TestPinger} which answers every probe immediately.
+ * <p>
+ * {@link #tickAccuracy} runs the wheel on its own ticker and samples the time between two handed out cycles, which
+ * should stay close to the tick.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class BatchedIcmpMonitorBenchmark {
+
+    private static final long TICK_MS = 100;
+    private static final long PERIOD_MS = TimeUnit.MINUTES.toMillis(1);
+
+    public static void main(String[] args) throws Exception {
+        org.openjdk.jmh.Main.main(args);
+    }
+
+    @State(Scope.Benchmark)
+    public static class Monitors {
+        @Param({"10000", "50000"})
+        public int size;
+
+        PingerFactory pingerFactory;
+        List<ServiceMonitorRequest> requests;
+
+        @Setup
+        public void setUp() {
+            TestPinger pinger = new TestPinger();
+            pinger.setHandleResponse(true);
+            pingerFactory = mock(PingerFactory.class);
+            when(pingerFactory.getInstance(anyInt(), anyBoolean())).thenReturn(pinger);
+
+            // One monitored entity per task, like inventory creates them
+            requests = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                requests.addAll(BatchedIcmpMonitorTest.requests("task-" + i, 1));
+            }
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Wheel {
+        BatchedIcmpMonitor monitor;
+        long now;
+        long results;
+
+        @Setup
+        public void setUp(Monitors monitors) {
+            monitor = new BatchedIcmpMonitor(monitors.pingerFactory, TICK_MS, 0, r -> results += r.size(), null);
+            for (ServiceMonitorRequest request : monitors.requests) {
+                monitor.schedule(request.getTaskId(), PERIOD_MS, TimeUnit.MILLISECONDS, List.of(request));
+            }
+            now = monitor.epoch;
+        }
+
+        @TearDown
+        public void tearDown() {
+            monitor.close();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class TickedWheel {
+        @Param({"10"})
+        public long tickMs;
+
+        BatchedIcmpMonitor monitor;
+        final BlockingQueue<Long> handedOut = new LinkedBlockingQueue<>();
+
+        @Setup
+        public void setUp(Monitors monitors) {
+            monitor = new BatchedIcmpMonitor(
+                    monitors.pingerFactory, tickMs, 0, results -> handedOut.add(System.nanoTime()));
+            for (ServiceMonitorRequest request : monitors.requests) {
+                monitor.schedule(request.getTaskId(), 1, TimeUnit.SECONDS, List.of(request));
+            }
+        }
+
+        @Setup(Level.Iteration)
+        public void clear() {
+            // Cycles handed out between iterations would be taken without waiting
+            handedOut.clear();
+        }
+
+        @TearDown
+        public void tearDown() {
+            monitor.close();
+        }
+    }
+
+    @Benchmark
+    public void individualPolls(Monitors monitors, Blackhole blackhole) {
+        List<CompletableFuture<ServiceMonitorResponse>> futures = new ArrayList<>(monitors.size);
+        for (ServiceMonitorRequest request : monitors.requests) {
+            futures.add(new IcmpMonitor(monitors.pingerFactory)
+                    .poll(request.getConfiguration())
+                    .whenComplete((response, e) -> blackhole.consume(response)));
+        }
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+    }
+
+    @Benchmark
+    public long wheelRotation(Wheel wheel) {
+        for (long tick = 0; tick < PERIOD_MS / TICK_MS; tick++) {
+            wheel.now += TICK_MS;
+            wheel.monitor.tick(wheel.now);
+        }
+        return wheel.results;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    public long tickAccuracy(TickedWheel wheel) throws InterruptedException {
+        return wheel.handedOut.take();
+    }
+}
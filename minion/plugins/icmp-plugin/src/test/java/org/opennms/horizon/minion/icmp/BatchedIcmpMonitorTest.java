@@ -0,0 +1,192 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.horizon.minion.icmp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.google.protobuf.Any;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Test;
+import org.opennms.horizon.minion.plugin.api.ServiceMonitorRequest;
+import org.opennms.horizon.minion.plugin.api.ServiceMonitorResponse;
+import org.opennms.horizon.minion.plugin.api.ServiceMonitorResponse.Status;
+import org.opennms.horizon.shared.icmp.PingResponseCallback;
+import org.opennms.horizon.shared.icmp.Pinger;
+import org.opennms.horizon.shared.icmp.PingerFactory;
+import org.opennms.icmp.contract.IcmpMonitorRequest;
+
+public class BatchedIcmpMonitorTest {
+    private static final long TICK_MS = 100;
+
+    private final List<Map<ServiceMonitorRequest, ServiceMonitorResponse>> cycles = new CopyOnWriteArrayList<>();
+    private final List<PingResponseCallback> pending = new CopyOnWriteArrayList<>();
+    private PingerFactory pingerFactory;
+
+    @Before
+    public void setUp() {
+        TestPinger testPinger = new TestPinger();
+        testPinger.setHandleResponse(true);
+        pingerFactory = mock(PingerFactory.class);
+        when(pingerFactory.getInstance(anyInt(), anyBoolean())).thenReturn(testPinger);
+    }
+
+    @Test
+    public void testPollsEveryEntityOncePerPeriod() {
+        BatchedIcmpMonitor target = new BatchedIcmpMonitor(pingerFactory, TICK_MS, 0, cycles::add, null);
+        target.schedule("task-1", 1, TimeUnit.SECONDS, requests("task-1", 600));
+        target.schedule("task-2", 1, TimeUnit.SECONDS, requests("task-2", 400));
+
+        rotate(target, 1, 10);
+
+        Set<String> polled = new HashSet<>();
+        for (Map<ServiceMonitorRequest, ServiceMonitorResponse> cycle : cycles) {
+            for (var result : cycle.entrySet()) {
+                assertTrue(polled.add(result.getKey().getTaskId() + "/" + result.getKey().getMonitoredEntityId()));
+                assertEquals(Status.Up, result.getValue().getStatus());
+            }
+        }
+        assertEquals(1000, polled.size());
+        // Spread over the slots of the wheel instead of one burst per period
+        assertEquals(10, cycles.size());
+    }
+
+    @Test
+    public void testSkipsEntitiesWithOutstandingProbe() throws Exception {
+        BatchedIcmpMonitor target = new BatchedIcmpMonitor(parkingPingerFactory(), TICK_MS, 0, cycles::add, null);
+        target.schedule("task-1", 1, TimeUnit.SECONDS, requests("task-1", 50));
+
+        rotate(target, 1, 10);
+        assertEquals(50, pending.size());
+
+        // The second period finds all probes still outstanding
+        rotate(target, 11, 20);
+        assertEquals(50, pending.size());
+        assertTrue(cycles.isEmpty());
+
+        for (PingResponseCallback callback : pending) {
+            callback.handleTimeout(InetAddress.getLoopbackAddress(), null);
+        }
+        assertEquals(50, cycles.stream().mapToInt(Map::size).sum());
+        cycles.forEach(cycle -> cycle.values().forEach(r -> assertEquals(Status.Unknown, r.getStatus())));
+    }
+
+    @Test
+    public void testCancelDropsOutstandingResults() throws Exception {
+        BatchedIcmpMonitor target = new BatchedIcmpMonitor(parkingPingerFactory(), TICK_MS, 0, cycles::add, null);
+        target.schedule("task-1", 1, TimeUnit.SECONDS, requests("task-1", 50));
+        rotate(target, 1, 10);
+
+        target.cancel("task-1");
+        for (PingResponseCallback callback : pending) {
+            callback.handleTimeout(InetAddress.getLoopbackAddress(), null);
+        }
+
+        assertTrue(cycles.isEmpty());
+        assertEquals(0, target.getMemberCount());
+    }
+
+    @Test
+    public void testRescheduleReplacesEntities() {
+        BatchedIcmpMonitor target = new BatchedIcmpMonitor(pingerFactory, TICK_MS, 0, cycles::add, null);
+        target.schedule("task-1", 1, TimeUnit.SECONDS, requests("task-1", 50));
+        target.schedule("task-1", 2, TimeUnit.SECONDS, requests("task-1", 20));
+
+        rotate(target, 1, 20);
+
+        assertEquals(20, target.getMemberCount());
+        assertEquals(20, cycles.stream().mapToInt(Map::size).sum());
+    }
+
+    @Test
+    public void testRoundsPeriodUpToTick() {
+        BatchedIcmpMonitor target = new BatchedIcmpMonitor(pingerFactory, TICK_MS, 0, cycles::add, null);
+        target.schedule("task-1", 250, TimeUnit.MILLISECONDS, requests("task-1", 10));
+
+        // Rounded to 300ms, so twice in six ticks rather than three times
+        rotate(target, 1, 6);
+
+        assertEquals(20, cycles.stream().mapToInt(Map::size).sum());
+    }
+
+    @Test
+    public void testSkipsInvalidConfiguration() {
+        BatchedIcmpMonitor target = new BatchedIcmpMonitor(pingerFactory, TICK_MS, 0, cycles::add, null);
+        List<ServiceMonitorRequest> requests = requests("task-1", 5);
+        requests.add(ServiceMonitorRequest.builder()
+                .taskId("task-1")
+                .monitoredEntityId("invalid")
+                .monitorType("ICMP")
+                .configuration(Any.getDefaultInstance())
+                .build());
+
+        target.schedule("task-1", 1, TimeUnit.SECONDS, requests);
+
+        assertEquals(5, target.getMemberCount());
+    }
+
+    private PingerFactory parkingPingerFactory() throws Exception {
+        Pinger pinger = mock(Pinger.class);
+        doAnswer(invocation -> pending.add(invocation.getArgument(5)))
+                .when(pinger)
+                .ping(any(), anyLong(), anyInt(), anyInt(), anyInt(), any());
+        PingerFactory factory = mock(PingerFactory.class);
+        when(factory.getInstance(anyInt(), anyBoolean())).thenReturn(pinger);
+        return factory;
+    }
+
+    private static void rotate(BatchedIcmpMonitor target, int fromTick, int toTick) {
+        for (int tick = fromTick; tick <= toTick; tick++) {
+            target.tick(target.epoch + tick * TICK_MS);
+        }
+    }
+
+    static List<ServiceMonitorRequest> requests(String taskId, int count) {
+        List<ServiceMonitorRequest> requests = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            requests.add(ServiceMonitorRequest.builder()
+                    .taskId(taskId)
+                    .monitoredEntityId("entity-" + i)
+                    .monitorType("ICMP")
+                    .configuration(Any.pack(IcmpMonitorRequest.newBuilder()
+                            .setHost("127.0.0." + (i % 254 + 1))
+                            .build()))
+                    .build());
+        }
+        return requests;
+    }
+}
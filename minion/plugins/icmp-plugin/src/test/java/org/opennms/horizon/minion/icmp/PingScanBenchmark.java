@@ -0,0 +1,105 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.horizon.minion.icmp;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.google.protobuf.Any;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.opennms.horizon.minion.plugin.api.ScanResultsResponse;
+import org.opennms.horizon.shared.icmp.PingerFactory;
+import org.opennms.taskset.contract.DiscoveryScanResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the time to sweep a range against the {@link TestPinger}, which answers every probe immediately.
+ * <p>
+ * The sweep either hands out partial results while it runs or returns all responses at the end.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class PingScanBenchmark {
+
+    @Param({"10.0.255.255", "10.3.255.255"})
+    public String end;
+
+    @Param({"true", "false"})
+    public boolean partialResults;
+
+    private ExecutorService executor;
+    private PingScan target;
+    private Any config;
+    private final LongAdder received = new LongAdder();
+
+    public static void main(String[] args) throws Exception {
+        org.openjdk.jmh.Main.main(args);
+    }
+
+    @Setup
+    public void setUp() {
+        TestPinger pinger = new TestPinger();
+        pinger.setHandleResponse(true);
+        PingerFactory pingerFactory = mock(PingerFactory.class);
+        when(pingerFactory.getInstance()).thenReturn(pinger);
+        executor = Executors.newSingleThreadExecutor();
+        target = new PingScan(pingerFactory, executor);
+        config = PingScanTest.sweep("10.0.0.0", end);
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public long sweep() throws Exception {
+        ScanResultsResponse response = partialResults
+                ? target.scan(config, this::count).get(1, TimeUnit.MINUTES)
+                : target.scan(config).get(1, TimeUnit.MINUTES);
+        return count(response);
+    }
+
+    private long count(ScanResultsResponse response) {
+        int count = ((DiscoveryScanResult) response.getResults()).getPingResponseCount();
+        received.add(count);
+        return count;
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.horizon.minion.icmp;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.google.protobuf.Any;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.opennms.horizon.minion.plugin.api.ScanResultsResponse;
+import org.opennms.horizon.shared.icmp.PingerFactory;
+import org.opennms.icmp.contract.IpRange;
+import org.opennms.icmp.contract.PingSweepRequest;
+import org.opennms.taskset.contract.DiscoveryScanResult;
+
+public class PingScanTest {
+    private PingerFactory pingerFactory;
+    private TestPinger testPinger;
+    private ExecutorService executor;
+    private PingScan target;
+
+    @Before
+    public void setUp() {
+        testPinger = new TestPinger();
+        testPinger.setHandleResponse(true);
+        pingerFactory = mock(PingerFactory.class);
+        when(pingerFactory.getInstance()).thenReturn(testPinger);
+
+        executor = Executors.newSingleThreadExecutor();
+        target = new PingScan(pingerFactory, executor);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testScanStreamsBatches() throws Exception {
+        List<ScanResultsResponse> partials = new CopyOnWriteArrayList<>();
+
+        // 2560 addresses
+        ScanResultsResponse last = target.scan(sweep("10.0.0.0", "10.0.9.255"), partials::add)
+                .get(10, TimeUnit.SECONDS);
+
+        assertEquals(2, partials.size());
+        for (ScanResultsResponse partial : partials) {
+            DiscoveryScanResult result = (DiscoveryScanResult) partial.getResults();
+            assertEquals(PingScan.BATCH_SIZE, result.getPingResponseCount());
+            assertEquals(42L, result.getActiveDiscoveryId());
+        }
+        DiscoveryScanResult result = (DiscoveryScanResult) last.getResults();
+        assertEquals(560, result.getPingResponseCount());
+        assertEquals("10.0.9.255", result.getPingResponse(559).getIpAddress());
+    }
+
+    @Test
+    public void testScanWithoutPartialResults() throws Exception {
+        ScanResultsResponse response = target.scan(sweep("10.0.0.0", "10.0.9.255")).get(10, TimeUnit.SECONDS);
+
+        assertEquals(2560, ((DiscoveryScanResult) response.getResults()).getPingResponseCount());
+    }
+
+    @Test
+    public void testScanCompletesWhenNothingAnswers() throws Exception {
+        testPinger.setHandleResponse(false);
+        testPinger.setHandleTimeout(true);
+
+        ScanResultsResponse response = target.scan(sweep("10.0.0.0", "10.0.0.255")).get(10, TimeUnit.SECONDS);
+
+        DiscoveryScanResult result = (DiscoveryScanResult) response.getResults();
+        assertEquals(0, result.getPingResponseCount());
+        assertEquals(42L, result.getActiveDiscoveryId());
+    }
+
+    @Test
+    public void testRateBacksOffOnErrorsAndRecovers() {
+        PingScan.AdaptiveRate rate = new PingScan.AdaptiveRate(100);
+
+        for (int i = 0; i < 100; i++) {
+            rate.record(i % 10 == 0);
+        }
+        assertEquals(50.0, rate.getRate(), 0.001);
+
+        for (int i = 0; i < 100; i++) {
+            rate.record(false);
+        }
+        assertEquals(60.0, rate.getRate(), 0.001);
+
+        for (int i = 0; i < 1000; i++) {
+            rate.record(false);
+        }
+        assertEquals(100.0, rate.getRate(), 0.001);
+    }
+
+    static Any sweep(String begin, String end) {
+        return Any.pack(PingSweepRequest.newBuilder()
+                .addIpRange(IpRange.newBuilder().setBegin(begin).setEnd(end))
+                .setPacketsPerSecond(1_000_000)
+                .setTimeout(100)
+                .setActiveDiscoveryId(42)
+                .build());
+    }
+}
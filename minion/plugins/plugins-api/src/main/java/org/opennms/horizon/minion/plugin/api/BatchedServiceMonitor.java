@@ -0,0 +1,44 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.horizon.minion.plugin.api;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Polls the monitored entities of many tasks that share a period together, instead of scheduling one poll per task.
+ * <p>
+ * The results of the entities polled in the same cycle are handed to the result sink given to
+ * {@link ServiceMonitorManager#createBatched} in one call.
+ */
+public interface BatchedServiceMonitor extends AutoCloseable {
+
+    /**
+     * Starts polling the given requests every period, replacing the requests previously scheduled for the task.
+     */
+    void schedule(String taskId, long period, TimeUnit unit, List<ServiceMonitorRequest> requests);
+
+    void cancel(String taskId);
+
+    @Override
+    void close();
+}
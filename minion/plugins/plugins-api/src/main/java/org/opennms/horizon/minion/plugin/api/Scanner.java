@@ -23,7 +23,16 @@ package org.opennms.horizon.minion.plugin.api;
 
 import com.google.protobuf.Any;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 public interface Scanner {
     CompletableFuture<ScanResultsResponse> scan(Any config);
+
+    /**
+     * Scans while handing intermediate results to the given consumer as they become available. The returned future
+     * completes with the results that were not handed out yet.
+     */
+    default CompletableFuture<ScanResultsResponse> scan(Any config, Consumer<ScanResultsResponse> partialResults) {
+        return scan(config);
+    }
 }
@@ -22,10 +22,23 @@
 package org.opennms.horizon.minion.plugin.api;
 
 import com.google.protobuf.Message;
+import java.util.Map;
+import java.util.function.Consumer;
 
 public interface ServiceMonitorManager {
 
     ServiceMonitor create();
 
     Message.Builder createRequestBuilder();
+
+    /**
+     * Creates a monitor that polls the entities of all tasks with the same period in shared cycles, or returns null
+     * if this monitor type only supports polling one entity at a time.
+     *
+     * @param resultSink receives the responses of each cycle by request
+     */
+    default BatchedServiceMonitor createBatched(
+            Consumer<Map<ServiceMonitorRequest, ServiceMonitorResponse>> resultSink) {
+        return null;
+    }
 }
@@ -0,0 +1,112 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.horizon.minion.snmp;
+
+import java.net.InetAddress;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Limits the number of concurrent walks per agent without blocking.
+ * <p>
+ * Walks above the limit are queued and started by the thread that releases the permit of a finished walk.
+ */
+class AgentWalkLimiter {
+
+    private final int maxWalksPerAgent;
+    private final int maxQueuedPerAgent;
+    private final Map<InetAddress, AgentQueue> agents = new ConcurrentHashMap<>();
+    private final AtomicInteger queued = new AtomicInteger();
+
+    AgentWalkLimiter(int maxWalksPerAgent, int maxQueuedPerAgent) {
+        if (maxWalksPerAgent < 1) {
+            throw new IllegalArgumentException("maxWalksPerAgent must be positive");
+        }
+        this.maxWalksPerAgent = maxWalksPerAgent;
+        this.maxQueuedPerAgent = maxQueuedPerAgent;
+    }
+
+    /**
+     * Runs the walk on the calling thread if the agent has a free permit, queues it otherwise.
+     * The walk must call {@link #release(InetAddress)} once it completed.
+     *
+     * @throws RejectedExecutionException if too many walks are already waiting for the agent
+     */
+    void execute(InetAddress agent, Runnable walk) {
+        boolean[] acquired = new boolean[1];
+        agents.compute(agent, (address, queue) -> {
+            if (queue == null) {
+                queue = new AgentQueue();
+            }
+            if (queue.active < maxWalksPerAgent) {
+                queue.active++;
+                acquired[0] = true;
+            } else if (queue.waiting.size() < maxQueuedPerAgent) {
+                queue.waiting.add(walk);
+                queued.incrementAndGet();
+            } else {
+                throw new RejectedExecutionException("Too many pending walks for agent " + address.getHostAddress());
+            }
+            return queue;
+        });
+        if (acquired[0]) {
+            walk.run();
+        }
+    }
+
+    /**
+     * Releases the permit of a completed walk and starts the next queued walk of the agent, if any.
+     */
+    void release(InetAddress agent) {
+        Runnable[] next = new Runnable[1];
+        agents.computeIfPresent(agent, (address, queue) -> {
+            next[0] = queue.waiting.poll();
+            if (next[0] != null) {
+                // Hand the permit over to the queued walk
+                queued.decrementAndGet();
+                return queue;
+            }
+            queue.active--;
+            return queue.active > 0 ? queue : null;
+        });
+        if (next[0] != null) {
+            next[0].run();
+        }
+    }
+
+    int getQueued() {
+        return queued.get();
+    }
+
+    int getAgents() {
+        return agents.size();
+    }
+
+    private static final class AgentQueue {
+        private int active;
+        private final Queue<Runnable> waiting = new ArrayDeque<>();
+    }
+}
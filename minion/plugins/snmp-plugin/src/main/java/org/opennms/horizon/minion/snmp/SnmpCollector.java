@@ -21,16 +21,17 @@
  */
 package org.opennms.horizon.minion.snmp;
 
-import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import com.google.protobuf.Any;
 import com.google.protobuf.InvalidProtocolBufferException;
 import java.net.InetAddress;
 import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.Executor;
 import java.util.function.Consumer;
 import org.opennms.horizon.minion.plugin.api.CollectionRequest;
 import org.opennms.horizon.minion.plugin.api.CollectionSet;
@@ -50,24 +51,31 @@ import org.opennms.snmp.contract.SnmpCollectorRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Collects SNMP metrics without blocking the calling thread.
+ * <p>
+ * The returned future is completed from the walker callback; the responses are mapped on a bounded executor shared
+ * by all collectors of the {@link SnmpCollectorManager}. Walks of the same agent are limited by an
+ * {@link AgentWalkLimiter}, excess walks are queued until a running walk of the agent completes.
+ */
 public class SnmpCollector implements ServiceCollector {
 
     private final Logger LOG = LoggerFactory.getLogger(SnmpCollector.class);
     private final SnmpHelper snmpHelper;
-    private final ThreadFactory threadFactory = new ThreadFactoryBuilder()
-            .setNameFormat("snmp-collector-result-processor-%d")
-            .build();
-    private final ExecutorService executorService = Executors.newCachedThreadPool(threadFactory);
-
-    private static final ExecutorService REAPER_EXECUTOR = Executors.newCachedThreadPool(new ThreadFactory() {
-        @Override
-        public Thread newThread(Runnable r) {
-            return new Thread(r, "SNMP-Proxy-RPC-Session-Reaper");
-        }
-    });
-
-    public SnmpCollector(SnmpHelper snmpHelper) {
+    private final Executor executor;
+    private final AgentWalkLimiter walkLimiter;
+    private final Counter walksInFlight;
+    private final Timer walkDuration;
+    private final Meter walksFailed;
+
+    SnmpCollector(
+            SnmpHelper snmpHelper, Executor executor, AgentWalkLimiter walkLimiter, MetricRegistry metricRegistry) {
         this.snmpHelper = snmpHelper;
+        this.executor = executor;
+        this.walkLimiter = walkLimiter;
+        this.walksInFlight = metricRegistry.counter(SnmpCollectorManager.WALKS_IN_FLIGHT);
+        this.walkDuration = metricRegistry.timer(SnmpCollectorManager.WALK_DURATION);
+        this.walksFailed = metricRegistry.meter(SnmpCollectorManager.WALKS_FAILED);
     }
 
     @Override
@@ -79,8 +87,6 @@ public class SnmpCollector implements ServiceCollector {
         var result = new CompletableFuture<CollectionSet>();
 
         try {
-            final CompletableFuture<List<SnmpResultMetric>> future = new CompletableFuture<>();
-
             SnmpCollectorRequest snmpRequest = config.unpack(SnmpCollectorRequest.class);
 
             LOG.debug("SNMP Collector Request {}", snmpRequest);
@@ -105,46 +111,16 @@ public class SnmpCollector implements ServiceCollector {
             }
 
             AggregateTracker aggregate = new AggregateTracker(snmpCollectionSet.getTrackers());
-
+            SnmpAgentConfig agentConfig = mapAgent(snmpRequest.getAgentConfig(), ipAddress);
             long nodeId = request.getNodeId();
-            try (final SnmpWalker walker = snmpHelper.createWalker(
-                    mapAgent(snmpRequest.getAgentConfig(), ipAddress), "Snmp-Collector", aggregate)) {
-                walker.setCallback(new SnmpWalkCallback() {
-                    @Override
-                    public void complete(SnmpWalker tracker, Throwable t) {
-                        try {
-                            if (t != null) {
-                                future.completeExceptionally(t);
-                            } else {
-                                var responseList = builder.getResultsList();
-                                future.complete(responseList);
-                            }
-                        } finally {
-                            // Close the tracker using a separate thread
-                            // This allows the SnmpWalker to clean up properly instead
-                            // of interrupting execution as it's executing the callback
-                            REAPER_EXECUTOR.submit(new Runnable() {
-                                @Override
-                                public void run() {
-                                    tracker.close();
-                                }
-                            });
-                        }
-                    }
-                });
-                walker.start();
-                walker.waitFor();
-            }
-            result = future.thenApplyAsync(
-                    snmpResults -> mapSnmpValuesToResponse(snmpResults, ipAddress, nodeId), executorService);
+
+            walkLimiter.execute(
+                    agentConfig.getAddress(),
+                    () -> walk(agentConfig, aggregate, builder, ipAddress, nodeId, result));
         } catch (InvalidProtocolBufferException pbe) {
             LOG.debug("Error while mapping Snmp results to proto ", pbe);
             var response = generateFailureResponse(request);
             result.complete(response);
-        } catch (InterruptedException ie) {
-            Thread.currentThread().interrupt();
-            LOG.debug("Interrupted while collecting metrics ", ie);
-            var response = generateFailureResponse(request);
         } catch (Exception e) {
             LOG.debug("Error while collecting metrics ", e);
             var response = generateFailureResponse(request);
@@ -153,6 +129,53 @@ public class SnmpCollector implements ServiceCollector {
         return result;
     }
 
+    private void walk(
+            SnmpAgentConfig agentConfig,
+            AggregateTracker aggregate,
+            SnmpResponseMetric.Builder builder,
+            String ipAddress,
+            long nodeId,
+            CompletableFuture<CollectionSet> result) {
+        walksInFlight.inc();
+        final Timer.Context walkTimer = walkDuration.time();
+        try {
+            final SnmpWalker walker = snmpHelper.createWalker(agentConfig, "Snmp-Collector", aggregate);
+            walker.setCallback(new SnmpWalkCallback() {
+                @Override
+                public void complete(SnmpWalker tracker, Throwable t) {
+                    walkTimer.stop();
+                    walksInFlight.dec();
+                    if (t != null) {
+                        walksFailed.mark();
+                    }
+                    walkLimiter.release(agentConfig.getAddress());
+                    // Close the walker and map the results on the executor, this allows the SnmpWalker to
+                    // clean up properly instead of interrupting execution as it's executing the callback
+                    executor.execute(() -> {
+                        try {
+                            tracker.close();
+                            if (t != null) {
+                                result.completeExceptionally(t);
+                            } else {
+                                result.complete(
+                                        mapSnmpValuesToResponse(builder.getResultsList(), ipAddress, nodeId));
+                            }
+                        } catch (RuntimeException e) {
+                            result.completeExceptionally(e);
+                        }
+                    });
+                }
+            });
+            walker.start();
+        } catch (RuntimeException e) {
+            walkTimer.stop();
+            walksInFlight.dec();
+            walksFailed.mark();
+            walkLimiter.release(agentConfig.getAddress());
+            result.completeExceptionally(e);
+        }
+    }
+
     private ServiceCollectorResponseImpl generateFailureResponse(CollectionRequest request) {
         return ServiceCollectorResponseImpl.builder()
                 .nodeId(request.getNodeId())
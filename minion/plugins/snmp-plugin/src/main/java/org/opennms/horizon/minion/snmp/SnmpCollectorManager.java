@@ -21,20 +21,63 @@
  */
 package org.opennms.horizon.minion.snmp;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import org.opennms.horizon.minion.plugin.api.ServiceCollector;
 import org.opennms.horizon.minion.plugin.api.ServiceCollectorManager;
 import org.opennms.horizon.shared.snmp.SnmpHelper;
 
+/**
+ * Creates the SNMP collectors, which share a bounded executor for mapping the results and the per-agent walk limits.
+ */
 public class SnmpCollectorManager implements ServiceCollectorManager {
 
+    static final String WALKS_IN_FLIGHT = MetricRegistry.name("snmp", "collector", "walks", "inFlight");
+    static final String WALKS_QUEUED = MetricRegistry.name("snmp", "collector", "walks", "queued");
+    static final String WALK_DURATION = MetricRegistry.name("snmp", "collector", "walks");
+    static final String WALKS_FAILED = MetricRegistry.name("snmp", "collector", "walks", "failed");
+
     private final SnmpHelper snmpHelper;
+    private final MetricRegistry metricRegistry;
+    private final ThreadPoolExecutor executor;
+    private final AgentWalkLimiter walkLimiter;
 
-    public SnmpCollectorManager(SnmpHelper snmpHelper) {
+    public SnmpCollectorManager(
+            SnmpHelper snmpHelper,
+            MetricRegistry metricRegistry,
+            int threads,
+            int queueSize,
+            int maxWalksPerAgent,
+            int maxQueuedWalksPerAgent) {
         this.snmpHelper = snmpHelper;
+        this.metricRegistry = metricRegistry;
+        // Runs the task on the completing thread once the queue is full, which slows down the walks
+        this.executor = new ThreadPoolExecutor(
+                threads,
+                threads,
+                0L,
+                TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize),
+                new ThreadFactoryBuilder()
+                        .setNameFormat("snmp-collector-result-processor-%d")
+                        .build(),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        this.walkLimiter = new AgentWalkLimiter(maxWalksPerAgent, maxQueuedWalksPerAgent);
+
+        metricRegistry.register(WALKS_QUEUED, (Gauge<Integer>) walkLimiter::getQueued);
     }
 
     @Override
     public ServiceCollector create() {
-        return new SnmpCollector(snmpHelper);
+        return new SnmpCollector(snmpHelper, executor, walkLimiter, metricRegistry);
+    }
+
+    public void destroy() {
+        executor.shutdown();
+        metricRegistry.remove(WALKS_QUEUED);
     }
 }
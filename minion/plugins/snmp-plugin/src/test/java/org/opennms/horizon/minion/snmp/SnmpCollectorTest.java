@@ -0,0 +1,173 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.horizon.minion.snmp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.protobuf.Any;
+import java.net.InetAddress;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.opennms.horizon.minion.plugin.api.CollectionSet;
+import org.opennms.horizon.minion.plugin.api.CollectorRequestImpl;
+import org.opennms.horizon.shared.snmp.CollectionTracker;
+import org.opennms.horizon.shared.snmp.SnmpAgentConfig;
+import org.opennms.horizon.shared.snmp.SnmpHelper;
+import org.opennms.horizon.shared.snmp.SnmpWalker;
+import org.opennms.snmp.contract.SnmpCollectorRequest;
+
+public class SnmpCollectorTest {
+
+    private SnmpHelper mockSnmpHelper;
+    private MetricRegistry metricRegistry;
+    private SnmpCollectorManager manager;
+    private final List<TestWalker> walkers = new CopyOnWriteArrayList<>();
+
+    @Before
+    public void setUp() {
+        mockSnmpHelper = Mockito.mock(SnmpHelper.class);
+        Mockito.when(mockSnmpHelper.createWalker(
+                        Mockito.any(SnmpAgentConfig.class), Mockito.anyString(), Mockito.any(CollectionTracker.class)))
+                .thenAnswer(invocation -> {
+                    SnmpAgentConfig agentConfig = invocation.getArgument(0);
+                    TestWalker walker = new TestWalker(agentConfig.getAddress(), invocation.getArgument(2));
+                    walkers.add(walker);
+                    return walker;
+                });
+
+        metricRegistry = new MetricRegistry();
+        manager = new SnmpCollectorManager(mockSnmpHelper, metricRegistry, 1, 10, 1, 10);
+    }
+
+    @After
+    public void tearDown() {
+        manager.destroy();
+    }
+
+    @Test
+    public void testCollectCompletesFromWalkerCallback() throws Exception {
+        CompletableFuture<CollectionSet> future = collect("127.0.0.1");
+
+        assertEquals(1, walkers.size());
+        assertTrue(walkers.get(0).started);
+        assertFalse(future.isDone());
+        assertEquals(1, metricRegistry.counter(SnmpCollectorManager.WALKS_IN_FLIGHT).getCount());
+
+        walkers.get(0).done();
+
+        CollectionSet collectionSet = future.get(5, TimeUnit.SECONDS);
+        assertTrue(collectionSet.getStatus());
+        assertTrue(walkers.get(0).closed);
+        assertEquals(0, metricRegistry.counter(SnmpCollectorManager.WALKS_IN_FLIGHT).getCount());
+        assertEquals(1, metricRegistry.timer(SnmpCollectorManager.WALK_DURATION).getCount());
+    }
+
+    @Test
+    public void testWalksOfAnAgentAreLimited() throws Exception {
+        CompletableFuture<CollectionSet> first = collect("127.0.0.1");
+        CompletableFuture<CollectionSet> second = collect("127.0.0.1");
+        CompletableFuture<CollectionSet> other = collect("127.0.0.2");
+
+        // The second walk of 127.0.0.1 waits for the first one
+        assertEquals(2, walkers.size());
+        assertEquals(InetAddress.getByName("127.0.0.2"), walkers.get(1).getAgent());
+
+        walkers.get(0).done();
+        first.get(5, TimeUnit.SECONDS);
+
+        assertEquals(3, walkers.size());
+        assertFalse(second.isDone());
+        walkers.get(2).done();
+        walkers.get(1).done();
+        assertTrue(second.get(5, TimeUnit.SECONDS).getStatus());
+        assertTrue(other.get(5, TimeUnit.SECONDS).getStatus());
+    }
+
+    @Test
+    public void testFailedWalkCompletesExceptionally() throws Exception {
+        CompletableFuture<CollectionSet> future = collect("127.0.0.1");
+        walkers.get(0).fail();
+
+        assertTrue(future.handle((result, t) -> t != null).get(5, TimeUnit.SECONDS));
+        assertEquals(1, metricRegistry.meter(SnmpCollectorManager.WALKS_FAILED).getCount());
+
+        // The permit of the failed walk was released
+        collect("127.0.0.1");
+        assertEquals(2, walkers.size());
+    }
+
+    private CompletableFuture<CollectionSet> collect(String host) {
+        SnmpCollectorRequest request =
+                SnmpCollectorRequest.newBuilder().setHost(host).build();
+        return manager.create().collect(CollectorRequestImpl.builder().nodeId(1).build(), Any.pack(request));
+    }
+
+    private static class TestWalker extends SnmpWalker {
+        private volatile boolean started;
+        private volatile boolean closed;
+
+        TestWalker(InetAddress address, CollectionTracker tracker) {
+            super(address, "test", 10, 10, 0, tracker);
+        }
+
+        @Override
+        public void start() {
+            started = true;
+        }
+
+        InetAddress getAgent() {
+            return getAddress();
+        }
+
+        void done() {
+            handleDone();
+        }
+
+        void fail() {
+            handleError("failed");
+        }
+
+        @Override
+        protected WalkerPduBuilder createPduBuilder(int maxVarsPerPdu) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        protected void sendNextPdu(WalkerPduBuilder pduBuilder) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
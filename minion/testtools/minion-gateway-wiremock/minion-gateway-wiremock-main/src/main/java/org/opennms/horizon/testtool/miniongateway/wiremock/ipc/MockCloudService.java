@@ -105,6 +105,13 @@ public class MockCloudService extends CloudServiceGrpc.CloudServiceImplBase impl
         return new StreamObserver<>() {
             @Override
             public void onNext(MinionToCloudMessage value) {
+                if (value.hasSinkMessageBatch()) {
+                    var sinkMessages = value.getSinkMessageBatch().getMessagesList();
+                    log.info("Have minion-to-cloud-message batch of {} sink messages", sinkMessages.size());
+                    receivedSinkMessages.addAll(sinkMessages);
+                    return;
+                }
+
                 log.info(
                         "Have minion-to-cloud-message from module {}: twin-request.consumer-key={}",
                         value.getSinkMessage().getModuleId(),
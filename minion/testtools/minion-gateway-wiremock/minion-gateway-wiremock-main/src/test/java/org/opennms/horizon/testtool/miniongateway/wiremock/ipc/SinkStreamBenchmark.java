@@ -0,0 +1,178 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.horizon.testtool.miniongateway.wiremock.ipc;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Empty;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.netty.shaded.io.grpc.netty.NettyChannelBuilder;
+import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
+import io.grpc.stub.StreamObserver;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import org.opennms.cloud.grpc.minion.CloudServiceGrpc;
+import org.opennms.cloud.grpc.minion.MinionToCloudMessage;
+import org.opennms.cloud.grpc.minion.SinkMessage;
+import org.opennms.cloud.grpc.minion.SinkMessageBatch;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the sink message throughput of the minion-to-cloud stream against the mock gateway.
+ * <p>
+ * Sink messages are either shipped one per stream message, like the minion does for unbatched modules (batch size 1),
+ * or framed into {@link SinkMessageBatch}es. Stream writes are serialized on a lock like in the minion gRPC client.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class SinkStreamBenchmark {
+
+    // the number of sink messages that are sent in a single benchmark method call
+    private static final int MESSAGES = 10_000;
+
+    private static final int CONTENT_SIZE = 512;
+
+    private static final long RECEIVE_TIMEOUT = TimeUnit.MINUTES.toNanos(1);
+
+    public static void main(String[] args) throws Exception {
+        org.openjdk.jmh.Main.main(args);
+    }
+
+    @State(Scope.Benchmark)
+    public static class BState {
+
+        @Param({"1", "10", "100"})
+        public int batchSize;
+
+        private MockCloudService service;
+        private Server server;
+        private ManagedChannel channel;
+        private StreamObserver<MinionToCloudMessage> sinkStream;
+        private List<MinionToCloudMessage> messages;
+
+        @Setup
+        public void setup() throws IOException {
+            service = new MockCloudService();
+            server = NettyServerBuilder.forAddress(new InetSocketAddress("localhost", 0))
+                    .addService(service)
+                    .build()
+                    .start();
+            channel = NettyChannelBuilder.forAddress("localhost", server.getPort())
+                    .usePlaintext()
+                    .build();
+            sinkStream = CloudServiceGrpc.newStub(channel).minionToCloudMessages(new StreamObserver<>() {
+                @Override
+                public void onNext(Empty value) {}
+
+                @Override
+                public void onError(Throwable t) {}
+
+                @Override
+                public void onCompleted() {}
+            });
+            messages = frame(batchSize);
+        }
+
+        @TearDown
+        public void tearDown() {
+            sinkStream.onCompleted();
+            channel.shutdownNow();
+            server.shutdownNow();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES)
+    public void send(BState state) {
+        for (MinionToCloudMessage message : state.messages) {
+            synchronized (state) {
+                state.sinkStream.onNext(message);
+            }
+        }
+
+        // The stream is asynchronous, wait for the gateway to have received everything
+        var received = state.service.getReceivedSinkMessages();
+        long deadline = System.nanoTime() + RECEIVE_TIMEOUT;
+        while (received.size() < MESSAGES) {
+            if (System.nanoTime() > deadline) {
+                throw new IllegalStateException("Gateway received only " + received.size() + " sink messages");
+            }
+            LockSupport.parkNanos(10_000);
+        }
+        received.clear();
+    }
+
+    private static List<MinionToCloudMessage> frame(int batchSize) {
+        Random random = new Random(123456L);
+        List<MinionToCloudMessage> result = new ArrayList<>();
+        SinkMessageBatch.Builder batch = SinkMessageBatch.newBuilder();
+        for (int i = 0; i < MESSAGES; i++) {
+            byte[] content = new byte[CONTENT_SIZE];
+            random.nextBytes(content);
+            SinkMessage sinkMessage = SinkMessage.newBuilder()
+                    .setMessageId(UUID.randomUUID().toString())
+                    .setModuleId("Flow")
+                    .setContent(ByteString.copyFrom(content))
+                    .build();
+
+            if (batchSize == 1) {
+                result.add(MinionToCloudMessage.newBuilder()
+                        .setSinkMessage(sinkMessage)
+                        .build());
+                continue;
+            }
+
+            batch.addMessages(sinkMessage);
+            if (batch.getMessagesCount() == batchSize) {
+                result.add(MinionToCloudMessage.newBuilder()
+                        .setSinkMessageBatch(batch)
+                        .build());
+                batch = SinkMessageBatch.newBuilder();
+            }
+        }
+        if (batch.getMessagesCount() > 0) {
+            result.add(MinionToCloudMessage.newBuilder().setSinkMessageBatch(batch).build());
+        }
+        return result;
+    }
+}
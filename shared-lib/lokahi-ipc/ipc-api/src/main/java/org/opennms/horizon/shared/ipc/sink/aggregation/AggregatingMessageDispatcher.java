@@ -40,8 +40,11 @@ public class AggregatingMessageDispatcher<S extends Message, T extends Message>
     public AggregatingMessageDispatcher(final DispatcherState<?, S, T> state, final Sender sender) {
         super(state, sender);
 
-        this.aggregator =
-                new Aggregator<>(state.getModule().getId(), state.getModule().getAggregationPolicy(), this::send);
+        this.aggregator = new Aggregator<>(
+                state.getModule().getId(),
+                state.getModule().getAggregationPolicy(),
+                this::send,
+                state.getMetrics());
     }
 
     @Override
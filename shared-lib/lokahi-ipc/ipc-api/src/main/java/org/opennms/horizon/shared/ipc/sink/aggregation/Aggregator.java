@@ -21,6 +21,8 @@
  */
 package org.opennms.horizon.shared.ipc.sink.aggregation;
 
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
 import com.google.common.util.concurrent.Striped;
 import com.google.protobuf.Message;
 import java.util.HashSet;
@@ -32,6 +34,7 @@ import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 import org.opennms.horizon.shared.ipc.sink.api.AggregationPolicy;
 import org.slf4j.Logger;
@@ -43,6 +46,10 @@ import org.slf4j.LoggerFactory;
  * This class is designed to delegate dispatching to the calling threads as much
  * as possible (those which make calls to {@link #aggregate(Message).}
  *
+ * The size and the latency (time from the first message until dispatch) of
+ * every dispatched bucket are recorded as <code>&lt;id&gt;.aggregation.size</code>
+ * and <code>&lt;id&gt;.aggregation.latency</code>.
+ *
  * @author jwhite
  *
  * @param <S> individual message
@@ -79,15 +86,29 @@ public class Aggregator<S extends Message, T extends Message, U> implements Auto
 
     private final Timer flushTimer;
 
+    private final Histogram bucketSize;
+
+    private final com.codahale.metrics.Timer bucketLatency;
+
     private final ConcurrentHashMap<Object, Bucket> buckets = new ConcurrentHashMap<>();
 
     private final Striped<Lock> lockStripes = Striped.lock(NUM_STRIPE_LOCKS);
 
     public Aggregator(final String id, final AggregationPolicy<S, T, U> policy, final MessageSender<T> sender) {
+        this(id, policy, sender, new MetricRegistry());
+    }
+
+    public Aggregator(
+            final String id,
+            final AggregationPolicy<S, T, U> policy,
+            final MessageSender<T> sender,
+            final MetricRegistry metrics) {
         this.aggregationPolicy = Objects.requireNonNull(policy);
         this.sender = Objects.requireNonNull(sender);
         completionSize = aggregationPolicy.getCompletionSize();
         completionIntervalMs = aggregationPolicy.getCompletionIntervalMs();
+        bucketSize = metrics.histogram(MetricRegistry.name(id, "aggregation", "size"));
+        bucketLatency = metrics.timer(MetricRegistry.name(id, "aggregation", "latency"));
 
         if (completionIntervalMs > 0) {
             // Periodically verify the buckets, and flush those that are older than completionIntervalMs
@@ -197,23 +218,24 @@ public class Aggregator<S extends Message, T extends Message, U> implements Auto
     }
 
     protected class Bucket {
+        private final long createdNanos = System.nanoTime();
         private U accumulator;
         private int count = 0;
         private Long firstTimeMillis;
 
         public T accumulate(S message) {
             accumulator = aggregationPolicy.aggregate(accumulator, message);
-            count++;
+            count += aggregationPolicy.weight(message);
             if (count >= completionSize) {
                 // We're ready!
-                return aggregationPolicy.build(accumulator);
+                return getValue();
             } else if (completionIntervalMs > 0) {
                 final long now = System.currentTimeMillis();
                 if (firstTimeMillis == null) {
                     firstTimeMillis = now;
                 } else if (now - firstTimeMillis >= completionIntervalMs) {
                     // We're ready!
-                    return aggregationPolicy.build(accumulator);
+                    return getValue();
                 }
             }
             // We're NOT ready yet...
@@ -221,6 +243,8 @@ public class Aggregator<S extends Message, T extends Message, U> implements Auto
         }
 
         public T getValue() {
+            bucketSize.update(count);
+            bucketLatency.update(System.nanoTime() - createdNanos, TimeUnit.NANOSECONDS);
             return aggregationPolicy.build(accumulator);
         }
 
@@ -48,6 +48,8 @@ public interface AggregationPolicy<S, T, U> {
      * If this value is <= 1, the buckets should be dispatched immediately after
      * adding a single element.
      *
+     * Messages are counted using their {@link #weight(Object)}.
+     *
      * @return maximum number of messages per bucket
      */
     int getCompletionSize();
@@ -78,6 +80,21 @@ public interface AggregationPolicy<S, T, U> {
      */
     Object key(S message);
 
+    /**
+     * Number of elements the given message adds to a bucket when
+     * checking it against the completion size.
+     *
+     * Policies aggregating messages which already carry several
+     * elements should override this so that buckets are bounded
+     * by the number of elements instead of the number of messages.
+     *
+     * @param message the message
+     * @return the message's weight, defaults to 1
+     */
+    default int weight(S message) {
+        return 1;
+    }
+
     /**
      * Aggregate the given message into an existing accumulator, or
      * create a new accumulator if no accumulator exists.
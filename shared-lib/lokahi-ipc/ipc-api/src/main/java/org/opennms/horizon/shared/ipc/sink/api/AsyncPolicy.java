@@ -21,6 +21,8 @@
  */
 package org.opennms.horizon.shared.ipc.sink.api;
 
+import java.time.Duration;
+
 /**
  * Defines the behavior of asynchronous dispatching.
  *
@@ -43,4 +45,24 @@ public interface AsyncPolicy {
      * @return number of threads
      */
     int getNumThreads();
+
+    /**
+     * Maximum number of queued messages that are dispatched
+     * together in a single batch.
+     *
+     * @return batch size, 1 disables batching
+     */
+    default int getMaxBatchSize() {
+        return 1;
+    }
+
+    /**
+     * Maximum time to wait for further messages once the
+     * first message of a batch has been taken from the queue.
+     *
+     * @return batch delay, zero only batches what is already queued
+     */
+    default Duration getMaxBatchDelay() {
+        return Duration.ZERO;
+    }
 }
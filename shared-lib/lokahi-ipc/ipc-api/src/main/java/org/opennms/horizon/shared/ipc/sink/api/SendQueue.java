@@ -21,6 +21,9 @@
  */
 package org.opennms.horizon.shared.ipc.sink.api;
 
+import java.time.Duration;
+import java.util.List;
+
 public interface SendQueue extends AutoCloseable {
 
     /**
@@ -34,4 +37,23 @@ public interface SendQueue extends AutoCloseable {
      * @throws InterruptedException if interrupted while waiting
      */
     byte[] dequeue() throws InterruptedException;
+
+    /**
+     * Retrieves and removes up to {@code max} messages from the head of this queue, waiting if necessary until at
+     * least one element becomes available.
+     * <p>
+     * Once the first message has been taken, messages are collected for at most {@code timeout} until {@code max}
+     * messages have been retrieved. A zero timeout only takes what is immediately available.
+     *
+     * @return the dequeued messages in queue order, never empty
+     * @throws InterruptedException if interrupted while waiting for the first message
+     */
+    default List<byte[]> dequeueBatch(int max, Duration timeout) throws InterruptedException {
+        return List.of(this.dequeue());
+    }
+
+    /**
+     * @return the number of messages in the queue, including the ones restored from a previous run
+     */
+    int size();
 }
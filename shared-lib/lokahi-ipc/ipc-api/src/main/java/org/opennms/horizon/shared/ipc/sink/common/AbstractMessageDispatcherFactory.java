@@ -27,6 +27,7 @@ import com.google.protobuf.Message;
 import io.opentracing.Scope;
 import io.opentracing.Tracer;
 import java.io.IOException;
+import java.util.List;
 import java.util.Objects;
 import org.opennms.horizon.shared.ipc.sink.aggregation.AggregatingMessageDispatcher;
 import org.opennms.horizon.shared.ipc.sink.api.AsyncDispatcher;
@@ -52,6 +53,19 @@ public abstract class AbstractMessageDispatcherFactory<W> implements MessageDisp
     protected abstract <S extends Message, T extends Message> void dispatch(
             SinkModule<S, T> module, W metadata, byte[] message);
 
+    /**
+     * Dispatches a batch of messages taken from the queue of an asynchronous dispatcher.
+     * <p>
+     * Implementations able to ship several messages at once should override this, the default dispatches the
+     * messages one by one.
+     */
+    protected <S extends Message, T extends Message> void dispatch(
+            SinkModule<S, T> module, W metadata, List<byte[]> messages) {
+        for (final byte[] message : messages) {
+            dispatch(module, metadata, message);
+        }
+    }
+
     public abstract Tracer getTracer();
 
     public abstract MetricRegistry getMetrics();
@@ -68,6 +82,19 @@ public abstract class AbstractMessageDispatcherFactory<W> implements MessageDisp
         }
     }
 
+    /**
+     * Invokes batch dispatch within a timer context.
+     */
+    private <S extends Message, T extends Message> void timedDispatch(
+            DispatcherState<W, S, T> state, List<byte[]> messages) {
+        state.getDispatchCounter().inc(messages.size());
+
+        try (Context ctx = state.getDispatchTimer().time();
+                Scope scope = getTracer().buildSpan(state.getModule().getId()).startActive(true)) {
+            dispatch(state.getModule(), state.getMetaData(), messages);
+        }
+    }
+
     /**
      * Optionally build meta-data or state information for the module which will
      * be passed on all the calls to {@link #dispatch}.
@@ -115,7 +142,7 @@ public abstract class AbstractMessageDispatcherFactory<W> implements MessageDisp
         final DispatcherState<W, S, T> state = new DispatcherState<>(this, module);
 
         return new AsyncDispatcherImpl<>(
-                state, this.getSendQueueFactory(), message -> this.timedDispatch(state, message));
+                state, this.getSendQueueFactory(), messages -> this.timedDispatch(state, messages));
     }
 
     protected abstract SendQueueFactory getSendQueueFactory();
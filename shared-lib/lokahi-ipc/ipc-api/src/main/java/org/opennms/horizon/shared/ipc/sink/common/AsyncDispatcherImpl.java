@@ -27,6 +27,7 @@ import com.google.protobuf.Message;
 import com.swrve.ratelimitedlogger.RateLimitedLog;
 import java.io.IOException;
 import java.time.Duration;
+import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -49,7 +50,7 @@ public class AsyncDispatcherImpl<W, S extends Message, T extends Message> implem
 
     private final SendQueue sendQueue;
     private final MessageDispatcher<S, T> messageDispatcher;
-    private final Consumer<byte[]> sender;
+    private final Consumer<List<byte[]>> sender;
     private final AsyncPolicy asyncPolicy;
 
     private final AtomicInteger activeDispatchers = new AtomicInteger(0);
@@ -64,7 +65,7 @@ public class AsyncDispatcherImpl<W, S extends Message, T extends Message> implem
     public AsyncDispatcherImpl(
             final DispatcherState<W, S, T> state,
             final SendQueueFactory sendQueueFactory,
-            final Consumer<byte[]> sender)
+            final Consumer<List<byte[]>> sender)
             throws IOException {
         this.sendQueue = sendQueueFactory.createQueue(state.getModule().getId());
 
@@ -91,16 +92,16 @@ public class AsyncDispatcherImpl<W, S extends Message, T extends Message> implem
     private void dispatchFromQueue() {
         while (true) {
             try {
-                LOG.trace("Asking send queue for the next entry...");
-                final var message = this.sendQueue.dequeue();
+                LOG.trace("Asking send queue for the next entries...");
+                final var messages = this.sendQueue.dequeueBatch(
+                        this.asyncPolicy.getMaxBatchSize(), this.asyncPolicy.getMaxBatchDelay());
 
-                LOG.trace("Received message entry from dispatch queue");
+                LOG.trace("Received {} message entries from dispatch queue", messages.size());
                 activeDispatchers.incrementAndGet();
 
-                LOG.trace("Sending message {}", message);
-                this.sender.accept(message);
+                this.sender.accept(messages);
 
-                LOG.trace("Successfully sent message {}", message);
+                LOG.trace("Successfully sent {} messages", messages.size());
 
                 activeDispatchers.decrementAndGet();
             } catch (InterruptedException e) {
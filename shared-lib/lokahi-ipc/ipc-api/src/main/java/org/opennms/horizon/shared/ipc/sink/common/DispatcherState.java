@@ -67,7 +67,7 @@ public class DispatcherState<W, S extends Message, T extends Message> implements
         return metadata;
     }
 
-    protected MetricRegistry getMetrics() {
+    public MetricRegistry getMetrics() {
         return metrics;
     }
 
@@ -0,0 +1,102 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.horizon.shared.protobuf.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.opennms.taskset.contract.TaskDefinition;
+import org.opennms.taskset.contract.TaskSet;
+import org.opennms.taskset.contract.TaskSetDelta;
+
+/**
+ * Computes and applies {@link TaskSetDelta}s, the changes between two versions of a {@link TaskSet} keyed by
+ * {@link TaskDefinition#getId()}.
+ */
+public class TaskSetDeltaUtil {
+    private TaskSetDeltaUtil() {
+        // block static class constructor
+    }
+
+    /**
+     * Indexes the task definitions of the given task set by id, keeping their order.
+     */
+    public static Map<String, TaskDefinition> index(TaskSet taskSet) {
+        Map<String, TaskDefinition> definitions = new LinkedHashMap<>(taskSet.getTaskDefinitionCount() * 4 / 3 + 1);
+        for (TaskDefinition definition : taskSet.getTaskDefinitionList()) {
+            definitions.put(definition.getId(), definition);
+        }
+        return definitions;
+    }
+
+    /**
+     * Computes the delta turning {@code previous} into {@code current}.
+     * <p>
+     * This costs a lookup per definition and an equality check for definitions present in both versions, nothing is
+     * serialized or parsed.
+     */
+    public static TaskSetDelta diff(Map<String, TaskDefinition> previous, Map<String, TaskDefinition> current) {
+        TaskSetDelta.Builder delta = TaskSetDelta.newBuilder();
+        for (TaskDefinition definition : current.values()) {
+            TaskDefinition existing = previous.get(definition.getId());
+            if (existing == null) {
+                delta.addAdded(definition);
+            } else if (!existing.equals(definition)) {
+                delta.addReplaced(definition);
+            }
+        }
+        // Every definition which is neither added nor removed is in both versions
+        if (previous.size() + delta.getAddedCount() != current.size()) {
+            for (String id : previous.keySet()) {
+                if (!current.containsKey(id)) {
+                    delta.addRemoved(id);
+                }
+            }
+        }
+        return delta.build();
+    }
+
+    public static boolean isEmpty(TaskSetDelta delta) {
+        return delta.getAddedCount() == 0 && delta.getReplacedCount() == 0 && delta.getRemovedCount() == 0;
+    }
+
+    /**
+     * Applies the delta to the given definitions, indexed by id. Replaced definitions keep their position, added
+     * ones are appended.
+     */
+    public static void apply(Map<String, TaskDefinition> definitions, TaskSetDelta delta) {
+        for (String id : delta.getRemovedList()) {
+            definitions.remove(id);
+        }
+        for (TaskDefinition definition : delta.getReplacedList()) {
+            definitions.put(definition.getId(), definition);
+        }
+        for (TaskDefinition definition : delta.getAddedList()) {
+            definitions.put(definition.getId(), definition);
+        }
+    }
+
+    public static TaskSet apply(TaskSet taskSet, TaskSetDelta delta) {
+        Map<String, TaskDefinition> definitions = index(taskSet);
+        apply(definitions, delta);
+        return TaskSet.newBuilder().addAllTaskDefinition(definitions.values()).build();
+    }
+}
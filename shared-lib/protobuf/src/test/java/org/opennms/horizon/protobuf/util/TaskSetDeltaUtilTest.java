@@ -0,0 +1,90 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.horizon.protobuf.util;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.Assert;
+import org.junit.Test;
+import org.opennms.horizon.shared.protobuf.util.TaskSetDeltaUtil;
+import org.opennms.taskset.contract.TaskDefinition;
+import org.opennms.taskset.contract.TaskSet;
+import org.opennms.taskset.contract.TaskSetDelta;
+import org.opennms.taskset.contract.TaskType;
+
+public class TaskSetDeltaUtilTest {
+    @Test
+    public void testDiffAndApply() {
+        TaskSet previous = taskSet(task("a", "60000"), task("b", "60000"), task("c", "60000"));
+        TaskSet current = taskSet(task("a", "60000"), task("c", "30000"), task("d", "60000"));
+
+        TaskSetDelta delta =
+                TaskSetDeltaUtil.diff(TaskSetDeltaUtil.index(previous), TaskSetDeltaUtil.index(current));
+
+        Assert.assertEquals(List.of(task("d", "60000")), delta.getAddedList());
+        Assert.assertEquals(List.of(task("c", "30000")), delta.getReplacedList());
+        Assert.assertEquals(List.of("b"), delta.getRemovedList());
+
+        TaskSet applied = TaskSetDeltaUtil.apply(previous, delta);
+        Assert.assertEquals(List.of("a", "c", "d"), ids(applied));
+        Assert.assertEquals(TaskSetDeltaUtil.index(current), TaskSetDeltaUtil.index(applied));
+    }
+
+    @Test
+    public void testUnchangedIsEmpty() {
+        TaskSet previous = taskSet(task("a", "60000"), task("b", "60000"));
+        TaskSet current = taskSet(task("b", "60000"), task("a", "60000"));
+
+        TaskSetDelta delta =
+                TaskSetDeltaUtil.diff(TaskSetDeltaUtil.index(previous), TaskSetDeltaUtil.index(current));
+
+        Assert.assertTrue(TaskSetDeltaUtil.isEmpty(delta));
+    }
+
+    @Test
+    public void testRemoveAll() {
+        TaskSet previous = taskSet(task("a", "60000"), task("b", "60000"));
+
+        TaskSetDelta delta =
+                TaskSetDeltaUtil.diff(TaskSetDeltaUtil.index(previous), TaskSetDeltaUtil.index(taskSet()));
+
+        Assert.assertEquals(List.of("a", "b"), delta.getRemovedList());
+        Assert.assertEquals(0, TaskSetDeltaUtil.apply(previous, delta).getTaskDefinitionCount());
+    }
+
+    private static TaskDefinition task(String id, String schedule) {
+        return TaskDefinition.newBuilder()
+                .setId(id)
+                .setType(TaskType.MONITOR)
+                .setPluginName("ICMPMonitor")
+                .setSchedule(schedule)
+                .build();
+    }
+
+    private static TaskSet taskSet(TaskDefinition... definitions) {
+        return TaskSet.newBuilder().addAllTaskDefinition(List.of(definitions)).build();
+    }
+
+    private static List<String> ids(TaskSet taskSet) {
+        return taskSet.getTaskDefinitionList().stream().map(TaskDefinition::getId).collect(Collectors.toList());
+    }
+}
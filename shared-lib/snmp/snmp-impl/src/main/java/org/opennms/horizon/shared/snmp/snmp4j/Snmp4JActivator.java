@@ -21,6 +21,7 @@
  */
 package org.opennms.horizon.shared.snmp.snmp4j;
 
+import com.codahale.metrics.MetricSet;
 import java.util.Dictionary;
 import java.util.Hashtable;
 import org.opennms.horizon.shared.snmp.SnmpStrategy;
@@ -31,6 +32,7 @@ import org.osgi.framework.ServiceRegistration;
 public class Snmp4JActivator implements BundleActivator {
 
     private ServiceRegistration<?> serviceRegistration;
+    private ServiceRegistration<?> metricsRegistration;
 
     @Override
     public void start(BundleContext context) throws Exception {
@@ -38,6 +40,12 @@ public class Snmp4JActivator implements BundleActivator {
         props.put("implementation", Snmp4JStrategy.class.getName());
         Snmp4JStrategy strategy = new Snmp4JStrategy();
         serviceRegistration = context.registerService(SnmpStrategy.class.getName(), strategy, props);
+
+        Dictionary<String, String> metricsProps = new Hashtable<>();
+        metricsProps.put("name", "org.opennms.horizon.shared.snmp");
+        metricsProps.put("description", "SNMP session metrics");
+        metricsRegistration =
+                context.registerService(MetricSet.class.getName(), Snmp4JStrategy.getSessionPool(), metricsProps);
     }
 
     @Override
@@ -45,5 +53,9 @@ public class Snmp4JActivator implements BundleActivator {
         if (serviceRegistration != null) {
             serviceRegistration.unregister();
         }
+        if (metricsRegistration != null) {
+            metricsRegistration.unregister();
+        }
+        Snmp4JStrategy.getSessionPool().close();
     }
 }
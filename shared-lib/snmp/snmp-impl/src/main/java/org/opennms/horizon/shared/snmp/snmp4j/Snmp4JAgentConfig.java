@@ -24,6 +24,8 @@ package org.opennms.horizon.shared.snmp.snmp4j;
 import com.google.common.annotations.VisibleForTesting;
 import java.io.IOException;
 import java.net.InetAddress;
+import java.util.Arrays;
+import java.util.List;
 import org.apache.commons.lang.StringUtils;
 import org.opennms.horizon.shared.snmp.SnmpAgentConfig;
 import org.snmp4j.CommunityTarget;
@@ -336,6 +338,23 @@ public class Snmp4JAgentConfig {
         return securityLevel;
     }
 
+    /**
+     * Sessions can only be shared between agents that use the same message processing models and, for v3, the same
+     * USM user. This returns a key that is equal for all configs that can share a session.
+     */
+    public List<Object> getSessionKey() {
+        if (!isSnmpV3()) {
+            return List.of(SnmpConstants.version2c);
+        }
+        return Arrays.asList(
+                SnmpConstants.version3,
+                getSecurityName(),
+                getAuthProtocol(),
+                getAuthPassPhrase(),
+                getPrivProtocol(),
+                getPrivPassPhrase());
+    }
+
     public Snmp createSnmpSession() throws IOException {
         final TransportMapping<?> transport = new DefaultUdpTransportMapping();
         final MessageDispatcher disp = new MessageDispatcherImpl();
@@ -0,0 +1,338 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.horizon.shared.snmp.snmp4j;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.MetricSet;
+import com.codahale.metrics.Timer;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.snmp4j.PDU;
+import org.snmp4j.Snmp;
+import org.snmp4j.Target;
+import org.snmp4j.event.ResponseEvent;
+import org.snmp4j.event.ResponseListener;
+
+/**
+ * Long-lived SNMP4J sessions shared by all requests of this JVM.
+ * <p>
+ * v1 and v2c requests are spread round-robin over a fixed number of sessions. SNMP4J matches responses to their
+ * requests by request id, so any number of agents can be queried over the same socket. A v3 session holds the USM of
+ * a single user, so these are kept per set of credentials and bounded by an LRU. As the sessions stay open, the
+ * engine id and time of an agent are discovered once per session instead of once per request.
+ * <p>
+ * Responses are handed to the listeners on a separate executor, so that a listener which blocks or issues further
+ * synchronous requests cannot stall the listener thread of a shared session. The executor has a bounded number of
+ * threads and a bounded queue; once the queue is full, the listener thread of the session delivers the response
+ * itself, which slows down reading further responses of that session until the callbacks caught up.
+ */
+public class Snmp4JSessionPool implements MetricSet, Closeable {
+    private static final Logger LOG = LoggerFactory.getLogger(Snmp4JSessionPool.class);
+
+    public static final int DEFAULT_CALLBACK_THREADS = 32;
+    public static final int DEFAULT_CALLBACK_QUEUE_SIZE = 10_000;
+
+    private final PooledSession[] sessions;
+    private final AtomicInteger nextSession = new AtomicInteger();
+    private final Map<List<Object>, PooledSession> userSessions;
+
+    private final ThreadPoolExecutor callbackExecutor;
+
+    private final MetricRegistry metrics = new MetricRegistry();
+    private final AtomicInteger openSessions = new AtomicInteger();
+    private final AtomicInteger pendingRequests = new AtomicInteger();
+    private final Timer requestLatency;
+    private final Meter requestTimeouts;
+    private final Meter callbacksRejected;
+
+    public Snmp4JSessionPool(int poolSize, int maxUserSessions) {
+        this(poolSize, maxUserSessions, DEFAULT_CALLBACK_THREADS, DEFAULT_CALLBACK_QUEUE_SIZE);
+    }
+
+    public Snmp4JSessionPool(int poolSize, int maxUserSessions, int callbackThreads, int callbackQueueSize) {
+        if (poolSize < 1 || maxUserSessions < 1) {
+            throw new IllegalArgumentException("Pool size and max. user sessions must be positive");
+        }
+        if (callbackThreads < 1 || callbackQueueSize < 1) {
+            throw new IllegalArgumentException("Callback threads and queue size must be positive");
+        }
+        sessions = new PooledSession[poolSize];
+        userSessions = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<List<Object>, PooledSession> eldest) {
+                if (size() > maxUserSessions) {
+                    eldest.getValue().retire();
+                    return true;
+                }
+                return false;
+            }
+        };
+
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadFactory threadFactory = r -> {
+            Thread thread = new Thread(r, "snmp4j-callback-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        callbacksRejected = metrics.meter(MetricRegistry.name("snmp", "callbacks", "rejected"));
+        callbackExecutor = new ThreadPoolExecutor(
+                callbackThreads,
+                callbackThreads,
+                60L,
+                TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(callbackQueueSize),
+                threadFactory,
+                (callback, executor) -> {
+                    // Push back on the session instead of dropping the response or growing without bound
+                    callbacksRejected.mark();
+                    callback.run();
+                });
+        callbackExecutor.allowCoreThreadTimeOut(true);
+
+        // Every session owns its socket, a listener thread and a timer thread for retransmissions
+        metrics.register(MetricRegistry.name("snmp", "sessions"), (Gauge<Integer>) openSessions::get);
+        metrics.register(MetricRegistry.name("snmp", "sessions", "user"), (Gauge<Integer>) this::getUserSessionCount);
+        metrics.register(
+                MetricRegistry.name("snmp", "threads"),
+                (Gauge<Integer>) () -> 2 * openSessions.get() + callbackExecutor.getPoolSize());
+        metrics.register(MetricRegistry.name("snmp", "requests", "pending"), (Gauge<Integer>) pendingRequests::get);
+        requestLatency = metrics.timer(MetricRegistry.name("snmp", "requests"));
+        requestTimeouts = metrics.meter(MetricRegistry.name("snmp", "requests", "timeouts"));
+        metrics.register(
+                MetricRegistry.name("snmp", "callbacks", "queued"),
+                (Gauge<Integer>) () -> callbackExecutor.getQueue().size());
+    }
+
+    /**
+     * Sends the request on a shared session. The listener is called exactly once, unless the returned request is
+     * cancelled before.
+     */
+    public PendingRequest send(Snmp4JAgentConfig agentConfig, PDU pdu, Target target, ResponseListener listener)
+            throws IOException {
+        PooledSession session = acquire(agentConfig);
+        PendingRequest request = new PendingRequest(session, pdu, listener);
+        try {
+            session.snmp.send(pdu, target, null, request);
+        } catch (IOException | RuntimeException e) {
+            request.cancel();
+            throw e;
+        }
+        return request;
+    }
+
+    /**
+     * Sends a request on a shared session without waiting for a response.
+     */
+    public void send(Snmp4JAgentConfig agentConfig, PDU pdu, Target target) throws IOException {
+        PooledSession session = acquire(agentConfig);
+        try {
+            session.snmp.send(pdu, target);
+        } finally {
+            session.release();
+        }
+    }
+
+    public int getOpenSessionCount() {
+        return openSessions.get();
+    }
+
+    public int getCallbackThreadCount() {
+        return callbackExecutor.getPoolSize();
+    }
+
+    public int getQueuedCallbackCount() {
+        return callbackExecutor.getQueue().size();
+    }
+
+    public int getPendingRequestCount() {
+        return pendingRequests.get();
+    }
+
+    public synchronized int getUserSessionCount() {
+        return userSessions.size();
+    }
+
+    @Override
+    public Map<String, Metric> getMetrics() {
+        return metrics.getMetrics();
+    }
+
+    /**
+     * Closes all sessions once their pending requests completed. The pool stays usable and opens new sessions when
+     * needed.
+     */
+    @Override
+    public synchronized void close() {
+        for (int i = 0; i < sessions.length; i++) {
+            if (sessions[i] != null) {
+                sessions[i].retire();
+                sessions[i] = null;
+            }
+        }
+        userSessions.values().forEach(PooledSession::retire);
+        userSessions.clear();
+    }
+
+    private PooledSession acquire(Snmp4JAgentConfig agentConfig) throws IOException {
+        if (!agentConfig.isSnmpV3()) {
+            int index = Math.floorMod(nextSession.getAndIncrement(), sessions.length);
+            synchronized (this) {
+                if (sessions[index] == null) {
+                    sessions[index] = open(agentConfig);
+                }
+                return sessions[index].acquire();
+            }
+        }
+
+        List<Object> key = agentConfig.getSessionKey();
+        synchronized (this) {
+            PooledSession session = userSessions.get(key);
+            if (session == null) {
+                session = open(agentConfig);
+                userSessions.put(key, session);
+            }
+            return session.acquire();
+        }
+    }
+
+    private PooledSession open(Snmp4JAgentConfig agentConfig) throws IOException {
+        Snmp snmp = agentConfig.createSnmpSession();
+        Snmp4JStrategy.trackSession(snmp);
+        PooledSession session = new PooledSession(snmp);
+        try {
+            snmp.listen();
+        } catch (IOException | RuntimeException e) {
+            session.close();
+            throw e;
+        }
+        LOG.debug("Opened shared {} session {}", agentConfig.getVersionString(), snmp);
+        return session;
+    }
+
+    private final class PooledSession {
+        private final Snmp snmp;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private volatile boolean retired;
+
+        private PooledSession(Snmp snmp) {
+            this.snmp = snmp;
+            openSessions.incrementAndGet();
+        }
+
+        // Called with the pool lock held, so a retired session is never acquired again
+        private PooledSession acquire() {
+            inFlight.incrementAndGet();
+            return this;
+        }
+
+        private void release() {
+            if (inFlight.decrementAndGet() == 0 && retired) {
+                close();
+            }
+        }
+
+        private void retire() {
+            retired = true;
+            if (inFlight.get() == 0) {
+                close();
+            }
+        }
+
+        private void close() {
+            if (!closed.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                snmp.close();
+            } catch (IOException e) {
+                LOG.warn("Failed to close shared SNMP session {}", snmp, e);
+            } finally {
+                Snmp4JStrategy.reapSession(snmp);
+                openSessions.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * A request waiting for its response.
+     */
+    public final class PendingRequest implements ResponseListener {
+        private final PooledSession session;
+        private final PDU request;
+        private final ResponseListener listener;
+        private final long startedAt = System.nanoTime();
+        private final AtomicBoolean done = new AtomicBoolean();
+
+        private PendingRequest(PooledSession session, PDU request, ResponseListener listener) {
+            this.session = session;
+            this.request = request;
+            this.listener = listener;
+            pendingRequests.incrementAndGet();
+        }
+
+        @Override
+        public void onResponse(ResponseEvent responseEvent) {
+            if (!done.compareAndSet(false, true)) {
+                return;
+            }
+            // SNMP4J keeps asynchronous requests around until they are cancelled, even once they were answered
+            session.snmp.cancel(responseEvent.getRequest(), this);
+            complete();
+
+            requestLatency.update(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+            if (responseEvent.getResponse() == null && responseEvent.getError() == null) {
+                requestTimeouts.mark();
+            }
+            callbackExecutor.execute(() -> listener.onResponse(responseEvent));
+        }
+
+        /**
+         * Cancels the request, its listener is not called anymore.
+         */
+        public void cancel() {
+            if (done.compareAndSet(false, true)) {
+                session.snmp.cancel(request, this);
+                complete();
+            }
+        }
+
+        private void complete() {
+            pendingRequests.decrementAndGet();
+            session.release();
+        }
+    }
+}
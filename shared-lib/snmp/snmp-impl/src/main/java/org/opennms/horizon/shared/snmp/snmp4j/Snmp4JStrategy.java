@@ -36,10 +36,8 @@ import java.util.Objects;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import org.opennms.horizon.shared.logging.Logging;
@@ -100,12 +98,13 @@ import org.snmp4j.transport.DefaultUdpTransportMapping;
 public class Snmp4JStrategy implements SnmpStrategy {
     private static final transient Logger LOG = LoggerFactory.getLogger(Snmp4JStrategy.class);
 
-    private static final ExecutorService REAPER_EXECUTOR = Executors.newCachedThreadPool(new ThreadFactory() {
-        @Override
-        public Thread newThread(Runnable r) {
-            return new Thread(r, "SNMP4J-Session-Reaper");
-        }
-    });
+    private static final Snmp4JSessionPool s_sessionPool = new Snmp4JSessionPool(
+            Integer.getInteger("org.opennms.snmp.snmp4j.sessionPoolSize", 4),
+            Integer.getInteger("org.opennms.snmp.snmp4j.maxUserSessions", 128),
+            Integer.getInteger(
+                    "org.opennms.snmp.snmp4j.callbackThreads", Snmp4JSessionPool.DEFAULT_CALLBACK_THREADS),
+            Integer.getInteger(
+                    "org.opennms.snmp.snmp4j.callbackQueueSize", Snmp4JSessionPool.DEFAULT_CALLBACK_QUEUE_SIZE));
 
     private static Map<TrapNotificationListener, RegistrationInfo> s_registrations = new HashMap<>();
 
@@ -161,6 +160,13 @@ public class Snmp4JStrategy implements SnmpStrategy {
         initialize();
     }
 
+    /**
+     * The sessions shared by all gets, sets and walks.
+     */
+    public static Snmp4JSessionPool getSessionPool() {
+        return s_sessionPool;
+    }
+
     public void clearUsers() {
         if (m_usm != null) {
             m_usm.removeAllUsers();
@@ -176,7 +182,7 @@ public class Snmp4JStrategy implements SnmpStrategy {
      */
     @Override
     public SnmpWalker createWalker(SnmpAgentConfig snmpAgentConfig, String name, CollectionTracker tracker) {
-        return new Snmp4JWalker(new Snmp4JAgentConfig(snmpAgentConfig), name, tracker);
+        return new Snmp4JWalker(new Snmp4JAgentConfig(snmpAgentConfig), name, tracker, s_sessionPool);
     }
 
     /**
@@ -312,66 +318,29 @@ public class Snmp4JStrategy implements SnmpStrategy {
 
     private void send(
             Snmp4JAgentConfig agentConfig, PDU pdu, boolean expectResponse, CompletableFuture<SnmpValue[]> future) {
-        Snmp session;
-
-        try {
-            session = agentConfig.createSnmpSession();
-            Snmp4JStrategy.trackSession(session);
-        } catch (final Exception e) {
-            LOG.error("send: Could not create SNMP session for agent {}", agentConfig, e);
-            future.completeExceptionally(new SnmpException("Could not create SNMP session for agent", e));
-            return;
-        }
-
         if (expectResponse) {
             try {
-                session.listen();
-            } catch (final Exception e) {
-                closeQuietly(session);
-                LOG.error("send: error setting up listener for SNMP responses", e);
-                future.completeExceptionally(new SnmpException("error setting up listener for SNMP responses", e));
-                return;
-            }
-
-            try {
-                final Snmp mySession = session;
-                mySession.send(pdu, agentConfig.getTarget(), null, new ResponseListener() {
+                s_sessionPool.send(agentConfig, pdu, agentConfig.getTarget(), new ResponseListener() {
                     @Override
                     public void onResponse(final ResponseEvent responseEvent) {
                         try {
                             future.complete(processResponse(agentConfig, responseEvent, pdu));
                         } catch (final Exception e) {
                             future.completeExceptionally(new SnmpException(e));
-                        } finally {
-                            // Close the tracker using a separate thread
-                            // This allows the SnmpWalker to clean up properly instead
-                            // of interrupting execution as it's executing the callback
-                            REAPER_EXECUTOR.submit(new Runnable() {
-                                @Override
-                                public void run() {
-                                    closeQuietly(mySession);
-                                }
-                            });
                         }
                     }
                 });
             } catch (final Exception e) {
-                // The ResponseListener will not be called since an exception occurred in the send,
-                // so we make sure to close the session here
-                closeQuietly(session);
                 LOG.error("send: error during SNMP operation", e);
                 future.completeExceptionally(e);
             }
         } else { // we're not expecting a response
             try {
-                session.send(pdu, agentConfig.getTarget());
+                s_sessionPool.send(agentConfig, pdu, agentConfig.getTarget());
                 future.complete(null);
             } catch (final Exception e) {
                 LOG.error("send: error during SNMP operation", e);
                 future.completeExceptionally(new SnmpException(e));
-            } finally {
-                closeQuietly(session);
-                Snmp4JStrategy.reapSession(session);
             }
         }
     }
@@ -907,20 +876,6 @@ public class Snmp4JStrategy implements SnmpStrategy {
         }
     }
 
-    private static void closeQuietly(Snmp session) {
-        if (session == null) {
-            return;
-        }
-
-        try {
-            session.close();
-        } catch (IOException e) {
-            LOG.error("error closing SNMP connection", e);
-        } finally {
-            Snmp4JStrategy.reapSession(session);
-        }
-    }
-
     public static OctetString createPersistentInstanceId() {
         String instanceId = SystemInfoUtils.getInstanceId();
         // Limit this instance to 23 bytes.
@@ -30,7 +30,6 @@ import org.opennms.horizon.shared.snmp.SnmpWalker;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.snmp4j.PDU;
-import org.snmp4j.Snmp;
 import org.snmp4j.Target;
 import org.snmp4j.event.ResponseEvent;
 import org.snmp4j.event.ResponseListener;
@@ -160,8 +159,7 @@ public class Snmp4JWalker extends SnmpWalker {
 
         @Override
         public void onResponse(ResponseEvent responseEvent) {
-            // need to cancel the request here otherwise SNMP4J Keeps it around forever... go figure
-            m_session.cancel(responseEvent.getRequest(), this);
+            m_request = null;
 
             // Check to see if we got an interrupted exception
             if (responseEvent.getError() instanceof InterruptedException) {
@@ -187,12 +185,14 @@ public class Snmp4JWalker extends SnmpWalker {
         }
     }
 
-    private Snmp m_session;
+    private final Snmp4JSessionPool m_sessionPool;
+    private volatile Snmp4JSessionPool.PendingRequest m_request;
     private final Target m_tgt;
     private final ResponseListener m_listener;
     private final Snmp4JAgentConfig m_agentConfig;
 
-    public Snmp4JWalker(Snmp4JAgentConfig agentConfig, String name, CollectionTracker tracker) {
+    public Snmp4JWalker(
+            Snmp4JAgentConfig agentConfig, String name, CollectionTracker tracker, Snmp4JSessionPool sessionPool) {
         super(
                 agentConfig.getInetAddress(),
                 name,
@@ -202,6 +202,7 @@ public class Snmp4JWalker extends SnmpWalker {
                 tracker);
 
         m_agentConfig = agentConfig;
+        m_sessionPool = sessionPool;
 
         m_tgt = agentConfig.getTarget();
         m_listener = new Snmp4JResponseListener();
@@ -230,20 +231,10 @@ public class Snmp4JWalker extends SnmpWalker {
     @Override
     protected void sendNextPdu(WalkerPduBuilder pduBuilder) throws SnmpException {
         Snmp4JPduBuilder snmp4JPduBuilder = (Snmp4JPduBuilder) pduBuilder;
-        try {
-            if (m_session == null) {
-                m_session = m_agentConfig.createSnmpSession();
-                Snmp4JStrategy.trackSession(m_session);
-                m_session.listen();
-            }
-        } catch (final IOException e) {
-            close();
-            throw new SnmpException(e);
-        }
 
         LOG.debug("Sending tracker pdu of size {}", snmp4JPduBuilder.getPdu().size());
         try {
-            m_session.send(snmp4JPduBuilder.getPdu(), m_tgt, null, m_listener);
+            m_request = m_sessionPool.send(m_agentConfig, snmp4JPduBuilder.getPdu(), m_tgt, m_listener);
         } catch (final IOException e) {
             LOG.debug("Failed to send pdu of size {}", snmp4JPduBuilder.getPdu().size(), e);
             close();
@@ -257,15 +248,11 @@ public class Snmp4JWalker extends SnmpWalker {
 
     @Override
     public void close() {
-        if (m_session != null) {
-            try {
-                m_session.close();
-            } catch (IOException e) {
-                LOG.error("{}: Unexpected Error occured closing SNMP session for: {}", getName(), m_agentConfig, e);
-            } finally {
-                Snmp4JStrategy.reapSession(m_session);
-            }
-            m_session = null;
+        // The session is shared, only drop a request that is still waiting for its response
+        final Snmp4JSessionPool.PendingRequest request = m_request;
+        if (request != null) {
+            request.cancel();
+            m_request = null;
         }
     }
 }
@@ -0,0 +1,306 @@
+/*
+ * Licensed to The OpenNMS Group, Inc (TOG) under one or more
+ * contributor license agreements.  See the LICENSE.md file
+ * distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * TOG licenses this file to You under the GNU Affero General
+ * Public License Version 3 (the "License") or (at your option)
+ * any later version.  You may not use this file except in
+ * compliance with the License.  You may obtain a copy of the
+ * License at:
+ *
+ *      https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.  See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package org.opennms.horizon.shared.snmp.snmp4j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Timer;
+import java.io.IOException;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.opennms.horizon.shared.snmp.ColumnTracker;
+import org.opennms.horizon.shared.snmp.SnmpAgentConfig;
+import org.opennms.horizon.shared.snmp.SnmpObjId;
+import org.opennms.horizon.shared.snmp.SnmpResult;
+import org.snmp4j.CommandResponderEvent;
+import org.snmp4j.MessageException;
+import org.snmp4j.PDU;
+import org.snmp4j.Snmp;
+import org.snmp4j.mp.StatusInformation;
+import org.snmp4j.smi.Null;
+import org.snmp4j.smi.OID;
+import org.snmp4j.smi.OctetString;
+import org.snmp4j.smi.UdpAddress;
+import org.snmp4j.smi.Variable;
+import org.snmp4j.smi.VariableBinding;
+import org.snmp4j.transport.DefaultUdpTransportMapping;
+
+/**
+ * Puts load on the shared sessions using a local agent that serves a single ifDescr column.
+ */
+public class Snmp4JSessionPoolTest {
+    private static final String IF_DESCR = "1.3.6.1.2.1.2.2.1.2";
+    private static final int INTERFACES = 50;
+    private static final int POOL_SIZE = 2;
+
+    private final TreeMap<OID, Variable> mib = new TreeMap<>();
+    private Snmp agent;
+    private int agentPort;
+    private Snmp4JSessionPool pool;
+
+    @Before
+    public void setUp() throws IOException {
+        // Initializes the SNMP4J settings and security protocols
+        new Snmp4JStrategy();
+
+        for (int i = 1; i <= INTERFACES; i++) {
+            mib.put(new OID(IF_DESCR + "." + i), new OctetString("eth" + i));
+        }
+        mib.put(new OID("1.3.6.1.2.1.2.2.1.3.1"), new OctetString("next column"));
+
+        agentPort = getFreePort();
+        agent = new Snmp(new DefaultUdpTransportMapping(new UdpAddress(InetAddress.getLoopbackAddress(), agentPort)));
+        agent.addCommandResponder(this::respond);
+        agent.listen();
+
+        pool = new Snmp4JSessionPool(POOL_SIZE, 4);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        pool.close();
+        agent.close();
+    }
+
+    @Test
+    public void testConcurrentGetsShareSessions() throws Exception {
+        final int requests = 2_000;
+        CountDownLatch latch = new CountDownLatch(requests);
+        AtomicInteger answered = new AtomicInteger();
+
+        for (int i = 0; i < requests; i++) {
+            int version = i % 2 == 0 ? SnmpAgentConfig.VERSION1 : SnmpAgentConfig.VERSION2C;
+            Snmp4JAgentConfig agentConfig = new Snmp4JAgentConfig(getAgentConfig(version));
+            int ifIndex = i % INTERFACES + 1;
+            PDU pdu = agentConfig.createPdu(PDU.GET);
+            pdu.add(new VariableBinding(new OID(IF_DESCR + "." + ifIndex)));
+            pool.send(agentConfig, pdu, agentConfig.getTarget(), responseEvent -> {
+                PDU response = responseEvent.getResponse();
+                if (response != null && new OctetString("eth" + ifIndex).equals(response.get(0).getVariable())) {
+                    answered.incrementAndGet();
+                }
+                latch.countDown();
+            });
+        }
+
+        assertTrue(latch.await(30, TimeUnit.SECONDS));
+        assertEquals(requests, answered.get());
+        assertEquals(POOL_SIZE, pool.getOpenSessionCount());
+        assertEquals(0, pool.getPendingRequestCount());
+        assertEquals(requests, ((Timer) pool.getMetrics().get("snmp.requests")).getCount());
+    }
+
+    @Test
+    public void testConcurrentWalksShareSessions() throws Exception {
+        final int walks = 200;
+        AtomicInteger results = new AtomicInteger();
+        List<Snmp4JWalker> walkers = new ArrayList<>(walks);
+
+        for (int i = 0; i < walks; i++) {
+            int version = i % 2 == 0 ? SnmpAgentConfig.VERSION1 : SnmpAgentConfig.VERSION2C;
+            SnmpAgentConfig config = getAgentConfig(version);
+            ColumnTracker tracker = new ColumnTracker(SnmpObjId.get(IF_DESCR)) {
+                @Override
+                protected void storeResult(SnmpResult res) {
+                    results.incrementAndGet();
+                }
+            };
+            Snmp4JWalker walker = new Snmp4JWalker(new Snmp4JAgentConfig(config), "walk-" + i, tracker, pool);
+            walkers.add(walker);
+            walker.start();
+        }
+
+        for (Snmp4JWalker walker : walkers) {
+            assertTrue(walker.waitFor(30_000));
+            assertFalse(walker.getErrorMessage(), walker.failed());
+            walker.close();
+        }
+        assertEquals(walks * INTERFACES, results.get());
+        assertEquals(POOL_SIZE, pool.getOpenSessionCount());
+        assertEquals(0, pool.getPendingRequestCount());
+    }
+
+    @Test
+    public void testFullCallbackQueuePushesBackOnSession() throws Exception {
+        pool.close();
+        pool = new Snmp4JSessionPool(POOL_SIZE, 4, 1, 1);
+        CountDownLatch running = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch answered = new CountDownLatch(3);
+
+        for (int i = 0; i < 3; i++) {
+            Snmp4JAgentConfig agentConfig = new Snmp4JAgentConfig(getAgentConfig(SnmpAgentConfig.VERSION2C));
+            PDU pdu = agentConfig.createPdu(PDU.GET);
+            pdu.add(new VariableBinding(new OID(IF_DESCR + ".1")));
+            pool.send(agentConfig, pdu, agentConfig.getTarget(), responseEvent -> {
+                running.countDown();
+                try {
+                    release.await(30, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                answered.countDown();
+            });
+        }
+
+        // One callback runs on the executor, one is queued and the last one runs on the listener thread
+        assertTrue(running.await(30, TimeUnit.SECONDS));
+        assertEquals(1, pool.getQueuedCallbackCount());
+        assertEquals(1, ((Meter) pool.getMetrics().get("snmp.callbacks.rejected")).getCount());
+
+        release.countDown();
+        assertTrue(answered.await(30, TimeUnit.SECONDS));
+        assertEquals(1, pool.getCallbackThreadCount());
+    }
+
+    @Test
+    public void testCancelReleasesSession() throws Exception {
+        // Nobody answers on this port
+        SnmpAgentConfig config = getAgentConfig(SnmpAgentConfig.VERSION2C);
+        config.setPort(getFreePort());
+        config.setTimeout(10_000);
+        Snmp4JAgentConfig agentConfig = new Snmp4JAgentConfig(config);
+        PDU pdu = agentConfig.createPdu(PDU.GET);
+        pdu.add(new VariableBinding(new OID(IF_DESCR + ".1")));
+
+        AtomicBoolean called = new AtomicBoolean();
+        Snmp4JSessionPool.PendingRequest request =
+                pool.send(agentConfig, pdu, agentConfig.getTarget(), responseEvent -> called.set(true));
+        assertEquals(1, pool.getPendingRequestCount());
+
+        request.cancel();
+        assertEquals(0, pool.getPendingRequestCount());
+
+        pool.close();
+        assertEquals(0, pool.getOpenSessionCount());
+        assertFalse(called.get());
+    }
+
+    @Test
+    public void testSessionKeys() throws Exception {
+        SnmpAgentConfig v1 = getAgentConfig(SnmpAgentConfig.VERSION1);
+        SnmpAgentConfig v2c = getAgentConfig(SnmpAgentConfig.VERSION2C);
+        v2c.setReadCommunity("other");
+        assertEquals(new Snmp4JAgentConfig(v1).getSessionKey(), new Snmp4JAgentConfig(v2c).getSessionKey());
+
+        SnmpAgentConfig user = getV3AgentConfig("user", "authpass");
+        SnmpAgentConfig sameUser = getV3AgentConfig("user", "authpass");
+        sameUser.setPort(agentPort + 1);
+        SnmpAgentConfig otherPassword = getV3AgentConfig("user", "otherpass");
+        assertEquals(new Snmp4JAgentConfig(user).getSessionKey(), new Snmp4JAgentConfig(sameUser).getSessionKey());
+        assertNotEquals(
+                new Snmp4JAgentConfig(user).getSessionKey(), new Snmp4JAgentConfig(otherPassword).getSessionKey());
+        assertNotEquals(new Snmp4JAgentConfig(v1).getSessionKey(), new Snmp4JAgentConfig(user).getSessionKey());
+    }
+
+    private SnmpAgentConfig getAgentConfig(int version) {
+        SnmpAgentConfig config = new SnmpAgentConfig(InetAddress.getLoopbackAddress());
+        config.setPort(agentPort);
+        config.setVersion(version);
+        config.setTimeout(2_000);
+        config.setRetries(3);
+        config.setMaxVarsPerPdu(10);
+        config.setMaxRepetitions(10);
+        return config;
+    }
+
+    private SnmpAgentConfig getV3AgentConfig(String securityName, String authPassPhrase) {
+        SnmpAgentConfig config = getAgentConfig(SnmpAgentConfig.VERSION3);
+        config.setSecurityName(securityName);
+        config.setSecurityLevel(SnmpAgentConfig.AUTH_NOPRIV);
+        config.setAuthProtocol("SHA");
+        config.setAuthPassPhrase(authPassPhrase);
+        return config;
+    }
+
+    private static int getFreePort() throws IOException {
+        try (DatagramSocket socket = new DatagramSocket(0, InetAddress.getLoopbackAddress())) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private void respond(CommandResponderEvent event) {
+        PDU request = event.getPDU();
+        if (request == null || request.getType() == PDU.RESPONSE) {
+            return;
+        }
+
+        PDU response = new PDU();
+        response.setType(PDU.RESPONSE);
+        response.setRequestID(request.getRequestID());
+        if (request.getType() == PDU.GET) {
+            for (VariableBinding vb : request.getVariableBindings()) {
+                Variable value = mib.get(vb.getOid());
+                response.add(new VariableBinding(vb.getOid(), value != null ? value : Null.noSuchObject));
+            }
+        } else {
+            // GETNEXT, or GETBULK without non-repeaters, rows are interleaved like a real agent does
+            int repetitions = request.getType() == PDU.GETBULK ? Math.max(1, request.getMaxRepetitions()) : 1;
+            OID[] oids = new OID[request.size()];
+            for (int i = 0; i < oids.length; i++) {
+                oids[i] = request.get(i).getOid();
+            }
+            for (int r = 0; r < repetitions; r++) {
+                for (int i = 0; i < oids.length; i++) {
+                    Map.Entry<OID, Variable> next = mib.higherEntry(oids[i]);
+                    if (next == null) {
+                        response.add(new VariableBinding(oids[i], Null.endOfMibView));
+                    } else {
+                        response.add(new VariableBinding(next.getKey(), next.getValue()));
+                        oids[i] = next.getKey();
+                    }
+                }
+            }
+        }
+
+        try {
+            event.getMessageDispatcher()
+                    .returnResponsePdu(
+                            event.getMessageProcessingModel(),
+                            event.getSecurityModel(),
+                            event.getSecurityName(),
+                            event.getSecurityLevel(),
+                            response,
+                            event.getMaxSizeResponsePDU(),
+                            event.getStateReference(),
+                            new StatusInformation());
+            event.setProcessed(true);
+        } catch (MessageException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}